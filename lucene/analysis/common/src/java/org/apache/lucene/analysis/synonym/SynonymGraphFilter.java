@@ -18,9 +18,6 @@
 package org.apache.lucene.analysis.synonym;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
@@ -31,9 +28,12 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.RollingBuffer;
 import org.apache.lucene.util.fst.FST;
 
@@ -98,7 +98,23 @@ public final class SynonymGraphFilter extends TokenFilter {
   private final ByteArrayDataInput bytesReader = new ByteArrayDataInput();
   private final BytesRef scratchBytes = new BytesRef();
   private final CharsRefBuilder scratchChars = new CharsRefBuilder();
-  private final LinkedList<BufferedOutputToken> outputBuffer = new LinkedList<>();
+  // Output of the FST arcs walked so far, and of the longest match:
+  private final BytesRefBuilder pendingOutput = new BytesRefBuilder();
+  private final BytesRefBuilder matchOutput = new BytesRefBuilder();
+
+  // Pending output tokens are outputBuffer[outputBufferUpto:outputBufferCount]; the
+  // tokens and the arrays below are reused across matches so that matching
+  // does not allocate once they have grown large enough:
+  private BufferedOutputToken[] outputBuffer = new BufferedOutputToken[0];
+  private int outputBufferUpto;
+  private int outputBufferCount;
+
+  // Words of all synonym outputs of the current match, concatenated in pathChars;
+  // output i has words [pathWordStart[i], pathWordStart[i+1]):
+  private final CharsRefBuilder pathChars = new CharsRefBuilder();
+  private int[] pathWordStart = new int[8];
+  private int[] wordStart = new int[8];
+  private int[] wordLength = new int[8];
 
   private int nextNodeOut;
   private int lastNodeOut;
@@ -144,20 +160,14 @@ public final class SynonymGraphFilter extends TokenFilter {
   }
 
   static class BufferedOutputToken {
-    final String term;
+    // Only used if state is null:
+    final CharsRefBuilder term = new CharsRefBuilder();
 
     // Non-null if this was an incoming token:
-    final State state;
-
-    final int startNode;
-    final int endNode;
+    State state;
 
-    public BufferedOutputToken(State state, String term, int startNode, int endNode) {
-      this.state = state;
-      this.term = term;
-      this.startNode = startNode;
-      this.endNode = endNode;
-    }
+    int startNode;
+    int endNode;
   }
 
   /**
@@ -186,7 +196,7 @@ public final class SynonymGraphFilter extends TokenFilter {
 
     assert lastNodeOut <= nextNodeOut;
       
-    if (outputBuffer.isEmpty() == false) {
+    if (outputBufferUpto < outputBufferCount) {
       // We still have pending outputs from a prior synonym match:
       releaseBufferedToken();
       //System.out.println("  syn: ret buffered=" + this);
@@ -250,17 +260,18 @@ public final class SynonymGraphFilter extends TokenFilter {
   private void releaseBufferedToken() throws IOException {
     //System.out.println("  releaseBufferedToken");
 
-    BufferedOutputToken token = outputBuffer.pollFirst();
+    BufferedOutputToken token = outputBuffer[outputBufferUpto++];
 
     if (token.state != null) {
       // This is an original input token (keepOrig=true case):
       //System.out.println("    hasState");
       restoreState(token.state);
+      token.state = null;
       //System.out.println("    startOffset=" + offsetAtt.startOffset() + " endOffset=" + offsetAtt.endOffset());
     } else {
       clearAttributes();
       //System.out.println("    no state");
-      termAtt.append(token.term);
+      termAtt.copyBuffer(token.term.chars(), 0, token.term.length());
 
       // We better have a match already:
       assert matchStartOffset != -1;
@@ -283,11 +294,13 @@ public final class SynonymGraphFilter extends TokenFilter {
   private boolean parse() throws IOException {
     // System.out.println(Thread.currentThread().getName() + ": S: parse: " + System.identityHashCode(this));
 
-    // Holds the longest match we've seen so far:
-    BytesRef matchOutput = null;
+    // Holds the longest match we've seen so far, in matchOutput:
+    boolean matched = false;
     int matchInputLength = 0;
 
-    BytesRef pendingOutput = fst.outputs.getNoOutput();
+    // We accumulate outputs in place rather than with fst.outputs.add, which
+    // would allocate a new BytesRef per arc that has an output:
+    pendingOutput.clear();
     fst.getFirstArc(scratchArc);
 
     assert scratchArc.output() == fst.outputs.getNoOutput();
@@ -360,7 +373,7 @@ public final class SynonymGraphFilter extends TokenFilter {
         }
 
         // Accum the output
-        pendingOutput = fst.outputs.add(pendingOutput, scratchArc.output());
+        pendingOutput.append(scratchArc.output());
         bufUpto += Character.charCount(codePoint);
       }
 
@@ -369,7 +382,9 @@ public final class SynonymGraphFilter extends TokenFilter {
       // OK, entire token matched; now see if this is a final
       // state in the FST (a match):
       if (scratchArc.isFinal()) {
-        matchOutput = fst.outputs.add(pendingOutput, scratchArc.nextFinalOutput());
+        matchOutput.copyBytes(pendingOutput);
+        matchOutput.append(scratchArc.nextFinalOutput());
+        matched = true;
         matchInputLength = matchLength;
         matchEndOffset = inputEndOffset;
         //System.out.println("    ** match");
@@ -385,7 +400,7 @@ public final class SynonymGraphFilter extends TokenFilter {
       } else {
         // More matching is possible -- accum the output (if
         // any) of the WORD_SEP arc:
-        pendingOutput = fst.outputs.add(pendingOutput, scratchArc.output());
+        pendingOutput.append(scratchArc.output());
         doFinalCapture = true;
         if (liveToken) {
           capture();
@@ -398,7 +413,7 @@ public final class SynonymGraphFilter extends TokenFilter {
       capture();
     }
 
-    if (matchOutput != null) {
+    if (matched) {
 
       if (liveToken) {
         // Single input token synonym; we must buffer it now:
@@ -406,7 +421,7 @@ public final class SynonymGraphFilter extends TokenFilter {
       }
 
       // There is a match!
-      bufferOutputTokens(matchOutput, matchInputLength);
+      bufferOutputTokens(matchOutput.get(), matchInputLength);
       lookaheadNextRead += matchInputLength;
       //System.out.println("  precmatch; set lookaheadNextRead=" + lookaheadNextRead + " now max=" + lookahead.getMaxPos());
       lookahead.freeBefore(lookaheadNextRead);
@@ -446,26 +461,34 @@ public final class SynonymGraphFilter extends TokenFilter {
     // TODO: we could encode this instead into the FST:
 
     // 1st pass: count how many new nodes we need
-    List<List<String>> paths = new ArrayList<>();
+    pathWordStart = ArrayUtil.grow(pathWordStart, count + 1);
+    pathChars.clear();
+    int wordCount = 0;
     for(int outputIDX=0;outputIDX<count;outputIDX++) {
       int wordID = bytesReader.readVInt();
       synonyms.words.get(wordID, scratchBytes);
       scratchChars.copyUTF8Bytes(scratchBytes);
       int lastStart = 0;
 
-      List<String> path = new ArrayList<>();
-      paths.add(path);
+      pathWordStart[outputIDX] = wordCount;
       int chEnd = scratchChars.length();
       for(int chUpto=0; chUpto<=chEnd; chUpto++) {
         if (chUpto == chEnd || scratchChars.charAt(chUpto) == SynonymMap.WORD_SEPARATOR) {
-          path.add(new String(scratchChars.chars(), lastStart, chUpto - lastStart));
+          wordStart = ArrayUtil.grow(wordStart, wordCount + 1);
+          wordLength = ArrayUtil.grow(wordLength, wordCount + 1);
+          wordStart[wordCount] = pathChars.length();
+          wordLength[wordCount] = chUpto - lastStart;
+          pathChars.append(scratchChars.chars(), lastStart, chUpto - lastStart);
+          wordCount++;
           lastStart = 1 + chUpto;
         }
       }
 
-      assert path.size() > 0;
-      totalPathNodes += path.size() - 1;
+      int pathSize = wordCount - pathWordStart[outputIDX];
+      assert pathSize > 0;
+      totalPathNodes += pathSize - 1;
     }
+    pathWordStart[count] = wordCount;
     //System.out.println("  totalPathNodes=" + totalPathNodes);
 
     // 2nd pass: buffer tokens for the graph fragment
@@ -476,24 +499,30 @@ public final class SynonymGraphFilter extends TokenFilter {
     // We "spawn" a side-path for each of the outputs for this matched
     // synonym, all ending back at this end node:
 
+    // We only parse once all previously buffered tokens were released:
+    assert outputBufferUpto == outputBufferCount;
+    outputBufferUpto = 0;
+    outputBufferCount = 0;
+
     int startNode = nextNodeOut;
 
     int endNode = startNode + totalPathNodes + 1;
-    //System.out.println("  " + paths.size() + " new side-paths");
+    //System.out.println("  " + count + " new side-paths");
 
     // First, fanout all tokens departing start node for these new side paths:
     int newNodeCount = 0;
-    for(List<String> path : paths) {
+    for(int pathID=0;pathID<count;pathID++) {
+      int pathSize = pathWordStart[pathID + 1] - pathWordStart[pathID];
       int pathEndNode;
-      //System.out.println("    path size=" + path.size());
-      if (path.size() == 1) {
+      //System.out.println("    path size=" + pathSize);
+      if (pathSize == 1) {
         // Single token output, so there are no intermediate nodes:
         pathEndNode = endNode;
       } else {
         pathEndNode = nextNodeOut + newNodeCount + 1;
-        newNodeCount += path.size() - 1;
+        newNodeCount += pathSize - 1;
       }
-      outputBuffer.add(new BufferedOutputToken(null, path.get(0), startNode, pathEndNode));
+      addOutputToken(pathWordStart[pathID], startNode, pathEndNode);
     }
 
     // We must do the original tokens last, else the offsets "go backwards":
@@ -509,44 +538,75 @@ public final class SynonymGraphFilter extends TokenFilter {
 
       //System.out.println("    keepOrig first token: " + token.term);
 
-      outputBuffer.add(new BufferedOutputToken(token.state, token.term.toString(), startNode, inputEndNode));
+      addOutputToken(token.state, startNode, inputEndNode);
     }
 
     nextNodeOut = endNode;
 
     // Do full side-path for each syn output:
-    for(int pathID=0;pathID<paths.size();pathID++) {
-      List<String> path = paths.get(pathID);
-      if (path.size() > 1) {
-        int lastNode = outputBuffer.get(pathID).endNode;
-        for(int i=1;i<path.size()-1;i++) {
-          outputBuffer.add(new BufferedOutputToken(null, path.get(i), lastNode, lastNode+1));
+    for(int pathID=0;pathID<count;pathID++) {
+      int firstWord = pathWordStart[pathID];
+      int lastWord = pathWordStart[pathID + 1] - 1;
+      if (lastWord > firstWord) {
+        int lastNode = outputBuffer[pathID].endNode;
+        for(int i=firstWord+1;i<lastWord;i++) {
+          addOutputToken(i, lastNode, lastNode+1);
           lastNode++;
         }
-        outputBuffer.add(new BufferedOutputToken(null, path.get(path.size()-1), lastNode, endNode));
+        addOutputToken(lastWord, lastNode, endNode);
       }
     }
 
     if (keepOrig && matchInputLength > 1) {
       // Do full "side path" with the original tokens:
-      int lastNode = outputBuffer.get(paths.size()).endNode;
+      int lastNode = outputBuffer[count].endNode;
       for(int i=1;i<matchInputLength-1;i++) {
         BufferedInputToken token = lookahead.get(lookaheadNextRead + i);
-        outputBuffer.add(new BufferedOutputToken(token.state, token.term.toString(), lastNode, lastNode+1));
+        addOutputToken(token.state, lastNode, lastNode+1);
         lastNode++;
       }
       BufferedInputToken token = lookahead.get(lookaheadNextRead + matchInputLength - 1);
-      outputBuffer.add(new BufferedOutputToken(token.state, token.term.toString(), lastNode, endNode));
+      addOutputToken(token.state, lastNode, endNode);
     }
 
     /*
-    System.out.println("  after buffer: " + outputBuffer.size() + " tokens:");
-    for(BufferedOutputToken token : outputBuffer) {
+    System.out.println("  after buffer: " + outputBufferCount + " tokens:");
+    for(int i=0;i<outputBufferCount;i++) {
+      BufferedOutputToken token = outputBuffer[i];
       System.out.println("    tok: " + token.term + " startNode=" + token.startNode + " endNode=" + token.endNode);
     }
     */
   }
 
+  /** Returns the next free output token, growing the buffer if necessary. */
+  private BufferedOutputToken nextOutputToken(int startNode, int endNode) {
+    if (outputBufferCount == outputBuffer.length) {
+      BufferedOutputToken[] newBuffer = new BufferedOutputToken[ArrayUtil.oversize(outputBufferCount + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF)];
+      System.arraycopy(outputBuffer, 0, newBuffer, 0, outputBufferCount);
+      for(int i=outputBufferCount;i<newBuffer.length;i++) {
+        newBuffer[i] = new BufferedOutputToken();
+      }
+      outputBuffer = newBuffer;
+    }
+    BufferedOutputToken token = outputBuffer[outputBufferCount++];
+    token.startNode = startNode;
+    token.endNode = endNode;
+    return token;
+  }
+
+  /** Buffers a synonym output token whose term is the given word of the current match. */
+  private void addOutputToken(int word, int startNode, int endNode) {
+    BufferedOutputToken token = nextOutputToken(startNode, endNode);
+    token.state = null;
+    token.term.copyChars(pathChars.chars(), wordStart[word], wordLength[word]);
+  }
+
+  /** Buffers an original input token. */
+  private void addOutputToken(State state, int startNode, int endNode) {
+    BufferedOutputToken token = nextOutputToken(startNode, endNode);
+    token.state = state;
+  }
+
   /** Buffers the current input token into lookahead buffer. */
   private void capture() {
     assert liveToken;
@@ -578,7 +638,11 @@ public final class SynonymGraphFilter extends TokenFilter {
     matchEndOffset = -1;
     finished = false;
     liveToken = false;
-    outputBuffer.clear();
+    for(int i=outputBufferUpto;i<outputBufferCount;i++) {
+      outputBuffer[i].state = null;
+    }
+    outputBufferUpto = 0;
+    outputBufferCount = 0;
     maxLookaheadUsed = 0;
     //System.out.println("S: reset");
   }
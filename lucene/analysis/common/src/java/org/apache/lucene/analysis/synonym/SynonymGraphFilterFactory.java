@@ -18,15 +18,20 @@
 package org.apache.lucene.analysis.synonym;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.math.BigInteger;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -35,6 +40,7 @@ import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.util.ResourceLoader;
 import org.apache.lucene.util.ResourceLoaderAware;
+import org.apache.lucene.util.VirtualMethod;
 import org.apache.lucene.analysis.TokenFilterFactory;
 import org.apache.lucene.analysis.TokenizerFactory;
 
@@ -70,6 +76,11 @@ import org.apache.lucene.analysis.TokenizerFactory;
  *   <li><code>boolean expand</code> - true if conflation groups should be expanded, false if they are one-directional</li>
  *   <li><code>{@link Analyzer} analyzer</code> - an analyzer used for each raw synonym</li>
  * </ul>
+ * <p>
+ * Factories that load the same synonyms, in terms of file contents, format
+ * and settings, share the same {@link SynonymMap}, so that many Solr cores
+ * with the same field type hold a single FST. This does not apply if an
+ * {@code analyzer} is given or if {@link #loadSynonyms} is overridden.
  * @see SolrSynonymParser SolrSynonymParser: default format
  *
  * @lucene.experimental
@@ -81,6 +92,10 @@ public class SynonymGraphFilterFactory extends TokenFilterFactory implements Res
   /** SPI name */
   public static final String NAME = "synonymGraph";
 
+  private static final VirtualMethod<SynonymGraphFilterFactory> loadSynonymsMethod =
+      new VirtualMethod<>(SynonymGraphFilterFactory.class, "loadSynonyms",
+          ResourceLoader.class, String.class, boolean.class, Analyzer.class);
+
   private final boolean ignoreCase;
   private final String tokenizerFactory;
   private final String synonyms;
@@ -132,6 +147,26 @@ public class SynonymGraphFilterFactory extends TokenFilterFactory implements Res
 
   @Override
   public void inform(ResourceLoader loader) throws IOException {
+    String formatClass = format;
+    if (format == null || format.equals("solr")) {
+      formatClass = SolrSynonymParser.class.getName();
+    } else if (format.equals("wordnet")) {
+      formatClass = WordnetSynonymParser.class.getName();
+    }
+    // TODO: expose dedup as a parameter?
+    final boolean dedup = true;
+
+    // a custom analyzer or loadSynonyms implementation may depend on more than our settings
+    String cacheKey = null;
+    if (analyzerName == null && loadSynonymsMethod.isOverriddenAsOf(getClass()) == false) {
+      cacheKey = cacheKey(loader, formatClass, dedup);
+      SynonymMap cached = SynonymMapCache.get(cacheKey);
+      if (cached != null) {
+        map = cached;
+        return;
+      }
+    }
+
     final TokenizerFactory factory = tokenizerFactory == null ? null : loadTokenizerFactory(loader, tokenizerFactory);
     Analyzer analyzer;
     
@@ -149,17 +184,55 @@ public class SynonymGraphFilterFactory extends TokenFilterFactory implements Res
     }
 
     try (Analyzer a = analyzer) {
-      String formatClass = format;
-      if (format == null || format.equals("solr")) {
-        formatClass = SolrSynonymParser.class.getName();
-      } else if (format.equals("wordnet")) {
-        formatClass = WordnetSynonymParser.class.getName();
-      }
-      // TODO: expose dedup as a parameter?
-      map = loadSynonyms(loader, formatClass, true, a);
+      map = loadSynonyms(loader, formatClass, dedup, a);
     } catch (ParseException e) {
       throw new IOException("Error parsing synonyms file:", e);
     }
+
+    if (cacheKey != null) {
+      map = SynonymMapCache.putIfAbsent(cacheKey, map);
+    }
+  }
+
+  /**
+   * Returns a hash of the contents of the synonyms files and of all settings
+   * that affect the resulting {@link SynonymMap}.
+   */
+  private String cacheKey(ResourceLoader loader, String formatClass, boolean dedup) throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    StringBuilder settings = new StringBuilder();
+    settings.append(formatClass).append('\0')
+        .append(dedup).append('\0')
+        .append(expand).append('\0')
+        .append(ignoreCase).append('\0')
+        .append(tokenizerFactory).append('\0')
+        .append(new TreeMap<>(tokArgs)).append('\0');
+    digest.update(settings.toString().getBytes(StandardCharsets.UTF_8));
+
+    byte[] buffer = new byte[8192];
+    for (String file : splitFileNames(synonyms)) {
+      long length = 0;
+      try (InputStream in = loader.openResource(file)) {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+          length += read;
+        }
+      }
+      // files are parsed separately, so their boundaries matter too
+      digest.update(("\0" + length + "\0").getBytes(StandardCharsets.UTF_8));
+    }
+    return new BigInteger(1, digest.digest()).toString(16);
+  }
+
+  // for testing
+  SynonymMap getSynonymMap() {
+    return map;
   }
 
   /**
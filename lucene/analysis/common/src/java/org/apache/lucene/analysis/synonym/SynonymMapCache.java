@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis.synonym;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of {@link SynonymMap}s, so that factories that load the
+ * same synonyms with the same settings, e.g. the same field type in many Solr
+ * cores, share a single FST instead of each building its own.
+ * <p>
+ * Keys are content hashes computed by the caller. Maps are held weakly: a map
+ * stays cached as long as a factory or filter still references it, and is
+ * removed once it has been garbage collected, so that no explicit release is
+ * needed from factories, which have no close method.
+ */
+final class SynonymMapCache {
+
+  private static final Map<String,KeyedReference> cache = new HashMap<>();
+  private static final ReferenceQueue<SynonymMap> queue = new ReferenceQueue<>();
+
+  private static final class KeyedReference extends WeakReference<SynonymMap> {
+    final String key;
+
+    KeyedReference(String key, SynonymMap map) {
+      super(map, queue);
+      this.key = key;
+    }
+  }
+
+  private SynonymMapCache() {} // no instance
+
+  /** Returns the cached map for {@code key}, or null if there is none. */
+  static synchronized SynonymMap get(String key) {
+    purge();
+    KeyedReference ref = cache.get(key);
+    return ref == null ? null : ref.get();
+  }
+
+  /**
+   * Caches {@code map} for {@code key} unless another map was cached for the
+   * same key in the meantime, and returns the map that should be used.
+   */
+  static synchronized SynonymMap putIfAbsent(String key, SynonymMap map) {
+    purge();
+    KeyedReference ref = cache.get(key);
+    SynonymMap existing = ref == null ? null : ref.get();
+    if (existing != null) {
+      return existing;
+    }
+    cache.put(key, new KeyedReference(key, map));
+    return map;
+  }
+
+  /** Returns the number of cached maps, for testing. */
+  static synchronized int size() {
+    purge();
+    return cache.size();
+  }
+
+  /** Removes the entries of maps that have been garbage collected. */
+  private static void purge() {
+    Reference<? extends SynonymMap> ref;
+    while ((ref = queue.poll()) != null) {
+      KeyedReference keyed = (KeyedReference) ref;
+      // the key may have been reused for a new map already
+      if (cache.get(keyed.key) == keyed) {
+        cache.remove(keyed.key);
+      }
+    }
+  }
+}
@@ -116,6 +116,9 @@ public class TestAllAnalyzersHaveFactories extends LuceneTestCase {
   private static final Set<Class<?>> tokenFiltersWithoutFactory = new HashSet<>();
   static {
     tokenFiltersWithoutFactory.add(SerbianNormalizationRegularFilter.class);
+    // experimental batch variants of LowerCaseFilter and StopFilter, only used programmatically for now
+    tokenFiltersWithoutFactory.add(org.apache.lucene.analysis.BatchLowerCaseFilter.class);
+    tokenFiltersWithoutFactory.add(org.apache.lucene.analysis.BatchStopFilter.class);
   }
 
   private static final ResourceLoader loader = new StringMockResourceLoader("");
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis.synonym;
+
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.BaseTokenStreamFactoryTestCase;
+import org.apache.lucene.analysis.util.StringMockResourceLoader;
+import org.apache.lucene.analysis.cjk.CJKAnalyzer;
+import org.apache.lucene.util.ResourceLoader;
+import org.apache.lucene.util.Version;
+
+public class TestSynonymGraphFilterFactory extends BaseTokenStreamFactoryTestCase {
+
+  private SynonymGraphFilterFactory factory(String synonyms, String... args) throws Exception {
+    return (SynonymGraphFilterFactory) tokenFilterFactory("SynonymGraph", Version.LATEST,
+        new StringMockResourceLoader(synonyms), args);
+  }
+
+  /** test that the synonyms of the shared map are applied */
+  public void testSynonyms() throws Exception {
+    Reader reader = new StringReader("GB");
+    TokenStream stream = whitespaceMockTokenizer(reader);
+    stream = factory("GB,gib,gigabyte,gigabytes", "synonyms", "synonyms.txt").create(stream);
+    assertTrue(stream instanceof SynonymGraphFilter);
+    assertTokenStreamContents(stream,
+        new String[] { "gib", "gigabyte", "gigabytes", "GB" },
+        new int[] { 1, 0, 0, 0 });
+  }
+
+  /** factories with the same synonyms and settings share the same map */
+  public void testSharedMap() throws Exception {
+    String synonyms = "foo,bar\nbaz => qux quux";
+    SynonymGraphFilterFactory first = factory(synonyms, "synonyms", "synonyms.txt");
+    SynonymGraphFilterFactory second = factory(synonyms, "synonyms", "other.txt");
+    assertSame(first.getSynonymMap(), second.getSynonymMap());
+  }
+
+  /** factories with different synonyms or settings build their own map */
+  public void testNotSharedMap() throws Exception {
+    String synonyms = "foo,bar\nbaz => qux quux";
+    SynonymGraphFilterFactory factory = factory(synonyms, "synonyms", "synonyms.txt");
+    assertNotSame(factory.getSynonymMap(), factory(synonyms + "\nfoo,quux", "synonyms", "synonyms.txt").getSynonymMap());
+    assertNotSame(factory.getSynonymMap(), factory(synonyms, "synonyms", "synonyms.txt", "ignoreCase", "true").getSynonymMap());
+    assertNotSame(factory.getSynonymMap(), factory(synonyms, "synonyms", "synonyms.txt", "expand", "false").getSynonymMap());
+    // a custom analyzer may depend on more than the settings of the factory
+    String analyzer = CJKAnalyzer.class.getName();
+    assertNotSame(factory(synonyms, "synonyms", "synonyms.txt", "analyzer", analyzer).getSynonymMap(),
+        factory(synonyms, "synonyms", "synonyms.txt", "analyzer", analyzer).getSynonymMap());
+  }
+
+  /** subclasses that load synonyms differently do not use the shared maps */
+  public void testOverriddenLoadSynonyms() throws Exception {
+    String synonyms = "foo,bar";
+    SynonymGraphFilterFactory factory = factory(synonyms, "synonyms", "synonyms.txt");
+    SynonymGraphFilterFactory subclass = new SynonymGraphFilterFactory(
+        new HashMap<>(Map.of("synonyms", "synonyms.txt"))) {
+      @Override
+      protected SynonymMap loadSynonyms(ResourceLoader loader, String cname, boolean dedup, Analyzer analyzer)
+          throws IOException, ParseException {
+        return super.loadSynonyms(loader, cname, dedup, analyzer);
+      }
+    };
+    subclass.inform(new StringMockResourceLoader(synonyms));
+    assertNotSame(factory.getSynonymMap(), subclass.getSynonymMap());
+  }
+}
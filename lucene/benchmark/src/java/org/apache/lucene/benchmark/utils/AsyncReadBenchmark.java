@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.misc.store.AsyncReadDirectory;
+import org.apache.lucene.misc.store.AsyncReadDirectory.AsyncReadIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSLockFactory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * Compares random reads on an existing index between {@link MMapDirectory}
+ * and {@link AsyncReadDirectory}. Reads are issued in batches: the
+ * {@link AsyncReadDirectory} run submits all reads of a batch with
+ * {@link AsyncReadIndexInput#prefetch(long, long)} before consuming them,
+ * which is how a query would use it to overlap I/O, while the
+ * {@link MMapDirectory} run reads them one after the other.
+ * <p>
+ * Results are only meaningful on a cold page cache. Pass
+ * {@code -dropCaches} to drop the page cache before each run, which requires
+ * running as root on Linux.
+ */
+public class AsyncReadBenchmark {
+
+  private final Path indexPath;
+  private final int numReads;
+  private final int readSize;
+  private final int batchSize;
+  private final boolean dropCaches;
+  private final long seed;
+
+  /** Creates a benchmark that issues {@code numReads} random reads of {@code readSize} bytes, {@code batchSize} at a time. */
+  public AsyncReadBenchmark(Path indexPath, int numReads, int readSize, int batchSize, boolean dropCaches, long seed) {
+    this.indexPath = indexPath;
+    this.numReads = numReads;
+    this.readSize = readSize;
+    this.batchSize = batchSize;
+    this.dropCaches = dropCaches;
+    this.seed = seed;
+  }
+
+  /** Run the same random reads against the given directory and return the elapsed time in nanoseconds. */
+  public long run(Directory dir) throws IOException {
+    if (dropCaches) {
+      dropCaches();
+    }
+    final List<IndexInput> inputs = new ArrayList<>();
+    try {
+      final List<Long> lengths = new ArrayList<>();
+      long totalLength = 0;
+      for (String file : dir.listAll()) {
+        final long length = dir.fileLength(file);
+        if (length >= readSize) {
+          inputs.add(dir.openInput(file, IOContext.READ));
+          lengths.add(length);
+          totalLength += length;
+        }
+      }
+      if (inputs.isEmpty()) {
+        throw new IllegalArgumentException("no file of at least " + readSize + " bytes in " + indexPath);
+      }
+
+      final Random random = new Random(seed);
+      final IndexInput[] batchInputs = new IndexInput[batchSize];
+      final long[] batchOffsets = new long[batchSize];
+      final byte[] bytes = new byte[readSize];
+      final long start = System.nanoTime();
+      for (int read = 0; read < numReads; read += batchSize) {
+        final int count = Math.min(batchSize, numReads - read);
+        for (int i = 0; i < count; i++) {
+          // pick files proportionally to their length
+          long target = (long) (random.nextDouble() * totalLength);
+          int file = 0;
+          while (target >= lengths.get(file)) {
+            target -= lengths.get(file++);
+          }
+          batchInputs[i] = inputs.get(file).clone();
+          batchOffsets[i] = (long) (random.nextDouble() * (lengths.get(file) - readSize + 1));
+          if (batchInputs[i] instanceof AsyncReadIndexInput) {
+            ((AsyncReadIndexInput) batchInputs[i]).prefetch(batchOffsets[i], readSize);
+          }
+        }
+        for (int i = 0; i < count; i++) {
+          batchInputs[i].seek(batchOffsets[i]);
+          batchInputs[i].readBytes(bytes, 0, readSize);
+        }
+      }
+      return System.nanoTime() - start;
+    } finally {
+      IOUtils.close(inputs);
+    }
+  }
+
+  private static void dropCaches() throws IOException {
+    try {
+      new ProcessBuilder("sync").inheritIO().start().waitFor();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    Files.write(Paths.get("/proc/sys/vm/drop_caches"), "3".getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private void report(String name, long elapsedNS) {
+    final double seconds = elapsedNS / 1e9;
+    System.out.println(String.format(Locale.ROOT, "%-20s %8.1f ms %10.1f reads/s %8.1f MB/s",
+        name, elapsedNS / 1e6, numReads / seconds, (double) numReads * readSize / 1024 / 1024 / seconds));
+  }
+
+  public static void main(String[] args) throws Exception {
+    Path indexPath = null;
+    int numReads = 10000;
+    int readSize = 4096;
+    int batchSize = 32;
+    int queueDepth = AsyncReadDirectory.DEFAULT_QUEUE_DEPTH;
+    boolean dropCaches = false;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-numReads":
+          numReads = Integer.parseInt(args[++i]);
+          break;
+        case "-readSize":
+          readSize = Integer.parseInt(args[++i]);
+          break;
+        case "-batchSize":
+          batchSize = Integer.parseInt(args[++i]);
+          break;
+        case "-queueDepth":
+          queueDepth = Integer.parseInt(args[++i]);
+          break;
+        case "-dropCaches":
+          dropCaches = true;
+          break;
+        default:
+          if (indexPath != null) {
+            usage("Unexpected argument: " + args[i]);
+          }
+          indexPath = Paths.get(args[i]);
+          break;
+      }
+    }
+    if (indexPath == null) {
+      usage("Missing index path");
+    }
+    if (dropCaches == false) {
+      System.out.println("WARNING: page cache is not dropped between runs, results are not representative of cold reads");
+    }
+
+    AsyncReadBenchmark benchmark = new AsyncReadBenchmark(indexPath, numReads, readSize, batchSize, dropCaches, System.nanoTime());
+    try (Directory dir = new MMapDirectory(indexPath)) {
+      benchmark.report("MMapDirectory", benchmark.run(dir));
+    }
+    try (Directory dir = new AsyncReadDirectory(indexPath, FSLockFactory.getDefault(), queueDepth, 0)) {
+      benchmark.report("AsyncReadDirectory", benchmark.run(dir));
+    }
+  }
+
+  private static void usage(String msg) {
+    System.err.println("Error: " + msg);
+    System.err.println("Usage: AsyncReadBenchmark indexDir [-numReads N] [-readSize N] [-batchSize N] [-queueDepth N] [-dropCaches]");
+    System.exit(1);
+  }
+}
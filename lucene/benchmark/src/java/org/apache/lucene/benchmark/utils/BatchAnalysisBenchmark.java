@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.BatchLowerCaseFilter;
+import org.apache.lucene.analysis.BatchStopFilter;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.synonym.SynonymGraphFilter;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+
+/**
+ * Measures the throughput of a {@link StandardTokenizer},
+ * {@link LowerCaseFilter}, {@link StopFilter}, {@link SynonymGraphFilter}
+ * chain, compared to the same chain where the lower case and stop filters are
+ * replaced with their {@link org.apache.lucene.analysis.BatchTokenFilter}
+ * counterparts.
+ * <p>
+ * Text is read from the given files, one document per line, or generated
+ * from a random vocabulary if no file is given.
+ */
+public class BatchAnalysisBenchmark {
+
+  private static final String[] WORDS = {
+      "the", "quick", "fast", "brown", "fox", "jumps", "over", "a", "lazy", "dog", "new", "york", "city",
+      "is", "in", "of", "and", "to", "Lucene", "search", "index", "Engine", "text", "analysis", "token"
+  };
+
+  private final List<String> docs;
+  private final Analyzer classic;
+  private final Analyzer batch;
+
+  /** Creates a benchmark over the given documents, with the given synonyms */
+  public BatchAnalysisBenchmark(List<String> docs, SynonymMap synonyms) {
+    this.docs = docs;
+    final CharArraySet stopWords = EnglishAnalyzer.ENGLISH_STOP_WORDS_SET;
+    classic = new Analyzer() {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        Tokenizer tokenizer = new StandardTokenizer();
+        TokenStream stream = new LowerCaseFilter(tokenizer);
+        stream = new StopFilter(stream, stopWords);
+        stream = new SynonymGraphFilter(stream, synonyms, true);
+        return new TokenStreamComponents(tokenizer, stream);
+      }
+    };
+    batch = new Analyzer() {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        Tokenizer tokenizer = new StandardTokenizer();
+        TokenStream stream = new BatchLowerCaseFilter(tokenizer);
+        stream = new BatchStopFilter(stream, stopWords);
+        stream = new SynonymGraphFilter(stream, synonyms, true);
+        return new TokenStreamComponents(tokenizer, stream);
+      }
+    };
+  }
+
+  /** Analyzes all documents and returns the number of tokens, which prevents the JIT from skipping work */
+  private long run(Analyzer analyzer) throws IOException {
+    long tokens = 0;
+    for (String doc : docs) {
+      try (TokenStream stream = analyzer.tokenStream("body", doc)) {
+        CharTermAttribute termAtt = stream.getAttribute(CharTermAttribute.class);
+        stream.reset();
+        while (stream.incrementToken()) {
+          tokens += termAtt.length() > 0 ? 1 : 0;
+        }
+        stream.end();
+      }
+    }
+    return tokens;
+  }
+
+  private void report(String name, Analyzer analyzer, int iters) throws IOException {
+    long bestNS = Long.MAX_VALUE;
+    long tokens = 0;
+    for (int i = 0; i < iters; i++) {
+      final long start = System.nanoTime();
+      tokens = run(analyzer);
+      bestNS = Math.min(bestNS, System.nanoTime() - start);
+    }
+    System.out.println(String.format(Locale.ROOT, "%-8s %10d tokens %8.1f ms %12.0f tokens/s",
+        name, tokens, bestNS / 1e6, tokens / (bestNS / 1e9)));
+  }
+
+  private static SynonymMap buildSynonyms() throws IOException {
+    SynonymMap.Builder builder = new SynonymMap.Builder(true);
+    CharsRefBuilder scratch = new CharsRefBuilder();
+    builder.add(new CharsRef("quick"), new CharsRef("fast"), true);
+    builder.add(new CharsRef("fast"), new CharsRef("quick"), true);
+    builder.add(SynonymMap.Builder.join(new String[] {"new", "york"}, scratch), new CharsRef("ny"), true);
+    builder.add(new CharsRef("dog"), SynonymMap.Builder.join(new String[] {"canis", "familiaris"}, scratch), true);
+    builder.add(new CharsRef("lucene"), SynonymMap.Builder.join(new String[] {"search", "library"}, scratch), true);
+    return builder.build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    final List<String> docs = new ArrayList<>();
+    int iters = 10;
+    int numDocs = 20000;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-iters":
+          iters = Integer.parseInt(args[++i]);
+          break;
+        case "-numDocs":
+          numDocs = Integer.parseInt(args[++i]);
+          break;
+        default:
+          docs.addAll(Files.readAllLines(Paths.get(args[i]), StandardCharsets.UTF_8));
+          break;
+      }
+    }
+    if (docs.isEmpty()) {
+      final Random random = new Random(0);
+      for (int i = 0; i < numDocs; i++) {
+        final StringBuilder sb = new StringBuilder();
+        final int numWords = 20 + random.nextInt(200);
+        for (int j = 0; j < numWords; j++) {
+          sb.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(15) == 0 ? ". " : " ");
+        }
+        docs.add(sb.toString());
+      }
+    }
+
+    BatchAnalysisBenchmark benchmark = new BatchAnalysisBenchmark(docs, buildSynonyms());
+    // warm up both chains before measuring
+    benchmark.run(benchmark.classic);
+    benchmark.run(benchmark.batch);
+    for (int round = 0; round < 3; round++) {
+      benchmark.report("classic", benchmark.classic, iters);
+      benchmark.report("batch", benchmark.batch, iters);
+    }
+    benchmark.classic.close();
+    benchmark.batch.close();
+  }
+}
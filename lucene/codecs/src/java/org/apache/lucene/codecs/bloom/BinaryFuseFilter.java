@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bloom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * A static, approximate set of terms stored as a 3-wise binary fuse filter with
+ * 8-bit fingerprints, as described in "Binary Fuse Filters: Fast and Smaller Than
+ * Xor Filters" by Graf and Lemire.
+ * <p>
+ * Every key is hashed to one slot in each of three consecutive segments of a
+ * fingerprint array, and the fingerprints are assigned so that the XOR of the
+ * three slots equals the fingerprint of the key. A lookup reads three bytes, has
+ * no false negatives and a false positive probability of about 1/256, while the
+ * filter takes about 9 bits per key (vs. ~14 bits for a Bloom filter with the
+ * same false positive probability).
+ * <p>
+ * Sets of many keys are split into chunks of consecutive terms that have a
+ * filter each, so that building filters takes bounded memory. Only the filter
+ * parameters and the first term of every chunk are held on heap: fingerprints
+ * are read from a {@link RandomAccessInput} so that filters of large segments
+ * stay off-heap.
+ * @lucene.experimental
+ */
+final class BinaryFuseFilter implements Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BinaryFuseFilter.class);
+  private static final long BYTES_REF_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BytesRef.class);
+
+  private static final int MAX_SEGMENT_LENGTH = 1 << 18;
+  private static final int MAX_ATTEMPTS = 100;
+  private static final long SEED = 0x726b2b9d438b9d4dL;
+
+  /** Default maximum number of keys of a chunk, see {@link Builder}. */
+  static final int DEFAULT_MAX_CHUNK_SIZE = 1 << 18;
+
+  private static final BinaryFuseFilter EMPTY = new BinaryFuseFilter(0, new Chunk[0], new BytesRef[0]);
+
+  final long numKeys;
+  final long fingerprintsOffset;
+  private final Chunk[] chunks;
+  // first term of every chunk but the first one
+  private final BytesRef[] chunkFloors;
+
+  private BinaryFuseFilter(long fingerprintsOffset, Chunk[] chunks, BytesRef[] chunkFloors) {
+    assert chunks.length == 0 || chunkFloors.length == chunks.length - 1;
+    long numKeys = 0;
+    for (Chunk chunk : chunks) {
+      numKeys += chunk.numKeys;
+    }
+    this.numKeys = numKeys;
+    this.fingerprintsOffset = fingerprintsOffset;
+    this.chunks = chunks;
+    this.chunkFloors = chunkFloors;
+  }
+
+  /** Number of fingerprints of this filter, ie. its size in bytes. */
+  long arrayLength() {
+    if (chunks.length == 0) {
+      return 0;
+    }
+    final Chunk last = chunks[chunks.length - 1];
+    return last.offset + last.arrayLength();
+  }
+
+  /**
+   * Returns {@code false} if the term is definitely not in the set, and
+   * {@code true} if it may be. {@code fingerprints} must be positioned so that
+   * the first fingerprint of this filter is at offset 0.
+   */
+  boolean mayContain(RandomAccessInput fingerprints, BytesRef term) throws IOException {
+    if (chunks.length == 0) {
+      return false;
+    }
+    // the chunk of a term is the last one whose floor is less than or equal to the term
+    int chunk = 0;
+    int hi = chunkFloors.length;
+    while (chunk < hi) {
+      final int mid = (chunk + hi) >>> 1;
+      if (chunkFloors[mid].compareTo(term) <= 0) {
+        chunk = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return chunks[chunk].mayContain(fingerprints, hash(term));
+  }
+
+  void writeMetadata(DataOutput out) throws IOException {
+    out.writeVInt(chunks.length);
+    if (chunks.length > 0) {
+      out.writeLong(fingerprintsOffset);
+      for (int i = 0; i < chunks.length; ++i) {
+        if (i > 0) {
+          final BytesRef floor = chunkFloors[i - 1];
+          out.writeVInt(floor.length);
+          out.writeBytes(floor.bytes, floor.offset, floor.length);
+        }
+        chunks[i].writeMetadata(out);
+      }
+    }
+  }
+
+  static BinaryFuseFilter readMetadata(DataInput in) throws IOException {
+    final int numChunks = in.readVInt();
+    if (numChunks == 0) {
+      return EMPTY;
+    }
+    if (numChunks < 0) {
+      throw new IOException("Invalid binary fuse filter: numChunks=" + numChunks);
+    }
+    final long fingerprintsOffset = in.readLong();
+    final Chunk[] chunks = new Chunk[numChunks];
+    final BytesRef[] chunkFloors = new BytesRef[numChunks - 1];
+    long offset = 0;
+    for (int i = 0; i < numChunks; ++i) {
+      if (i > 0) {
+        final BytesRef floor = new BytesRef(in.readVInt());
+        floor.length = floor.bytes.length;
+        in.readBytes(floor.bytes, 0, floor.length);
+        if (i > 1 && chunkFloors[i - 2].compareTo(floor) >= 0) {
+          throw new IOException("Invalid binary fuse filter: chunk floors are out of order");
+        }
+        chunkFloors[i - 1] = floor;
+      }
+      chunks[i] = Chunk.readMetadata(in, offset);
+      offset += chunks[i].arrayLength();
+    }
+    return new BinaryFuseFilter(fingerprintsOffset, chunks, chunkFloors);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long ramBytesUsed = BASE_RAM_BYTES_USED
+        + RamUsageEstimator.shallowSizeOf(chunks)
+        + chunks.length * Chunk.BASE_RAM_BYTES_USED
+        + RamUsageEstimator.shallowSizeOf(chunkFloors);
+    for (BytesRef floor : chunkFloors) {
+      ramBytesUsed += BYTES_REF_RAM_BYTES_USED + RamUsageEstimator.sizeOf(floor.bytes);
+    }
+    return ramBytesUsed;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(numKeys=" + numKeys + ",numChunks=" + chunks.length + ",sizeInBytes=" + arrayLength() + ")";
+  }
+
+  /** The filter of a range of terms. */
+  private static final class Chunk {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Chunk.class);
+
+    final int numKeys;
+    final long seed;
+    final int segmentLength;
+    final int segmentCount;
+    // offset of the first fingerprint of this chunk, relative to the first fingerprint of the filter
+    final long offset;
+    private final long segmentCountLength;
+
+    Chunk(int numKeys, long seed, int segmentLength, int segmentCount, long offset) {
+      this.numKeys = numKeys;
+      this.seed = seed;
+      this.segmentLength = segmentLength;
+      this.segmentCount = segmentCount;
+      this.offset = offset;
+      this.segmentCountLength = (long) segmentCount * segmentLength;
+    }
+
+    long arrayLength() {
+      return (long) (segmentCount + 2) * segmentLength;
+    }
+
+    boolean mayContain(RandomAccessInput fingerprints, long termHash) throws IOException {
+      final long hash = mix(termHash, seed);
+      int f = fingerprint(hash);
+      f ^= fingerprints.readByte(offset + position(hash, 0, segmentLength, segmentCountLength));
+      f ^= fingerprints.readByte(offset + position(hash, 1, segmentLength, segmentCountLength));
+      f ^= fingerprints.readByte(offset + position(hash, 2, segmentLength, segmentCountLength));
+      return (byte) f == 0;
+    }
+
+    void writeMetadata(DataOutput out) throws IOException {
+      out.writeVInt(numKeys);
+      out.writeLong(seed);
+      out.writeVInt(segmentLength);
+      out.writeVInt(segmentCount);
+    }
+
+    static Chunk readMetadata(DataInput in, long offset) throws IOException {
+      final int numKeys = in.readVInt();
+      final long seed = in.readLong();
+      final int segmentLength = in.readVInt();
+      final int segmentCount = in.readVInt();
+      if (numKeys <= 0 || segmentLength > MAX_SEGMENT_LENGTH || Integer.bitCount(segmentLength) != 1 || segmentCount <= 0) {
+        throw new IOException("Invalid binary fuse filter chunk: numKeys=" + numKeys
+            + ", segmentLength=" + segmentLength + ", segmentCount=" + segmentCount);
+      }
+      return new Chunk(numKeys, seed, segmentLength, segmentCount, offset);
+    }
+  }
+
+  /** 64-bits hash of a term. */
+  static long hash(BytesRef term) {
+    final int h1 = StringHelper.murmurhash3_x86_32(term, 0x9747b28c);
+    final int h2 = StringHelper.murmurhash3_x86_32(term, h1);
+    return ((long) h1 << 32) | (h2 & 0xFFFFFFFFL);
+  }
+
+  /** Bijective mix of a hash and a seed, the finalizer of MurmurHash3. */
+  private static long mix(long hash, long seed) {
+    long h = hash + seed;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static int fingerprint(long hash) {
+    return (int) (hash ^ (hash >>> 32)) & 0xFF;
+  }
+
+  /** Slot of the key in its {@code index}-th segment, index in [0, 3). */
+  private static long position(long hash, int index, int segmentLength, long segmentCountLength) {
+    // unsigned high bits of hash * segmentCountLength, segmentCountLength is positive
+    final long h = Math.multiplyHigh(hash, segmentCountLength) + ((hash >> 63) & segmentCountLength)
+        + (long) index * segmentLength;
+    switch (index) {
+      case 0:
+        return h;
+      case 1:
+        return h ^ ((hash >>> 18) & (segmentLength - 1));
+      default:
+        return h ^ (hash & (segmentLength - 1));
+    }
+  }
+
+  /**
+   * Accumulates the hashes of terms, which must be added in sorted order, and
+   * writes a filter for them. Terms are split into chunks of at most
+   * {@code maxChunkSize} keys that get a filter each, whose fingerprints are
+   * written as soon as the chunk is full. Building a chunk takes about 35 bytes
+   * per key (8 for its hash, the rest while fingerprints are assigned), so the
+   * builder needs about 9MB with {@link #DEFAULT_MAX_CHUNK_SIZE} however many
+   * terms are added, plus the first term of every chunk which the filter keeps
+   * on heap to find the chunk of a term.
+   */
+  static final class Builder {
+
+    private final DataOutput out;
+    private final long fingerprintsOffset;
+    private final int maxChunkSize;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final List<BytesRef> chunkFloors = new ArrayList<>();
+    private long chunkOffset;
+    private long[] hashes = new long[16];
+    private int size;
+
+    /**
+     * Create a builder that writes fingerprints to {@code out}, whose file
+     * pointer is {@code fingerprintsOffset}.
+     */
+    Builder(DataOutput out, long fingerprintsOffset) {
+      this(out, fingerprintsOffset, DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    Builder(DataOutput out, long fingerprintsOffset, int maxChunkSize) {
+      if (maxChunkSize < 1) {
+        throw new IllegalArgumentException("maxChunkSize must be >= 1, got: " + maxChunkSize);
+      }
+      this.out = out;
+      this.fingerprintsOffset = fingerprintsOffset;
+      this.maxChunkSize = maxChunkSize;
+    }
+
+    /** Add a term to the set, terms must be added in sorted order. */
+    void add(BytesRef term) throws IOException {
+      final long hash = hash(term);
+      if (size > 0 && hashes[size - 1] == hash) {
+        // duplicates are next to each other since terms are sorted
+        return;
+      }
+      if (size == maxChunkSize) {
+        finishChunk();
+        chunkFloors.add(BytesRef.deepCopyOf(term));
+      }
+      if (size == hashes.length) {
+        hashes = ArrayUtil.growExact(hashes, Math.min(maxChunkSize, ArrayUtil.oversize(size + 1, Long.BYTES)));
+      }
+      hashes[size++] = hash;
+    }
+
+    /**
+     * Write the fingerprints of the last chunk and return the filter. The
+     * builder must not be used anymore after this method is called.
+     */
+    BinaryFuseFilter finish() throws IOException {
+      if (size > 0) {
+        finishChunk();
+      }
+      hashes = null;
+      if (chunks.isEmpty()) {
+        return EMPTY;
+      }
+      return new BinaryFuseFilter(fingerprintsOffset, chunks.toArray(new Chunk[0]), chunkFloors.toArray(new BytesRef[0]));
+    }
+
+    private void finishChunk() throws IOException {
+      // keys must be unique for peeling to succeed, which terms with the same hash are not
+      Arrays.sort(hashes, 0, size);
+      int numKeys = 0;
+      for (int i = 0; i < size; ++i) {
+        if (numKeys == 0 || hashes[i] != hashes[numKeys - 1]) {
+          hashes[numKeys++] = hashes[i];
+        }
+      }
+      size = 0;
+
+      final int segmentLength = (int) Math.min(MAX_SEGMENT_LENGTH,
+          1L << (int) Math.floor(Math.log(numKeys) / Math.log(3.33) + 2.25));
+      final double sizeFactor = numKeys <= 1 ? 0 : Math.max(1.125, 0.875 + 0.25 * Math.log(1000000) / Math.log(numKeys));
+      final long capacity = Math.round(numKeys * sizeFactor);
+      final long initSegmentCount = (capacity + segmentLength - 1) / segmentLength - 2;
+      long segmentCount = ((initSegmentCount + 2) * segmentLength + segmentLength - 1) / segmentLength;
+      segmentCount = segmentCount <= 2 ? 1 : segmentCount - 2;
+
+      final long[] reverseOrder = new long[numKeys];
+      final byte[] reverseIndex = new byte[numKeys];
+      for (int attempt = 0; ; ++attempt) {
+        if (attempt == MAX_ATTEMPTS) {
+          throw new IllegalStateException("Could not build a binary fuse filter for " + numKeys + " keys");
+        }
+        if (attempt > 0 && attempt % 10 == 0) {
+          // peeling keeps failing, likely because the set is small: add some room
+          segmentCount++;
+        }
+        final long arrayLength = (segmentCount + 2) * segmentLength;
+        if (arrayLength > ArrayUtil.MAX_ARRAY_LENGTH) {
+          throw new IllegalArgumentException("Too many keys for a binary fuse filter: " + numKeys);
+        }
+        final long seed = mix(attempt, SEED);
+        final byte[] fingerprints = new byte[(int) arrayLength];
+        if (populate(numKeys, seed, segmentLength, segmentCount * segmentLength, fingerprints, reverseOrder, reverseIndex)) {
+          out.writeBytes(fingerprints, fingerprints.length);
+          chunks.add(new Chunk(numKeys, seed, segmentLength, (int) segmentCount, chunkOffset));
+          chunkOffset += arrayLength;
+          return;
+        }
+      }
+    }
+
+    private boolean populate(int numKeys, long seed, int segmentLength, long segmentCountLength,
+        byte[] fingerprints, long[] reverseOrder, byte[] reverseIndex) {
+      final int arrayLength = fingerprints.length;
+      // number of keys per slot in the upper 6 bits, XOR of the key's segment index in the lower 2 bits
+      final byte[] counts = new byte[arrayLength];
+      // XOR of the hashes of the keys of each slot
+      final long[] xorHashes = new long[arrayLength];
+      for (int i = 0; i < numKeys; ++i) {
+        final long hash = mix(hashes[i], seed);
+        for (int index = 0; index < 3; ++index) {
+          final int slot = (int) position(hash, index, segmentLength, segmentCountLength);
+          final int count = counts[slot] & 0xFF;
+          if ((count >>> 2) == 0x3F) {
+            return false; // overflow
+          }
+          counts[slot] = (byte) ((count + 4) ^ index);
+          xorHashes[slot] ^= hash;
+        }
+      }
+
+      // peel slots that have a single key
+      final int[] queue = new int[arrayLength];
+      int queueSize = 0;
+      for (int slot = 0; slot < arrayLength; ++slot) {
+        if (((counts[slot] & 0xFF) >>> 2) == 1) {
+          queue[queueSize++] = slot;
+        }
+      }
+      int stackSize = 0;
+      while (queueSize > 0) {
+        final int slot = queue[--queueSize];
+        if (((counts[slot] & 0xFF) >>> 2) != 1) {
+          continue;
+        }
+        final long hash = xorHashes[slot];
+        final int found = counts[slot] & 0x03;
+        reverseOrder[stackSize] = hash;
+        reverseIndex[stackSize] = (byte) found;
+        stackSize++;
+        for (int i = 1; i < 3; ++i) {
+          final int index = (found + i) % 3;
+          final int other = (int) position(hash, index, segmentLength, segmentCountLength);
+          final int count = counts[other] & 0xFF;
+          if ((count >>> 2) == 2) {
+            queue[queueSize++] = other;
+          }
+          counts[other] = (byte) ((count - 4) ^ index);
+          xorHashes[other] ^= hash;
+        }
+      }
+      if (stackSize != numKeys) {
+        return false;
+      }
+
+      // assign fingerprints in reverse peeling order
+      for (int i = numKeys - 1; i >= 0; --i) {
+        final long hash = reverseOrder[i];
+        final int found = reverseIndex[i];
+        int f = fingerprint(hash);
+        for (int j = 1; j < 3; ++j) {
+          f ^= fingerprints[(int) position(hash, (found + j) % 3, segmentLength, segmentCountLength)];
+        }
+        fingerprints[(int) position(hash, found, segmentLength, segmentCountLength)] = (byte) f;
+      }
+      return true;
+    }
+  }
+}
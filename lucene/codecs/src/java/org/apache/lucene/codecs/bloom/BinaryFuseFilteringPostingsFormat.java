@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bloom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.index.BaseTermsEnum;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * <p>
+ * A {@link PostingsFormat} useful for low doc-frequency fields such as primary
+ * keys, similar to {@link BloomFilteringPostingsFormat} but using binary fuse
+ * filters, which have a lower false positive rate per bit than Bloom filters
+ * (about 0.4% with 9 bits per term), are sized for the terms of the segment,
+ * and are read off-heap. This makes
+ * {@link TermsEnum#seekExact(BytesRef)} fail fast on segments that do not have
+ * the term, which is what deletes by id and updates mostly do on indices that
+ * have many segments. A choice of delegate PostingsFormat is used to record all
+ * other Postings data.
+ * </p>
+ * <p>
+ * All fields of this format are filtered, so it should typically be configured
+ * on a per-field basis for id fields only.
+ * </p>
+ * <p>
+ * The format of the bfu file is as follows:
+ * </p>
+ * <ul>
+ * <li>BinaryFuseFilter (.bfu) --&gt; Header, DelegatePostingsFormatName,
+ * Fingerprints<sup>NumFilteredFields</sup>, NumFilteredFields,
+ * Filter<sup>NumFilteredFields</sup>, DirectoryOffset, Footer</li>
+ * <li>Fingerprints --&gt; {@link DataOutput#writeByte byte}<sup>&sum;(SegmentCount+2)*SegmentLength</sup>,
+ * the fingerprints of all chunks of a field</li>
+ * <li>Filter --&gt; FieldNumber, NumChunks, FingerprintsOffset,
+ * Chunk<sup>NumChunks</sup>; only FieldNumber and NumChunks are written if the
+ * field has no terms</li>
+ * <li>Chunk --&gt; ChunkFloorLength, ChunkFloor, NumTerms, Seed, SegmentLength,
+ * SegmentCount; ChunkFloorLength and ChunkFloor, the first term of the chunk,
+ * are not written for the first chunk of a field</li>
+ * <li>ChunkFloor --&gt; {@link DataOutput#writeByte byte}<sup>ChunkFloorLength</sup></li>
+ * <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ * <li>DelegatePostingsFormatName --&gt; {@link DataOutput#writeString(String)
+ * String} The name of a ServiceProvider registered {@link PostingsFormat}</li>
+ * <li>NumFilteredFields, FieldNumber, NumChunks, ChunkFloorLength, NumTerms,
+ * SegmentLength, SegmentCount --&gt; {@link DataOutput#writeVInt VInt}</li>
+ * <li>Seed, FingerprintsOffset, DirectoryOffset --&gt; {@link DataOutput#writeLong Uint64}</li>
+ * <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ * </ul>
+ * @lucene.experimental
+ */
+public final class BinaryFuseFilteringPostingsFormat extends PostingsFormat {
+
+  public static final String FILTER_CODEC_NAME = "BinaryFuseFilter";
+  public static final int VERSION_START = 0;
+  public static final int VERSION_CURRENT = VERSION_START;
+
+  /** Extension of binary fuse filters file */
+  static final String FILTER_EXTENSION = "bfu";
+
+  private final PostingsFormat delegatePostingsFormat;
+
+  /**
+   * Creates binary fuse filters for all fields of this format, which are
+   * recorded in an additional "bfu" file. This PostingsFormat delegates to a
+   * choice of delegate PostingsFormat for encoding all other postings data.
+   *
+   * @param delegatePostingsFormat
+   *          The PostingsFormat that records all the non-filter data i.e.
+   *          postings info.
+   */
+  public BinaryFuseFilteringPostingsFormat(PostingsFormat delegatePostingsFormat) {
+    super(FILTER_CODEC_NAME);
+    this.delegatePostingsFormat = delegatePostingsFormat;
+  }
+
+  // Used only by core Lucene at read-time via Service Provider instantiation -
+  // do not use at Write-time in application code.
+  public BinaryFuseFilteringPostingsFormat() {
+    this(null);
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    if (delegatePostingsFormat == null) {
+      throw new UnsupportedOperationException("Error - " + getClass().getName()
+          + " has been constructed without a choice of PostingsFormat");
+    }
+    FieldsConsumer fieldsConsumer = delegatePostingsFormat.fieldsConsumer(state);
+    boolean success = false;
+    try {
+      FieldsConsumer filteredFieldsConsumer = new FilteredFieldsConsumer(fieldsConsumer, state);
+      success = true;
+      return filteredFieldsConsumer;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(fieldsConsumer);
+      }
+    }
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new FilteredFieldsProducer(state);
+  }
+
+  static class FilteredFieldsProducer extends FieldsProducer {
+    private final IndexInput filterIn;
+    private FieldsProducer delegateFieldsProducer;
+    private final Map<String,BinaryFuseFilter> filtersByFieldName = new HashMap<>();
+
+    FilteredFieldsProducer(SegmentReadState state) throws IOException {
+      String filterFileName = IndexFileNames.segmentFileName(
+          state.segmentInfo.name, state.segmentSuffix, FILTER_EXTENSION);
+      boolean success = false;
+      filterIn = state.directory.openInput(filterFileName, state.context);
+      try {
+        CodecUtil.checkIndexHeader(filterIn, FILTER_CODEC_NAME, VERSION_START, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+        // Load the delegate postings format
+        PostingsFormat delegatePostingsFormat = PostingsFormat.forName(filterIn.readString());
+        // Fingerprints are read lazily, only validate the structure of the file
+        CodecUtil.retrieveChecksum(filterIn);
+
+        filterIn.seek(filterIn.length() - CodecUtil.footerLength() - Long.BYTES);
+        filterIn.seek(filterIn.readLong());
+        int numFilters = filterIn.readVInt();
+        for (int i = 0; i < numFilters; i++) {
+          int fieldNum = filterIn.readVInt();
+          FieldInfo fieldInfo = state.fieldInfos.fieldInfo(fieldNum);
+          if (fieldInfo == null) {
+            throw new CorruptIndexException("invalid field number: " + fieldNum, filterIn);
+          }
+          BinaryFuseFilter filter = BinaryFuseFilter.readMetadata(filterIn);
+          if (filter.fingerprintsOffset + filter.arrayLength() > filterIn.length()) {
+            throw new CorruptIndexException("invalid filter for field " + fieldInfo.name + ": " + filter, filterIn);
+          }
+          filtersByFieldName.put(fieldInfo.name, filter);
+        }
+
+        this.delegateFieldsProducer = delegatePostingsFormat.fieldsProducer(state);
+        success = true;
+      } finally {
+        if (!success) {
+          IOUtils.closeWhileHandlingException(filterIn, delegateFieldsProducer);
+        }
+      }
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return delegateFieldsProducer.iterator();
+    }
+
+    @Override
+    public void close() throws IOException {
+      IOUtils.close(filterIn, delegateFieldsProducer);
+    }
+
+    @Override
+    public Terms terms(String field) throws IOException {
+      Terms result = delegateFieldsProducer.terms(field);
+      BinaryFuseFilter filter = filtersByFieldName.get(field);
+      if (result == null || filter == null) {
+        return result;
+      }
+      return new FilteredTerms(result, filter, filterIn);
+    }
+
+    @Override
+    public int size() {
+      return delegateFieldsProducer.size();
+    }
+
+    static class FilteredTerms extends FilterLeafReader.FilterTerms {
+      private final BinaryFuseFilter filter;
+      private final IndexInput filterIn;
+
+      FilteredTerms(Terms terms, BinaryFuseFilter filter, IndexInput filterIn) {
+        super(terms);
+        this.filter = filter;
+        this.filterIn = filterIn;
+      }
+
+      @Override
+      public TermsEnum iterator() throws IOException {
+        return new FilteredTermsEnum(in, filter, filterIn);
+      }
+    }
+
+    static final class FilteredTermsEnum extends BaseTermsEnum {
+      private final Terms delegateTerms;
+      private TermsEnum delegateTermsEnum;
+      private final BinaryFuseFilter filter;
+      private final IndexInput filterIn;
+      private RandomAccessInput fingerprints;
+
+      FilteredTermsEnum(Terms delegateTerms, BinaryFuseFilter filter, IndexInput filterIn) {
+        this.delegateTerms = delegateTerms;
+        this.filter = filter;
+        this.filterIn = filterIn;
+      }
+
+      private TermsEnum delegate() throws IOException {
+        if (delegateTermsEnum == null) {
+          // pull the iterator only if we really need it, this is what
+          // lookups of terms that the segment doesn't have save
+          delegateTermsEnum = delegateTerms.iterator();
+        }
+        return delegateTermsEnum;
+      }
+
+      @Override
+      public BytesRef next() throws IOException {
+        return delegate().next();
+      }
+
+      @Override
+      public boolean seekExact(BytesRef text) throws IOException {
+        if (fingerprints == null && filter.numKeys > 0) {
+          fingerprints = filterIn.randomAccessSlice(filter.fingerprintsOffset, filter.arrayLength());
+        }
+        if (filter.mayContain(fingerprints, text) == false) {
+          return false;
+        }
+        return delegate().seekExact(text);
+      }
+
+      @Override
+      public SeekStatus seekCeil(BytesRef text) throws IOException {
+        return delegate().seekCeil(text);
+      }
+
+      @Override
+      public void seekExact(long ord) throws IOException {
+        delegate().seekExact(ord);
+      }
+
+      @Override
+      public BytesRef term() throws IOException {
+        return delegate().term();
+      }
+
+      @Override
+      public long ord() throws IOException {
+        return delegate().ord();
+      }
+
+      @Override
+      public int docFreq() throws IOException {
+        return delegate().docFreq();
+      }
+
+      @Override
+      public long totalTermFreq() throws IOException {
+        return delegate().totalTermFreq();
+      }
+
+      @Override
+      public PostingsEnum postings(PostingsEnum reuse, int flags) throws IOException {
+        return delegate().postings(reuse, flags);
+      }
+
+      @Override
+      public ImpactsEnum impacts(int flags) throws IOException {
+        return delegate().impacts(flags);
+      }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      long sizeInBytes = ((delegateFieldsProducer != null) ? delegateFieldsProducer.ramBytesUsed() : 0);
+      for (Map.Entry<String,BinaryFuseFilter> entry : filtersByFieldName.entrySet()) {
+        sizeInBytes += entry.getKey().length() * Character.BYTES;
+        sizeInBytes += entry.getValue().ramBytesUsed();
+      }
+      return sizeInBytes;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+      List<Accountable> resources = new ArrayList<>(Accountables.namedAccountables("field", filtersByFieldName));
+      if (delegateFieldsProducer != null) {
+        resources.add(Accountables.namedAccountable("delegate", delegateFieldsProducer));
+      }
+      return Collections.unmodifiableList(resources);
+    }
+
+    @Override
+    public void checkIntegrity() throws IOException {
+      CodecUtil.checksumEntireFile(filterIn);
+      delegateFieldsProducer.checkIntegrity();
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(fields=" + filtersByFieldName.size() + ",delegate=" + delegateFieldsProducer + ")";
+    }
+  }
+
+  class FilteredFieldsConsumer extends FieldsConsumer {
+    private final FieldsConsumer delegateFieldsConsumer;
+    private final Map<FieldInfo,BinaryFuseFilter> filters = new HashMap<>();
+    private final SegmentWriteState state;
+    // fingerprints are written as filters are built so that they don't need to be buffered
+    private final IndexOutput filterOut;
+
+    FilteredFieldsConsumer(FieldsConsumer fieldsConsumer, SegmentWriteState state) throws IOException {
+      this.delegateFieldsConsumer = fieldsConsumer;
+      this.state = state;
+      String filterFileName = IndexFileNames.segmentFileName(
+          state.segmentInfo.name, state.segmentSuffix, FILTER_EXTENSION);
+      filterOut = state.directory.createOutput(filterFileName, state.context);
+      boolean success = false;
+      try {
+        CodecUtil.writeIndexHeader(filterOut, FILTER_CODEC_NAME, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+        // remember the name of the postings format we will delegate to
+        filterOut.writeString(delegatePostingsFormat.getName());
+        success = true;
+      } finally {
+        if (!success) {
+          IOUtils.closeWhileHandlingException(filterOut);
+        }
+      }
+    }
+
+    @Override
+    public void write(Fields fields, NormsProducer norms) throws IOException {
+      // Delegate must write first: it may have opened files on creating the
+      // class, and write() will close them
+      delegateFieldsConsumer.write(fields, norms);
+
+      for (String field : fields) {
+        Terms terms = fields.terms(field);
+        if (terms == null) {
+          continue;
+        }
+        FieldInfo fieldInfo = state.fieldInfos.fieldInfo(field);
+        BinaryFuseFilter.Builder builder = new BinaryFuseFilter.Builder(filterOut, filterOut.getFilePointer());
+
+        TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postingsEnum = null;
+        for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+          // Make sure there's at least one doc for this term:
+          postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+          if (postingsEnum.nextDoc() != PostingsEnum.NO_MORE_DOCS) {
+            builder.add(term);
+          }
+        }
+        assert filters.containsKey(fieldInfo) == false;
+        filters.put(fieldInfo, builder.finish());
+      }
+    }
+
+    private boolean closed;
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      boolean success = false;
+      try {
+        delegateFieldsConsumer.close();
+
+        long directoryOffset = filterOut.getFilePointer();
+        filterOut.writeVInt(filters.size());
+        for (Map.Entry<FieldInfo,BinaryFuseFilter> entry : filters.entrySet()) {
+          filterOut.writeVInt(entry.getKey().number);
+          entry.getValue().writeMetadata(filterOut);
+        }
+        filterOut.writeLong(directoryOffset);
+        CodecUtil.writeFooter(filterOut);
+        success = true;
+      } finally {
+        if (success) {
+          IOUtils.close(filterOut);
+        } else {
+          IOUtils.closeWhileHandlingException(filterOut);
+        }
+      }
+    }
+  }
+}
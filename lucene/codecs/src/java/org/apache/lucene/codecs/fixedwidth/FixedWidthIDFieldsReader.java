@@ -0,0 +1,530 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.fixedwidth;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.index.BaseTermsEnum;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.OrdTermState;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SlowImpactsEnum;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.DirectMonotonicReader;
+import org.apache.lucene.util.packed.DirectReader;
+
+import static org.apache.lucene.codecs.fixedwidth.FixedWidthIDPostingsFormat.DIRECT_MONOTONIC_BLOCK_SHIFT;
+import static org.apache.lucene.codecs.fixedwidth.FixedWidthIDPostingsFormat.SAMPLE_INTERVAL;
+import static org.apache.lucene.codecs.fixedwidth.FixedWidthIDPostingsFormat.SAMPLE_MASK;
+import static org.apache.lucene.codecs.fixedwidth.FixedWidthIDPostingsFormat.SAMPLE_SHIFT;
+
+/**
+ * Reader for {@link FixedWidthIDPostingsFormat}.
+ */
+final class FixedWidthIDFieldsReader extends FieldsProducer {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(FixedWidthIDFieldsReader.class);
+
+  private final Map<String,FieldTerms> fields = new TreeMap<>();
+  private final IndexInput data;
+  private long ramBytesUsed = BASE_RAM_BYTES_USED;
+
+  FixedWidthIDFieldsReader(SegmentReadState state) throws IOException {
+    String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, FixedWidthIDPostingsFormat.META_EXTENSION);
+    int version = -1;
+    try (ChecksumIndexInput in = state.directory.openChecksumInput(metaName, state.context)) {
+      Throwable priorE = null;
+      try {
+        version = CodecUtil.checkIndexHeader(in, FixedWidthIDPostingsFormat.META_CODEC,
+            FixedWidthIDPostingsFormat.VERSION_START, FixedWidthIDPostingsFormat.VERSION_CURRENT,
+            state.segmentInfo.getId(), state.segmentSuffix);
+        readFields(in, state);
+      } catch (Throwable exception) {
+        priorE = exception;
+      } finally {
+        CodecUtil.checkFooter(in, priorE);
+      }
+    }
+
+    String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, FixedWidthIDPostingsFormat.DATA_EXTENSION);
+    this.data = state.directory.openInput(dataName, state.context);
+    boolean success = false;
+    try {
+      final int version2 = CodecUtil.checkIndexHeader(data, FixedWidthIDPostingsFormat.DATA_CODEC,
+          FixedWidthIDPostingsFormat.VERSION_START, FixedWidthIDPostingsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      if (version != version2) {
+        throw new CorruptIndexException("Format versions mismatch: meta=" + version + ", data=" + version2, data);
+      }
+      // NOTE: data file is too costly to verify checksum against all the bytes on open,
+      // but for now we at least verify proper structure of the checksum footer
+      CodecUtil.retrieveChecksum(data);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this.data);
+      }
+    }
+  }
+
+  private void readFields(ChecksumIndexInput meta, SegmentReadState state) throws IOException {
+    for (int fieldNumber = meta.readInt(); fieldNumber != -1; fieldNumber = meta.readInt()) {
+      FieldInfo info = state.fieldInfos.fieldInfo(fieldNumber);
+      if (info == null) {
+        throw new CorruptIndexException("Invalid field number: " + fieldNumber, meta);
+      }
+      FieldTerms terms = new FieldTerms(meta);
+      if (terms.docCount < 0 || terms.docCount > state.segmentInfo.maxDoc()) {
+        throw new CorruptIndexException("Invalid docCount: " + terms.docCount + " maxDoc: " + state.segmentInfo.maxDoc(), meta);
+      }
+      if (terms.sumDocFreq < terms.numTerms || terms.sumDocFreq < terms.docCount) {
+        throw new CorruptIndexException("Invalid sumDocFreq: " + terms.sumDocFreq + " numTerms: " + terms.numTerms
+            + " docCount: " + terms.docCount, meta);
+      }
+      if (fields.put(info.name, terms) != null) {
+        throw new CorruptIndexException("Duplicate field: " + info.name, meta);
+      }
+      ramBytesUsed += terms.ramBytesUsed();
+    }
+  }
+
+  /**
+   * Returns the index of the first sample whose key is greater than
+   * {@code key}, or greater than or equal to {@code key} if {@code strict} is
+   * false, or the number of samples if there is no such sample.
+   */
+  private static int firstSample(long[] sampleKeys, long key, boolean strict) {
+    int low = 0, high = sampleKeys.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      final int cmp = Long.compare(sampleKeys[mid], key);
+      if (cmp > 0 || (cmp == 0 && strict == false)) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return Collections.unmodifiableSet(fields.keySet()).iterator();
+  }
+
+  @Override
+  public Terms terms(String field) throws IOException {
+    return fields.get(field);
+  }
+
+  @Override
+  public int size() {
+    return fields.size();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    CodecUtil.checksumEntireFile(data);
+  }
+
+  @Override
+  public void close() throws IOException {
+    data.close();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(fields=" + fields.size() + ")";
+  }
+
+  private final class FieldTerms extends Terms {
+    final int termLength;
+    final long numTerms;
+    final long sumDocFreq;
+    final int docCount;
+    final TermKeyEncoder keyEncoder;
+    final long[] sampleKeys;
+    final long termsOffset;
+    final long docsOffset;
+    final int docsBitsPerValue;
+    final long docsLength;
+    final long startsOffset;
+    final DirectMonotonicReader.Meta startsMeta;
+    final long startsLength;
+
+    FieldTerms(IndexInput meta) throws IOException {
+      termLength = meta.readVInt();
+      numTerms = meta.readLong();
+      sumDocFreq = meta.readLong();
+      docCount = meta.readInt();
+      termsOffset = meta.readLong();
+      docsOffset = meta.readLong();
+      docsBitsPerValue = meta.readByte();
+      docsLength = meta.readLong();
+      if (sumDocFreq != numTerms) {
+        startsOffset = meta.readLong();
+        startsMeta = DirectMonotonicReader.loadMeta(meta, numTerms + 1, DIRECT_MONOTONIC_BLOCK_SHIFT);
+        startsLength = meta.readLong();
+      } else {
+        startsOffset = -1;
+        startsMeta = null;
+        startsLength = 0;
+      }
+      keyEncoder = TermKeyEncoder.read(meta);
+      final int numSamples = meta.readVInt();
+      if (numSamples != (numTerms - 1) / SAMPLE_INTERVAL + (((numTerms - 1) & SAMPLE_MASK) == 0 ? 1 : 2)) {
+        throw new CorruptIndexException("Invalid number of samples: " + numSamples + " numTerms: " + numTerms, meta);
+      }
+      sampleKeys = new long[numSamples];
+      for (int i = 0; i < numSamples; ++i) {
+        sampleKeys[i] = meta.readLong();
+      }
+    }
+
+    long ramBytesUsed() {
+      return RamUsageEstimator.shallowSizeOfInstance(getClass()) + keyEncoder.ramBytesUsed() + RamUsageEstimator.sizeOf(sampleKeys)
+          + (startsMeta == null ? 0 : startsMeta.ramBytesUsed());
+    }
+
+    @Override
+    public TermsEnum iterator() throws IOException {
+      return new FieldTermsEnum(this);
+    }
+
+    @Override
+    public long size() {
+      return numTerms;
+    }
+
+    @Override
+    public long getSumTotalTermFreq() {
+      return sumDocFreq;
+    }
+
+    @Override
+    public long getSumDocFreq() {
+      return sumDocFreq;
+    }
+
+    @Override
+    public int getDocCount() {
+      return docCount;
+    }
+
+    @Override
+    public boolean hasFreqs() {
+      return false;
+    }
+
+    @Override
+    public boolean hasOffsets() {
+      return false;
+    }
+
+    @Override
+    public boolean hasPositions() {
+      return false;
+    }
+
+    @Override
+    public boolean hasPayloads() {
+      return false;
+    }
+  }
+
+  private final class FieldTermsEnum extends BaseTermsEnum {
+    private final FieldTerms fieldTerms;
+    private final int termLength;
+    private final IndexInput termsIn;
+    private final LongValues docs;
+    private final LongValues starts;
+    private final BytesRef term;
+    private final byte[] probe;
+    private long ord = -1;
+
+    FieldTermsEnum(FieldTerms fieldTerms) throws IOException {
+      this.fieldTerms = fieldTerms;
+      this.termLength = fieldTerms.termLength;
+      this.termsIn = data.slice("terms", fieldTerms.termsOffset, fieldTerms.numTerms * termLength);
+      this.docs = DirectReader.getInstance(data.randomAccessSlice(fieldTerms.docsOffset, fieldTerms.docsLength),
+          fieldTerms.docsBitsPerValue);
+      if (fieldTerms.startsMeta == null) {
+        this.starts = LongValues.IDENTITY;
+      } else {
+        this.starts = DirectMonotonicReader.getInstance(fieldTerms.startsMeta,
+            data.randomAccessSlice(fieldTerms.startsOffset, fieldTerms.startsLength));
+      }
+      this.term = new BytesRef(termLength);
+      this.term.length = termLength;
+      this.probe = new byte[termLength];
+    }
+
+    private void readTerm(long ord, byte[] dest) throws IOException {
+      termsIn.seek(ord * termLength);
+      termsIn.readBytes(dest, 0, termLength);
+    }
+
+    private void setOrd(long ord) throws IOException {
+      this.ord = ord;
+      readTerm(ord, term.bytes);
+    }
+
+    /**
+     * Returns the ordinal of the first term that is greater than or equal to
+     * {@code target}, or the number of terms if there is no such term. The
+     * sampled terms whose keys surround the key of the target give initial
+     * bounds, then the position of the target between the keys of the lower
+     * and upper bounds is used to guess its ordinal, which takes very few
+     * steps when keys are uniformly distributed between samples.
+     */
+    private long lowerBound(BytesRef target) throws IOException {
+      final TermKeyEncoder keyEncoder = fieldTerms.keyEncoder;
+      final long targetKey = keyEncoder.key(target.bytes, target.offset, target.length);
+      final long[] sampleKeys = fieldTerms.sampleKeys;
+      // the last sample whose key is less than the target key, which is less than the target
+      final int lowSample = firstSample(sampleKeys, targetKey, false) - 1;
+      // the first sample whose key is greater than the target key, which is greater than the target
+      final int highSample = firstSample(sampleKeys, targetKey, true);
+      long low = lowSample == -1 ? 0 : sampleOrd(lowSample) + 1;
+      long high = highSample == sampleKeys.length ? fieldTerms.numTerms : sampleOrd(highSample);
+      // lower bound of keys in [low, high) and upper bound of keys in [low, high)
+      long lowKey = sampleKeys[Math.max(lowSample, 0)];
+      long highKey = sampleKeys[Math.min(highSample, sampleKeys.length - 1)];
+      boolean interpolate = true;
+      while (low < high) {
+        if (targetKey < lowKey) {
+          return low;
+        }
+        if (targetKey > highKey) {
+          return high;
+        }
+        long mid;
+        if (interpolate && lowKey != highKey) {
+          final double fraction = (double) (targetKey - lowKey) / (highKey - lowKey);
+          mid = low + (long) (fraction * (high - 1 - low));
+          mid = Math.min(Math.max(mid, low), high - 1);
+        } else {
+          mid = (low + high) >>> 1;
+        }
+        readTerm(mid, probe);
+        final int cmp = Arrays.compareUnsigned(probe, 0, termLength, target.bytes, target.offset, target.offset + target.length);
+        final long previousRange = high - low;
+        if (cmp < 0) {
+          low = mid + 1;
+          lowKey = keyEncoder.key(probe, 0, termLength);
+        } else if (cmp > 0) {
+          high = mid;
+          highKey = keyEncoder.key(probe, 0, termLength);
+        } else {
+          return mid;
+        }
+        // fall back to a binary search step if interpolation didn't at least halve the range
+        interpolate = high - low <= previousRange / 2;
+      }
+      return low;
+    }
+
+    private long sampleOrd(int sample) {
+      return Math.min((long) sample << SAMPLE_SHIFT, fieldTerms.numTerms - 1);
+    }
+
+    @Override
+    public boolean seekExact(BytesRef text) throws IOException {
+      if (text.length != termLength) {
+        ord = -1;
+        return false;
+      }
+      final long ord = lowerBound(text);
+      if (ord < fieldTerms.numTerms) {
+        setOrd(ord);
+        return term.bytesEquals(text);
+      }
+      this.ord = -1;
+      return false;
+    }
+
+    @Override
+    public SeekStatus seekCeil(BytesRef text) throws IOException {
+      final long ord = lowerBound(text);
+      if (ord == fieldTerms.numTerms) {
+        this.ord = ord;
+        return SeekStatus.END;
+      }
+      setOrd(ord);
+      return term.bytesEquals(text) ? SeekStatus.FOUND : SeekStatus.NOT_FOUND;
+    }
+
+    @Override
+    public void seekExact(long ord) throws IOException {
+      if (ord < 0 || ord >= fieldTerms.numTerms) {
+        throw new IllegalArgumentException("ord must be in [0, " + fieldTerms.numTerms + "), got " + ord);
+      }
+      setOrd(ord);
+    }
+
+    @Override
+    public void seekExact(BytesRef target, TermState state) throws IOException {
+      seekExact(((OrdTermState) state).ord);
+    }
+
+    @Override
+    public TermState termState() throws IOException {
+      OrdTermState state = new OrdTermState();
+      state.ord = ord;
+      return state;
+    }
+
+    @Override
+    public BytesRef next() throws IOException {
+      if (ord + 1 >= fieldTerms.numTerms) {
+        ord = fieldTerms.numTerms;
+        return null;
+      }
+      setOrd(ord + 1);
+      return term;
+    }
+
+    @Override
+    public BytesRef term() throws IOException {
+      return term;
+    }
+
+    @Override
+    public long ord() throws IOException {
+      return ord;
+    }
+
+    @Override
+    public int docFreq() throws IOException {
+      return (int) (starts.get(ord + 1) - starts.get(ord));
+    }
+
+    @Override
+    public long totalTermFreq() throws IOException {
+      return docFreq();
+    }
+
+    @Override
+    public PostingsEnum postings(PostingsEnum reuse, int flags) throws IOException {
+      DocsEnum docsEnum;
+      if (reuse instanceof DocsEnum && ((DocsEnum) reuse).docs == docs) {
+        docsEnum = (DocsEnum) reuse;
+      } else {
+        docsEnum = new DocsEnum(docs);
+      }
+      docsEnum.reset(starts.get(ord), starts.get(ord + 1));
+      return docsEnum;
+    }
+
+    @Override
+    public ImpactsEnum impacts(int flags) throws IOException {
+      return new SlowImpactsEnum(postings(null, flags));
+    }
+  }
+
+  private static final class DocsEnum extends PostingsEnum {
+    final LongValues docs;
+    private long upto, end, cost;
+    private int doc;
+
+    DocsEnum(LongValues docs) {
+      this.docs = docs;
+    }
+
+    void reset(long start, long end) {
+      this.upto = start;
+      this.end = end;
+      this.cost = end - start;
+      this.doc = -1;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (upto == end) {
+        return doc = NO_MORE_DOCS;
+      }
+      return doc = (int) docs.get(upto++);
+    }
+
+    @Override
+    public int advance(int target) {
+      // ids typically have a single doc, or a few docs if some of them are deleted
+      while (nextDoc() < target) {
+      }
+      return doc;
+    }
+
+    @Override
+    public long cost() {
+      return cost;
+    }
+
+    @Override
+    public int freq() {
+      return 1;
+    }
+
+    @Override
+    public int nextPosition() {
+      return -1;
+    }
+
+    @Override
+    public int startOffset() {
+      return -1;
+    }
+
+    @Override
+    public int endOffset() {
+      return -1;
+    }
+
+    @Override
+    public BytesRef getPayload() {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.fixedwidth;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.DirectMonotonicWriter;
+import org.apache.lucene.util.packed.DirectWriter;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+
+import static org.apache.lucene.codecs.fixedwidth.FixedWidthIDPostingsFormat.DIRECT_MONOTONIC_BLOCK_SHIFT;
+import static org.apache.lucene.codecs.fixedwidth.FixedWidthIDPostingsFormat.SAMPLE_MASK;
+
+/**
+ * Writer for {@link FixedWidthIDPostingsFormat}.
+ */
+final class FixedWidthIDFieldsWriter extends FieldsConsumer {
+
+  private final SegmentWriteState state;
+  private IndexOutput meta, data;
+
+  FixedWidthIDFieldsWriter(SegmentWriteState state) throws IOException {
+    this.state = state;
+    boolean success = false;
+    try {
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, FixedWidthIDPostingsFormat.DATA_EXTENSION);
+      data = state.directory.createOutput(dataName, state.context);
+      CodecUtil.writeIndexHeader(data, FixedWidthIDPostingsFormat.DATA_CODEC, FixedWidthIDPostingsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, FixedWidthIDPostingsFormat.META_EXTENSION);
+      meta = state.directory.createOutput(metaName, state.context);
+      CodecUtil.writeIndexHeader(meta, FixedWidthIDPostingsFormat.META_CODEC, FixedWidthIDPostingsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void write(Fields fields, NormsProducer norms) throws IOException {
+    for (String field : fields) {
+      Terms terms = fields.terms(field);
+      if (terms == null) {
+        continue;
+      }
+      writeField(state.fieldInfos.fieldInfo(field), terms);
+    }
+  }
+
+  private void writeField(FieldInfo fieldInfo, Terms terms) throws IOException {
+    if (fieldInfo.getIndexOptions() != IndexOptions.DOCS || fieldInfo.hasPayloads()) {
+      throw new IllegalArgumentException("field \"" + fieldInfo.name + "\" must be indexed with IndexOptions.DOCS and no payloads to use "
+          + FixedWidthIDPostingsFormat.class.getSimpleName() + ", got " + fieldInfo.getIndexOptions());
+    }
+
+    // first pass: write terms and compute stats
+    final long termsOffset = data.getFilePointer();
+    final FixedBitSet docsWithField = new FixedBitSet(state.segmentInfo.maxDoc());
+    int termLength = -1;
+    long[] alphabets = null;
+    long numTerms = 0;
+    long sumDocFreq = 0;
+    TermsEnum termsEnum = terms.iterator();
+    PostingsEnum postingsEnum = null;
+    for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+      postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+      int docFreq = 0;
+      for (int doc = postingsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postingsEnum.nextDoc()) {
+        docsWithField.set(doc);
+        docFreq++;
+      }
+      if (docFreq == 0) {
+        continue; // all docs of the term have been deleted
+      }
+      if (termLength == -1) {
+        termLength = term.length;
+        alphabets = TermKeyEncoder.newAlphabets(termLength);
+      } else if (term.length != termLength) {
+        throw new IllegalArgumentException("all terms of field \"" + fieldInfo.name + "\" must have the same length to use "
+            + FixedWidthIDPostingsFormat.class.getSimpleName() + ", got " + termLength + " and " + term.length);
+      }
+      data.writeBytes(term.bytes, term.offset, term.length);
+      TermKeyEncoder.addTerm(alphabets, term.bytes, term.offset, term.length);
+      sumDocFreq += docFreq;
+      numTerms++;
+    }
+    if (numTerms == 0) {
+      return;
+    }
+
+    meta.writeInt(fieldInfo.number);
+    meta.writeVInt(termLength);
+    meta.writeLong(numTerms);
+    meta.writeLong(sumDocFreq);
+    meta.writeInt(docsWithField.cardinality());
+    meta.writeLong(termsOffset);
+
+    // second pass: write docs, where the docs of every term start unless every term has a single doc, and sample keys
+    final TermKeyEncoder keyEncoder = TermKeyEncoder.build(alphabets);
+    long[] sampleKeys = new long[1];
+    int numSamples = 0;
+    final int bitsPerValue = DirectWriter.unsignedBitsRequired(state.segmentInfo.maxDoc() - 1);
+    final long docsOffset = data.getFilePointer();
+    meta.writeLong(docsOffset);
+    meta.writeByte((byte) bitsPerValue);
+    final DirectWriter docsWriter = DirectWriter.getInstance(data, sumDocFreq, bitsPerValue);
+    final PackedLongValues.Builder starts = sumDocFreq == numTerms ? null : PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    termsEnum = terms.iterator();
+    long ord = 0;
+    long start = 0;
+    for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+      postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+      int doc = postingsEnum.nextDoc();
+      if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+        continue;
+      }
+      if ((ord & SAMPLE_MASK) == 0 || ord == numTerms - 1) {
+        sampleKeys = ArrayUtil.grow(sampleKeys, numSamples + 1);
+        sampleKeys[numSamples++] = keyEncoder.key(term.bytes, term.offset, term.length);
+      }
+      if (starts != null) {
+        starts.add(start);
+      }
+      for (; doc != DocIdSetIterator.NO_MORE_DOCS; doc = postingsEnum.nextDoc()) {
+        docsWriter.add(doc);
+        start++;
+      }
+      ord++;
+    }
+    assert ord == numTerms;
+    assert start == sumDocFreq;
+    docsWriter.finish();
+    meta.writeLong(data.getFilePointer() - docsOffset);
+
+    if (starts != null) {
+      starts.add(start);
+      final long startsOffset = data.getFilePointer();
+      meta.writeLong(startsOffset);
+      final DirectMonotonicWriter startsWriter = DirectMonotonicWriter.getInstance(meta, data, numTerms + 1, DIRECT_MONOTONIC_BLOCK_SHIFT);
+      for (PackedLongValues.Iterator it = starts.build().iterator(); it.hasNext(); ) {
+        startsWriter.add(it.next());
+      }
+      startsWriter.finish();
+      meta.writeLong(data.getFilePointer() - startsOffset);
+    }
+
+    keyEncoder.write(meta);
+    meta.writeVInt(numSamples);
+    for (int i = 0; i < numSamples; ++i) {
+      meta.writeLong(sampleKeys[i]);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (meta != null) {
+        meta.writeInt(-1); // write EOF marker
+        CodecUtil.writeFooter(meta); // write checksum
+      }
+      if (data != null) {
+        CodecUtil.writeFooter(data); // write checksum
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(data, meta);
+      } else {
+        IOUtils.closeWhileHandlingException(data, meta);
+      }
+      meta = data = null;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.fixedwidth;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.packed.DirectMonotonicWriter;
+import org.apache.lucene.util.packed.DirectWriter;
+
+/**
+ * Postings format for primary key fields, such as UUIDs or 64-bit hashes,
+ * whose terms all have the same length.
+ * <p>
+ * The terms of a field are stored in sorted order in a flat array of
+ * fixed-width entries, along with the docs of every term, and are looked up
+ * by interpolation search on their 8 leading bytes. The leading bytes of one
+ * term every {@value #SAMPLE_INTERVAL} are held on heap to narrow the search
+ * first, so that ids whose bytes are not uniformly distributed, like UUIDs
+ * in their string form, are still found in a couple of term reads, instead
+ * of a terms index lookup and a block decode.
+ * <p>
+ * Fields must be indexed with {@link IndexOptions#DOCS} and all their terms
+ * must have the same length, otherwise an {@link IllegalArgumentException} is
+ * thrown when flushing or merging. This format is typically used for a single
+ * field by a per-field postings format.
+ * <p>
+ * Files:
+ * <ul>
+ *   <li><code>.idm</code>: metadata of every field</li>
+ *   <li><code>.idd</code>: terms and docs of every field</li>
+ * </ul>
+ * <p>
+ * File format:
+ * <ul>
+ *   <li>Meta (.idm) --&gt; Header, &lt;FieldNumber, TermLength, NumTerms, SumDocFreq, DocCount,
+ *       NumSamples, SampleKey<sup>NumSamples</sup>, TermsOffset, DocsOffset, DocsBitsPerValue, DocsLength, StartsOffset?,
+ *       StartsMeta?, StartsLength?&gt;<sup>NumFields</sup>, -1, Footer</li>
+ *   <li>Data (.idd) --&gt; Header, &lt;Terms, Docs, Starts?&gt;<sup>NumFields</sup>, Footer</li>
+ *   <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ *   <li>FieldNumber, DocCount --&gt; {@link DataOutput#writeInt Int32}</li>
+ *   <li>TermLength, NumSamples --&gt; {@link DataOutput#writeVInt VInt}</li>
+ *   <li>NumTerms, SumDocFreq, SampleKey, TermsOffset, DocsOffset, DocsLength, StartsOffset,
+ *       StartsLength --&gt; {@link DataOutput#writeLong Int64}</li>
+ *   <li>SampleKey is the 8 leading bytes, as an unsigned long, of one term every
+ *       {@value #SAMPLE_INTERVAL} and of the last term</li>
+ *   <li>DocsBitsPerValue --&gt; {@link DataOutput#writeByte Byte}</li>
+ *   <li>Terms --&gt; NumTerms sorted terms of TermLength bytes each</li>
+ *   <li>Docs --&gt; the docs of every term in term order, written by {@link DirectWriter}</li>
+ *   <li>Starts, StartsMeta --&gt; the index of the first doc of every term, written by
+ *       {@link DirectMonotonicWriter}, only if some terms have more than one doc</li>
+ *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ * </ul>
+ *
+ * @lucene.experimental
+ */
+public final class FixedWidthIDPostingsFormat extends PostingsFormat {
+
+  static final String META_CODEC = "FixedWidthIDPostingsMeta";
+  static final String META_EXTENSION = "idm";
+  static final String DATA_CODEC = "FixedWidthIDPostingsData";
+  static final String DATA_EXTENSION = "idd";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  static final int DIRECT_MONOTONIC_BLOCK_SHIFT = 16;
+
+  static final int SAMPLE_SHIFT = 12;
+  /** Number of terms between two sampled terms. */
+  public static final int SAMPLE_INTERVAL = 1 << SAMPLE_SHIFT;
+  static final int SAMPLE_MASK = SAMPLE_INTERVAL - 1;
+
+  /** Sole constructor. */
+  public FixedWidthIDPostingsFormat() {
+    super("FixedWidthID");
+  }
+
+  @Override
+  public String toString() {
+    return getName();
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    return new FixedWidthIDFieldsWriter(state);
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new FixedWidthIDFieldsReader(state);
+  }
+}
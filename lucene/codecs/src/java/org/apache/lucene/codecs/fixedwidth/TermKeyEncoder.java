@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.fixedwidth;
+
+import java.io.IOException;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * Maps terms to non-negative longs whose order is consistent with the order
+ * of terms, for interpolation search. The leading bytes of a term are read
+ * as digits of a mixed-radix number, where the digits of a position are the
+ * ranks of the byte values that terms of the field have at this position.
+ * This way, terms that only use a few byte values at some positions, like
+ * hex strings or ids with separators, get keys that are as uniformly
+ * distributed as the terms are.
+ */
+final class TermKeyEncoder implements Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(TermKeyEncoder.class);
+
+  /** Number of longs of the set of byte values of a position. */
+  private static final int ALPHABET_LONGS = 256 / Long.SIZE;
+
+  /**
+   * Collects the byte values of every position of terms of the given length,
+   * to be passed to {@link #build}.
+   */
+  static long[] newAlphabets(int termLength) {
+    return new long[termLength * ALPHABET_LONGS];
+  }
+
+  /** Adds the bytes of the given term to the alphabets of its positions. */
+  static void addTerm(long[] alphabets, byte[] bytes, int offset, int length) {
+    for (int i = 0; i < length; ++i) {
+      final int b = bytes[offset + i] & 0xFF;
+      alphabets[i * ALPHABET_LONGS + (b >>> 6)] |= 1L << b;
+    }
+  }
+
+  /**
+   * Builds an encoder that uses as many leading positions as fit in a
+   * non-negative long, given the byte values of every position.
+   */
+  static TermKeyEncoder build(long[] alphabets) {
+    final int termLength = alphabets.length / ALPHABET_LONGS;
+    long maxKey = 1;
+    int numPositions = 0;
+    for (; numPositions < termLength; ++numPositions) {
+      final int radix = radix(alphabets, numPositions);
+      if (maxKey > Long.MAX_VALUE / radix) {
+        break;
+      }
+      maxKey *= radix;
+    }
+    final long[] used = new long[numPositions * ALPHABET_LONGS];
+    System.arraycopy(alphabets, 0, used, 0, used.length);
+    return new TermKeyEncoder(used);
+  }
+
+  private static int radix(long[] alphabets, int position) {
+    int radix = 0;
+    for (int i = 0; i < ALPHABET_LONGS; ++i) {
+      radix += Long.bitCount(alphabets[position * ALPHABET_LONGS + i]);
+    }
+    return Math.max(radix, 1);
+  }
+
+  private final long[] alphabets;
+  private final int[] radixes;
+
+  private TermKeyEncoder(long[] alphabets) {
+    this.alphabets = alphabets;
+    this.radixes = new int[alphabets.length / ALPHABET_LONGS];
+    for (int i = 0; i < radixes.length; ++i) {
+      radixes[i] = radix(alphabets, i);
+    }
+  }
+
+  static TermKeyEncoder read(DataInput in) throws IOException {
+    final long[] alphabets = new long[in.readVInt() * ALPHABET_LONGS];
+    for (int i = 0; i < alphabets.length; ++i) {
+      alphabets[i] = in.readLong();
+    }
+    return new TermKeyEncoder(alphabets);
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeVInt(radixes.length);
+    for (long l : alphabets) {
+      out.writeLong(l);
+    }
+  }
+
+  /**
+   * Returns the key of the given term. If {@code a <= b} then
+   * {@code key(a) <= key(b)}, including for terms that have byte values that
+   * no term of the field has, or a different length.
+   */
+  long key(byte[] bytes, int offset, int length) {
+    long key = 0;
+    for (int i = 0; i < radixes.length; ++i) {
+      final int radix = radixes[i];
+      if (i == length) {
+        // smaller than all terms that it is a prefix of
+        return fill(key, i, false);
+      }
+      final int b = bytes[offset + i] & 0xFF;
+      final int word = i * ALPHABET_LONGS + (b >>> 6);
+      int rank = Long.bitCount(alphabets[word] & ((1L << b) - 1));
+      for (int j = i * ALPHABET_LONGS; j < word; ++j) {
+        rank += Long.bitCount(alphabets[j]);
+      }
+      if ((alphabets[word] & (1L << b)) != 0) {
+        key = key * radix + rank;
+      } else if (rank < radix) {
+        // smaller than all terms with the same prefix that have a greater byte here
+        return fill(key * radix + rank, i + 1, false);
+      } else {
+        // greater than all terms with the same prefix
+        return fill(key * radix + radix - 1, i + 1, true);
+      }
+    }
+    return key;
+  }
+
+  private long fill(long key, int position, boolean max) {
+    for (int i = position; i < radixes.length; ++i) {
+      key = key * radixes[i] + (max ? radixes[i] - 1 : 0);
+    }
+    return key;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(alphabets) + RamUsageEstimator.sizeOf(radixes);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bloom;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.index.BasePostingsFormatTestCase;
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Basic tests for BinaryFuseFilteringPostingsFormat
+ */
+public class TestBinaryFuseFilteringPostingsFormat extends BasePostingsFormatTestCase {
+  private final Codec codec = TestUtil.alwaysPostingsFormat(new BinaryFuseFilteringPostingsFormat(TestUtil.getDefaultPostingsFormat()));
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  public void testFilter() throws IOException {
+    final int numKeys = random().nextBoolean() ? TestUtil.nextInt(random(), 1, 10) : atLeast(10000);
+    final int maxChunkSize = random().nextBoolean() ? BinaryFuseFilter.DEFAULT_MAX_CHUNK_SIZE : TestUtil.nextInt(random(), 1, 2000);
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    BinaryFuseFilter.Builder builder = new BinaryFuseFilter.Builder(out, 0, maxChunkSize);
+    for (int i = 0; i < numKeys; i++) {
+      // terms are added in sorted order
+      builder.add(key(i));
+      if (random().nextInt(10) == 0) {
+        // duplicates are ignored
+        builder.add(key(i));
+      }
+    }
+    BinaryFuseFilter filter = builder.finish();
+    assertEquals(numKeys, filter.numKeys);
+    assertEquals(out.size(), filter.arrayLength());
+
+    // filters must be the same after a round trip through their metadata
+    ByteBuffersDataOutput metadata = new ByteBuffersDataOutput();
+    filter.writeMetadata(metadata);
+    if (random().nextBoolean()) {
+      filter = BinaryFuseFilter.readMetadata(metadata.toDataInput());
+      assertEquals(numKeys, filter.numKeys);
+      assertEquals(out.size(), filter.arrayLength());
+    }
+    ByteBuffersDataInput fingerprints = out.toDataInput();
+
+    for (int i = 0; i < numKeys; i++) {
+      assertTrue(filter.mayContain(fingerprints, key(i)));
+    }
+    final int numQueries = 100000;
+    int falsePositives = 0;
+    for (int i = 0; i < numQueries; i++) {
+      if (filter.mayContain(fingerprints, new BytesRef("other" + i))) {
+        falsePositives++;
+      }
+    }
+    // expected false positive rate is 1/256
+    assertTrue("falsePositives=" + falsePositives, falsePositives < numQueries / 128);
+  }
+
+  private static BytesRef key(int i) {
+    return new BytesRef(String.format(Locale.ROOT, "key%08d", i));
+  }
+
+  public void testEmptyFilter() throws IOException {
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    BinaryFuseFilter filter = new BinaryFuseFilter.Builder(out, 0).finish();
+    assertEquals(0, out.size());
+    assertFalse(filter.mayContain(out.toDataInput(), new BytesRef("key")));
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.fixedwidth;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Basic tests for FixedWidthIDPostingsFormat
+ */
+// Cannot extend BasePostingsFormatTestCase because this PF is not
+// general (it requires terms of the same length and IndexOptions.DOCS)
+public class TestFixedWidthIDPostingsFormat extends LuceneTestCase {
+
+  private static final String HEX = "0123456789abcdef";
+
+  private static String randomID(int length, boolean hex) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; ++i) {
+      // hex ids only use a few byte values per position, unlike random bytes
+      chars[i] = hex ? HEX.charAt(random().nextInt(HEX.length())) : (char) random().nextInt(128);
+    }
+    return new String(chars);
+  }
+
+  private static IndexWriterConfig newConfig() {
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysPostingsFormat(new FixedWidthIDPostingsFormat()));
+    return iwc;
+  }
+
+  public void testRandom() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newConfig());
+    final int length = TestUtil.nextInt(random(), 1, 40);
+    final boolean hex = random().nextBoolean();
+    final int numDocs = atLeast(1000);
+    List<String> ids = new ArrayList<>();
+    Map<String,Integer> versions = new HashMap<>();
+    for (int i = 0; i < numDocs; ++i) {
+      String id;
+      int version;
+      if (ids.isEmpty() == false && random().nextInt(5) == 0) {
+        // update an existing id, the previous doc stays in the postings until it is merged away
+        id = ids.get(random().nextInt(ids.size()));
+        version = versions.get(id) + 1;
+      } else {
+        id = randomID(length, hex);
+        version = 0;
+        if (versions.containsKey(id)) {
+          continue;
+        }
+        ids.add(id);
+      }
+      versions.put(id, version);
+      Document doc = new Document();
+      doc.add(new StringField("id", id, Field.Store.YES));
+      doc.add(new StoredField("version", version));
+      w.updateDocument(new Term("id", id), doc);
+    }
+
+    IndexReader r = w.getReader();
+    IndexSearcher searcher = newSearcher(r);
+    for (int i = 0; i < 100; ++i) {
+      String id = ids.get(random().nextInt(ids.size()));
+      TopDocs hits = searcher.search(new TermQuery(new Term("id", id)), 2);
+      assertEquals(1, hits.totalHits.value);
+      assertEquals(versions.get(id).intValue(), searcher.doc(hits.scoreDocs[0].doc).getField("version").numericValue().intValue());
+      String missing = randomID(length, hex);
+      if (versions.containsKey(missing) == false) {
+        assertEquals(0, searcher.count(new TermQuery(new Term("id", missing))));
+      }
+    }
+
+    for (LeafReaderContext ctx : r.leaves()) {
+      checkTermsEnum(ctx.reader(), length, hex);
+    }
+
+    r.close();
+    w.close();
+    dir.close();
+  }
+
+  /** Check seeks and iteration against the ids of all docs of the segment, including deleted ones. */
+  private void checkTermsEnum(LeafReader reader, int length, boolean hex) throws IOException {
+    TreeSet<BytesRef> expected = new TreeSet<>();
+    for (int doc = 0; doc < reader.maxDoc(); ++doc) {
+      expected.add(new BytesRef(reader.document(doc).get("id")));
+    }
+    Terms terms = reader.terms("id");
+    assertEquals(expected.size(), terms.size());
+    assertEquals(reader.maxDoc(), terms.getSumDocFreq());
+    assertFalse(terms.hasFreqs());
+
+    TermsEnum termsEnum = terms.iterator();
+    long ord = 0;
+    for (BytesRef term : expected) {
+      assertEquals(term, termsEnum.next());
+      assertEquals(ord++, termsEnum.ord());
+    }
+    assertNull(termsEnum.next());
+
+    List<BytesRef> sorted = new ArrayList<>(expected);
+    for (int i = 0; i < 100; ++i) {
+      BytesRef target;
+      if (random().nextBoolean()) {
+        // a term of a different length, or with bytes that no term has at some positions
+        target = new BytesRef(randomID(TestUtil.nextInt(random(), 0, length + 1), random().nextBoolean()));
+      } else {
+        target = new BytesRef(randomID(length, hex));
+      }
+      BytesRef ceil = expected.ceiling(target);
+      TermsEnum.SeekStatus status = termsEnum.seekCeil(target);
+      if (ceil == null) {
+        assertEquals(TermsEnum.SeekStatus.END, status);
+        assertFalse(termsEnum.seekExact(target));
+      } else {
+        assertEquals(ceil.equals(target) ? TermsEnum.SeekStatus.FOUND : TermsEnum.SeekStatus.NOT_FOUND, status);
+        assertEquals(ceil, termsEnum.term());
+        assertEquals(sorted.indexOf(ceil), termsEnum.ord());
+        assertEquals(expected.higher(ceil), termsEnum.next());
+        assertEquals(ceil.equals(target), termsEnum.seekExact(target));
+      }
+
+      BytesRef term = sorted.get(random().nextInt(sorted.size()));
+      assertTrue(termsEnum.seekExact(term));
+      assertEquals(term, termsEnum.term());
+      PostingsEnum postings = termsEnum.postings(null, PostingsEnum.NONE);
+      int docFreq = 0;
+      for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+        assertEquals(term.utf8ToString(), reader.document(doc).get("id"));
+        docFreq++;
+      }
+      assertEquals(termsEnum.docFreq(), docFreq);
+    }
+  }
+
+  public void testVariableLengthTerms() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newConfig());
+    Document doc = new Document();
+    doc.add(new StringField("id", "id0", Field.Store.NO));
+    w.addDocument(doc);
+    doc = new Document();
+    doc.add(new StringField("id", "id10", Field.Store.NO));
+    w.addDocument(doc);
+    expectThrows(IllegalArgumentException.class, w::commit);
+    w.rollback();
+    dir.close();
+  }
+
+  public void testFreqs() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newConfig());
+    Document doc = new Document();
+    doc.add(new TextField("body", "foo", Field.Store.NO));
+    w.addDocument(doc);
+    expectThrows(IllegalArgumentException.class, w::commit);
+    w.rollback();
+    dir.close();
+  }
+}
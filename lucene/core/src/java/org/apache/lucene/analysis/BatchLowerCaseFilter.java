@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis;
+
+
+/**
+ * A {@link BatchTokenFilter} that normalizes token text to lower case, like
+ * {@link LowerCaseFilter}.
+ *
+ * @lucene.experimental
+ */
+public final class BatchLowerCaseFilter extends BatchTokenFilter {
+
+  /**
+   * Create a new BatchLowerCaseFilter, that normalizes token text to lower case.
+   *
+   * @param in TokenStream to filter
+   */
+  public BatchLowerCaseFilter(TokenStream in) {
+    super(in);
+  }
+
+  @Override
+  protected void processBatch(TokenBatch batch) {
+    final char[] chars = batch.chars;
+    for (int i = 0; i < batch.size; i++) {
+      final int start = batch.termStart[i];
+      CharacterUtils.toLowerCase(chars, start, start + batch.termLength[i]);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+/**
+ * A {@link BatchTokenFilter} that removes stop words, like {@link StopFilter}.
+ *
+ * @lucene.experimental
+ */
+public final class BatchStopFilter extends BatchTokenFilter {
+
+  private final CharArraySet stopWords;
+  private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+  private int skippedPositions;
+
+  /**
+   * Constructs a filter which removes words from the input TokenStream that are
+   * named in the Set.
+   *
+   * @param in
+   *          Input stream
+   * @param stopWords
+   *          A {@link CharArraySet} representing the stopwords.
+   * @see StopFilter#makeStopSet(java.lang.String...)
+   */
+  public BatchStopFilter(TokenStream in, CharArraySet stopWords) {
+    super(in);
+    this.stopWords = stopWords;
+  }
+
+  @Override
+  protected void processBatch(TokenBatch batch) {
+    final char[] chars = batch.chars;
+    int upto = 0;
+    for (int i = 0; i < batch.size; i++) {
+      if (stopWords.contains(chars, batch.termStart[i], batch.termLength[i])) {
+        skippedPositions += batch.positionIncrement[i];
+      } else {
+        batch.move(i, upto);
+        batch.positionIncrement[upto] += skippedPositions;
+        skippedPositions = 0;
+        upto++;
+      }
+    }
+    batch.setSize(upto);
+  }
+
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    skippedPositions = 0;
+  }
+
+  @Override
+  public void end() throws IOException {
+    super.end();
+    posIncrAtt.setPositionIncrement(posIncrAtt.getPositionIncrement() + skippedPositions);
+  }
+}
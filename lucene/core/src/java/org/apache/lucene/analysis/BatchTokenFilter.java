@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis;
+
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermFrequencyAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.Attribute;
+
+/**
+ * A {@link TokenFilter} that processes a {@link TokenBatch} of tokens per
+ * call instead of one token per call to {@link #incrementToken()}.
+ * <p>
+ * When the input of a BatchTokenFilter is another BatchTokenFilter, batches
+ * are passed down the chain with {@link #nextBatch(TokenBatch)} and tokens
+ * never go through attributes in between, so each filter runs a tight loop
+ * over the batch. Otherwise this filter reads tokens from its input with
+ * {@link TokenStream#incrementToken()} to fill the batch. Consumers, including
+ * regular {@link TokenFilter}s, call {@link #incrementToken()} as usual, which
+ * sets attributes from the batch one token at a time. Batch filters can
+ * therefore be mixed with regular filters in any order, a chain is fastest
+ * when consecutive filters are batch filters.
+ * <p>
+ * Unlike regular filters, batch filters read up to
+ * {@link TokenBatch#DEFAULT_CAPACITY} tokens ahead from their input.
+ *
+ * @lucene.experimental
+ */
+public abstract class BatchTokenFilter extends TokenFilter {
+
+  /** Attributes whose values are stored in the arrays of {@link TokenBatch}. */
+  private static final Set<Class<? extends Attribute>> BATCHED_ATTRIBUTES = Set.of(
+      CharTermAttribute.class, TermToBytesRefAttribute.class, PositionIncrementAttribute.class,
+      PositionLengthAttribute.class, OffsetAttribute.class, TermFrequencyAttribute.class,
+      TypeAttribute.class, KeywordAttribute.class);
+
+  private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+  // other attributes are only set if the chain has them, they are resolved before the first batch
+  private PositionIncrementAttribute posIncAtt;
+  private PositionLengthAttribute posLenAtt;
+  private OffsetAttribute offsetAtt;
+  private TermFrequencyAttribute termFreqAtt;
+  private TypeAttribute typeAtt;
+  private KeywordAttribute keywordAtt;
+  private boolean initialized;
+  /** Whether tokens have attributes that are not stored in the arrays of {@link TokenBatch} */
+  private boolean captureState;
+  /** Whether the regular input of this filter returned false from {@link TokenStream#incrementToken()} */
+  private boolean exhausted;
+
+  /** Batch of tokens returned by {@link #incrementToken()}, only used if this is the last batch filter of a chain */
+  private TokenBatch batch;
+  private int upto;
+
+  /** Construct a batch token filter filtering the given input. */
+  protected BatchTokenFilter(TokenStream input) {
+    super(input);
+  }
+
+  /**
+   * Processes the tokens of {@code batch}, which are the next tokens of the
+   * input. Implementations may modify, remove or add tokens, see
+   * {@link TokenBatch}. Removing all tokens is fine, this method is called
+   * again with the next tokens of the input.
+   */
+  protected abstract void processBatch(TokenBatch batch) throws IOException;
+
+  /**
+   * Clears {@code batch} and fills it with the next tokens of this filter.
+   * Returns false if there are no more tokens, in which case the batch is
+   * empty.
+   */
+  public final boolean nextBatch(TokenBatch batch) throws IOException {
+    if (initialized == false) {
+      initAttributes();
+    }
+    while (true) {
+      batch.clear();
+      final boolean more;
+      if (input instanceof BatchTokenFilter) {
+        more = ((BatchTokenFilter) input).nextBatch(batch);
+      } else if (exhausted) {
+        // the input must not be consumed again once it returned false
+        return false;
+      } else {
+        more = fill(batch);
+        exhausted = more == false;
+      }
+      if (batch.size > 0) {
+        processBatch(batch);
+        if (batch.size > 0) {
+          return true;
+        }
+      }
+      if (more == false) {
+        return false;
+      }
+    }
+  }
+
+  /** Reads tokens from a regular input until the batch is full, returns false if the input is exhausted */
+  private boolean fill(TokenBatch batch) throws IOException {
+    while (batch.isFull() == false) {
+      if (input.incrementToken() == false) {
+        return false;
+      }
+      final int i = batch.add(termAtt.buffer(), 0, termAtt.length());
+      batch.positionIncrement[i] = posIncAtt == null ? 1 : posIncAtt.getPositionIncrement();
+      batch.positionLength[i] = posLenAtt == null ? 1 : posLenAtt.getPositionLength();
+      batch.startOffset[i] = offsetAtt == null ? 0 : offsetAtt.startOffset();
+      batch.endOffset[i] = offsetAtt == null ? 0 : offsetAtt.endOffset();
+      batch.termFrequency[i] = termFreqAtt == null ? 1 : termFreqAtt.getTermFrequency();
+      batch.type[i] = typeAtt == null ? TypeAttribute.DEFAULT_TYPE : typeAtt.type();
+      batch.keyword[i] = keywordAtt != null && keywordAtt.isKeyword();
+      if (captureState) {
+        batch.states[i] = captureState();
+      }
+    }
+    return true;
+  }
+
+  /** Resolves attributes once the chain is complete, so that this filter does not add attributes that the chain does not use */
+  private void initAttributes() {
+    posIncAtt = hasAttribute(PositionIncrementAttribute.class) ? getAttribute(PositionIncrementAttribute.class) : null;
+    posLenAtt = hasAttribute(PositionLengthAttribute.class) ? getAttribute(PositionLengthAttribute.class) : null;
+    offsetAtt = hasAttribute(OffsetAttribute.class) ? getAttribute(OffsetAttribute.class) : null;
+    termFreqAtt = hasAttribute(TermFrequencyAttribute.class) ? getAttribute(TermFrequencyAttribute.class) : null;
+    typeAtt = hasAttribute(TypeAttribute.class) ? getAttribute(TypeAttribute.class) : null;
+    keywordAtt = hasAttribute(KeywordAttribute.class) ? getAttribute(KeywordAttribute.class) : null;
+    captureState = false;
+    for (Iterator<Class<? extends Attribute>> it = getAttributeClassesIterator(); it.hasNext(); ) {
+      if (BATCHED_ATTRIBUTES.contains(it.next()) == false) {
+        captureState = true;
+      }
+    }
+    initialized = true;
+  }
+
+  @Override
+  public final boolean incrementToken() throws IOException {
+    if (batch == null) {
+      batch = new TokenBatch();
+    }
+    if (upto == batch.size) {
+      upto = 0;
+      if (nextBatch(batch) == false) {
+        return false;
+      }
+    }
+    final int i = upto++;
+    if (batch.states[i] != null) {
+      restoreState(batch.states[i]);
+    } else {
+      clearAttributes();
+    }
+    termAtt.copyBuffer(batch.chars, batch.termStart[i], batch.termLength[i]);
+    if (posIncAtt != null) {
+      posIncAtt.setPositionIncrement(batch.positionIncrement[i]);
+    }
+    if (posLenAtt != null) {
+      posLenAtt.setPositionLength(batch.positionLength[i]);
+    }
+    if (offsetAtt != null) {
+      offsetAtt.setOffset(batch.startOffset[i], batch.endOffset[i]);
+    }
+    if (termFreqAtt != null) {
+      termFreqAtt.setTermFrequency(batch.termFrequency[i]);
+    }
+    if (typeAtt != null) {
+      typeAtt.setType(batch.type[i]);
+    }
+    if (keywordAtt != null) {
+      keywordAtt.setKeyword(batch.keyword[i]);
+    }
+    return true;
+  }
+
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    if (batch != null) {
+      batch.clear();
+    }
+    upto = 0;
+    exhausted = false;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis;
+
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeSource;
+
+/**
+ * A batch of tokens that is processed by {@link BatchTokenFilter}s at once.
+ * <p>
+ * The attributes of token {@code i}, for {@code 0 <= i < size}, are stored
+ * in parallel arrays. The terms of all tokens share a single char buffer,
+ * the term of token {@code i} is {@code chars[termStart[i]:termStart[i]+termLength[i]]}.
+ * Filters may modify terms in place as long as they do not change their
+ * length, and should call {@link #setTerm} otherwise. The buffers are reused
+ * across batches, so filters must not keep references to them.
+ * <p>
+ * Attributes other than the ones that have arrays in this class are kept in
+ * {@link #states}, which is {@code null} for all tokens if the stream has no
+ * such attributes.
+ *
+ * @lucene.experimental
+ */
+public final class TokenBatch {
+
+  /** The default maximum number of tokens in a batch. */
+  public static final int DEFAULT_CAPACITY = 128;
+
+  private final int capacity;
+
+  /** Number of tokens in this batch. */
+  public int size;
+
+  /** Buffer that holds the terms of all tokens. */
+  public char[] chars;
+  /** Number of chars used in {@link #chars}. */
+  public int charsUsed;
+
+  /** Start of the term of each token in {@link #chars}. */
+  public int[] termStart;
+  /** Length of the term of each token. */
+  public int[] termLength;
+  /** Position increment of each token. */
+  public int[] positionIncrement;
+  /** Position length of each token. */
+  public int[] positionLength;
+  /** Start offset of each token. */
+  public int[] startOffset;
+  /** End offset of each token. */
+  public int[] endOffset;
+  /** Term frequency of each token. */
+  public int[] termFrequency;
+  /** Type of each token. */
+  public String[] type;
+  /** Whether each token is a keyword. */
+  public boolean[] keyword;
+  /** Captured state of other attributes of each token, or {@code null}. */
+  public AttributeSource.State[] states;
+
+  /** Create a new batch of at most {@link #DEFAULT_CAPACITY} tokens. */
+  public TokenBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** Create a new batch of at most {@code capacity} tokens. */
+  public TokenBatch(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be >= 1, got " + capacity);
+    }
+    this.capacity = capacity;
+    chars = new char[capacity * 8];
+    termStart = new int[capacity];
+    termLength = new int[capacity];
+    positionIncrement = new int[capacity];
+    positionLength = new int[capacity];
+    startOffset = new int[capacity];
+    endOffset = new int[capacity];
+    termFrequency = new int[capacity];
+    type = new String[capacity];
+    keyword = new boolean[capacity];
+    states = new AttributeSource.State[capacity];
+  }
+
+  /** Returns the maximum number of tokens in this batch. */
+  public int capacity() {
+    return capacity;
+  }
+
+  /** Returns true if no more tokens can be added to this batch. */
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /** Removes all tokens. */
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      type[i] = null;
+      states[i] = null;
+    }
+    size = 0;
+    charsUsed = 0;
+  }
+
+  /** Appends a token whose term is {@code buffer[offset:offset+length]} and returns its index. */
+  public int add(char[] buffer, int offset, int length) {
+    assert size < capacity;
+    final int index = size++;
+    // never write in place of a token of a previous batch
+    termLength[index] = 0;
+    setTerm(index, buffer, offset, length);
+    return index;
+  }
+
+  /** Sets the term of the token at {@code index}, {@code buffer} may be {@link #chars}. */
+  public void setTerm(int index, char[] buffer, int offset, int length) {
+    assert index < size;
+    if (length <= termLength[index] && buffer != chars) {
+      // fits in place
+      System.arraycopy(buffer, offset, chars, termStart[index], length);
+    } else {
+      if (charsUsed + length > chars.length) {
+        final char[] newChars = new char[ArrayUtil.oversize(charsUsed + length, Character.BYTES)];
+        System.arraycopy(chars, 0, newChars, 0, charsUsed);
+        if (buffer == chars) {
+          buffer = newChars;
+        }
+        chars = newChars;
+      }
+      System.arraycopy(buffer, offset, chars, charsUsed, length);
+      termStart[index] = charsUsed;
+      charsUsed += length;
+    }
+    termLength[index] = length;
+  }
+
+  /** Removes the token at {@code index}, tokens after it are shifted down by one. */
+  public void remove(int index) {
+    assert index < size;
+    final int moved = size - index - 1;
+    System.arraycopy(termStart, index + 1, termStart, index, moved);
+    System.arraycopy(termLength, index + 1, termLength, index, moved);
+    System.arraycopy(positionIncrement, index + 1, positionIncrement, index, moved);
+    System.arraycopy(positionLength, index + 1, positionLength, index, moved);
+    System.arraycopy(startOffset, index + 1, startOffset, index, moved);
+    System.arraycopy(endOffset, index + 1, endOffset, index, moved);
+    System.arraycopy(termFrequency, index + 1, termFrequency, index, moved);
+    System.arraycopy(type, index + 1, type, index, moved);
+    System.arraycopy(keyword, index + 1, keyword, index, moved);
+    System.arraycopy(states, index + 1, states, index, moved);
+    size--;
+    type[size] = null;
+    states[size] = null;
+  }
+
+  /**
+   * Copies the token at {@code from} to {@code to}, which is useful to
+   * compact the batch while removing tokens in a single pass. The term chars
+   * are shared, not copied.
+   */
+  public void move(int from, int to) {
+    if (from == to) {
+      return;
+    }
+    termStart[to] = termStart[from];
+    termLength[to] = termLength[from];
+    positionIncrement[to] = positionIncrement[from];
+    positionLength[to] = positionLength[from];
+    startOffset[to] = startOffset[from];
+    endOffset[to] = endOffset[from];
+    termFrequency[to] = termFrequency[from];
+    type[to] = type[from];
+    keyword[to] = keyword[from];
+    states[to] = states[from];
+  }
+
+  /** Truncates this batch to its first {@code newSize} tokens. */
+  public void setSize(int newSize) {
+    assert newSize <= size;
+    for (int i = newSize; i < size; i++) {
+      type[i] = null;
+      states[i] = null;
+    }
+    size = newSize;
+  }
+}
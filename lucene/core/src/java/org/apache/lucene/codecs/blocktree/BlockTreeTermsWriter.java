@@ -206,6 +206,11 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
    *  #BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int)}. */
   public final static int DEFAULT_MAX_BLOCK_SIZE = 48;
 
+  /** Approximate maximum amount of RAM, in MB, that the hash of shared suffixes may use when the
+   *  root index of a field is streamed to the index file: nodes are then copied to this hash since
+   *  they can't be read back from the output, so it is bounded rather than growing with the index. */
+  static final double STREAMED_INDEX_SUFFIX_RAM_LIMIT_MB = 32;
+
   //public static boolean DEBUG = false;
   //public static boolean DEBUG2 = false;
 
@@ -401,7 +406,13 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
       return "BLOCK: prefix=" + brToString(prefix);
     }
 
-    public void compileIndex(List<PendingBlock> blocks, ByteBuffersDataOutput scratchBytes, IntsRefBuilder scratchIntsRef) throws IOException {
+    /**
+     * Compile the index of this block and its sub-blocks. If {@code indexOut}
+     * is not null, the bytes of the index are written to it as they are built,
+     * and its metadata must be saved with {@link FST#saveMetadata}.
+     */
+    public void compileIndex(List<PendingBlock> blocks, ByteBuffersDataOutput scratchBytes, IntsRefBuilder scratchIntsRef,
+        DataOutput indexOut) throws IOException {
 
       assert (isFloor && blocks.size() > 1) || (isFloor == false && blocks.size() == 1): "isFloor=" + isFloor + " blocks=" + blocks;
       assert this == blocks.get(0);
@@ -427,7 +438,10 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
       }
 
       final ByteSequenceOutputs outputs = ByteSequenceOutputs.getSingleton();
-      final FSTCompiler<BytesRef> fstCompiler = new FSTCompiler.Builder<>(FST.INPUT_TYPE.BYTE1, outputs).shouldShareNonSingletonNodes(false).build();
+      final FSTCompiler<BytesRef> fstCompiler = new FSTCompiler.Builder<>(FST.INPUT_TYPE.BYTE1, outputs)
+          .shouldShareNonSingletonNodes(false)
+          .suffixRAMLimitMB(indexOut == null ? Double.POSITIVE_INFINITY : STREAMED_INDEX_SUFFIX_RAM_LIMIT_MB)
+          .dataOutput(indexOut).build();
       //if (DEBUG) {
       //  System.out.println("  compile index for prefix=" + prefix);
       //}
@@ -630,7 +644,9 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
 
       assert firstBlock.isFloor || newBlocks.size() == 1;
 
-      firstBlock.compileIndex(newBlocks, scratchBytes, scratchIntsRef);
+      // the index of the root block is the index of the field, which can be
+      // written directly rather than being buffered until the field is finished
+      firstBlock.compileIndex(newBlocks, scratchBytes, scratchIntsRef, prefixLength == 0 ? indexOut : null);
 
       // Remove slice from the top of the pending stack, that we just wrote:
       pending.subList(pending.size()-count, pending.size()).clear();
@@ -962,6 +978,9 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
       if (numTerms > 0) {
         // if (DEBUG) System.out.println("BTTW: finish prefixStarts=" + Arrays.toString(prefixStarts));
 
+        // the FST of the root block is written to the index while it is built
+        final long indexStartFP = indexOut.getFilePointer();
+
         // Add empty term to force closing of all final blocks:
         pushTerm(new BytesRef());
 
@@ -993,9 +1012,9 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
         metaOut.writeVInt(docsSeen.cardinality());
         writeBytesRef(metaOut, new BytesRef(firstPendingTerm.termBytes));
         writeBytesRef(metaOut, new BytesRef(lastPendingTerm.termBytes));
-        metaOut.writeVLong(indexOut.getFilePointer());
-        // Write FST to index
-        root.index.save(metaOut, indexOut);
+        metaOut.writeVLong(indexStartFP);
+        // Write FST metadata, its bytes were written to the index already
+        root.index.saveMetadata(metaOut);
         //System.out.println("  write FST " + indexStartFP + " field=" + fieldInfo.name);
 
         /*
@@ -42,8 +42,10 @@ import org.apache.lucene.index.TermsEnum.SeekStatus;
 import org.apache.lucene.store.ChecksumIndexInput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.IntroSorter;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.compress.LZ4;
@@ -1006,12 +1008,12 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
 
     final SortedEntry entry;
     final IndexInput data;
-    final TermsEnum termsEnum;
+    final TermsDict termsDict;
 
     BaseSortedDocValues(SortedEntry entry, IndexInput data) throws IOException {
       this.entry = entry;
       this.data = data;
-      this.termsEnum = termsEnum();
+      this.termsDict = new TermsDict(entry, data);
     }
 
     @Override
@@ -1021,18 +1023,17 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
 
     @Override
     public BytesRef lookupOrd(int ord) throws IOException {
-      termsEnum.seekExact(ord);
-      return termsEnum.term();
+      return termsDict.lookupOrd(ord);
     }
 
     @Override
     public int lookupTerm(BytesRef key) throws IOException {
-      SeekStatus status = termsEnum.seekCeil(key);
+      SeekStatus status = termsDict.seekCeil(key);
       switch (status) {
         case FOUND:
-          return Math.toIntExact(termsEnum.ord());
+          return Math.toIntExact(termsDict.ord());
         default:
-          return Math.toIntExact(-1L - termsEnum.ord());
+          return Math.toIntExact(-1L - termsDict.ord());
       }
     }
 
@@ -1046,12 +1047,12 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
 
     final SortedSetEntry entry;
     final IndexInput data;
-    final TermsEnum termsEnum;
+    final TermsDict termsDict;
 
     BaseSortedSetDocValues(SortedSetEntry entry, IndexInput data) throws IOException {
       this.entry = entry;
       this.data = data;
-      this.termsEnum = termsEnum();
+      this.termsDict = new TermsDict(entry, data);
     }
 
     @Override
@@ -1061,18 +1062,56 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
 
     @Override
     public BytesRef lookupOrd(long ord) throws IOException {
-      termsEnum.seekExact(ord);
-      return termsEnum.term();
+      return termsDict.lookupOrd(ord);
+    }
+
+    @Override
+    public BytesRef[] lookupOrds(long[] ords) throws IOException {
+      // look up ords in increasing order so that every block is decoded at most once
+      final int[] order = new int[ords.length];
+      for (int i = 0; i < order.length; ++i) {
+        order[i] = i;
+      }
+      new IntroSorter() {
+        long pivot;
+
+        @Override
+        protected void swap(int i, int j) {
+          final int tmp = order[i];
+          order[i] = order[j];
+          order[j] = tmp;
+        }
+
+        @Override
+        protected int compare(int i, int j) {
+          return Long.compare(ords[order[i]], ords[order[j]]);
+        }
+
+        @Override
+        protected void setPivot(int i) {
+          pivot = ords[order[i]];
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+          return Long.compare(pivot, ords[order[j]]);
+        }
+      }.sort(0, order.length);
+      final BytesRef[] terms = new BytesRef[ords.length];
+      for (int i : order) {
+        terms[i] = BytesRef.deepCopyOf(termsDict.lookupOrd(ords[i]));
+      }
+      return terms;
     }
 
     @Override
     public long lookupTerm(BytesRef key) throws IOException {
-      SeekStatus status = termsEnum.seekCeil(key);
+      SeekStatus status = termsDict.seekCeil(key);
       switch (status) {
         case FOUND:
-          return termsEnum.ord();
+          return termsDict.ord();
         default:
-          return -1L - termsEnum.ord();
+          return -1L - termsDict.ord();
       }
     }
 
@@ -1093,6 +1132,14 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     final BytesRef term;
     long ord = -1;
 
+    // decoded terms of the block that was last accessed by lookupOrd, concatenated
+    long lookupBlock = -1;
+    int lookupCount; // number of leading terms of lookupBlock that have been decoded
+    long lookupFP; // file pointer of the first term of lookupBlock that has not been decoded
+    byte[] lookupBytes = BytesRef.EMPTY_BYTES;
+    final int[] lookupOffsets;
+    final BytesRef lookupTerm = new BytesRef();
+
     TermsDict(TermsDictEntry entry, IndexInput data) throws IOException {
       this.entry = entry;
       RandomAccessInput addressesSlice = data.randomAccessSlice(entry.termsAddressesOffset, entry.termsAddressesLength);
@@ -1103,6 +1150,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
       indexAddresses = DirectMonotonicReader.getInstance(entry.termsIndexAddressesMeta, indexAddressesSlice);
       indexBytes = data.slice("terms-index", entry.termsIndexOffset, entry.termsIndexLength);
       term = new BytesRef(entry.maxTermLength);
+      lookupOffsets = new int[(1 << entry.termsDictBlockShift) + 1];
     }
 
     @Override
@@ -1143,6 +1191,51 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
       } while (this.ord < ord);
     }
 
+    /**
+     * Returns the term at the given ord. Unlike {@link #seekExact(long)}, this keeps
+     * the decoded terms of the last accessed block, so that looking up ords of the
+     * same block, in any order, only decodes every term of the block once.
+     */
+    BytesRef lookupOrd(long ord) throws IOException {
+      if (ord < 0 || ord >= entry.termsDictSize) {
+        throw new IndexOutOfBoundsException();
+      }
+      final long block = ord >>> entry.termsDictBlockShift;
+      final int index = (int) (ord & blockMask);
+      if (block != lookupBlock) {
+        lookupBlock = block;
+        lookupCount = 0;
+        lookupFP = blockAddresses.get(block);
+      }
+      if (index >= lookupCount) {
+        decodeLookupBlock(index);
+      }
+      lookupTerm.bytes = lookupBytes;
+      lookupTerm.offset = lookupOffsets[index];
+      lookupTerm.length = lookupOffsets[index + 1] - lookupOffsets[index];
+      return lookupTerm;
+    }
+
+    /** Decodes terms of the current lookup block up to the given index, inclusive. */
+    private void decodeLookupBlock(int index) throws IOException {
+      bytes.seek(lookupFP);
+      this.ord = (lookupBlock << entry.termsDictBlockShift) + lookupCount - 1;
+      if (lookupCount > 0) {
+        // terms are prefix-compressed against the previous term
+        final int start = lookupOffsets[lookupCount - 1];
+        term.length = lookupOffsets[lookupCount] - start;
+        System.arraycopy(lookupBytes, start, term.bytes, 0, term.length);
+      }
+      while (lookupCount <= index) {
+        next();
+        final int start = lookupOffsets[lookupCount];
+        lookupBytes = ArrayUtil.grow(lookupBytes, start + term.length);
+        System.arraycopy(term.bytes, 0, lookupBytes, start, term.length);
+        lookupOffsets[++lookupCount] = start + term.length;
+      }
+      lookupFP = bytes.getFilePointer();
+    }
+
     private BytesRef getTermFromIndex(long index) throws IOException {
       assert index >= 0 && index <= (entry.termsDictSize - 1) >>> entry.termsDictIndexShift;
       final long start = indexAddresses.get(index);
@@ -24,9 +24,13 @@ import org.apache.lucene.util.packed.PackedInts;
 
 /**
  * Utility class to encode/decode increasing sequences of 128 integers.
+ * Dense sequences are encoded as a bit set.
  */
 public class ForDeltaUtil {
 
+  /** Maximum number of longs of a bit set, which is the size of a block with 32 bits per value. */
+  static final int MAX_BIT_SET_LONGS = 2 * Integer.SIZE;
+
   // IDENTITY_PLUS_ONE[i] == i+1
   private static final long[] IDENTITY_PLUS_ONE = new long[ForUtil.BLOCK_SIZE];
   static {
@@ -44,6 +48,7 @@ public class ForDeltaUtil {
   }
 
   private final ForUtil forUtil;
+  private final long[] bitSet = new long[MAX_BIT_SET_LONGS];
 
   ForDeltaUtil(ForUtil forUtil) {
     this.forUtil = forUtil;
@@ -52,19 +57,50 @@ public class ForDeltaUtil {
   /**
    * Encode deltas of a strictly monotonically increasing sequence of integers.
    * The provided {@code longs} are expected to be deltas between consecutive values.
+   * The sequence is encoded as a bit set, whose bit {@code i} is set if the
+   * prefix sum of the deltas contains {@code i}, when it doesn't take more space than packed
+   * deltas. This is signaled by a negative token which is minus the number of
+   * longs of the bit set.
    */
   void encodeDeltas(long[] longs, DataOutput out) throws IOException {
     if (longs[0] == 1 && PForUtil.allEqual(longs)) { // happens with very dense postings
       out.writeByte((byte) 0);
     } else {
       long or = 0;
+      long sum = 0;
       for (long l : longs) {
         or |= l;
+        sum += l;
       }
       assert or != 0;
       final int bitsPerValue = PackedInts.bitsRequired(or);
-      out.writeByte((byte) bitsPerValue);
-      forUtil.encode(longs, bitsPerValue, out);
+      // a bit set takes sum+1 bits, packed deltas take 16 bytes per bit per value
+      final long numBitSetLongs = sum / Long.SIZE + 1;
+      if (numBitSetLongs <= 2 * bitsPerValue) { // happens with dense postings
+        assert numBitSetLongs <= MAX_BIT_SET_LONGS;
+        out.writeByte((byte) -numBitSetLongs);
+        // words are read as little endian longs, so we need to reverse bytes
+        long word = 0;
+        long value = 0;
+        int wordIndex = 0;
+        for (long l : longs) {
+          value += l;
+          final int index = (int) (value >>> 6);
+          if (index != wordIndex) {
+            out.writeLong(Long.reverseBytes(word));
+            for (++wordIndex; wordIndex < index; ++wordIndex) {
+              out.writeLong(0L);
+            }
+            word = 0;
+          }
+          word |= 1L << value;
+        }
+        out.writeLong(Long.reverseBytes(word));
+        assert wordIndex == numBitSetLongs - 1;
+      } else {
+        out.writeByte((byte) bitsPerValue);
+        forUtil.encode(longs, bitsPerValue, out);
+      }
     }
   }
 
@@ -72,21 +108,62 @@ public class ForDeltaUtil {
    * Decode deltas, compute the prefix sum and add {@code base} to all decoded longs.
    */
   void decodeAndPrefixSum(DataInput in, long base, long[] longs) throws IOException {
-    final int bitsPerValue = Byte.toUnsignedInt(in.readByte());
-    if (bitsPerValue == 0) {
+    final int token = in.readByte();
+    if (token < 0) {
+      in.readLELongs(bitSet, 0, -token);
+      bitSetToLongs(bitSet, -token, base, longs);
+    } else if (token == 0) {
       prefixSumOfOnes(longs, base);
     } else {
-      forUtil.decodeAndPrefixSum(bitsPerValue, in, base, longs);
+      forUtil.decodeAndPrefixSum(token, in, base, longs);
+    }
+  }
+
+  /**
+   * Decode deltas like {@link #decodeAndPrefixSum(DataInput, long, long[])},
+   * unless they are encoded as a bit set. In that case, the bit set is read
+   * into {@code bitSet}, whose bit {@code i} is set if {@code base+i} is in
+   * the sequence, and its number of longs is returned. Otherwise this returns 0.
+   */
+  int decodeAndPrefixSumOrBitSet(DataInput in, long base, long[] longs, long[] bitSet) throws IOException {
+    final int token = in.readByte();
+    if (token < 0) {
+      in.readLELongs(bitSet, 0, -token);
+      return -token;
+    } else if (token == 0) {
+      prefixSumOfOnes(longs, base);
+    } else {
+      forUtil.decodeAndPrefixSum(token, in, base, longs);
+    }
+    return 0;
+  }
+
+  /**
+   * Expand the values of a bit set that has been read by
+   * {@link #decodeAndPrefixSumOrBitSet} into {@code longs}.
+   */
+  static void bitSetToLongs(long[] bitSet, int numLongs, long base, long[] longs) {
+    int upto = 0;
+    for (int i = 0; i < numLongs; ++i) {
+      final long wordBase = base + ((long) i << 6);
+      long word = bitSet[i];
+      while (word != 0) {
+        longs[upto++] = wordBase + Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+      }
     }
+    assert upto == ForUtil.BLOCK_SIZE;
   }
 
   /**
    * Skip a sequence of 128 longs.
    */
   void skip(DataInput in) throws IOException {
-    final int bitsPerValue = Byte.toUnsignedInt(in.readByte());
-    if (bitsPerValue != 0) {
-      in.skipBytes(forUtil.numBytes(bitsPerValue));
+    final int token = in.readByte();
+    if (token < 0) {
+      in.skipBytes(-token * Long.BYTES);
+    } else if (token != 0) {
+      in.skipBytes(forUtil.numBytes(token));
     }
   }
 
@@ -212,6 +212,9 @@ import org.apache.lucene.util.packed.PackedInts;
  *           separately encode as packed blocks.</li>
  *     </ol>
  *     If frequencies are not omitted, PackedFreqBlock will be generated without d-gap step.
+ *     Dense PackedDocDeltaBlocks are instead encoded as a bit set of the documents of the block,
+ *     relative to the last document of the previous block (or 0 for the first block), when the bit set is not larger
+ *     than the packed d-gaps.
  *   </li>
  *   <li>VIntBlock stores remaining d-gaps (along with frequencies when possible) with a format 
  *       that encodes DocDelta and Freq:
@@ -388,7 +391,9 @@ public final class Lucene84PostingsFormat extends PostingsFormat {
   final static int VERSION_START = 0;
   // Better compression of the terms dictionary in case most terms have a docFreq of 1
   final static int VERSION_COMPRESSED_TERMS_DICT_IDS = 1;
-  final static int VERSION_CURRENT = VERSION_COMPRESSED_TERMS_DICT_IDS;
+  // Dense blocks of doc deltas may be encoded as bit sets
+  final static int VERSION_DENSE_BLOCKS = 2;
+  final static int VERSION_CURRENT = VERSION_DENSE_BLOCKS;
 
   private final int minTermBlockSize;
   private final int maxTermBlockSize;
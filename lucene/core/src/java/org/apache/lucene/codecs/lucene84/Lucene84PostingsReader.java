@@ -293,6 +293,12 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
 
     private int docBufferUpto;
 
+    // docs of dense blocks are not expanded into docBuffer, but read from
+    // their bit set, whose bit i is set if docBitSetBase+i is in the block
+    private final long[] docBitSet = new long[ForDeltaUtil.MAX_BIT_SET_LONGS];
+    private int docBitSetLongs;                       // number of longs of docBitSet, 0 if the current block is not a bit set
+    private int docBitSetBase;
+
     private Lucene84SkipReader skipper;
     private boolean skipped;
 
@@ -372,6 +378,7 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
       blockUpto = 0;
       nextSkipDoc = BLOCK_SIZE - 1; // we won't skip if target is found in first block
       docBufferUpto = BLOCK_SIZE;
+      docBitSetLongs = 0;
       skipped = false;
       return this;
     }
@@ -420,8 +427,14 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
       final int left = docFreq - blockUpto;
       assert left >= 0;
 
+      docBitSetLongs = 0;
       if (left >= BLOCK_SIZE) {
-        forDeltaUtil.decodeAndPrefixSum(docIn, accum, docBuffer);
+        docBitSetLongs = forDeltaUtil.decodeAndPrefixSumOrBitSet(docIn, accum, docBuffer, docBitSet);
+        if (docBitSetLongs != 0) {
+          docBitSetBase = (int) accum;
+          final int lastIndex = ((docBitSetLongs - 1) << 6) + Long.SIZE - 1 - Long.numberOfLeadingZeros(docBitSet[docBitSetLongs - 1]);
+          docBuffer[BLOCK_SIZE - 1] = docBitSetBase + lastIndex;
+        }
 
         if (indexHasFreq) {
           if (needsFreq) {
@@ -454,11 +467,58 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
         refillDocs(); // we don't need to load freqBuffer for now (will be loaded later if necessary)
       }
 
-      doc = (int) docBuffer[docBufferUpto];
+      if (docBitSetLongs != 0) {
+        // the current block has a doc after the current one
+        int index = Math.max(0, doc + 1 - docBitSetBase);
+        int wordIndex = index >>> 6;
+        long word = docBitSet[wordIndex] >>> index;
+        if (word == 0) {
+          do {
+            word = docBitSet[++wordIndex];
+          } while (word == 0);
+          index = wordIndex << 6;
+        }
+        doc = docBitSetBase + index + Long.numberOfTrailingZeros(word);
+      } else {
+        doc = (int) docBuffer[docBufferUpto];
+      }
       docBufferUpto++;
       return doc;
     }
 
+    /**
+     * Advance to the first doc of the current bit set block that is greater
+     * than or equal to {@code target}, using the number of set bits before it
+     * as the position in the block.
+     */
+    private int advanceInBitSet(int target) {
+      int index = Math.max(0, target - docBitSetBase);
+      int wordIndex = index >>> 6;
+      if (wordIndex >= docBitSetLongs) {
+        docBufferUpto = BLOCK_SIZE;
+        return doc = NO_MORE_DOCS;
+      }
+      long word = docBitSet[wordIndex] >>> index;
+      if (word == 0) {
+        do {
+          if (++wordIndex == docBitSetLongs) {
+            docBufferUpto = BLOCK_SIZE;
+            return doc = NO_MORE_DOCS;
+          }
+          word = docBitSet[wordIndex];
+        } while (word == 0);
+        index = wordIndex << 6;
+      }
+      index += Long.numberOfTrailingZeros(word);
+
+      int rank = Long.bitCount(docBitSet[wordIndex] & ((1L << index) - 1));
+      for (int i = 0; i < wordIndex; ++i) {
+        rank += Long.bitCount(docBitSet[i]);
+      }
+      docBufferUpto = rank + 1;
+      return doc = docBitSetBase + index;
+    }
+
     @Override
     public int advance(int target) throws IOException {
       // current skip docID < docIDs generated from current buffer <= next skip docID
@@ -508,6 +568,10 @@ public final class Lucene84PostingsReader extends PostingsReaderBase {
         refillDocs();
       }
 
+      if (docBitSetLongs != 0) {
+        return advanceInBitSet(target);
+      }
+
       // Now scan... this is an inlined/pared down version
       // of nextDoc():
       long doc;
@@ -170,6 +170,8 @@ final class LatLonPointDistanceQuery extends Query {
               final DocIdSetIterator iterator = new BitSetIterator(result, cost[0]);
               return new ConstantScoreScorer(weight, score(), scoreMode, iterator);
             }
+            // the cost is derived from the estimated point count, reuse it rather than estimating again
+            result.setEstimatedValueCount((long) ((double) cost() * values.size() / values.getDocCount()));
             values.intersect(visitor);
             return new ConstantScoreScorer(weight, score(), scoreMode, result.build().iterator());
           }
@@ -254,6 +256,11 @@ final class LatLonPointDistanceQuery extends Query {
             adder.add(docID);
           }
 
+          @Override
+          public void visit(DocIdSetIterator iterator) throws IOException {
+            adder.add(iterator);
+          }
+
           @Override
           public void visit(int docID, byte[] packedValue) {
             if (matches(packedValue)) {
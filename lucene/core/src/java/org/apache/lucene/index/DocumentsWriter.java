@@ -133,15 +133,16 @@ final class DocumentsWriter implements Closeable, Accountable {
     this.config = config;
     this.infoStream = config.getInfoStream();
     this.deleteQueue = new DocumentsWriterDeleteQueue(infoStream);
+    final IndexingBufferRecycler bufferRecycler = config.getRecycleIndexingBuffers() ? new IndexingBufferRecycler(config) : null;
     this.perThreadPool = new DocumentsWriterPerThreadPool(() -> {
       final FieldInfos.Builder infos = new FieldInfos.Builder(globalFieldNumberMap);
       return new DocumentsWriterPerThread(indexCreatedVersionMajor,
           segmentNameSupplier.get(), directoryOrig,
           directory, config, deleteQueue, infos,
-          pendingNumDocs, enableTestPoints);
+          pendingNumDocs, enableTestPoints, bufferRecycler);
     });
     this.pendingNumDocs = pendingNumDocs;
-    flushControl = new DocumentsWriterFlushControl(this, config);
+    flushControl = new DocumentsWriterFlushControl(this, config, bufferRecycler);
     this.flushNotifications = flushNotifications;
   }
   
@@ -709,4 +710,13 @@ final class DocumentsWriter implements Closeable, Accountable {
   long getFlushingBytes() {
     return flushControl.getFlushingBytes();
   }
+
+  /**
+   * Returns the number of bytes held by indexing buffers that are waiting to be reused
+   *
+   * This is not included in the value returned by {@link #ramBytesUsed()}
+   */
+  long getRecycledBytes() {
+    return flushControl.getRecycledBytes();
+  }
 }
@@ -78,14 +78,16 @@ final class DocumentsWriterFlushControl implements Accountable, Closeable {
   private final DocumentsWriter documentsWriter;
   private final LiveIndexWriterConfig config;
   private final InfoStream infoStream;
+  private final IndexingBufferRecycler bufferRecycler;
 
-  DocumentsWriterFlushControl(DocumentsWriter documentsWriter, LiveIndexWriterConfig config) {
+  DocumentsWriterFlushControl(DocumentsWriter documentsWriter, LiveIndexWriterConfig config, IndexingBufferRecycler bufferRecycler) {
     this.infoStream = config.getInfoStream();
     this.perThreadPool = documentsWriter.perThreadPool;
     this.flushPolicy = config.getFlushPolicy();
     this.config = config;
     this.hardMaxBytesPerDWPT = config.getRAMPerThreadHardLimitMB() * 1024 * 1024;
     this.documentsWriter = documentsWriter;
+    this.bufferRecycler = bufferRecycler;
   }
 
   public synchronized long activeBytes() {
@@ -366,7 +368,7 @@ final class DocumentsWriterFlushControl implements Accountable, Closeable {
   @Override
   public String toString() {
     return "DocumentsWriterFlushControl [activeBytes=" + activeBytes
-        + ", flushBytes=" + flushBytes + "]";
+        + ", flushBytes=" + flushBytes + ", recycledBytes=" + getRecycledBytes() + "]";
   }
 
   DocumentsWriterPerThread nextPendingFlush() {
@@ -403,6 +405,9 @@ final class DocumentsWriterFlushControl implements Accountable, Closeable {
   public synchronized void close() {
     // set by DW to signal that we are closing. in this case we try to not stall any threads anymore etc.
     closed = true;
+    if (bufferRecycler != null) {
+      bufferRecycler.clear();
+    }
   }
 
   /**
@@ -424,6 +429,17 @@ final class DocumentsWriterFlushControl implements Accountable, Closeable {
     return documentsWriter.deleteQueue.ramBytesUsed();
   }
 
+  /**
+   * Returns the number of bytes held by indexing buffers that flushed or aborted
+   * {@link DocumentsWriterPerThread}s released for reuse. These bytes are not
+   * included in {@link #ramBytesUsed()} and don't count towards the RAM buffer
+   * that triggers flushes since they are handed out again before any new
+   * buffers are allocated.
+   */
+  long getRecycledBytes() {
+    return bufferRecycler == null ? 0 : bufferRecycler.ramBytesUsed();
+  }
+
   @Override
   public long ramBytesUsed() {
     // TODO: improve this to return more detailed info?
@@ -448,6 +448,12 @@ public class ExitableDirectoryReader extends FilterDirectoryReader {
       in.visit(docID);
     }
 
+    @Override
+    public void visit(DocIdSetIterator iterator) throws IOException {
+      checkAndThrow();
+      in.visit(iterator);
+    }
+
     @Override
     public void visit(int docID, byte[] packedValue) throws IOException {
       checkAndThrowWithSampling();
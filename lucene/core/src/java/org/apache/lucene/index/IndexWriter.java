@@ -783,6 +783,18 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
     return docWriter.getFlushingBytes();
   }
 
+  /**
+   * Returns the number of bytes held by indexing buffers of flushed segments
+   * that are waiting to be reused, which are not included in {@link #ramBytesUsed()}.
+   *
+   * @see IndexWriterConfig#setRecycleIndexingBuffers(boolean)
+   * @lucene.experimental
+   */
+  public final long getRecycledBytes() {
+    ensureOpen();
+    return docWriter.getRecycledBytes();
+  }
+
   final void writeSomeDocValuesUpdates() throws IOException {
     if (writeDocValuesLock.tryLock()) {
       try {
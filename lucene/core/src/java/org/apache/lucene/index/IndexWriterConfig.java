@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -334,6 +335,58 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return readerPooling;
   }
 
+  /**
+   * Expert: if set to <code>true</code>, the byte and int blocks that buffer
+   * postings and term vectors in RAM are handed back to {@link IndexWriter} once
+   * a segment is flushed and are reused by the segments that are indexed next,
+   * instead of being left to the garbage collector. This reduces GC pressure
+   * with large RAM buffers, at the cost of retaining up to
+   * {@link #getRAMBufferSizeMB()} of idle buffers between flushes, which are
+   * reported by {@link IndexWriter#getRecycledBytes()}.
+   *
+   * <p>Only takes effect when IndexWriter is first created.
+   *
+   * @lucene.experimental */
+  public IndexWriterConfig setRecycleIndexingBuffers(boolean recycleIndexingBuffers) {
+    this.recycleIndexingBuffers = recycleIndexingBuffers;
+    return this;
+  }
+
+  @Override
+  public boolean getRecycleIndexingBuffers() {
+    return recycleIndexingBuffers;
+  }
+
+  /**
+   * Expert: sets an {@link Executor} that analyzes the tokenized fields of a
+   * document concurrently. Each field is analyzed into a buffer on the executor,
+   * then the indexing thread inverts the buffered fields in document order, so
+   * the index is the same as with serial analysis. This reduces the latency of
+   * indexing documents with many large text fields, at the cost of buffering
+   * their tokens in RAM. The indexing thread analyzes fields itself when the
+   * executor did not get to them yet, so a busy executor never blocks indexing.
+   * The RAM used by buffered tokens is accounted for while the document is
+   * indexed, and once the buffered tokens of a document use more than the RAM
+   * buffer, its remaining fields are analyzed by the indexing thread without
+   * buffering.
+   *
+   * <p>The {@link Analyzer} must not rely on all fields of a document being
+   * analyzed by the same thread. The fields of each document are iterated
+   * twice, so documents must be {@link Iterable}s that can be iterated more
+   * than once and that return the same fields every time. The default is
+   * <code>null</code>, which analyzes all fields in the indexing thread.
+   *
+   * @lucene.experimental */
+  public IndexWriterConfig setAnalysisExecutor(Executor analysisExecutor) {
+    this.analysisExecutor = analysisExecutor;
+    return this;
+  }
+
+  @Override
+  public Executor getAnalysisExecutor() {
+    return analysisExecutor;
+  }
+
   /**
    * Expert: Controls when segments are flushed to disk during indexing.
    * The {@link FlushPolicy} initialized during {@link IndexWriter} instantiation and once initialized
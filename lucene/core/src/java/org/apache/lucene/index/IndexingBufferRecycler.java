@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IntBlockPool;
+
+/**
+ * Holds on to the byte and int blocks that {@link DocumentsWriterPerThread}s
+ * release once they are flushed or aborted, and hands them out again to the
+ * {@link ByteBlockPool} and {@link IntBlockPool} instances of subsequent
+ * {@link DocumentsWriterPerThread}s. With large RAM buffers this keeps the
+ * indexing buffers alive across flushes instead of turning the whole buffer
+ * into garbage on every flush.
+ * <p>
+ * The number of bytes held by this recycler is bounded by the configured
+ * {@link LiveIndexWriterConfig#getRAMBufferSizeMB() RAM buffer size}, or by
+ * {@link LiveIndexWriterConfig#getRAMPerThreadHardLimitMB()} if flushing by
+ * RAM is disabled. Blocks are zero-filled when they are recycled so that they
+ * can be used for byte and int slices right away.
+ * <p>
+ * This class is thread-safe.
+ */
+final class IndexingBufferRecycler implements Accountable {
+
+  private final LiveIndexWriterConfig config;
+  private final List<byte[]> freeByteBlocks = new ArrayList<>();
+  private final List<int[]> freeIntBlocks = new ArrayList<>();
+  private long bytesUsed;
+
+  IndexingBufferRecycler(LiveIndexWriterConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * Returns a new {@link ByteBlockPool.Allocator} that takes blocks from this
+   * recycler and tracks the blocks it hands out in the given counter.
+   */
+  ByteBlockPool.Allocator newByteBlockAllocator(Counter bytesUsed) {
+    return new RecyclingByteAllocator(this, bytesUsed);
+  }
+
+  /**
+   * Returns a new {@link IntBlockPool.Allocator} that takes blocks from this
+   * recycler and tracks the blocks it hands out in the given counter.
+   */
+  IntBlockPool.Allocator newIntBlockAllocator(Counter bytesUsed) {
+    return new RecyclingIntAllocator(this, bytesUsed);
+  }
+
+  private long maxBytesUsed() {
+    final double ramBufferSizeMB = config.getRAMBufferSizeMB();
+    if (ramBufferSizeMB != IndexWriterConfig.DISABLE_AUTO_FLUSH) {
+      return (long) (ramBufferSizeMB * 1024 * 1024);
+    }
+    return config.getRAMPerThreadHardLimitMB() * 1024L * 1024L;
+  }
+
+  /** Reserves room for up to {@code count} blocks of the given size and returns how many blocks can be kept. */
+  private synchronized int reserve(int count, int blockBytes) {
+    final long available = Math.max(0L, maxBytesUsed() - bytesUsed);
+    final int accepted = (int) Math.min(count, available / blockBytes);
+    bytesUsed += (long) accepted * blockBytes;
+    return accepted;
+  }
+
+  synchronized byte[] pollByteBlock() {
+    final int size = freeByteBlocks.size();
+    if (size == 0) {
+      return null;
+    }
+    bytesUsed -= ByteBlockPool.BYTE_BLOCK_SIZE;
+    return freeByteBlocks.remove(size - 1);
+  }
+
+  synchronized int[] pollIntBlock() {
+    final int size = freeIntBlocks.size();
+    if (size == 0) {
+      return null;
+    }
+    bytesUsed -= IntBlockPool.INT_BLOCK_SIZE * Integer.BYTES;
+    return freeIntBlocks.remove(size - 1);
+  }
+
+  void recycleByteBlocks(byte[][] blocks, int start, int end) {
+    final int accepted = reserve(end - start, ByteBlockPool.BYTE_BLOCK_SIZE);
+    if (accepted == 0) {
+      return;
+    }
+    // zero-fill outside of the lock, this is what the JVM would do for a freshly allocated block anyway
+    for (int i = start; i < start + accepted; i++) {
+      Arrays.fill(blocks[i], (byte) 0);
+    }
+    synchronized (this) {
+      freeByteBlocks.addAll(Arrays.asList(blocks).subList(start, start + accepted));
+    }
+  }
+
+  void recycleIntBlocks(int[][] blocks, int start, int end) {
+    final int accepted = reserve(end - start, IntBlockPool.INT_BLOCK_SIZE * Integer.BYTES);
+    if (accepted == 0) {
+      return;
+    }
+    for (int i = start; i < start + accepted; i++) {
+      Arrays.fill(blocks[i], 0);
+    }
+    synchronized (this) {
+      freeIntBlocks.addAll(Arrays.asList(blocks).subList(start, start + accepted));
+    }
+  }
+
+  /** Drops all recycled blocks. */
+  synchronized void clear() {
+    freeByteBlocks.clear();
+    freeIntBlocks.clear();
+    bytesUsed = 0;
+  }
+
+  /** Returns the number of bytes held by blocks that are currently waiting to be reused. */
+  @Override
+  public synchronized long ramBytesUsed() {
+    return bytesUsed;
+  }
+
+  private static final class RecyclingByteAllocator extends ByteBlockPool.Allocator {
+    private final IndexingBufferRecycler recycler;
+    private final Counter bytesUsed;
+
+    RecyclingByteAllocator(IndexingBufferRecycler recycler, Counter bytesUsed) {
+      super(ByteBlockPool.BYTE_BLOCK_SIZE);
+      this.recycler = recycler;
+      this.bytesUsed = bytesUsed;
+    }
+
+    @Override
+    public byte[] getByteBlock() {
+      bytesUsed.addAndGet(blockSize);
+      final byte[] b = recycler.pollByteBlock();
+      return b == null ? new byte[blockSize] : b;
+    }
+
+    @Override
+    public void recycleByteBlocks(byte[][] blocks, int start, int end) {
+      bytesUsed.addAndGet(-((end - start) * blockSize));
+      recycler.recycleByteBlocks(blocks, start, end);
+    }
+  }
+
+  private static final class RecyclingIntAllocator extends IntBlockPool.Allocator {
+    private final IndexingBufferRecycler recycler;
+    private final Counter bytesUsed;
+
+    RecyclingIntAllocator(IndexingBufferRecycler recycler, Counter bytesUsed) {
+      super(IntBlockPool.INT_BLOCK_SIZE);
+      this.recycler = recycler;
+      this.bytesUsed = bytesUsed;
+    }
+
+    @Override
+    public int[] getIntBlock() {
+      bytesUsed.addAndGet(blockSize * Integer.BYTES);
+      final int[] b = recycler.pollIntBlock();
+      return b == null ? new int[blockSize] : b;
+    }
+
+    @Override
+    public void recycleIntBlocks(int[][] blocks, int start, int end) {
+      bytesUsed.addAndGet(-((end - start) * (blockSize * Integer.BYTES)));
+      recycler.recycleIntBlocks(blocks, start, end);
+    }
+  }
+}
@@ -23,13 +23,20 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.codecs.DocValuesConsumer;
 import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.VectorFormat;
@@ -49,6 +56,8 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.ByteBlockPool;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefHash.MaxBytesLengthExceededException;
@@ -63,6 +72,8 @@ import org.apache.lucene.util.RamUsageEstimator;
 final class IndexingChain implements Accountable {
 
   final Counter bytesUsed = Counter.newCounter();
+  // bytes of tokens of the current document that have been buffered by the analysis executor
+  private final AtomicLong bufferedAnalysisBytes = new AtomicLong();
   final FieldInfos.Builder fieldInfos;
 
   // Writes postings and term vectors:
@@ -91,10 +102,16 @@ final class IndexingChain implements Accountable {
   private boolean hasHitAbortingException;
 
   IndexingChain(int indexCreatedVersionMajor, SegmentInfo segmentInfo, Directory directory, FieldInfos.Builder fieldInfos, LiveIndexWriterConfig indexWriterConfig,
-                Consumer<Throwable> abortingExceptionConsumer) {
+                IndexingBufferRecycler bufferRecycler, Consumer<Throwable> abortingExceptionConsumer) {
     this.indexCreatedVersionMajor = indexCreatedVersionMajor;
-    byteBlockAllocator = new ByteBlockPool.DirectTrackingAllocator(bytesUsed);
-    IntBlockPool.Allocator intBlockAllocator = new IntBlockAllocator(bytesUsed);
+    final IntBlockPool.Allocator intBlockAllocator;
+    if (bufferRecycler == null) {
+      byteBlockAllocator = new ByteBlockPool.DirectTrackingAllocator(bytesUsed);
+      intBlockAllocator = new IntBlockAllocator(bytesUsed);
+    } else {
+      byteBlockAllocator = bufferRecycler.newByteBlockAllocator(bytesUsed);
+      intBlockAllocator = bufferRecycler.newIntBlockAllocator(bytesUsed);
+    }
     this.indexWriterConfig = indexWriterConfig;
     assert segmentInfo.getIndexSort() == indexWriterConfig.getIndexSort();
     this.fieldInfos = fieldInfos;
@@ -269,6 +286,8 @@ final class IndexingChain implements Accountable {
       }
       termsHash.flush(fieldsToFlush, state, sortMap, normsMergeInstance);
     }
+    // postings are written: hand the buffered blocks back to the allocator so that they can be reused
+    termsHash.reset();
     if (infoStream.isEnabled("IW")) {
       infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write postings and finish vectors");
     }
@@ -530,12 +549,28 @@ final class IndexingChain implements Accountable {
 
     termsHash.startDocument();
 
+    // Non-null if fields are analyzed concurrently, with one entry per field
+    // of the document, which is null for fields that are not analyzed:
+    final FieldAnalysis[] analyses = startFieldAnalyses(document);
+
     startStoredFields(docID);
     try {
+      int fieldUpto = 0;
       for (IndexableField field : document) {
-        fieldCount = processField(docID, field, fieldGen, fieldCount);
+        FieldAnalysis analysis = analyses == null || fieldUpto >= analyses.length ? null : analyses[fieldUpto];
+        fieldUpto++;
+        fieldCount = processField(docID, field, analysis, fieldGen, fieldCount);
       }
     } finally {
+      if (analyses != null) {
+        // we must not return while another thread may still read the fields of this document:
+        for (FieldAnalysis analysis : analyses) {
+          if (analysis != null) {
+            analysis.cancel();
+          }
+        }
+        bufferedAnalysisBytes.set(0);
+      }
       if (hasHitAbortingException == false) {
         // Finish each indexed field name seen in the document:
         for (int i=0;i<fieldCount;i++) {
@@ -555,7 +590,56 @@ final class IndexingChain implements Accountable {
     }
   }
 
-  private int processField(int docID, IndexableField field, long fieldGen, int fieldCount) throws IOException {
+  /**
+   * Submits the analysis of the tokenized fields of the document to the
+   * configured analysis executor, or returns null if fields should be analyzed
+   * by the indexing thread because there is no executor or fewer than two such
+   * fields. The executor stops starting new analyses once the buffered tokens
+   * of the document use more than the RAM buffer, the remaining fields are
+   * then analyzed by the indexing thread without buffering.
+   */
+  private FieldAnalysis[] startFieldAnalyses(Iterable<? extends IndexableField> document) {
+    final Executor executor = indexWriterConfig.getAnalysisExecutor();
+    final Analyzer analyzer = indexWriterConfig.getAnalyzer();
+    if (executor == null || analyzer == null) {
+      return null;
+    }
+    final long maxBufferedBytes = maxBufferedAnalysisBytes();
+    List<FieldAnalysis> analyses = new ArrayList<>();
+    int numAnalyzed = 0;
+    for (IndexableField field : document) {
+      IndexableFieldType fieldType = field.fieldType();
+      if (fieldType.indexOptions() != null && fieldType.indexOptions() != IndexOptions.NONE && fieldType.tokenized()) {
+        analyses.add(new FieldAnalysis(field, analyzer, bufferedAnalysisBytes, maxBufferedBytes));
+        numAnalyzed++;
+      } else {
+        analyses.add(null);
+      }
+    }
+    if (numAnalyzed < 2) {
+      return null;
+    }
+    for (FieldAnalysis analysis : analyses) {
+      if (analysis != null) {
+        try {
+          executor.execute(analysis);
+        } catch (RejectedExecutionException e) {
+          // the indexing thread will analyze this field
+        }
+      }
+    }
+    return analyses.toArray(new FieldAnalysis[0]);
+  }
+
+  private long maxBufferedAnalysisBytes() {
+    final double ramBufferSizeMB = indexWriterConfig.getRAMBufferSizeMB();
+    if (ramBufferSizeMB != IndexWriterConfig.DISABLE_AUTO_FLUSH) {
+      return (long) (ramBufferSizeMB * 1024 * 1024);
+    }
+    return indexWriterConfig.getRAMPerThreadHardLimitMB() * 1024L * 1024L;
+  }
+
+  private int processField(int docID, IndexableField field, FieldAnalysis analysis, long fieldGen, int fieldCount) throws IOException {
     String fieldName = field.name();
     IndexableFieldType fieldType = field.fieldType();
 
@@ -569,7 +653,12 @@ final class IndexingChain implements Accountable {
     if (fieldType.indexOptions() != IndexOptions.NONE) {
       fp = getOrAddField(fieldName, fieldType, true);
       boolean first = fp.fieldGen != fieldGen;
-      fp.invert(docID, field, first);
+      // if no other thread started to analyze this field yet, we analyze it ourselves without buffering:
+      BufferedTokenStream bufferedStream = analysis == null || analysis.claim() ? null : analysis.await();
+      fp.invert(docID, field, first, bufferedStream);
+      if (bufferedStream != null) {
+        bufferedAnalysisBytes.addAndGet(-bufferedStream.ramBytesUsed);
+      }
 
       if (first) {
         fields[fieldCount++] = fp;
@@ -868,7 +957,7 @@ final class IndexingChain implements Accountable {
 
   @Override
   public long ramBytesUsed() {
-    return bytesUsed.get() + storedFieldsConsumer.accountable.ramBytesUsed()
+    return bytesUsed.get() + bufferedAnalysisBytes.get() + storedFieldsConsumer.accountable.ramBytesUsed()
         + termVectorsWriter.accountable.ramBytesUsed();
   }
 
@@ -960,8 +1049,10 @@ final class IndexingChain implements Accountable {
 
     /** Inverts one field for one document; first is true
      *  if this is the first time we are seeing this field
-     *  name in this document. */
-    public void invert(int docID, IndexableField field, boolean first) throws IOException {
+     *  name in this document. bufferedStream holds the already
+     *  analyzed tokens of the field, or is null if the field
+     *  should be analyzed now. */
+    public void invert(int docID, IndexableField field, boolean first, TokenStream bufferedStream) throws IOException {
       if (first) {
         // First time we're seeing this field (indexed) in
         // this document:
@@ -985,7 +1076,7 @@ final class IndexingChain implements Accountable {
        * but rather a finally that takes note of the problem.
        */
       boolean succeededInProcessingField = false;
-      try (TokenStream stream = tokenStream = field.tokenStream(analyzer, tokenStream)) {
+      try (TokenStream stream = bufferedStream != null ? bufferedStream : (tokenStream = field.tokenStream(analyzer, tokenStream))) {
         // reset the TokenStream to the first token
         stream.reset();
         invertState.setAttributeSource(stream);
@@ -1095,6 +1186,167 @@ final class IndexingChain implements Accountable {
     return null;
   }
 
+  /**
+   * Analysis of one field of a document by the analysis executor. Whichever of
+   * the executor and the indexing thread claims it first analyzes the field.
+   * The executor leaves the field to the indexing thread if the buffered
+   * tokens of the document already use {@code maxBufferedBytes}.
+   */
+  private static final class FieldAnalysis implements Runnable {
+    private final IndexableField field;
+    private final Analyzer analyzer;
+    private final AtomicLong bufferedBytes;
+    private final long maxBufferedBytes;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private BufferedTokenStream stream;
+    private Throwable failure;
+
+    FieldAnalysis(IndexableField field, Analyzer analyzer, AtomicLong bufferedBytes, long maxBufferedBytes) {
+      this.field = field;
+      this.analyzer = analyzer;
+      this.bufferedBytes = bufferedBytes;
+      this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /** Returns true if the caller should analyze the field, false if the executor already started to. */
+    boolean claim() {
+      if (claimed.compareAndSet(false, true)) {
+        done.countDown();
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void run() {
+      if (bufferedBytes.get() >= maxBufferedBytes) {
+        // too many buffered tokens already, the indexing thread will analyze this field inline
+        return;
+      }
+      if (claimed.compareAndSet(false, true)) {
+        try {
+          stream = BufferedTokenStream.analyze(field, analyzer, bufferedBytes);
+        } catch (Throwable t) {
+          failure = t;
+        } finally {
+          done.countDown();
+        }
+      }
+    }
+
+    /** Waits for the executor to analyze the field, and returns the buffered tokens or rethrows the analysis exception. */
+    BufferedTokenStream await() throws IOException {
+      awaitUninterruptibly();
+      if (failure != null) {
+        throw IOUtils.rethrowAlways(failure);
+      }
+      return stream;
+    }
+
+    /** Prevents the executor from starting to analyze the field, or waits for it to be done. */
+    void cancel() {
+      if (claim() == false) {
+        awaitUninterruptibly();
+      }
+      stream = null;
+    }
+
+    private void awaitUninterruptibly() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Tokens of a field that were analyzed by another thread. Attributes are
+   * cloned, since the analysis components that produced them may be reused to
+   * analyze other fields in the meantime.
+   */
+  private static final class BufferedTokenStream extends TokenStream {
+    private static final ClassValue<Long> SHALLOW_SIZES = new ClassValue<>() {
+      @Override
+      protected Long computeValue(Class<?> clazz) {
+        return RamUsageEstimator.shallowSizeOfInstance(clazz);
+      }
+    };
+
+    private final List<State> tokens;
+    private final State endState;
+    /** estimated size of the captured states */
+    final long ramBytesUsed;
+    private int upto;
+
+    private BufferedTokenStream(AttributeSource attributes, List<State> tokens, State endState, long ramBytesUsed) {
+      super(attributes);
+      this.tokens = tokens;
+      this.endState = endState;
+      this.ramBytesUsed = ramBytesUsed;
+    }
+
+    /** Analyzes the field and adds the estimated size of the buffered tokens to {@code bufferedBytes} as it goes. */
+    static BufferedTokenStream analyze(IndexableField field, Analyzer analyzer, AtomicLong bufferedBytes) throws IOException {
+      try (TokenStream stream = field.tokenStream(analyzer, null)) {
+        // every captured state holds a clone of each attribute
+        long bytesPerState = 0;
+        for (Iterator<AttributeImpl> it = stream.getAttributeImplsIterator(); it.hasNext(); ) {
+          bytesPerState += SHALLOW_SIZES.get(State.class) + SHALLOW_SIZES.get(it.next().getClass());
+        }
+        final CharTermAttribute termAtt = stream.hasAttribute(CharTermAttribute.class) ? stream.getAttribute(CharTermAttribute.class) : null;
+        List<State> tokens = new ArrayList<>();
+        long ramBytesUsed = 0;
+        stream.reset();
+        while (stream.incrementToken()) {
+          tokens.add(stream.captureState());
+          long bytes = bytesPerState + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+          if (termAtt != null) {
+            bytes += RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) Character.BYTES * termAtt.length());
+          }
+          ramBytesUsed += bytes;
+          bufferedBytes.addAndGet(bytes);
+        }
+        stream.end();
+        // end state
+        ramBytesUsed += bytesPerState;
+        bufferedBytes.addAndGet(bytesPerState);
+        return new BufferedTokenStream(stream.cloneAttributes(), tokens, stream.captureState(), ramBytesUsed);
+      }
+    }
+
+    @Override
+    public boolean incrementToken() {
+      if (upto == tokens.size()) {
+        return false;
+      }
+      restoreState(tokens.get(upto));
+      // release tokens as we go
+      tokens.set(upto++, null);
+      return true;
+    }
+
+    @Override
+    public void end() {
+      restoreState(endState);
+    }
+
+    @Override
+    public void reset() {
+      if (upto != 0) {
+        throw new IllegalStateException("buffered tokens can only be consumed once");
+      }
+    }
+  }
+
   private static class IntBlockAllocator extends IntBlockPool.Allocator {
     private final Counter bytesUsed;
 
@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
@@ -78,6 +79,12 @@ public class LiveIndexWriterConfig {
   /** True if readers should be pooled. */
   protected volatile boolean readerPooling;
 
+  /** True if indexing buffers of flushed segments should be reused. */
+  protected volatile boolean recycleIndexingBuffers;
+
+  /** Executor that analyzes the fields of a document concurrently, or null. */
+  protected volatile Executor analysisExecutor;
+
   /** {@link FlushPolicy} to control when segments are
    *  flushed. */
   protected volatile FlushPolicy flushPolicy;
@@ -347,6 +354,27 @@ public class LiveIndexWriterConfig {
     return readerPooling;
   }
 
+  /**
+   * Returns {@code true} if the byte and int blocks that buffer postings and
+   * term vectors in RAM are reused across flushed segments.
+   *
+   * @see IndexWriterConfig#setRecycleIndexingBuffers(boolean)
+   */
+  public boolean getRecycleIndexingBuffers() {
+    return recycleIndexingBuffers;
+  }
+
+  /**
+   * Returns the {@link Executor} that analyzes the fields of a document
+   * concurrently, or {@code null} if fields are analyzed by the indexing
+   * thread.
+   *
+   * @see IndexWriterConfig#setAnalysisExecutor(Executor)
+   */
+  public Executor getAnalysisExecutor() {
+    return analysisExecutor;
+  }
+
   /**
    * Returns the max amount of memory each {@link DocumentsWriterPerThread} can
    * consume until forcefully flushed.
@@ -477,6 +505,8 @@ public class LiveIndexWriterConfig {
     sb.append("infoStream=").append(getInfoStream().getClass().getName()).append("\n");
     sb.append("mergePolicy=").append(getMergePolicy()).append("\n");
     sb.append("readerPooling=").append(getReaderPooling()).append("\n");
+    sb.append("recycleIndexingBuffers=").append(getRecycleIndexingBuffers()).append("\n");
+    sb.append("analysisExecutor=").append(getAnalysisExecutor()).append("\n");
     sb.append("perThreadHardLimitMB=").append(getRAMPerThreadHardLimitMB()).append("\n");
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
@@ -22,6 +22,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
 
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
@@ -31,8 +36,10 @@ import org.apache.lucene.util.InPlaceMergeSorter;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.PriorityQueue;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util.packed.PackedInts;
 import org.apache.lucene.util.packed.PackedLongValues;
+import org.apache.lucene.util.packed.PagedMutable;
 
 /** Maps per-segment ordinals to/from global ordinal space, using a compact packed-ints representation.
  *
@@ -59,6 +66,11 @@ public class OrdinalMap implements Accountable {
       currentTerm = termsEnum.next();
       return currentTerm;
     }
+
+    public BytesRef seekCeil(BytesRef text) throws IOException {
+      currentTerm = termsEnum.seekCeil(text) == TermsEnum.SeekStatus.END ? null : termsEnum.term();
+      return currentTerm;
+    }
   }
 
   private static class SegmentMap implements Accountable {
@@ -117,6 +129,83 @@ public class OrdinalMap implements Accountable {
     }
   }
 
+  /**
+   * Accumulates the mappings of a range of global ordinals while terms are
+   * merge-sorted. Segments are identified by their index in the
+   * {@link SegmentMap}.
+   */
+  private static class Mappings {
+    // globalOrd -> (globalOrd - segmentOrd) where segmentOrd is the the ordinal in the first segment that contains this term
+    final PackedLongValues.Builder globalOrdDeltas;
+    // globalOrd -> first segment container
+    final PackedLongValues.Builder firstSegments;
+    long firstSegmentBits;
+    // for every segment, segmentOrd -> (globalOrd - segmentOrd)
+    final PackedLongValues.Builder[] ordDeltas;
+    final long[] ordDeltaBits;
+    // for every segment, the next segment ord to map
+    final long[] segmentOrds;
+    // number of global ordinals
+    long valueCount;
+
+    Mappings(int numSegments, float acceptableOverheadRatio) {
+      // even though we accept an overhead ratio, we keep these ones with COMPACT
+      // since they are only used to resolve values given a global ord, which is
+      // slow anyway
+      globalOrdDeltas = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+      firstSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+      ordDeltas = new PackedLongValues.Builder[numSegments];
+      for (int i = 0; i < ordDeltas.length; i++) {
+        ordDeltas[i] = PackedLongValues.monotonicBuilder(acceptableOverheadRatio);
+      }
+      ordDeltaBits = new long[numSegments];
+      segmentOrds = new long[numSegments];
+    }
+
+    /** Records that the term of the given global ordinal is first found in {@code segmentIndex} at {@code segmentOrd}. */
+    void addGlobalOrd(int segmentIndex, long segmentOrd) {
+      firstSegments.add(segmentIndex);
+      firstSegmentBits |= segmentIndex;
+      globalOrdDeltas.add(valueCount - segmentOrd);
+      valueCount++;
+    }
+
+    /** Records the delta between the next ordinal of {@code segmentIndex} and its global ordinal. */
+    void addSegmentOrd(int segmentIndex, long delta) {
+      ordDeltas[segmentIndex].add(delta);
+      ordDeltaBits[segmentIndex] |= delta;
+      segmentOrds[segmentIndex]++;
+    }
+
+    /**
+     * Appends the global ordinals of {@code next}, which are numbered from 0,
+     * after the ones of this instance.
+     */
+    void appendGlobalOrds(Mappings next) {
+      final long offset = valueCount;
+      final PackedLongValues.Iterator firstSegmentsIt = next.firstSegments.build().iterator();
+      final PackedLongValues.Iterator globalOrdDeltasIt = next.globalOrdDeltas.build().iterator();
+      for (long i = 0; i < next.valueCount; ++i) {
+        firstSegments.add(firstSegmentsIt.next());
+        globalOrdDeltas.add(globalOrdDeltasIt.next() + offset);
+      }
+      firstSegmentBits |= next.firstSegmentBits;
+      valueCount += next.valueCount;
+    }
+
+    /**
+     * Appends the ordinals of a segment from {@code next}, shifting their
+     * global ordinals by {@code offset}. Different segments may be appended
+     * concurrently.
+     */
+    void appendSegmentOrds(int segmentIndex, Mappings next, long offset) {
+      for (PackedLongValues.Iterator it = next.ordDeltas[segmentIndex].build().iterator(); it.hasNext(); ) {
+        addSegmentOrd(segmentIndex, it.next() + offset);
+      }
+      assert segmentOrds[segmentIndex] == next.segmentOrds[segmentIndex];
+    }
+  }
+
   /**
    * Create an ordinal map that uses the number of unique values of each
    * {@link SortedDocValues} instance as a weight.
@@ -165,44 +254,251 @@ public class OrdinalMap implements Accountable {
 
     // enums are not sorted, so let's sort to save memory
     final SegmentMap segmentMap = new SegmentMap(weights);
-    return new OrdinalMap(owner, subs, segmentMap, acceptableOverheadRatio);
+    final Mappings mappings = new Mappings(subs.length, acceptableOverheadRatio);
+    final TermsEnumIndex[] indexes = new TermsEnumIndex[subs.length];
+    for (int i = 0; i < subs.length; i++) {
+      indexes[i] = new TermsEnumIndex(subs[segmentMap.newToOld(i)], i);
+      indexes[i].next();
+    }
+    merge(indexes, null, mappings);
+    return new OrdinalMap(owner, segmentMap, mappings, acceptableOverheadRatio);
   }
 
-  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OrdinalMap.class);
+  /**
+   * Create an ordinal map for the {@link SortedDocValues} or {@link SortedSetDocValues}
+   * of {@code field} in the given leaves, like {@link #build(IndexReader.CacheKey, SortedSetDocValues[], float)},
+   * but split the work across threads of the given executor. The term space
+   * is split into ranges that have about the same number of terms in the
+   * segment that has the most unique values, and the terms of every range
+   * are merge-sorted by a separate task, which pulls its own doc values from
+   * the leaves. The mappings of all ranges are then concatenated. Fields that
+   * have few unique values are built by the current thread.
+   */
+  public static OrdinalMap build(IndexReader.CacheKey owner, List<LeafReaderContext> leaves, String field,
+                                 float acceptableOverheadRatio, Executor executor) throws IOException {
+    final SortedSetDocValues[] values = new SortedSetDocValues[leaves.size()];
+    final long[] weights = new long[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = DocValues.getSortedSet(leaves.get(i).reader(), field);
+      weights[i] = values[i].getValueCount();
+    }
+    final SegmentMap segmentMap = new SegmentMap(weights);
+    final int numPartitions = values.length == 0 ? 1
+        : (int) Math.min(MAX_PARTITIONS, Math.max(1, weights[segmentMap.newToOld(0)] / MIN_PARTITION_SIZE));
+    if (executor == null || numPartitions == 1) {
+      return build(owner, values, acceptableOverheadRatio);
+    }
 
-  /** Cache key of whoever asked for this awful thing */
-  public final IndexReader.CacheKey owner;
-  // number of global ordinals
-  final long valueCount;
-  // globalOrd -> (globalOrd - segmentOrd) where segmentOrd is the the ordinal in the first segment that contains this term
-  final LongValues globalOrdDeltas;
-  // globalOrd -> first segment container
-  final LongValues firstSegments;
-  // for every segment, segmentOrd -> globalOrd
-  final LongValues segmentToGlobalOrds[];
-  // the map from/to segment ids
-  final SegmentMap segmentMap;
-  // ram usage
-  final long ramBytesUsed;
-    
-  OrdinalMap(IndexReader.CacheKey owner, TermsEnum subs[], SegmentMap segmentMap, float acceptableOverheadRatio) throws IOException {
-    // create the ordinal mappings by pulling a termsenum over each sub's 
-    // unique terms, and walking a multitermsenum over those
-    this.owner = owner;
-    this.segmentMap = segmentMap;
-    // even though we accept an overhead ratio, we keep these ones with COMPACT
-    // since they are only used to resolve values given a global ord, which is
-    // slow anyway
-    PackedLongValues.Builder globalOrdDeltas = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
-    PackedLongValues.Builder firstSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
-    long firstSegmentBits = 0L;
-    final PackedLongValues.Builder[] ordDeltas = new PackedLongValues.Builder[subs.length];
-    for (int i = 0; i < ordDeltas.length; i++) {
-      ordDeltas[i] = PackedLongValues.monotonicBuilder(acceptableOverheadRatio);
-    }
-    long[] ordDeltaBits = new long[subs.length];
-    long[] segmentOrds = new long[subs.length];
+    // split terms into ranges using terms of the largest segment as boundaries
+    final BytesRef[] bounds = new BytesRef[numPartitions + 1];
+    final TermsEnum largest = values[segmentMap.newToOld(0)].termsEnum();
+    for (int i = 1; i < numPartitions; ++i) {
+      largest.seekExact(weights[segmentMap.newToOld(0)] * i / numPartitions);
+      bounds[i] = BytesRef.deepCopyOf(largest.term());
+    }
+
+    final List<FutureTask<Mappings>> tasks = new ArrayList<>();
+    for (int i = 0; i < numPartitions; ++i) {
+      final BytesRef lowerBound = bounds[i];
+      final BytesRef upperBound = bounds[i + 1];
+      final FutureTask<Mappings> task = new FutureTask<>(() -> {
+        final Mappings mappings = new Mappings(values.length, acceptableOverheadRatio);
+        final TermsEnumIndex[] indexes = new TermsEnumIndex[values.length];
+        for (int j = 0; j < values.length; ++j) {
+          // doc values instances may not be used by multiple threads
+          final SortedSetDocValues sub = DocValues.getSortedSet(leaves.get(segmentMap.newToOld(j)).reader(), field);
+          indexes[j] = new TermsEnumIndex(sub.termsEnum(), j);
+          if (lowerBound == null) {
+            indexes[j].next();
+          } else if (indexes[j].seekCeil(lowerBound) == null) {
+            mappings.segmentOrds[j] = sub.getValueCount();
+          } else {
+            mappings.segmentOrds[j] = indexes[j].termsEnum.ord();
+          }
+        }
+        merge(indexes, upperBound, mappings);
+        return mappings;
+      });
+      tasks.add(task);
+    }
+
+    final List<Mappings> partitions = runAll(tasks, executor);
+
+    // concatenate the mappings of all ranges, every segment independently
+    final Mappings mappings = new Mappings(values.length, acceptableOverheadRatio);
+    final long[] offsets = new long[numPartitions];
+    for (int i = 1; i < numPartitions; ++i) {
+      offsets[i] = offsets[i - 1] + partitions.get(i - 1).valueCount;
+    }
+    final List<FutureTask<Void>> concatTasks = new ArrayList<>();
+    concatTasks.add(new FutureTask<>(() -> {
+      for (Mappings partition : partitions) {
+        mappings.appendGlobalOrds(partition);
+      }
+      return null;
+    }));
+    for (int i = 0; i < values.length; ++i) {
+      final int segmentIndex = i;
+      concatTasks.add(new FutureTask<>(() -> {
+        for (int j = 0; j < numPartitions; ++j) {
+          mappings.appendSegmentOrds(segmentIndex, partitions.get(j), offsets[j]);
+        }
+        return null;
+      }));
+    }
+    runAll(concatTasks, executor);
+    return new OrdinalMap(owner, segmentMap, mappings, acceptableOverheadRatio);
+  }
+
+  /**
+   * Submits {@code tasks} to {@code executor} and returns their results. Tasks
+   * that the executor rejects or has not started yet are run by the current
+   * thread, which may itself be a thread of the executor.
+   */
+  private static <T> List<T> runAll(List<FutureTask<T>> tasks, Executor executor) throws IOException {
+    for (FutureTask<T> task : tasks) {
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        // run by the current thread below
+      }
+    }
+    final List<T> results = new ArrayList<>(tasks.size());
+    for (FutureTask<T> task : tasks) {
+      // does nothing if the task has already been started by the executor
+      task.run();
+      try {
+        results.add(task.get());
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new RuntimeException(e.getCause());
+      }
+    }
+    return results;
+  }
 
+  /**
+   * Create an ordinal map like {@link #build(IndexReader.CacheKey, SortedDocValues[], float)}
+   * by updating the ordinal map of a previous view of the index.
+   * @see #build(IndexReader.CacheKey, SortedSetDocValues[], float, OrdinalMap, int[])
+   */
+  public static OrdinalMap build(IndexReader.CacheKey owner, SortedDocValues[] values, float acceptableOverheadRatio,
+                                 OrdinalMap previous, int[] previousSegments) throws IOException {
+    return build(owner, singletons(values), acceptableOverheadRatio, previous, previousSegments);
+  }
+
+  /**
+   * Create an ordinal map like {@link #build(IndexReader.CacheKey, SortedSetDocValues[], float)}
+   * by updating {@code previous}, the ordinal map of a previous view of the
+   * index. This is typically useful after a near-real-time reopen that only
+   * added segments: rather than merge-sorting the terms of all segments, the
+   * terms of the new segments are merged with the global terms of the previous
+   * map, and the mappings of the segments of the previous map are remapped
+   * without comparing terms.
+   * <p>
+   * {@code previousSegments[i]} is the index in {@code values} of the segment
+   * that had index {@code i} when {@code previous} was built, or {@code -1} if
+   * this segment is not part of {@code values} anymore, e.g. because it has
+   * been merged away. Such segments may have terms that no other segment has,
+   * so this falls back to a full build if any segment of the previous map is
+   * missing. The doc values of segments that are in both views must be the same.
+   */
+  public static OrdinalMap build(IndexReader.CacheKey owner, SortedSetDocValues[] values, float acceptableOverheadRatio,
+                                 OrdinalMap previous, int[] previousSegments) throws IOException {
+    if (previousSegments.length != previous.segmentToGlobalOrds.length) {
+      throw new IllegalArgumentException("previousSegments must have one entry per segment of the previous ordinal map");
+    }
+    final int[] newToPrevious = new int[values.length];
+    Arrays.fill(newToPrevious, -1);
+    for (int i = 0; i < previousSegments.length; ++i) {
+      if (previousSegments[i] == -1) {
+        return build(owner, values, acceptableOverheadRatio);
+      }
+      if (newToPrevious[previousSegments[i]] != -1) {
+        throw new IllegalArgumentException("segment " + previousSegments[i] + " is mapped twice");
+      }
+      newToPrevious[previousSegments[i]] = i;
+    }
+
+    // merge the global terms of the previous map with the terms of the new segments
+    final int[] newSegments = IntStream.range(0, values.length).filter(i -> newToPrevious[i] == -1).toArray();
+    final TermsEnum[] subs = new TermsEnum[1 + newSegments.length];
+    final long[] subWeights = new long[subs.length];
+    subs[0] = new GlobalTermsEnum(previous, previousSegments, values);
+    subWeights[0] = previous.getValueCount();
+    for (int i = 0; i < newSegments.length; ++i) {
+      subs[1 + i] = values[newSegments[i]].termsEnum();
+      subWeights[1 + i] = values[newSegments[i]].getValueCount();
+    }
+    final OrdinalMap merged = build(null, subs, subWeights, PackedInts.COMPACT);
+
+    final long[] weights = new long[values.length];
+    long maxValueCount = 0;
+    for (int i = 0; i < values.length; ++i) {
+      weights[i] = values[i].getValueCount();
+      maxValueCount = Math.max(maxValueCount, weights[i]);
+    }
+    final SegmentMap segmentMap = new SegmentMap(weights);
+    final Mappings mappings = new Mappings(values.length, acceptableOverheadRatio);
+    final LongValues previousToMergedOrds = merged.getGlobalOrds(0);
+    // globalOrd -> 1 + index of the first segment that contains the term, or 0 if not seen yet
+    final PagedMutable firstSegments = new PagedMutable(merged.getValueCount(), PAGE_SIZE,
+        PackedInts.bitsRequired(values.length), PackedInts.COMPACT);
+    // globalOrd -> ordinal of the term in its first segment
+    final PagedMutable firstSegmentOrds = new PagedMutable(merged.getValueCount(), PAGE_SIZE,
+        PackedInts.bitsRequired(maxValueCount), PackedInts.COMPACT);
+    for (int i = 0; i < values.length; ++i) {
+      final int segment = segmentMap.newToOld(i);
+      final long valueCount = values[segment].getValueCount();
+      final LongValues globalOrds;
+      if (newToPrevious[segment] == -1) {
+        globalOrds = merged.getGlobalOrds(1 + Arrays.binarySearch(newSegments, segment));
+      } else {
+        final LongValues previousGlobalOrds = previous.getGlobalOrds(newToPrevious[segment]);
+        globalOrds = new LongValues() {
+          @Override
+          public long get(long ord) {
+            return previousToMergedOrds.get(previousGlobalOrds.get(ord));
+          }
+        };
+      }
+      for (long ord = 0; ord < valueCount; ++ord) {
+        final long globalOrd = globalOrds.get(ord);
+        mappings.addSegmentOrd(i, globalOrd - ord);
+        // segments are visited in the same order as the merge-sort visits them,
+        // so the first segment that has the term is the same as with a full build
+        if (firstSegments.get(globalOrd) == 0) {
+          firstSegments.set(globalOrd, 1 + i);
+          firstSegmentOrds.set(globalOrd, ord);
+        }
+      }
+    }
+    for (long globalOrd = 0; globalOrd < merged.getValueCount(); ++globalOrd) {
+      // every global term is in at least one segment since no segment has been removed
+      assert firstSegments.get(globalOrd) != 0;
+      mappings.addGlobalOrd((int) firstSegments.get(globalOrd) - 1, firstSegmentOrds.get(globalOrd));
+    }
+    return new OrdinalMap(owner, segmentMap, mappings, acceptableOverheadRatio);
+  }
+
+  private static SortedSetDocValues[] singletons(SortedDocValues[] values) {
+    final SortedSetDocValues[] singletons = new SortedSetDocValues[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      singletons[i] = DocValues.singleton(values[i]);
+    }
+    return singletons;
+  }
+
+  /**
+   * Merge-sorts the terms of {@code subs}, which must be positioned on their
+   * first term, until {@code upperBound} exclusive or the end of all subs
+   * if {@code upperBound} is null, and records mappings into {@code mappings}.
+   */
+  private static void merge(TermsEnumIndex[] subs, BytesRef upperBound, Mappings mappings) throws IOException {
     // Just merge-sorts by term:
     PriorityQueue<TermsEnumIndex> queue = new PriorityQueue<TermsEnumIndex>(subs.length) {
         @Override
@@ -211,22 +507,24 @@ public class OrdinalMap implements Accountable {
         }
       };
     
-    for (int i = 0; i < subs.length; i++) {
-      TermsEnumIndex sub = new TermsEnumIndex(subs[segmentMap.newToOld(i)], i);
-      if (sub.next() != null) {
+    for (TermsEnumIndex sub : subs) {
+      if (sub.currentTerm != null) {
         queue.add(sub);
       }
     }
 
     BytesRefBuilder scratch = new BytesRefBuilder();
       
-    long globalOrd = 0;
     while (queue.size() != 0) {
       TermsEnumIndex top = queue.top();
+      if (upperBound != null && top.currentTerm.compareTo(upperBound) >= 0) {
+        break;
+      }
       scratch.copyBytes(top.currentTerm);
 
+      final long globalOrd = mappings.valueCount;
       int firstSegmentIndex = Integer.MAX_VALUE;
-      long globalOrdDelta = Long.MAX_VALUE;
+      long firstSegmentOrd = -1;
 
       // Advance past this term, recording the per-segment ord deltas:
       while (true) {
@@ -239,21 +537,19 @@ public class OrdinalMap implements Accountable {
         // help save significant memory
         if (segmentIndex < firstSegmentIndex) {
           firstSegmentIndex = segmentIndex;
-          globalOrdDelta = delta;
+          firstSegmentOrd = segmentOrd;
         }
-        ordDeltaBits[segmentIndex] |= delta;
 
         // for each per-segment ord, map it back to the global term; the while loop is needed
         // in case the incoming TermsEnums don't have compact ordinals (some ordinal values
         // are skipped), which can happen e.g. with a FilteredTermsEnum:
-        assert segmentOrds[segmentIndex] <= segmentOrd;
+        assert mappings.segmentOrds[segmentIndex] <= segmentOrd;
 
         // TODO: we could specialize this case (the while loop is not needed when the ords
         // are compact)
         do {
-          ordDeltas[segmentIndex].add(delta);
-          segmentOrds[segmentIndex]++;
-        } while (segmentOrds[segmentIndex] <= segmentOrd);
+          mappings.addSegmentOrd(segmentIndex, delta);
+        } while (mappings.segmentOrds[segmentIndex] <= segmentOrd);
         
         if (top.next() == null) {
           queue.pop();
@@ -269,33 +565,155 @@ public class OrdinalMap implements Accountable {
       }
 
       // for each unique term, just mark the first segment index/delta where it occurs
-      firstSegments.add(firstSegmentIndex);
-      firstSegmentBits |= firstSegmentIndex;
-      globalOrdDeltas.add(globalOrdDelta);
-      globalOrd++;
+      mappings.addGlobalOrd(firstSegmentIndex, firstSegmentOrd);
     }
+  }
+
+  /**
+   * Enumerates the terms of the global ordinals of an ordinal map, by
+   * looking up every term in the first segment that contains it. Like
+   * {@link SortedSetDocValuesTermsEnum}, this has no postings.
+   */
+  private static class GlobalTermsEnum extends BaseTermsEnum {
+    private final OrdinalMap map;
+    private final int[] segments;
+    private final SortedSetDocValues[] values;
+    private long ord = -1;
+    private BytesRef term;
+
+    GlobalTermsEnum(OrdinalMap map, int[] segments, SortedSetDocValues[] values) {
+      this.map = map;
+      this.segments = segments;
+      this.values = values;
+    }
+
+    private BytesRef lookupOrd(long ord) throws IOException {
+      final SortedSetDocValues segmentValues = values[segments[map.getFirstSegmentNumber(ord)]];
+      return segmentValues.lookupOrd(map.getFirstSegmentOrd(ord));
+    }
+
+    @Override
+    public BytesRef next() throws IOException {
+      if (++ord >= map.getValueCount()) {
+        return term = null;
+      }
+      return term = lookupOrd(ord);
+    }
+
+    @Override
+    public BytesRef term() {
+      return term;
+    }
+
+    @Override
+    public long ord() {
+      return ord;
+    }
+
+    @Override
+    public SeekStatus seekCeil(BytesRef text) throws IOException {
+      // binary search over global ordinals, whose terms are sorted
+      long low = 0;
+      long high = map.getValueCount() - 1;
+      while (low <= high) {
+        final long mid = (low + high) >>> 1;
+        final int cmp = lookupOrd(mid).compareTo(text);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          seekExact(mid);
+          return SeekStatus.FOUND;
+        }
+      }
+      if (low == map.getValueCount()) {
+        ord = low;
+        term = null;
+        return SeekStatus.END;
+      }
+      seekExact(low);
+      return SeekStatus.NOT_FOUND;
+    }
+
+    @Override
+    public void seekExact(long ord) throws IOException {
+      assert ord >= 0 && ord < map.getValueCount();
+      this.ord = ord;
+      term = lookupOrd(ord);
+    }
+
+    @Override
+    public int docFreq() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long totalTermFreq() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PostingsEnum postings(PostingsEnum reuse, int flags) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ImpactsEnum impacts(int flags) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OrdinalMap.class);
+
+  // parallel builds split the term space into at most this many ranges ...
+  private static final int MAX_PARTITIONS = 64;
+  // ... of at least this many terms of the largest segment
+  private static final long MIN_PARTITION_SIZE = 1 << 14;
+  // page size of the temporary first segment arrays of incremental builds
+  private static final int PAGE_SIZE = 1 << 15;
+
+  /** Cache key of whoever asked for this awful thing */
+  public final IndexReader.CacheKey owner;
+  // number of global ordinals
+  final long valueCount;
+  // globalOrd -> (globalOrd - segmentOrd) where segmentOrd is the the ordinal in the first segment that contains this term
+  final LongValues globalOrdDeltas;
+  // globalOrd -> first segment container
+  final LongValues firstSegments;
+  // for every segment, segmentOrd -> globalOrd
+  final LongValues segmentToGlobalOrds[];
+  // the map from/to segment ids
+  final SegmentMap segmentMap;
+  // ram usage
+  final long ramBytesUsed;
+    
+  OrdinalMap(IndexReader.CacheKey owner, SegmentMap segmentMap, Mappings mappings, float acceptableOverheadRatio) {
+    this.owner = owner;
+    this.segmentMap = segmentMap;
+    final long[] ordDeltaBits = mappings.ordDeltaBits;
 
     long ramBytesUsed = BASE_RAM_BYTES_USED + segmentMap.ramBytesUsed();
-    this.valueCount = globalOrd;
+    this.valueCount = mappings.valueCount;
 
     // If the first segment contains all of the global ords, then we can apply a small optimization
     // and hardcode the first segment indices and global ord deltas as all zeroes.
-    if (ordDeltaBits.length > 0 && ordDeltaBits[0] == 0L && firstSegmentBits == 0L) {
+    if (ordDeltaBits.length > 0 && ordDeltaBits[0] == 0L && mappings.firstSegmentBits == 0L) {
       this.firstSegments = LongValues.ZEROES;
       this.globalOrdDeltas = LongValues.ZEROES;
     } else {
-      PackedLongValues packedFirstSegments = firstSegments.build();
-      PackedLongValues packedGlobalOrdDeltas = globalOrdDeltas.build();
+      PackedLongValues packedFirstSegments = mappings.firstSegments.build();
+      PackedLongValues packedGlobalOrdDeltas = mappings.globalOrdDeltas.build();
       this.firstSegments = packedFirstSegments;
       this.globalOrdDeltas = packedGlobalOrdDeltas;
       ramBytesUsed += packedFirstSegments.ramBytesUsed() + packedGlobalOrdDeltas.ramBytesUsed();
     }
 
     // ordDeltas is typically the bottleneck, so let's see what we can do to make it faster
-    segmentToGlobalOrds = new LongValues[subs.length];
+    segmentToGlobalOrds = new LongValues[ordDeltaBits.length];
     ramBytesUsed += RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds);
-    for (int i = 0; i < ordDeltas.length; ++i) {
-      final PackedLongValues deltas = ordDeltas[i].build();
+    for (int i = 0; i < ordDeltaBits.length; ++i) {
+      final PackedLongValues deltas = mappings.ordDeltas[i].build();
       if (ordDeltaBits[i] == 0L) {
         // segment ords perfectly match global ordinals
         // likely in case of low cardinalities and large segments
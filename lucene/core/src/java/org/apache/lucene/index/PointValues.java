@@ -207,6 +207,18 @@ public abstract class PointValues {
      *  consumer should blindly accept the docID. */
     void visit(int docID) throws IOException;
 
+    /** Similar to {@link IntersectVisitor#visit(int)}, but a bulk visit: called with all documents
+     *  of a leaf cell that's fully contained by the query when the leaf stores its doc IDs in a way
+     *  that can be iterated efficiently, e.g. as a range or a bit set. The consumer should blindly
+     *  accept all docIDs of the iterator. The provided iterator should not escape the scope of this
+     *  method so that implementations of PointValues are free to reuse it. */
+    default void visit(DocIdSetIterator iterator) throws IOException {
+      int docID;
+      while ((docID = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        visit(docID);
+      }
+    }
+
     /** Called for all documents in a leaf cell that crosses the query.  The consumer
      *  should scrutinize the packedValue to decide whether to accept it.  In the 1D case,
      *  values are visited in increasing order, and in the case of ties, in increasing
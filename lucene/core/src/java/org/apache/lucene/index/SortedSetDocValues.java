@@ -62,6 +62,22 @@ public abstract class SortedSetDocValues extends DocValuesIterator {
    */
   public abstract BytesRef lookupOrd(long ord) throws IOException;
 
+  /**
+   * Bulk version of {@link #lookupOrd(long)}: returns the values of the given
+   * ordinals, in the same order. Unlike {@link #lookupOrd(long)}, the returned
+   * {@link BytesRef}s are not re-used and may be kept around. Implementations
+   * may decode values in ordinal order so that terms that are stored next to
+   * each other are decoded only once, ordinals may be given in any order.
+   * @param ords ordinals to lookup
+   */
+  public BytesRef[] lookupOrds(long[] ords) throws IOException {
+    final BytesRef[] terms = new BytesRef[ords.length];
+    for (int i = 0; i < ords.length; ++i) {
+      terms[i] = BytesRef.deepCopyOf(lookupOrd(ords[i]));
+    }
+    return terms;
+  }
+
   /**
    * Returns the number of unique values.
    * @return number of unique values in this SortedDocValues. This is
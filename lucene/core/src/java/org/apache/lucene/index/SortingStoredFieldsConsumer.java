@@ -24,14 +24,13 @@ import java.util.Objects;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.codecs.Codec;
-import org.apache.lucene.codecs.StoredFieldsFormat;
-import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.StoredFieldsWriter;
-import org.apache.lucene.codecs.compressing.CompressingStoredFieldsFormat;
 import org.apache.lucene.codecs.compressing.CompressionMode;
 import org.apache.lucene.codecs.compressing.Compressor;
 import org.apache.lucene.codecs.compressing.Decompressor;
 import org.apache.lucene.document.StoredField;
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.Directory;
@@ -39,6 +38,8 @@ import org.apache.lucene.store.IOContext;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
 
 final class SortingStoredFieldsConsumer extends StoredFieldsConsumer {
 
@@ -76,57 +77,180 @@ final class SortingStoredFieldsConsumer extends StoredFieldsConsumer {
       };
     }
   };
-  private static final StoredFieldsFormat TEMP_STORED_FIELDS_FORMAT = new CompressingStoredFieldsFormat(
-      "TempStoredFields", NO_COMPRESSION, 128*1024, 1, 10);
-  TrackingTmpOutputDirectoryWrapper tmpDirectory;
+
+  // the type of each buffered field is encoded in the low bits of the field number
+  private static final int STRING = 0x00;
+  private static final int BYTE_ARR = 0x01;
+  private static final int NUMERIC_INT = 0x02;
+  private static final int NUMERIC_FLOAT = 0x03;
+  private static final int NUMERIC_LONG = 0x04;
+  private static final int NUMERIC_DOUBLE = 0x05;
+  private static final int TYPE_BITS = 3;
+  private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+  /** Buffered stored fields of all documents, in the order in which they were indexed. */
+  private final ByteBuffersDataOutput bufferedDocs = new ByteBuffersDataOutput();
+  /** Start offset of each document in {@link #bufferedDocs}, addressed by doc ID. */
+  private PackedLongValues.Builder docStarts = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+  private int numBufferedDocs;
 
   SortingStoredFieldsConsumer(Codec codec, Directory directory, SegmentInfo info) {
     super(codec, directory, info);
+    // stored fields are only written once the sort order is known, so the RAM
+    // buffer holds the serialized fields of all documents until then
+    accountable = () -> bufferedDocs.ramBytesUsed() + docStarts.ramBytesUsed();
   }
 
   @Override
-  protected void initStoredFieldsWriter() throws IOException {
-    if (writer == null) {
-      this.tmpDirectory = new TrackingTmpOutputDirectoryWrapper(directory);
-      this.writer = TEMP_STORED_FIELDS_FORMAT.fieldsWriter(tmpDirectory, info, IOContext.DEFAULT);
+  void startDocument(int docID) throws IOException {
+    assert numBufferedDocs <= docID;
+    while (numBufferedDocs <= docID) {
+      // documents that hit a non-aborting exception before their stored fields were written are empty
+      docStarts.add(bufferedDocs.size());
+      ++numBufferedDocs;
+    }
+  }
+
+  @Override
+  void writeField(FieldInfo info, IndexableField field) throws IOException {
+    final int bits;
+    final BytesRef bytes;
+    final String string;
+
+    Number number = field.numericValue();
+    if (number != null) {
+      if (number instanceof Byte || number instanceof Short || number instanceof Integer) {
+        bits = NUMERIC_INT;
+      } else if (number instanceof Long) {
+        bits = NUMERIC_LONG;
+      } else if (number instanceof Float) {
+        bits = NUMERIC_FLOAT;
+      } else if (number instanceof Double) {
+        bits = NUMERIC_DOUBLE;
+      } else {
+        throw new IllegalArgumentException("cannot store numeric type " + number.getClass());
+      }
+      string = null;
+      bytes = null;
+    } else {
+      bytes = field.binaryValue();
+      if (bytes != null) {
+        bits = BYTE_ARR;
+        string = null;
+      } else {
+        bits = STRING;
+        string = field.stringValue();
+        if (string == null) {
+          throw new IllegalArgumentException("field " + field.name() + " is stored but does not have binaryValue, stringValue nor numericValue");
+        }
+      }
+    }
+
+    bufferedDocs.writeVLong((((long) info.number) << TYPE_BITS) | bits);
+    switch (bits) {
+      case BYTE_ARR:
+        bufferedDocs.writeVInt(bytes.length);
+        bufferedDocs.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+        break;
+      case STRING:
+        bufferedDocs.writeString(string);
+        break;
+      case NUMERIC_INT:
+        bufferedDocs.writeInt(number.intValue());
+        break;
+      case NUMERIC_LONG:
+        bufferedDocs.writeLong(number.longValue());
+        break;
+      case NUMERIC_FLOAT:
+        bufferedDocs.writeInt(Float.floatToIntBits(number.floatValue()));
+        break;
+      case NUMERIC_DOUBLE:
+        bufferedDocs.writeLong(Double.doubleToLongBits(number.doubleValue()));
+        break;
+      default:
+        throw new AssertionError("Cannot get here");
+    }
+  }
+
+  @Override
+  void finishDocument() throws IOException {
+    // nothing to do, the end of a document is the start of the next one
+  }
+
+  @Override
+  void finish(int maxDoc) throws IOException {
+    if (numBufferedDocs < maxDoc) {
+      startDocument(maxDoc - 1);
     }
   }
 
   @Override
   void flush(SegmentWriteState state, Sorter.DocMap sortMap) throws IOException {
-    super.flush(state, sortMap);
-    StoredFieldsReader reader = TEMP_STORED_FIELDS_FORMAT
-        .fieldsReader(tmpDirectory, state.segmentInfo, state.fieldInfos, IOContext.DEFAULT);
-    // Don't pull a merge instance, since merge instances optimize for
-    // sequential access while we consume stored fields in random order here.
+    final int maxDoc = state.segmentInfo.maxDoc();
+    assert numBufferedDocs == maxDoc;
+    final PackedLongValues starts = docStarts.build();
+    final long end = bufferedDocs.size();
+    final ByteBuffersDataInput in = bufferedDocs.toDataInput();
+    // Stored fields are written only once, directly in the final order of the segment
     StoredFieldsWriter sortWriter = codec.storedFieldsFormat()
         .fieldsWriter(state.directory, state.segmentInfo, IOContext.DEFAULT);
     try {
-      reader.checkIntegrity();
       CopyVisitor visitor = new CopyVisitor(sortWriter);
-      for (int docID = 0; docID < state.segmentInfo.maxDoc(); docID++) {
+      for (int docID = 0; docID < maxDoc; docID++) {
+        final int oldDocID = sortMap == null ? docID : sortMap.newToOld(docID);
+        final long docEnd = oldDocID + 1 < maxDoc ? starts.get(oldDocID + 1) : end;
+        in.seek(starts.get(oldDocID));
         sortWriter.startDocument();
-        reader.visitDocument(sortMap == null ? docID : sortMap.newToOld(docID), visitor);
+        while (in.position() < docEnd) {
+          readField(in, state.fieldInfos, visitor);
+        }
         sortWriter.finishDocument();
       }
-      sortWriter.finish(state.fieldInfos, state.segmentInfo.maxDoc());
+      sortWriter.finish(state.fieldInfos, maxDoc);
     } finally {
-      IOUtils.close(reader, sortWriter);
-      IOUtils.deleteFiles(tmpDirectory,
-          tmpDirectory.getTemporaryFiles().values());
+      IOUtils.close(sortWriter);
+      resetBufferedDocs();
+    }
+  }
+
+  private void resetBufferedDocs() {
+    bufferedDocs.reset();
+    docStarts = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    numBufferedDocs = 0;
+  }
+
+  private static void readField(DataInput in, FieldInfos fieldInfos, StoredFieldVisitor visitor) throws IOException {
+    final long infoAndBits = in.readVLong();
+    final FieldInfo fieldInfo = fieldInfos.fieldInfo((int) (infoAndBits >>> TYPE_BITS));
+    switch ((int) (infoAndBits & TYPE_MASK)) {
+      case BYTE_ARR:
+        byte[] data = new byte[in.readVInt()];
+        in.readBytes(data, 0, data.length);
+        visitor.binaryField(fieldInfo, data);
+        break;
+      case STRING:
+        visitor.stringField(fieldInfo, in.readString());
+        break;
+      case NUMERIC_INT:
+        visitor.intField(fieldInfo, in.readInt());
+        break;
+      case NUMERIC_LONG:
+        visitor.longField(fieldInfo, in.readLong());
+        break;
+      case NUMERIC_FLOAT:
+        visitor.floatField(fieldInfo, Float.intBitsToFloat(in.readInt()));
+        break;
+      case NUMERIC_DOUBLE:
+        visitor.doubleField(fieldInfo, Double.longBitsToDouble(in.readLong()));
+        break;
+      default:
+        throw new AssertionError("Unknown type flag: " + Long.toHexString(infoAndBits));
     }
   }
 
   @Override
   void abort() {
-    try {
-      super.abort();
-    } finally {
-      if (tmpDirectory != null) {
-        IOUtils.deleteFilesIgnoringExceptions(tmpDirectory,
-            tmpDirectory.getTemporaryFiles().values());
-      }
-    }
+    resetBufferedDocs();
   }
 
   /**
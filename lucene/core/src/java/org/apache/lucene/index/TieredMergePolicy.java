@@ -101,6 +101,7 @@ public class TieredMergePolicy extends MergePolicy {
   private double segsPerTier = 10.0;
   private double forceMergeDeletesPctAllowed = 10.0;
   private double deletesPctAllowed = 33.0;
+  private long maxFullFlushMergeSegmentBytes = 0;
 
   /** Sole constructor, setting all settings to their
    *  defaults. */
@@ -249,6 +250,30 @@ public class TieredMergePolicy extends MergePolicy {
     return segsPerTier;
   }
 
+  /** Expert: segments whose size is at most this value are merged together
+   *  synchronously when committing or opening a near-real-time reader, see
+   *  {@link MergePolicy#findFullFlushMerges}. This keeps point-in-time views
+   *  from accumulating many tiny freshly flushed segments until background
+   *  merges catch up. It only has an effect if
+   *  {@link IndexWriterConfig#setMaxFullFlushMergeWaitMillis} is set to a
+   *  positive value, which bounds how long commits and refreshes wait for
+   *  these merges. Default is 0 MB, which disables full-flush merges. */
+  public TieredMergePolicy setMaxFullFlushMergeSegmentMB(double v) {
+    if (v < 0.0) {
+      throw new IllegalArgumentException("maxFullFlushMergeSegmentMB must be >= 0.0 (got " + v + ")");
+    }
+    v *= 1024 * 1024;
+    maxFullFlushMergeSegmentBytes = v > Long.MAX_VALUE ? Long.MAX_VALUE : (long) v;
+    return this;
+  }
+
+  /** Returns the current maxFullFlushMergeSegmentMB setting.
+   *
+   *  @see #setMaxFullFlushMergeSegmentMB */
+  public double getMaxFullFlushMergeSegmentMB() {
+    return maxFullFlushMergeSegmentBytes/(1024*1024.);
+  }
+
   private static class SegmentSizeAndDocs {
     private final SegmentCommitInfo segInfo;
     private final long sizeInBytes;
@@ -815,6 +840,41 @@ public class TieredMergePolicy extends MergePolicy {
 
   }
 
+  @Override
+  public MergeSpecification findFullFlushMerges(MergeTrigger mergeTrigger, SegmentInfos infos, MergeContext mergeContext) throws IOException {
+    if (maxFullFlushMergeSegmentBytes == 0) {
+      return null;
+    }
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    List<SegmentSizeAndDocs> sortedInfos = getSortedBySegmentSize(infos, mergeContext);
+    // Only consider small segments which are not merging already, smallest first
+    List<SegmentCommitInfo> eligible = new ArrayList<>();
+    for (int i = sortedInfos.size() - 1; i >= 0; i--) {
+      SegmentSizeAndDocs segSizeDocs = sortedInfos.get(i);
+      if (segSizeDocs.sizeInBytes > maxFullFlushMergeSegmentBytes) {
+        break;
+      }
+      if (merging.contains(segSizeDocs.segInfo) == false) {
+        eligible.add(segSizeDocs.segInfo);
+      }
+    }
+
+    if (verbose(mergeContext)) {
+      message("findFullFlushMerges: trigger=" + mergeTrigger + " eligible=" + segString(mergeContext, eligible), mergeContext);
+    }
+
+    MergeSpecification spec = null;
+    // a trailing single segment is left alone, there is nothing to merge it with
+    for (int start = 0; start + 1 < eligible.size(); start += maxMergeAtOnce) {
+      final int end = Math.min(start + maxMergeAtOnce, eligible.size());
+      if (spec == null) {
+        spec = new MergeSpecification();
+      }
+      spec.add(new OneMerge(new ArrayList<>(eligible.subList(start, end))));
+    }
+    return spec;
+  }
+
   private long floorSize(long bytes) {
     return Math.max(floorSegmentBytes, bytes);
   }
@@ -830,7 +890,8 @@ public class TieredMergePolicy extends MergePolicy {
     sb.append("segmentsPerTier=").append(segsPerTier).append(", ");
     sb.append("maxCFSSegmentSizeMB=").append(getMaxCFSSegmentSizeMB()).append(", ");
     sb.append("noCFSRatio=").append(noCFSRatio).append(", ");
-    sb.append("deletesPctAllowed=").append(deletesPctAllowed);
+    sb.append("deletesPctAllowed=").append(deletesPctAllowed).append(", ");
+    sb.append("maxFullFlushMergeSegmentMB=").append(maxFullFlushMergeSegmentBytes/1024/1024.);
     return sb.toString();
   }
 }
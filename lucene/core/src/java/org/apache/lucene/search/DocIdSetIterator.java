@@ -19,6 +19,8 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 
+import org.apache.lucene.util.FixedBitSet;
+
 /**
  * This abstract class defines methods to iterate over a set of non-decreasing
  * doc ids. Note that this class assumes it iterates on doc Ids, and therefore
@@ -125,6 +127,15 @@ public abstract class DocIdSetIterator {
         return doc;
       }
 
+      @Override
+      public void intoBitSet(FixedBitSet bitSet) {
+        final int from = Math.max(minDoc, doc + 1);
+        if (doc != NO_MORE_DOCS && from < maxDoc) {
+          bitSet.set(from, maxDoc);
+        }
+        doc = NO_MORE_DOCS;
+      }
+
       @Override
       public long cost() {
         return maxDoc - minDoc;
@@ -197,6 +208,20 @@ public abstract class DocIdSetIterator {
    */
   public abstract int advance(int target) throws IOException;
 
+  /**
+   * Sets the bits of all remaining documents of this iterator, ie. all
+   * documents that would be returned by subsequent calls to {@link #nextDoc()},
+   * in the given bit set. The iterator is exhausted after this call.
+   * <p>
+   * The default implementation calls {@link #nextDoc()} repeatedly, iterators
+   * over ranges or bit sets override it to set bits in bulk.
+   */
+  public void intoBitSet(FixedBitSet bitSet) throws IOException {
+    for (int doc = nextDoc(); doc != NO_MORE_DOCS; doc = nextDoc()) {
+      bitSet.set(doc);
+    }
+  }
+
   /** Slow (linear) implementation of {@link #advance} relying on
    *  {@link #nextDoc()} to advance beyond the target position. */
   protected final int slowAdvance(int target) throws IOException {
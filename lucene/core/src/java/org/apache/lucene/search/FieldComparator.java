@@ -110,6 +110,9 @@ public abstract class FieldComparator<T> {
    * 
    * @param context current reader context
    * @return the comparator to use for this segment
+   * @throws CollectionTerminatedException if the comparator knows up-front
+   *         that no document of this segment can be competitive, in which
+   *         case the whole segment is skipped
    * @throws IOException if there is a low-level IO error
    */
   public abstract LeafFieldComparator getLeafComparator(LeafReaderContext context) throws IOException;
@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A range query that takes advantage of the fact that the index is sorted on
+ * the queried field. If the primary sort of a segment is on the same field as
+ * the query, matching documents form a contiguous range of doc IDs, whose
+ * bounds are found by binary-searching the doc values of the field. This
+ * makes range filters on the sort field, for instance on a timestamp or a
+ * primary key, run in logarithmic time per segment.
+ * <p>
+ * This optimized execution strategy is used on segments where the following
+ * conditions hold:
+ * <ul>
+ *   <li>The segment is sorted, and its primary sort is on the same field as
+ *   the query, with a {@link SortField} of the same type as the query:
+ *   {@link SortField.Type#LONG}, {@link SortField.Type#INT},
+ *   {@link SortField.Type#FLOAT}, {@link SortField.Type#DOUBLE} or
+ *   {@link SortField.Type#STRING}, or a {@link SortedNumericSortField} or
+ *   {@link SortedSetSortField} of that type.
+ *   <li>The segment has at most one value per document for this field
+ *   (otherwise matching documents cannot be found by a binary search).
+ * </ul>
+ * On other segments the search is delegated to {@code fallbackQuery}. This
+ * fallback must be an equivalent range query: it should match the same
+ * documents and produce constant scores. For instance:
+ * <pre class="prettyprint">
+ *   Query fallbackQuery = LongPoint.newRangeQuery("timestamp", from, to);
+ *   Query query = IndexSortRangeQuery.newLongRange("timestamp", from, to, fallbackQuery);
+ * </pre>
+ *
+ * @lucene.experimental
+ */
+public final class IndexSortRangeQuery extends Query {
+
+  /**
+   * Create a range query on a field indexed with {@link org.apache.lucene.document.NumericDocValuesField}
+   * or {@link org.apache.lucene.document.SortedNumericDocValuesField} that matches
+   * documents whose value is between {@code lowerValue} and {@code upperValue},
+   * both inclusive, in segments that are sorted by this field as {@link SortField.Type#LONG}.
+   */
+  public static Query newLongRange(String field, long lowerValue, long upperValue, Query fallbackQuery) {
+    return new IndexSortRangeQuery(field, SortField.Type.LONG, lowerValue, true, upperValue, true, fallbackQuery);
+  }
+
+  /**
+   * Create a range query on a field indexed with {@link org.apache.lucene.document.NumericDocValuesField}
+   * or {@link org.apache.lucene.document.SortedNumericDocValuesField} that matches
+   * documents whose value is between {@code lowerValue} and {@code upperValue},
+   * both inclusive, in segments that are sorted by this field as {@link SortField.Type#INT}.
+   */
+  public static Query newIntRange(String field, int lowerValue, int upperValue, Query fallbackQuery) {
+    return new IndexSortRangeQuery(field, SortField.Type.INT, lowerValue, true, upperValue, true, fallbackQuery);
+  }
+
+  /**
+   * Create a range query on a field indexed with {@link org.apache.lucene.document.FloatDocValuesField}
+   * or sortable float bits in a {@link org.apache.lucene.document.SortedNumericDocValuesField}
+   * that matches documents whose value is between {@code lowerValue} and
+   * {@code upperValue}, both inclusive, in segments that are sorted by this
+   * field as {@link SortField.Type#FLOAT}.
+   */
+  public static Query newFloatRange(String field, float lowerValue, float upperValue, Query fallbackQuery) {
+    return new IndexSortRangeQuery(field, SortField.Type.FLOAT, lowerValue, true, upperValue, true, fallbackQuery);
+  }
+
+  /**
+   * Create a range query on a field indexed with {@link org.apache.lucene.document.DoubleDocValuesField}
+   * or sortable double bits in a {@link org.apache.lucene.document.SortedNumericDocValuesField}
+   * that matches documents whose value is between {@code lowerValue} and
+   * {@code upperValue}, both inclusive, in segments that are sorted by this
+   * field as {@link SortField.Type#DOUBLE}.
+   */
+  public static Query newDoubleRange(String field, double lowerValue, double upperValue, Query fallbackQuery) {
+    return new IndexSortRangeQuery(field, SortField.Type.DOUBLE, lowerValue, true, upperValue, true, fallbackQuery);
+  }
+
+  /**
+   * Create a range query on a field indexed with {@link org.apache.lucene.document.SortedDocValuesField}
+   * or {@link org.apache.lucene.document.SortedSetDocValuesField} that matches
+   * documents whose value is between {@code lowerValue} and {@code upperValue}
+   * in segments that are sorted by this field as {@link SortField.Type#STRING}.
+   * A {@code null} bound means that this side of the range is open.
+   */
+  public static Query newKeywordRange(String field, BytesRef lowerValue, boolean lowerInclusive,
+                                     BytesRef upperValue, boolean upperInclusive, Query fallbackQuery) {
+    return new IndexSortRangeQuery(field, SortField.Type.STRING,
+        lowerValue == null ? null : BytesRef.deepCopyOf(lowerValue), lowerInclusive,
+        upperValue == null ? null : BytesRef.deepCopyOf(upperValue), upperInclusive,
+        fallbackQuery);
+  }
+
+  private final String field;
+  private final SortField.Type type;
+  private final Object lowerValue;
+  private final boolean lowerInclusive;
+  private final Object upperValue;
+  private final boolean upperInclusive;
+  private final Query fallbackQuery;
+
+  private IndexSortRangeQuery(String field, SortField.Type type,
+                              Object lowerValue, boolean lowerInclusive,
+                              Object upperValue, boolean upperInclusive,
+                              Query fallbackQuery) {
+    this.field = Objects.requireNonNull(field);
+    this.type = type;
+    this.lowerValue = lowerValue;
+    this.lowerInclusive = lowerInclusive;
+    this.upperValue = upperValue;
+    this.upperInclusive = upperInclusive;
+    this.fallbackQuery = Objects.requireNonNull(fallbackQuery);
+  }
+
+  /** Returns the field this query runs on. */
+  public String getField() {
+    return field;
+  }
+
+  /** Returns the query that is used on segments that are not sorted by this field. */
+  public Query getFallbackQuery() {
+    return fallbackQuery;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (sameClassAs(o) == false) {
+      return false;
+    }
+    IndexSortRangeQuery that = (IndexSortRangeQuery) o;
+    return field.equals(that.field) &&
+        type == that.type &&
+        Objects.equals(lowerValue, that.lowerValue) &&
+        lowerInclusive == that.lowerInclusive &&
+        Objects.equals(upperValue, that.upperValue) &&
+        upperInclusive == that.upperInclusive &&
+        fallbackQuery.equals(that.fallbackQuery);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(classHash(), field, type, lowerValue, lowerInclusive, upperValue, upperInclusive, fallbackQuery);
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    if (visitor.acceptField(field)) {
+      visitor.visitLeaf(this);
+      fallbackQuery.visit(visitor);
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    StringBuilder b = new StringBuilder();
+    if (this.field.equals(field) == false) {
+      b.append(this.field).append(":");
+    }
+    return b
+        .append(lowerInclusive ? "[" : "{")
+        .append(lowerValue == null ? "*" : toString(lowerValue))
+        .append(" TO ")
+        .append(upperValue == null ? "*" : toString(upperValue))
+        .append(upperInclusive ? "]" : "}")
+        .toString();
+  }
+
+  private static String toString(Object value) {
+    if (value instanceof BytesRef) {
+      return Term.toString((BytesRef) value);
+    }
+    return value.toString();
+  }
+
+  @Override
+  public Query rewrite(IndexReader reader) throws IOException {
+    Query rewrittenFallback = fallbackQuery.rewrite(reader);
+    if (rewrittenFallback == fallbackQuery) {
+      return this;
+    } else {
+      return new IndexSortRangeQuery(field, type, lowerValue, lowerInclusive, upperValue, upperInclusive, rewrittenFallback);
+    }
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+    final Weight fallbackWeight = fallbackQuery.createWeight(searcher, scoreMode, boost);
+
+    return new ConstantScoreWeight(this, boost) {
+
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        final LeafReader reader = context.reader();
+        final Sort indexSort = reader.getMetaData().getSort();
+        if (indexSort != null && indexSort.getSort().length > 0) {
+          final SortField sortField = indexSort.getSort()[0];
+          if (sortField.getField().equals(field) && sortType(sortField) == type) {
+            final DocIdSetIterator values = singleValuedIterator(reader);
+            if (values != null) {
+              return new ConstantScoreScorer(this, score(), scoreMode, getDocIdSetIterator(sortField, context, values));
+            }
+          }
+        }
+        return fallbackWeight.scorer(context);
+      }
+
+      @Override
+      public boolean isCacheable(LeafReaderContext ctx) {
+        // Both queries match the same documents, so this query is cacheable
+        // if the fallback query and the doc values are cacheable.
+        return fallbackWeight.isCacheable(ctx) && DocValues.isCacheable(ctx, field);
+      }
+    };
+  }
+
+  private static SortField.Type sortType(SortField sortField) {
+    if (sortField instanceof SortedNumericSortField) {
+      return ((SortedNumericSortField) sortField).getNumericType();
+    } else if (sortField instanceof SortedSetSortField) {
+      return SortField.Type.STRING;
+    } else {
+      return sortField.getType();
+    }
+  }
+
+  /**
+   * Returns an iterator over the documents that have a value for the field,
+   * or {@code null} if some documents have more than one value.
+   */
+  private DocIdSetIterator singleValuedIterator(LeafReader reader) throws IOException {
+    if (type == SortField.Type.STRING) {
+      return DocValues.unwrapSingleton(DocValues.getSortedSet(reader, field));
+    } else {
+      return DocValues.unwrapSingleton(DocValues.getSortedNumeric(reader, field));
+    }
+  }
+
+  /**
+   * Computes the range of document IDs whose value lies within the bounds of
+   * this query by performing binary searches on the field's doc values.
+   * <p>
+   * Because doc values only allow forward iteration, the leaf comparator is
+   * reloaded every time the binary search goes back to an earlier document.
+   * The comparator takes care of missing values, which are sorted according
+   * to the sort field's missing value, and the returned iterator skips over
+   * documents that have no value.
+   */
+  private DocIdSetIterator getDocIdSetIterator(SortField sortField, LeafReaderContext context,
+                                               DocIdSetIterator values) throws IOException {
+    final boolean reverse = sortField.getReverse();
+    // the bound that comes first in doc ID order
+    final Object first = reverse ? upperValue : lowerValue;
+    final boolean firstInclusive = reverse ? upperInclusive : lowerInclusive;
+    // the bound that comes last in doc ID order
+    final Object last = reverse ? lowerValue : upperValue;
+    final boolean lastInclusive = reverse ? lowerInclusive : upperInclusive;
+    final int maxDoc = context.reader().maxDoc();
+
+    // find the first document that is after or on the first bound
+    int firstDocIdInclusive = 0;
+    if (first != null) {
+      firstDocIdInclusive = binarySearch(sortField, context, first, firstInclusive, 0, maxDoc);
+    }
+
+    // find the first document that is after the last bound
+    int lastDocIdExclusive = maxDoc;
+    if (last != null) {
+      lastDocIdExclusive = binarySearch(sortField, context, last, lastInclusive == false, firstDocIdInclusive, maxDoc);
+    }
+
+    if (firstDocIdInclusive >= lastDocIdExclusive) {
+      return DocIdSetIterator.empty();
+    }
+    return new BoundedDocIdSetIterator(firstDocIdInclusive, lastDocIdExclusive, values);
+  }
+
+  /**
+   * Returns the first document in {@code [from, to)} whose value compares
+   * after {@code value} in the index sort order, or equal to {@code value}
+   * if {@code includeEqual} is true, or {@code to} if there is no such document.
+   */
+  private static int binarySearch(SortField sortField, LeafReaderContext context, Object value,
+                                  boolean includeEqual, int from, int to) throws IOException {
+    // comparators ignore the reverse flag, which is applied on top of them
+    final int direction = sortField.getReverse() ? -1 : 1;
+    LeafFieldComparator comparator = loadComparator(sortField, value, context);
+    int low = from;
+    int high = to - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      // negative if mid sorts after value in the index sort order
+      final int cmp = direction * comparator.compareTop(mid);
+      if (cmp < 0 || (includeEqual && cmp == 0)) {
+        high = mid - 1;
+        comparator = loadComparator(sortField, value, context);
+      } else {
+        low = mid + 1;
+      }
+    }
+    return high + 1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static LeafFieldComparator loadComparator(SortField sortField, Object topValue,
+                                                    LeafReaderContext context) throws IOException {
+    final FieldComparator<Object> fieldComparator = (FieldComparator<Object>) sortField.getComparator(1, 0);
+    fieldComparator.disableSkipping();
+    fieldComparator.setTopValue(topValue);
+    return fieldComparator.getLeafComparator(context);
+  }
+
+  /**
+   * A doc ID set iterator that wraps a delegate iterator and only returns doc IDs in
+   * the range [firstDoc, lastDoc).
+   */
+  private static class BoundedDocIdSetIterator extends DocIdSetIterator {
+    private final int firstDoc;
+    private final int lastDoc;
+    private final DocIdSetIterator delegate;
+
+    private int docID = -1;
+
+    BoundedDocIdSetIterator(int firstDoc, int lastDoc, DocIdSetIterator delegate) {
+      this.firstDoc = firstDoc;
+      this.lastDoc = lastDoc;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int docID() {
+      return docID;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return advance(docID + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      if (target < firstDoc) {
+        target = firstDoc;
+      }
+      int result = delegate.advance(target);
+      if (result < lastDoc) {
+        docID = result;
+      } else {
+        docID = NO_MORE_DOCS;
+      }
+      return docID;
+    }
+
+    @Override
+    public long cost() {
+      return lastDoc - firstDoc;
+    }
+  }
+}
@@ -166,6 +166,11 @@ public abstract class PointRangeQuery extends Query {
             adder.add(docID);
           }
 
+          @Override
+          public void visit(DocIdSetIterator iterator) throws IOException {
+            adder.add(iterator);
+          }
+
           @Override
           public void visit(int docID, byte[] packedValue) {
             if (matches(packedValue)) {
@@ -253,10 +258,19 @@ public abstract class PointRangeQuery extends Query {
           throw new IllegalArgumentException("field=\"" + field + "\" was indexed with bytesPerDim=" + values.getBytesPerDimension() + " but this query has bytesPerDim=" + bytesPerDim);
         }
 
+        final byte[] fieldPackedLower = values.getMinPackedValue();
+        final byte[] fieldPackedUpper = values.getMaxPackedValue();
+        for (int i = 0; i < numDims; ++i) {
+          int offset = i * bytesPerDim;
+          if (Arrays.compareUnsigned(lowerPoint, offset, offset + bytesPerDim, fieldPackedUpper, offset, offset + bytesPerDim) > 0
+              || Arrays.compareUnsigned(upperPoint, offset, offset + bytesPerDim, fieldPackedLower, offset, offset + bytesPerDim) < 0) {
+            // the range of values of this segment doesn't intersect the query range, skip the whole segment
+            return null;
+          }
+        }
+
         boolean allDocsMatch;
         if (values.getDocCount() == reader.maxDoc()) {
-          final byte[] fieldPackedLower = values.getMinPackedValue();
-          final byte[] fieldPackedUpper = values.getMaxPackedValue();
           allDocsMatch = true;
           for (int i = 0; i < numDims; ++i) {
             int offset = i * bytesPerDim;
@@ -307,6 +321,8 @@ public abstract class PointRangeQuery extends Query {
                 return new ConstantScoreScorer(weight, score(), scoreMode, iterator);
               }
 
+              // the cost is derived from the estimated point count, reuse it rather than estimating again
+              result.setEstimatedValueCount((long) ((double) cost() * values.size() / values.getDocCount()));
               values.intersect(visitor);
               DocIdSetIterator iterator = result.build().iterator();
               return new ConstantScoreScorer(weight, score(), scoreMode, iterator);
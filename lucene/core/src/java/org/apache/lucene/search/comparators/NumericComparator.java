@@ -21,6 +21,7 @@ import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.FieldComparator;
 import org.apache.lucene.search.LeafFieldComparator;
@@ -96,6 +97,10 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
         this.minValueAsBytes = reverse ? new byte[bytesCount] : topValueSet ? new byte[bytesCount] : null;
         this.competitiveIterator = DocIdSetIterator.all(maxDoc);
         this.iteratorCost = maxDoc;
+        if (hitsThresholdReached && queueFull && isSegmentCompetitive() == false) {
+          // the values of this segment are all worse than the current bottom, skip the whole segment
+          throw new CollectionTerminatedException();
+        }
       } else {
         this.enableSkipping = false;
         this.maxDoc = 0;
@@ -148,17 +153,7 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
       if (updateCounter > 256 && (updateCounter & 0x1f) != 0x1f) { // Start sampling if we get called too much
         return;
       }
-      if (reverse == false) {
-        encodeBottom(maxValueAsBytes);
-        if (topValueSet) {
-          encodeTop(minValueAsBytes);
-        }
-      } else {
-        encodeBottom(minValueAsBytes);
-        if (topValueSet) {
-          encodeTop(maxValueAsBytes);
-        }
-      }
+      encodeCompetitiveBounds();
 
       DocIdSetBuilder result = new DocIdSetBuilder(maxDoc);
       PointValues.IntersectVisitor visitor = new PointValues.IntersectVisitor() {
@@ -197,19 +192,7 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
 
         @Override
         public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
-          if (maxValueAsBytes != null) {
-            int cmp = Arrays.compareUnsigned(minPackedValue, 0, bytesCount, maxValueAsBytes, 0, bytesCount);
-            if (cmp > 0 || (singleSort && cmp == 0)) return PointValues.Relation.CELL_OUTSIDE_QUERY;
-          }
-          if (minValueAsBytes != null) {
-            int cmp = Arrays.compareUnsigned(maxPackedValue, 0, bytesCount, minValueAsBytes, 0, bytesCount);
-            if (cmp < 0 || (singleSort && cmp == 0)) return PointValues.Relation.CELL_OUTSIDE_QUERY;
-          }
-          if ((maxValueAsBytes != null && Arrays.compareUnsigned(maxPackedValue, 0, bytesCount, maxValueAsBytes, 0, bytesCount) > 0) ||
-                  (minValueAsBytes != null && Arrays.compareUnsigned(minPackedValue, 0, bytesCount, minValueAsBytes, 0, bytesCount) < 0)) {
-            return PointValues.Relation.CELL_CROSSES_QUERY;
-          }
-          return PointValues.Relation.CELL_INSIDE_QUERY;
+          return relateToCompetitiveBounds(minPackedValue, maxPackedValue);
         }
       };
       final long threshold = iteratorCost >>> 3;
@@ -223,6 +206,49 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
       iteratorCost = competitiveIterator.cost();
     }
 
+    /**
+     * Checks whether the range of values of this segment, as recorded by its points, may contain
+     * documents that are competitive with the current bottom (and top value if set).
+     */
+    private boolean isSegmentCompetitive() throws IOException {
+      if (pointValues.getDocCount() < maxDoc && isMissingValueCompetitive()) {
+        return true; // documents with missing values are competitive
+      }
+      encodeCompetitiveBounds();
+      return relateToCompetitiveBounds(pointValues.getMinPackedValue(), pointValues.getMaxPackedValue())
+          != PointValues.Relation.CELL_OUTSIDE_QUERY;
+    }
+
+    private void encodeCompetitiveBounds() {
+      if (reverse == false) {
+        encodeBottom(maxValueAsBytes);
+        if (topValueSet) {
+          encodeTop(minValueAsBytes);
+        }
+      } else {
+        encodeBottom(minValueAsBytes);
+        if (topValueSet) {
+          encodeTop(maxValueAsBytes);
+        }
+      }
+    }
+
+    private PointValues.Relation relateToCompetitiveBounds(byte[] minPackedValue, byte[] maxPackedValue) {
+      if (maxValueAsBytes != null) {
+        int cmp = Arrays.compareUnsigned(minPackedValue, 0, bytesCount, maxValueAsBytes, 0, bytesCount);
+        if (cmp > 0 || (singleSort && cmp == 0)) return PointValues.Relation.CELL_OUTSIDE_QUERY;
+      }
+      if (minValueAsBytes != null) {
+        int cmp = Arrays.compareUnsigned(maxPackedValue, 0, bytesCount, minValueAsBytes, 0, bytesCount);
+        if (cmp < 0 || (singleSort && cmp == 0)) return PointValues.Relation.CELL_OUTSIDE_QUERY;
+      }
+      if ((maxValueAsBytes != null && Arrays.compareUnsigned(maxPackedValue, 0, bytesCount, maxValueAsBytes, 0, bytesCount) > 0) ||
+              (minValueAsBytes != null && Arrays.compareUnsigned(minPackedValue, 0, bytesCount, minValueAsBytes, 0, bytesCount) < 0)) {
+        return PointValues.Relation.CELL_CROSSES_QUERY;
+      }
+      return PointValues.Relation.CELL_INSIDE_QUERY;
+    }
+
     @Override
     public DocIdSetIterator competitiveIterator() {
       if (enableSkipping == false) return null;
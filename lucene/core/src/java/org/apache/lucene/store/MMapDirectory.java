@@ -237,12 +237,28 @@ public class MMapDirectory extends FSDirectory {
     try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
       final String resourceDescription = "MMapIndexInput(path=\"" + path.toString() + "\")";
       final boolean useUnmap = getUseUnmap();
+      final ByteBuffer[] buffers = map(resourceDescription, c, 0, c.size());
+      advise(name, context, buffers);
       return ByteBufferIndexInput.newInstance(resourceDescription,
-          map(resourceDescription, c, 0, c.size()), 
-          c.size(), chunkSizePower, new ByteBufferGuard(resourceDescription, useUnmap ? CLEANER : null));
+          buffers, c.size(), chunkSizePower, new ByteBufferGuard(resourceDescription, useUnmap ? CLEANER : null));
     }
   }
 
+  /**
+   * Called with the buffers of a file that has just been mapped, before the
+   * {@link IndexInput} is returned. The default implementation does nothing,
+   * subclasses may override it to pass access pattern hints to the operating
+   * system, e.g. with {@code madvise}. Advice only applies to the buffers of
+   * this input and its clones and slices, other inputs of the same file map
+   * it separately.
+   *
+   * @param name the name of the file
+   * @param context the context the file was opened with
+   * @param buffers the mapped buffers, the last one may be empty
+   */
+  protected void advise(String name, IOContext context, ByteBuffer[] buffers) throws IOException {
+  }
+
   /** Maps a file into a set of buffers */
   final ByteBuffer[] map(String resourceDescription, FileChannel fc, long offset, long length) throws IOException {
     if ((length >>> chunkSizePower) >= Integer.MAX_VALUE)
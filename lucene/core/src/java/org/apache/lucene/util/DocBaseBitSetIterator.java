@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util;
+
+import java.io.IOException;
+
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * A {@link DocIdSetIterator} like {@link BitSetIterator} but has a doc base
+ * in order to avoid storing previous 0s. The doc base must be a multiple of
+ * 64 so that the bits can be OR-ed word by word into a {@link FixedBitSet}.
+ * @lucene.internal
+ */
+public class DocBaseBitSetIterator extends DocIdSetIterator {
+
+  private final FixedBitSet bits;
+  private final int length;
+  private final long cost;
+  private final int docBase;
+  private int doc = -1;
+
+  /** Sole constructor. */
+  public DocBaseBitSetIterator(FixedBitSet bits, long cost, int docBase) {
+    if (cost < 0) {
+      throw new IllegalArgumentException("cost must be >= 0, got " + cost);
+    }
+    if ((docBase & 63) != 0) {
+      throw new IllegalArgumentException("docBase need to be a multiple of 64, got " + docBase);
+    }
+    this.bits = bits;
+    this.length = Math.min(bits.length() + docBase, NO_MORE_DOCS);
+    this.cost = cost;
+    this.docBase = docBase;
+  }
+
+  /** Return the wrapped {@link FixedBitSet}, whose bit {@code i} stands for doc {@code docBase + i}. */
+  public FixedBitSet getBitSet() {
+    return bits;
+  }
+
+  /** Return the doc base of the wrapped {@link FixedBitSet}. */
+  public int getDocBase() {
+    return docBase;
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+
+  @Override
+  public int nextDoc() {
+    return advance(doc + 1);
+  }
+
+  @Override
+  public int advance(int target) {
+    if (target >= length) {
+      return doc = NO_MORE_DOCS;
+    }
+    int next = bits.nextSetBit(Math.max(0, target - docBase));
+    if (next == NO_MORE_DOCS) {
+      return doc = NO_MORE_DOCS;
+    }
+    return doc = next + docBase;
+  }
+
+  @Override
+  public void intoBitSet(FixedBitSet bitSet) throws IOException {
+    if (doc == -1) {
+      bitSet.or(this);
+      doc = NO_MORE_DOCS;
+    } else {
+      super.intoBitSet(bitSet);
+    }
+  }
+
+  @Override
+  public long cost() {
+    return cost;
+  }
+
+}
@@ -42,6 +42,14 @@ public final class DocIdSetBuilder {
    *  @see DocIdSetBuilder#grow */
   public static abstract class BulkAdder {
     public abstract void add(int doc);
+
+    /** Add all docs of the given iterator, which must not return more docs than reserved. */
+    public void add(DocIdSetIterator iterator) throws IOException {
+      int docID;
+      while ((docID = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        add(docID);
+      }
+    }
   }
 
   private static class FixedBitSetAdder extends BulkAdder {
@@ -55,6 +63,11 @@ public final class DocIdSetBuilder {
     public void add(int doc) {
       bitSet.set(doc);
     }
+
+    @Override
+    public void add(DocIdSetIterator iterator) throws IOException {
+      iterator.intoBitSet(bitSet);
+    }
   }
 
   private static class Buffer {
@@ -165,6 +178,19 @@ public final class DocIdSetBuilder {
     }
   }
 
+  /**
+   * Notify this builder that about {@code numValues} values are going to be
+   * added, for instance as estimated by {@link PointValues#estimatePointCount}.
+   * If this is more than what this builder would buffer before upgrading to a
+   * bit set, doc IDs are written straight into a bit set rather than being
+   * buffered, sorted and then copied into a bit set.
+   */
+  public void setEstimatedValueCount(long numValues) {
+    if (bitSet == null && numValues > threshold) {
+      upgradeToBitSet();
+    }
+  }
+
   /**
    * Reserve space and return a {@link BulkAdder} object that can be used to
    * add up to {@code numDocs} documents.
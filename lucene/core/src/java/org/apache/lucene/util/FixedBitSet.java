@@ -267,6 +267,10 @@ public final class FixedBitSet extends BitSet implements Bits, Accountable {
       checkUnpositioned(iter);
       final FixedBitSet bits = BitSetIterator.getFixedBitSetOrNull(iter); 
       or(bits);
+    } else if (iter instanceof DocBaseBitSetIterator) {
+      checkUnpositioned(iter);
+      DocBaseBitSetIterator baseIter = (DocBaseBitSetIterator) iter;
+      or(baseIter.getDocBase() >> 6, baseIter.getBitSet());
     } else {
       super.or(iter);
     }
@@ -277,6 +281,20 @@ public final class FixedBitSet extends BitSet implements Bits, Accountable {
     or(other.bits, other.numWords);
   }
   
+  /** this = this OR other, where other's first word is OR-ed into word {@code otherOffsetWords} of this */
+  private void or(final int otherOffsetWords, FixedBitSet other) {
+    or(otherOffsetWords, other.bits, other.numWords);
+  }
+
+  private void or(final int otherOffsetWords, final long[] otherArr, final int otherNumWords) {
+    assert otherNumWords + otherOffsetWords <= numWords : "numWords=" + numWords + ", otherNumWords=" + otherNumWords + ", otherOffsetWords=" + otherOffsetWords;
+    final long[] thisArr = this.bits;
+    int pos = Math.min(numWords - otherOffsetWords, otherNumWords);
+    while (--pos >= 0) {
+      thisArr[pos + otherOffsetWords] |= otherArr[pos];
+    }
+  }
+
   private void or(final long[] otherArr, final int otherNumWords) {
     assert otherNumWords <= numWords : "numWords=" + numWords + ", otherNumWords=" + otherNumWords;
     final long[] thisArr = this.bits;
@@ -84,7 +84,8 @@ public class BKDWriter implements Closeable {
   public static final int VERSION_SELECTIVE_INDEXING = 6;
   public static final int VERSION_LOW_CARDINALITY_LEAVES = 7;
   public static final int VERSION_META_FILE = 9;
-  public static final int VERSION_CURRENT = VERSION_META_FILE;
+  public static final int VERSION_DOC_IDS_ENCODINGS = 10;
+  public static final int VERSION_CURRENT = VERSION_DOC_IDS_ENCODINGS;
 
 
   /** Number of splits before we compute the exact bounding box of an inner node. */
@@ -19,48 +19,121 @@ package org.apache.lucene.util.bkd;
 import java.io.IOException;
 
 import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.DocBaseBitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.packed.PackedInts;
 
 class DocIdsWriter {
 
+  /** Strictly increasing doc IDs without gaps, only the first doc ID is stored. */
+  private static final byte CONTINUOUS_IDS = (byte) -2;
+  /** Strictly increasing doc IDs in a dense range, stored as a bit set. */
+  private static final byte BITSET_IDS = (byte) -1;
+  /** Sorted doc IDs stored as vint deltas, only read for indices created before the other encodings existed. */
+  private static final byte LEGACY_DELTA_VINT = (byte) 0;
+  /** Doc IDs minus the minimum doc ID, packed with a fixed number of bits per value. */
+  private static final byte FOR_IDS = (byte) 1;
+  /** Doc IDs stored on 3 bytes, only read for indices created before the other encodings existed. */
+  private static final byte LEGACY_BPV_24 = (byte) 24;
+  /** Doc IDs stored on 4 bytes. */
+  private static final byte BPV_32 = (byte) 32;
+
   private DocIdsWriter() {}
 
   static void writeDocIds(int[] docIds, int start, int count, DataOutput out) throws IOException {
     // docs can be sorted either when all docs in a block have the same value
     // or when a segment is sorted
-    boolean sorted = true;
+    boolean strictlySorted = true;
+    int min = count == 0 ? 0 : docIds[start];
+    int max = count == 0 ? -1 : docIds[start];
     for (int i = 1; i < count; ++i) {
-      if (docIds[start + i - 1] > docIds[start + i]) {
-        sorted = false;
-        break;
+      final int doc = docIds[start + i];
+      if (docIds[start + i - 1] >= doc) {
+        strictlySorted = false;
       }
+      min = Math.min(min, doc);
+      max = Math.max(max, doc);
     }
-    if (sorted) {
-      out.writeByte((byte) 0);
-      int previous = 0;
-      for (int i = 0; i < count; ++i) {
-        int doc = docIds[start + i];
-        out.writeVInt(doc - previous);
-        previous = doc;
+
+    final long min2max = (long) max - min + 1;
+    if (strictlySorted) {
+      if (min2max == count) {
+        // continuous ids, typically happens when the segment is sorted
+        out.writeByte(CONTINUOUS_IDS);
+        out.writeVInt(min);
+        return;
+      } else if (min2max <= ((long) count << 4)) {
+        // only use a bit set when it doesn't take more than 2 bytes per doc,
+        // which is often the case for low-cardinality fields
+        out.writeByte(BITSET_IDS);
+        writeIdsAsBitSet(docIds, start, count, min, max, out);
+        return;
       }
+    }
+
+    final int bpv = count == 0 ? 0 : PackedInts.bitsRequired(max - min);
+    if (bpv <= 24) {
+      out.writeByte(FOR_IDS);
+      out.writeVInt(min);
+      out.writeByte((byte) bpv);
+      writeFor(docIds, start, count, min, bpv, out);
     } else {
-      long max = 0;
+      out.writeByte(BPV_32);
       for (int i = 0; i < count; ++i) {
-        max |= Integer.toUnsignedLong(docIds[start + i]);
+        out.writeInt(docIds[start + i]);
       }
-      if (max <= 0xffffff) {
-        out.writeByte((byte) 24);
-        for (int i = 0; i < count; ++i) {
-          out.writeShort((short) (docIds[start + i] >>> 8));
-          out.writeByte((byte) docIds[start + i]);
-        }
-      } else {
-        out.writeByte((byte) 32);
-        for (int i = 0; i < count; ++i) {
-          out.writeInt(docIds[start + i]);
+    }
+  }
+
+  private static void writeIdsAsBitSet(int[] docIds, int start, int count, int min, int max, DataOutput out) throws IOException {
+    final int offsetWords = min >>> 6;
+    final int offsetBits = offsetWords << 6;
+    final int totalWordCount = FixedBitSet.bits2words(max - offsetBits + 1);
+    out.writeVInt(offsetWords);
+    out.writeVInt(totalWordCount);
+    long currentWord = 0;
+    int currentWordIndex = 0;
+    for (int i = 0; i < count; i++) {
+      final int index = docIds[start + i] - offsetBits;
+      final int nextWordIndex = index >>> 6;
+      assert currentWordIndex <= nextWordIndex;
+      if (currentWordIndex < nextWordIndex) {
+        out.writeLong(currentWord);
+        currentWord = 0L;
+        currentWordIndex++;
+        while (currentWordIndex < nextWordIndex) {
+          currentWordIndex++;
+          out.writeLong(0L);
         }
       }
+      currentWord |= 1L << index;
+    }
+    out.writeLong(currentWord);
+    assert currentWordIndex + 1 == totalWordCount;
+  }
+
+  /** Write {@code docIds[i] - min} with {@code bpv} bits per value, little-endian, into ceil(count * bpv / 64) longs. */
+  private static void writeFor(int[] docIds, int start, int count, int min, int bpv, DataOutput out) throws IOException {
+    if (bpv == 0) {
+      return;
+    }
+    long acc = 0;
+    int bits = 0;
+    for (int i = 0; i < count; ++i) {
+      final long v = docIds[start + i] - min;
+      acc |= v << bits;
+      bits += bpv;
+      if (bits >= 64) {
+        out.writeLong(acc);
+        bits -= 64;
+        acc = bits == 0 ? 0L : v >>> (bpv - bits);
+      }
+    }
+    if (bits > 0) {
+      out.writeLong(acc);
     }
   }
 
@@ -68,13 +141,22 @@ class DocIdsWriter {
   static void readInts(IndexInput in, int count, int[] docIDs) throws IOException {
     final int bpv = in.readByte();
     switch (bpv) {
-      case 0:
+      case CONTINUOUS_IDS:
+        readContinuousIds(in, count, docIDs);
+        break;
+      case BITSET_IDS:
+        readBitSet(in, count, docIDs);
+        break;
+      case FOR_IDS:
+        readFor(in, count, docIDs);
+        break;
+      case LEGACY_DELTA_VINT:
         readDeltaVInts(in, count, docIDs);
         break;
-      case 32:
+      case BPV_32:
         readInts32(in, count, docIDs);
         break;
-      case 24:
+      case LEGACY_BPV_24:
         readInts24(in, count, docIDs);
         break;
       default:
@@ -82,6 +164,56 @@ class DocIdsWriter {
     }
   }
 
+  private static void readContinuousIds(IndexInput in, int count, int[] docIDs) throws IOException {
+    final int start = in.readVInt();
+    for (int i = 0; i < count; i++) {
+      docIDs[i] = start + i;
+    }
+  }
+
+  private static void readBitSet(IndexInput in, int count, int[] docIDs) throws IOException {
+    final int offsetBits = in.readVInt() << 6;
+    final int longLen = in.readVInt();
+    int pos = 0;
+    for (int i = 0; i < longLen; i++) {
+      long bits = in.readLong();
+      while (bits != 0) {
+        final int bit = Long.numberOfTrailingZeros(bits);
+        docIDs[pos++] = offsetBits + (i << 6) + bit;
+        bits &= bits - 1;
+      }
+    }
+    if (pos != count) {
+      throw new IOException("Expected " + count + " docs in bit set but got " + pos);
+    }
+  }
+
+  private static void readFor(IndexInput in, int count, int[] docIDs) throws IOException {
+    final int min = in.readVInt();
+    final int bpv = in.readByte();
+    if (bpv == 0) {
+      for (int i = 0; i < count; i++) {
+        docIDs[i] = min;
+      }
+      return;
+    }
+    final long mask = (1L << bpv) - 1;
+    long acc = 0;
+    int bitsLeft = 0;
+    for (int i = 0; i < count; i++) {
+      if (bitsLeft >= bpv) {
+        docIDs[i] = min + (int) (acc & mask);
+        acc >>>= bpv;
+        bitsLeft -= bpv;
+      } else {
+        final long next = in.readLong();
+        docIDs[i] = min + (int) ((acc | (next << bitsLeft)) & mask);
+        acc = next >>> (bpv - bitsLeft);
+        bitsLeft += 64 - bpv;
+      }
+    }
+  }
+
   private static void readDeltaVInts(IndexInput in, int count, int[] docIDs) throws IOException {
     int doc = 0;
     for (int i = 0; i < count; i++) {
@@ -116,17 +248,30 @@ class DocIdsWriter {
     }
   }
 
-  /** Read {@code count} integers and feed the result directly to {@link IntersectVisitor#visit(int)}. */
+  /**
+   * Read {@code count} integers and feed the result directly to {@link IntersectVisitor}.
+   * Continuous and bit set encoded leaves are passed in bulk to {@link IntersectVisitor#visit(DocIdSetIterator)},
+   * other leaves are passed one doc at a time to {@link IntersectVisitor#visit(int)}.
+   */
   static void readInts(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
     final int bpv = in.readByte();
     switch (bpv) {
-      case 0:
+      case CONTINUOUS_IDS:
+        readContinuousIds(in, count, visitor);
+        break;
+      case BITSET_IDS:
+        readBitSet(in, count, visitor);
+        break;
+      case FOR_IDS:
+        readFor(in, count, visitor);
+        break;
+      case LEGACY_DELTA_VINT:
         readDeltaVInts(in, count, visitor);
         break;
-      case 32:
+      case BPV_32:
         readInts32(in, count, visitor);
         break;
-      case 24:
+      case LEGACY_BPV_24:
         readInts24(in, count, visitor);
         break;
       default:
@@ -134,6 +279,50 @@ class DocIdsWriter {
     }
   }
 
+  private static void readContinuousIds(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
+    final int start = in.readVInt();
+    if (count > 0) {
+      visitor.visit(DocIdSetIterator.range(start, start + count));
+    }
+  }
+
+  private static void readBitSet(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
+    final int offsetWords = in.readVInt();
+    final int longLen = in.readVInt();
+    final long[] bits = new long[longLen];
+    for (int i = 0; i < longLen; i++) {
+      bits[i] = in.readLong();
+    }
+    final FixedBitSet bitSet = new FixedBitSet(bits, longLen << 6);
+    visitor.visit(new DocBaseBitSetIterator(bitSet, count, offsetWords << 6));
+  }
+
+  private static void readFor(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
+    final int min = in.readVInt();
+    final int bpv = in.readByte();
+    if (bpv == 0) {
+      for (int i = 0; i < count; i++) {
+        visitor.visit(min);
+      }
+      return;
+    }
+    final long mask = (1L << bpv) - 1;
+    long acc = 0;
+    int bitsLeft = 0;
+    for (int i = 0; i < count; i++) {
+      if (bitsLeft >= bpv) {
+        visitor.visit(min + (int) (acc & mask));
+        acc >>>= bpv;
+        bitsLeft -= bpv;
+      } else {
+        final long next = in.readLong();
+        visitor.visit(min + (int) ((acc | (next << bitsLeft)) & mask));
+        acc = next >>> (bpv - bitsLeft);
+        bitsLeft += 64 - bpv;
+      }
+    }
+  }
+
   private static void readDeltaVInts(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
     int doc = 0;
     for (int i = 0; i < count; i++) {
@@ -44,11 +44,46 @@ class BytesStore extends DataOutput implements Accountable {
   private byte[] current;
   private int nextWrite;
 
+  // if not null, blocks that may not be modified anymore are written to this
+  // output and released
+  private final DataOutput flushOutput;
+  private int numFlushedBlocks;
+
   public BytesStore(int blockBits) {
+    this(blockBits, null);
+  }
+
+  BytesStore(int blockBits, DataOutput flushOutput) {
     this.blockBits = blockBits;
     blockSize = 1 << blockBits;
     blockMask = blockSize-1;
     nextWrite = blockSize;
+    this.flushOutput = flushOutput;
+  }
+
+  /** Returns true if bytes are flushed to a {@link DataOutput} as they are written. */
+  boolean isFlushing() {
+    return flushOutput != null;
+  }
+
+  /**
+   * Write blocks that only contain bytes before {@code upTo} to the flush
+   * output, and release them. Bytes before {@code upTo} may not be read nor
+   * written anymore after this call. The block that is currently written to
+   * is never flushed, call {@link #finish()} first to flush all bytes.
+   */
+  void flush(long upTo) throws IOException {
+    assert flushOutput != null;
+    final int upToBlock = (int) Math.min(upTo >> blockBits, blocks.size());
+    while (numFlushedBlocks < upToBlock) {
+      final byte[] block = blocks.get(numFlushedBlocks);
+      if (block == current) {
+        break;
+      }
+      flushOutput.writeBytes(block, 0, block.length);
+      blocks.set(numFlushedBlocks, null);
+      numFlushedBlocks++;
+    }
   }
 
   /** Pulls bytes from the provided IndexInput.  */
@@ -62,6 +97,7 @@ class BytesStore extends DataOutput implements Accountable {
     this.blockBits = blockBits;
     this.blockSize = blockSize;
     this.blockMask = blockSize-1;
+    this.flushOutput = null;
     long left = numBytes;
     while(left > 0) {
       final int chunk = (int) Math.min(blockSize, left);
@@ -367,6 +403,9 @@ class BytesStore extends DataOutput implements Accountable {
 
   /** Writes all of our bytes to the target {@link DataOutput}. */
   public void writeTo(DataOutput out) throws IOException {
+    if (numFlushedBlocks > 0) {
+      throw new IllegalStateException("Bytes were already flushed");
+    }
     for(byte[] block : blocks) {
       out.writeBytes(block, 0, block.length);
     }
@@ -499,7 +538,9 @@ class BytesStore extends DataOutput implements Accountable {
   public long ramBytesUsed() {
     long size = BASE_RAM_BYTES_USED;
     for (byte[] block : blocks) {
-      size += RamUsageEstimator.sizeOf(block);
+      if (block != null) {
+        size += RamUsageEstimator.sizeOf(block);
+      }
     }
     return size;
   }
@@ -395,10 +395,16 @@ public final class FST<T> implements Accountable {
 
   // make a new empty FST, for building; Builder invokes this
   FST(INPUT_TYPE inputType, Outputs<T> outputs, int bytesPageBits) {
+    this(inputType, outputs, bytesPageBits, null);
+  }
+
+  // make a new empty FST whose bytes are written to the given output as they
+  // are frozen if not null
+  FST(INPUT_TYPE inputType, Outputs<T> outputs, int bytesPageBits, DataOutput dataOutput) {
     this.inputType = inputType;
     this.outputs = outputs;
     fstStore = null;
-    bytes = new BytesStore(bytesPageBits);
+    bytes = new BytesStore(bytesPageBits, dataOutput);
     // pad: ensure no node gets address 0 which is reserved to mean
     // the stop state w/ no arcs
     bytes.writeByte((byte) 0);
@@ -488,6 +494,9 @@ public final class FST<T> implements Accountable {
     }
     startNode = newStartNode;
     bytes.finish();
+    if (bytes.isFlushing()) {
+      bytes.flush(Long.MAX_VALUE);
+    }
   }
   
   public T getEmptyOutput() {
@@ -503,6 +512,36 @@ public final class FST<T> implements Accountable {
   }
 
   public void save(DataOutput metaOut, DataOutput out) throws IOException {
+    if (bytes != null && bytes.isFlushing()) {
+      throw new IllegalStateException("FST bytes were written to the DataOutput of the FSTCompiler, call saveMetadata instead");
+    }
+    writeHeader(metaOut);
+    if (bytes != null) {
+      long numBytes = bytes.getPosition();
+      metaOut.writeVLong(numBytes);
+      bytes.writeTo(out);
+    } else {
+      assert fstStore != null;
+      fstStore.writeTo(out);
+    }
+  }
+
+  /**
+   * Save the metadata of an FST that was built with
+   * {@link FSTCompiler.Builder#dataOutput(DataOutput)}, whose bytes were
+   * already written by the time it was compiled. The FST can be loaded with
+   * {@link #FST(DataInput, DataInput, Outputs)} by passing this metadata as
+   * {@code metaIn} and the bytes as {@code in}.
+   */
+  public void saveMetadata(DataOutput metaOut) throws IOException {
+    if (bytes == null || bytes.isFlushing() == false) {
+      throw new IllegalStateException("FST bytes were not written to the DataOutput of the FSTCompiler, call save instead");
+    }
+    writeHeader(metaOut);
+    metaOut.writeVLong(bytes.getPosition());
+  }
+
+  private void writeHeader(DataOutput metaOut) throws IOException {
     if (startNode == -1) {
       throw new IllegalStateException("call finish first");
     }
@@ -543,14 +582,6 @@ public final class FST<T> implements Accountable {
     }
     metaOut.writeByte(t);
     metaOut.writeVLong(startNode);
-    if (bytes != null) {
-      long numBytes = bytes.getPosition();
-      metaOut.writeVLong(numBytes);
-      bytes.writeTo(out);
-    } else {
-      assert fstStore != null;
-      fstStore.writeTo(out);
-    }
   }
   
   /**
@@ -1441,6 +1472,8 @@ public final class FST<T> implements Accountable {
   public BytesReader getBytesReader() {
     if (this.fstStore != null) {
       return this.fstStore.getReverseBytesReader();
+    } else if (bytes.isFlushing()) {
+      throw new IllegalStateException("FST bytes were written to the DataOutput of the FSTCompiler, load the FST to read it");
     } else {
       return bytes.getReverseReader();
     }
@@ -20,6 +20,7 @@ package org.apache.lucene.util.fst;
 import java.io.IOException;
 
 import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.IntsRefBuilder;
@@ -106,23 +107,25 @@ public class FSTCompiler<T> {
    * For more tuning and tweaking, see {@link Builder}.
    */
   public FSTCompiler(FST.INPUT_TYPE inputType, Outputs<T> outputs) {
-    this(inputType, 0, 0, true, true, Integer.MAX_VALUE, outputs, true, 15, 1f);
+    this(inputType, 0, 0, true, true, Integer.MAX_VALUE, outputs, true, 15, 1f, Double.POSITIVE_INFINITY, null);
   }
 
   private FSTCompiler(FST.INPUT_TYPE inputType, int minSuffixCount1, int minSuffixCount2, boolean doShareSuffix,
                       boolean doShareNonSingletonNodes, int shareMaxTailLength, Outputs<T> outputs,
-                      boolean allowFixedLengthArcs, int bytesPageBits, float directAddressingMaxOversizingFactor) {
+                      boolean allowFixedLengthArcs, int bytesPageBits, float directAddressingMaxOversizingFactor,
+                      double suffixRAMLimitMB, DataOutput dataOutput) {
     this.minSuffixCount1 = minSuffixCount1;
     this.minSuffixCount2 = minSuffixCount2;
     this.doShareNonSingletonNodes = doShareNonSingletonNodes;
     this.shareMaxTailLength = shareMaxTailLength;
     this.allowFixedLengthArcs = allowFixedLengthArcs;
     this.directAddressingMaxOversizingFactor = directAddressingMaxOversizingFactor;
-    fst = new FST<>(inputType, outputs, bytesPageBits);
+    fst = new FST<>(inputType, outputs, bytesPageBits, dataOutput);
     bytes = fst.bytes;
     assert bytes != null;
     if (doShareSuffix) {
-      dedupHash = new NodeHash<>(fst, bytes.getReverseReader(false));
+      // if bytes are flushed, the hash needs to keep copies of the nodes it may compare against
+      dedupHash = new NodeHash<>(fst, suffixRAMLimitMB, bytes.isFlushing() ? null : bytes.getReverseReader(false));
     } else {
       dedupHash = null;
     }
@@ -154,6 +157,8 @@ public class FSTCompiler<T> {
     private boolean allowFixedLengthArcs = true;
     private int bytesPageBits = 15;
     private float directAddressingMaxOversizingFactor = DIRECT_ADDRESSING_MAX_OVERSIZING_FACTOR;
+    private double suffixRAMLimitMB = Double.POSITIVE_INFINITY;
+    private DataOutput dataOutput;
 
     /**
      * @param inputType The input type (transition labels). Can be anything from {@link INPUT_TYPE}
@@ -265,13 +270,43 @@ public class FSTCompiler<T> {
       return this;
     }
 
+    /**
+     * Only used if {@code shouldShareSuffix} is true. Approximate maximum amount of RAM, in MB, that the
+     * hash of shared suffixes may use. When this limit is reached, the least recently used suffixes are
+     * evicted: they won't be shared with suffixes that are added afterwards, so the FST will be larger
+     * than the minimal FST, but the memory usage of building large FSTs becomes predictable. Pass
+     * {@link Double#POSITIVE_INFINITY} to always build a minimal FST.
+     * <p>
+     * Default = {@link Double#POSITIVE_INFINITY}.
+     */
+    public Builder<T> suffixRAMLimitMB(double mb) {
+      if (mb <= 0) {
+        throw new IllegalArgumentException("suffixRAMLimitMB must be > 0, got: " + mb);
+      }
+      this.suffixRAMLimitMB = mb;
+      return this;
+    }
+
+    /**
+     * Write the bytes of the FST to the given {@link DataOutput} as they are frozen rather than keeping
+     * them in memory. The FST returned by {@link FSTCompiler#compile()} then can't be read, and its
+     * metadata must be saved with {@link FST#saveMetadata(DataOutput)}. Note that {@link FSTCompiler#compile()}
+     * may return {@code null} after some bytes were written, if no input is accepted by the FST.
+     * <p>
+     * Default = {@code null}, the FST is built in memory.
+     */
+    public Builder<T> dataOutput(DataOutput dataOutput) {
+      this.dataOutput = dataOutput;
+      return this;
+    }
+
     /**
      * Creates a new {@link FSTCompiler}.
      */
     public FSTCompiler<T> build() {
       FSTCompiler<T> fstCompiler =  new FSTCompiler<>(inputType, minSuffixCount1, minSuffixCount2, shouldShareSuffix,
           shouldShareNonSingletonNodes, shareMaxTailLength, outputs, allowFixedLengthArcs, bytesPageBits,
-          directAddressingMaxOversizingFactor);
+          directAddressingMaxOversizingFactor, suffixRAMLimitMB, dataOutput);
       return fstCompiler;
     }
   }
@@ -317,6 +352,10 @@ public class FSTCompiler<T> {
       // The FST added a new node:
       assert bytesPosEnd > bytesPosStart;
       lastFrozenNode = node;
+      if (bytes.isFlushing()) {
+        // frozen nodes are never modified again
+        bytes.flush(bytesPosEnd);
+      }
     }
 
     nodeIn.clear();
@@ -19,27 +19,43 @@ package org.apache.lucene.util.fst;
 
 import java.io.IOException;
 
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.packed.PackedInts;
 import org.apache.lucene.util.packed.PagedGrowableWriter;
 
 // Used to dedup states (lookup already-frozen states)
+//
+// Nodes are added to a primary table until it would use more than half of the
+// RAM limit, at which point it becomes the fallback table and a new primary
+// table is started. Nodes found in the fallback table are promoted to the
+// primary table: this is a simplistic LRU policy which keeps RAM usage bounded,
+// at the cost of a less minimal FST once suffixes are evicted.
 final class NodeHash<T> {
 
-  private PagedGrowableWriter table;
-  private long count;
-  private long mask;
+  private PagedGrowableHash primaryTable;
+  private PagedGrowableHash fallbackTable;
+  private final long ramLimitBytes;
   private final FST<T> fst;
   private final FST.Arc<T> scratchArc = new FST.Arc<>();
-  private final FST.BytesReader in;
+  // reads nodes from the FST bytes, or null if the FST bytes may have been
+  // flushed already, in which case nodes are copied and read from the tables
+  private final FST.BytesReader fstReader;
+  private final CopiedNodeReader copiedNodeReader;
 
-  public NodeHash(FST<T> fst, FST.BytesReader in) {
-    table = new PagedGrowableWriter(16, 1<<27, 8, PackedInts.COMPACT);
-    mask = 15;
+  public NodeHash(FST<T> fst, double ramLimitMB, FST.BytesReader fstReader) {
+    if (ramLimitMB <= 0) {
+      throw new IllegalArgumentException("ramLimitMB must be > 0, got: " + ramLimitMB);
+    }
     this.fst = fst;
-    this.in = in;
+    this.ramLimitBytes = ramLimitMB == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : (long) (ramLimitMB * 1024 * 1024);
+    this.fstReader = fstReader;
+    this.copiedNodeReader = fstReader == null ? new CopiedNodeReader() : null;
+    primaryTable = new PagedGrowableHash();
   }
 
-  private boolean nodesEqual(FSTCompiler.UnCompiledNode<T> node, long address) throws IOException {
+  private boolean nodesEqual(FSTCompiler.UnCompiledNode<T> node, long address, FST.BytesReader in) throws IOException {
     fst.readFirstRealTargetArc(address, scratchArc, in);
 
     // Fail fast for a node with fixed length arcs.
@@ -104,7 +120,7 @@ final class NodeHash<T> {
   }
 
   // hash code for a frozen node
-  private long hash(long node) throws IOException {
+  private long hash(long node, FST.BytesReader in) throws IOException {
     final int PRIME = 31;
     //System.out.println("hash frozen node=" + node);
     long h = 0;
@@ -130,58 +146,239 @@ final class NodeHash<T> {
   public long add(FSTCompiler<T> fstCompiler, FSTCompiler.UnCompiledNode<T> nodeIn) throws IOException {
     //System.out.println("hash: add count=" + count + " vs " + table.size() + " mask=" + mask);
     final long h = hash(nodeIn);
-    long pos = h & mask;
-    int c = 0;
-    while(true) {
-      final long v = table.get(pos);
-      if (v == 0) {
-        // freeze & add
-        final long node = fst.addNode(fstCompiler, nodeIn);
-        //System.out.println("  now freeze node=" + node);
-        assert hash(node) == h : "frozenHash=" + hash(node) + " vs h=" + h;
-        count++;
-        table.set(pos, node);
-        // Rehash at 2/3 occupancy:
-        if (count > 2*table.size()/3) {
-          rehash();
+    final long primaryPos = primaryTable.find(nodeIn, h);
+    if (primaryPos >= 0) {
+      // same node is already here
+      return primaryTable.entries.get(primaryPos);
+    }
+
+    final long node;
+    final long fallbackPos = fallbackTable == null ? -1 : fallbackTable.find(nodeIn, h);
+    if (fallbackPos >= 0) {
+      // same node was recently added: promote it
+      node = fallbackTable.entries.get(fallbackPos);
+      primaryTable.promote(~primaryPos, node, fallbackTable, fallbackPos);
+    } else {
+      // freeze & add
+      final long startAddress = fstCompiler.bytes.getPosition();
+      node = fst.addNode(fstCompiler, nodeIn);
+      //System.out.println("  now freeze node=" + node);
+      primaryTable.add(~primaryPos, node, fstCompiler.bytes, startAddress);
+      assert hash(node, primaryTable.reader(~primaryPos)) == h : "frozenHash=" + hash(node, primaryTable.reader(~primaryPos)) + " vs h=" + h;
+    }
+
+    // Rehash at 2/3 occupancy:
+    if (primaryTable.count > 2 * primaryTable.entries.size() / 3) {
+      if (primaryTable.ramBytesUsed() + primaryTable.tableRamBytesUsed() > ramLimitBytes / 2) {
+        // doubling the size of the primary table would exceed the budget
+        fallbackTable = primaryTable;
+        primaryTable = new PagedGrowableHash();
+      } else {
+        primaryTable.rehash();
+      }
+    } else if (fstReader == null && primaryTable.ramBytesUsed() > ramLimitBytes / 2) {
+      // too many copied bytes
+      fallbackTable = primaryTable;
+      primaryTable = new PagedGrowableHash();
+    }
+    return node;
+  }
+
+  /** Approximate RAM usage of the hash tables. */
+  long ramBytesUsed() {
+    return primaryTable.ramBytesUsed() + (fallbackTable == null ? 0 : fallbackTable.ramBytesUsed());
+  }
+
+  /** A hash table of frozen nodes with quadratic probing. */
+  private final class PagedGrowableHash {
+    private PagedGrowableWriter entries;
+    // offsets of the copies of nodes in copiedNodes, if nodes are copied
+    private PagedGrowableWriter copiedNodeOffsets;
+    private final ByteBlockPool copiedNodes;
+    private long count;
+    private long mask;
+    private byte[] scratch;
+    private final BytesRef scratchLength = new BytesRef(new byte[Integer.BYTES]);
+
+    PagedGrowableHash() {
+      entries = new PagedGrowableWriter(16, 1<<27, 8, PackedInts.COMPACT);
+      mask = 15;
+      if (fstReader == null) {
+        copiedNodeOffsets = new PagedGrowableWriter(16, 1<<27, 8, PackedInts.COMPACT);
+        copiedNodes = new ByteBlockPool(new ByteBlockPool.DirectAllocator());
+        scratch = new byte[16];
+      } else {
+        copiedNodes = null;
+      }
+    }
+
+    /** Return a reader for the node at the given position. */
+    FST.BytesReader reader(long pos) {
+      if (fstReader != null) {
+        return fstReader;
+      }
+      copiedNodeReader.reset(copiedNodes, copiedNodeOffsets.get(pos), entries.get(pos));
+      return copiedNodeReader;
+    }
+
+    /**
+     * Return the position of the node that is equal to {@code nodeIn}, or
+     * {@code -1-pos} where {@code pos} is the position where it should be
+     * added if it is not in this table.
+     */
+    long find(FSTCompiler.UnCompiledNode<T> nodeIn, long h) throws IOException {
+      long pos = h & mask;
+      int c = 0;
+      while(true) {
+        final long v = entries.get(pos);
+        if (v == 0) {
+          return ~pos;
+        } else if (nodesEqual(nodeIn, v, reader(pos))) {
+          return pos;
         }
-        return node;
-      } else if (nodesEqual(nodeIn, v)) {
-        // same node is already here
-        return v;
+
+        // quadratic probe
+        pos = (pos + (++c)) & mask;
       }
+    }
 
-      // quadratic probe
-      pos = (pos + (++c)) & mask;
+    /** Add a node that was just written to the FST bytes. */
+    void add(long pos, long node, BytesStore bytes, long startAddress) {
+      if (copiedNodes != null) {
+        final int length = Math.toIntExact(node - startAddress + 1);
+        scratch = ArrayUtil.grow(scratch, length);
+        bytes.copyBytes(startAddress, scratch, 0, length);
+        copy(pos, scratch, length);
+      }
+      entries.set(pos, node);
+      count++;
     }
-  }
 
-  // called only by rehash
-  private void addNew(long address) throws IOException {
-    long pos = hash(address) & mask;
-    int c = 0;
-    while(true) {
-      if (table.get(pos) == 0) {
-        table.set(pos, address);
-        break;
+    /** Add a node from another table. */
+    void promote(long pos, long node, PagedGrowableHash other, long otherPos) {
+      if (copiedNodes != null) {
+        final long offset = other.copiedNodeOffsets.get(otherPos);
+        final int length = readLength(other.copiedNodes, offset);
+        scratch = ArrayUtil.grow(scratch, length);
+        other.copiedNodes.readBytes(offset + Integer.BYTES, scratch, 0, length);
+        copy(pos, scratch, length);
       }
+      entries.set(pos, node);
+      count++;
+    }
 
-      // quadratic probe
-      pos = (pos + (++c)) & mask;
+    private void copy(long pos, byte[] nodeBytes, int length) {
+      final long offset = copiedNodes.byteOffset + copiedNodes.byteUpto;
+      final byte[] lengthBytes = scratchLength.bytes;
+      lengthBytes[0] = (byte) (length >>> 24);
+      lengthBytes[1] = (byte) (length >>> 16);
+      lengthBytes[2] = (byte) (length >>> 8);
+      lengthBytes[3] = (byte) length;
+      copiedNodes.append(scratchLength);
+      copiedNodes.append(new BytesRef(nodeBytes, 0, length));
+      copiedNodeOffsets.set(pos, offset);
     }
-  }
 
-  private void rehash() throws IOException {
-    final PagedGrowableWriter oldTable = table;
+    void rehash() throws IOException {
+      final PagedGrowableWriter oldEntries = entries;
+      final PagedGrowableWriter oldCopiedNodeOffsets = copiedNodeOffsets;
 
-    table = new PagedGrowableWriter(2*oldTable.size(), 1<<30, PackedInts.bitsRequired(count), PackedInts.COMPACT);
-    mask = table.size()-1;
-    for(long idx=0;idx<oldTable.size();idx++) {
-      final long address = oldTable.get(idx);
-      if (address != 0) {
-        addNew(address);
+      entries = new PagedGrowableWriter(2*oldEntries.size(), 1<<30, PackedInts.bitsRequired(count), PackedInts.COMPACT);
+      if (oldCopiedNodeOffsets != null) {
+        copiedNodeOffsets = new PagedGrowableWriter(2*oldEntries.size(), 1<<30, PackedInts.bitsRequired(copiedNodes.byteOffset + copiedNodes.byteUpto), PackedInts.COMPACT);
+      }
+      mask = entries.size()-1;
+      for(long idx=0;idx<oldEntries.size();idx++) {
+        final long address = oldEntries.get(idx);
+        if (address != 0) {
+          final FST.BytesReader in;
+          final long copiedNodeOffset;
+          if (oldCopiedNodeOffsets != null) {
+            copiedNodeOffset = oldCopiedNodeOffsets.get(idx);
+            copiedNodeReader.reset(copiedNodes, copiedNodeOffset, address);
+            in = copiedNodeReader;
+          } else {
+            copiedNodeOffset = -1;
+            in = fstReader;
+          }
+          long pos = hash(address, in) & mask;
+          int c = 0;
+          while (entries.get(pos) != 0) {
+            // quadratic probe
+            pos = (pos + (++c)) & mask;
+          }
+          entries.set(pos, address);
+          if (oldCopiedNodeOffsets != null) {
+            copiedNodeOffsets.set(pos, copiedNodeOffset);
+          }
+        }
       }
     }
+
+    /** RAM usage of the hash table, excluding copied nodes. */
+    long tableRamBytesUsed() {
+      return entries.ramBytesUsed() + (copiedNodeOffsets == null ? 0 : copiedNodeOffsets.ramBytesUsed());
+    }
+
+    long ramBytesUsed() {
+      return tableRamBytesUsed() + (copiedNodes == null ? 0 : copiedNodes.byteOffset + copiedNodes.byteUpto);
+    }
+  }
+
+  private static int readLength(ByteBlockPool pool, long offset) {
+    return ((pool.readByte(offset) & 0xFF) << 24) | ((pool.readByte(offset + 1) & 0xFF) << 16)
+        | ((pool.readByte(offset + 2) & 0xFF) << 8) | (pool.readByte(offset + 3) & 0xFF);
   }
 
+  /**
+   * Reads a copy of a single node, in reverse like the FST bytes, and
+   * addressed with FST addresses so that targets of arcs resolve the same
+   * way as when reading the FST bytes.
+   */
+  private static final class CopiedNodeReader extends FST.BytesReader {
+    private byte[] bytes = new byte[16];
+    // FST address of bytes[0]
+    private long start;
+    private long pos;
+
+    void reset(ByteBlockPool pool, long offset, long nodeAddress) {
+      final int length = readLength(pool, offset);
+      bytes = ArrayUtil.grow(bytes, length);
+      pool.readBytes(offset + Integer.BYTES, bytes, 0, length);
+      start = nodeAddress - length + 1;
+      pos = nodeAddress;
+    }
+
+    @Override
+    public byte readByte() {
+      return bytes[(int) (pos-- - start)];
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len) {
+      for (int i = 0; i < len; i++) {
+        b[offset + i] = readByte();
+      }
+    }
+
+    @Override
+    public void skipBytes(long count) {
+      pos -= count;
+    }
+
+    @Override
+    public long getPosition() {
+      return pos;
+    }
+
+    @Override
+    public void setPosition(long pos) {
+      this.pos = pos;
+    }
+
+    @Override
+    public boolean reversed() {
+      return true;
+    }
+  }
 }
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.English;
+import org.apache.lucene.util.TestUtil;
+
+public class TestBatchTokenFilter extends BaseTokenStreamTestCase {
+
+  public void testLowerCase() throws IOException {
+    final MockTokenizer in = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    in.setReader(new StringReader("Now IS the TIME"));
+    TokenStream stream = new BatchLowerCaseFilter(in);
+    assertTokenStreamContents(stream, new String[] { "now", "is", "the", "time" });
+  }
+
+  public void testStopPositions() throws IOException {
+    CharArraySet stopWords = new CharArraySet(asSet("is", "the", "time"), false);
+    final MockTokenizer in = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    in.setReader(new StringReader("now is the time for all good men is the time"));
+    TokenStream stream = new BatchStopFilter(new BatchLowerCaseFilter(in), stopWords);
+    assertTokenStreamContents(stream,
+        new String[] { "now", "for", "all", "good", "men" },
+        new int[] { 0, 16, 20, 24, 29 },
+        new int[] { 3, 19, 23, 28, 32 },
+        null,
+        new int[] { 1, 4, 1, 1, 1 },
+        null,
+        44,
+        3,
+        null,
+        true,
+        null);
+  }
+
+  /** Replaces the term of every token with a longer one, to exercise growing the char buffer */
+  private static class RepeatFilter extends BatchTokenFilter {
+    RepeatFilter(TokenStream in) {
+      super(in);
+    }
+
+    @Override
+    protected void processBatch(TokenBatch batch) {
+      for (int i = 0; i < batch.size; i++) {
+        final int length = batch.termLength[i];
+        final char[] doubled = new char[length * 2];
+        System.arraycopy(batch.chars, batch.termStart[i], doubled, 0, length);
+        System.arraycopy(batch.chars, batch.termStart[i], doubled, length, length);
+        batch.setTerm(i, doubled, 0, doubled.length);
+      }
+    }
+  }
+
+  /** Sets flags on every token, which {@link TokenBatch} does not have arrays for */
+  private static final class FlagsFilter extends TokenFilter {
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final FlagsAttribute flagsAtt = addAttribute(FlagsAttribute.class);
+
+    FlagsFilter(TokenStream in) {
+      super(in);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+      if (input.incrementToken()) {
+        flagsAtt.setFlags(termAtt.length());
+        return true;
+      }
+      return false;
+    }
+  }
+
+  public void testOtherAttributes() throws IOException {
+    final MockTokenizer in = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    in.setReader(new StringReader("a bb ccc"));
+    TokenStream stream = new RepeatFilter(new BatchLowerCaseFilter(new FlagsFilter(in)));
+    assertTokenStreamContents(stream, new String[] { "aa", "bbbb", "cccccc" });
+    FlagsAttribute flagsAtt = stream.getAttribute(FlagsAttribute.class);
+    in.setReader(new StringReader("a bb ccc"));
+    stream.reset();
+    for (int expected = 1; stream.incrementToken(); expected++) {
+      assertEquals(expected, flagsAtt.getFlags());
+    }
+    stream.end();
+    stream.close();
+  }
+
+  public void testSameAsRegularFilters() throws IOException {
+    final List<String> stopWords = new ArrayList<>();
+    final StringBuilder sb = new StringBuilder();
+    final int numTokens = atLeast(1000);
+    for (int i = 0; i < numTokens; i++) {
+      final String token = English.intToEnglish(random().nextInt(100)).trim();
+      if (random().nextInt(10) == 0) {
+        stopWords.add(token);
+      }
+      sb.append(random().nextBoolean() ? token.toUpperCase(Locale.ROOT) : token).append(' ');
+    }
+    final CharArraySet stopSet = new CharArraySet(stopWords, false);
+    final String text = sb.toString();
+
+    final MockTokenizer regularIn = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    regularIn.setReader(new StringReader(text));
+    final TokenStream regular = new StopFilter(new LowerCaseFilter(regularIn), stopSet);
+    final List<String> expectedTerms = new ArrayList<>();
+    final List<Integer> expectedPosIncs = new ArrayList<>();
+    final List<Integer> expectedStartOffsets = new ArrayList<>();
+    final List<Integer> expectedEndOffsets = new ArrayList<>();
+    regular.reset();
+    while (regular.incrementToken()) {
+      expectedTerms.add(regular.getAttribute(CharTermAttribute.class).toString());
+      expectedPosIncs.add(regular.getAttribute(PositionIncrementAttribute.class).getPositionIncrement());
+      expectedStartOffsets.add(regular.getAttribute(OffsetAttribute.class).startOffset());
+      expectedEndOffsets.add(regular.getAttribute(OffsetAttribute.class).endOffset());
+    }
+    regular.end();
+    final int finalPosInc = regular.getAttribute(PositionIncrementAttribute.class).getPositionIncrement();
+    regular.close();
+
+    final MockTokenizer batchIn = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    batchIn.setReader(new StringReader(text));
+    final TokenStream batch = new BatchStopFilter(new BatchLowerCaseFilter(batchIn), stopSet);
+    assertTokenStreamContents(batch,
+        expectedTerms.toArray(new String[0]),
+        expectedStartOffsets.stream().mapToInt(Integer::intValue).toArray(),
+        expectedEndOffsets.stream().mapToInt(Integer::intValue).toArray(),
+        null,
+        expectedPosIncs.stream().mapToInt(Integer::intValue).toArray(),
+        null,
+        text.length(),
+        finalPosInc,
+        null,
+        true,
+        null);
+  }
+
+  public void testRandomStrings() throws IOException {
+    final CharArraySet stopWords = new CharArraySet(asSet("a", "b", "the", "of"), true);
+    Analyzer analyzer = new Analyzer() {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+        TokenStream stream = new BatchLowerCaseFilter(tokenizer);
+        if (random().nextBoolean()) {
+          stream = new RepeatFilter(stream);
+        }
+        stream = new BatchStopFilter(stream, stopWords);
+        return new TokenStreamComponents(tokenizer, stream);
+      }
+    };
+    checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+    checkRandomData(random(), analyzer, 20 * RANDOM_MULTIPLIER, TestUtil.nextInt(random(), 1000, 8192));
+    analyzer.close();
+  }
+}
@@ -92,4 +92,54 @@ public class TestForDeltaUtil extends LuceneTestCase {
 
     d.close();
   }
+
+  public void testEncodeDecodeDense() throws IOException {
+    final Directory d = new ByteBuffersDirectory();
+    final ForDeltaUtil forDeltaUtil = new ForDeltaUtil(new ForUtil());
+    final int iterations = atLeast(100);
+    for (int i = 0; i < iterations; ++i) {
+      final long[] deltas = new long[ForUtil.BLOCK_SIZE];
+      final int maxDelta = random().nextBoolean() ? 2 : 4;
+      for (int j = 0; j < ForUtil.BLOCK_SIZE; ++j) {
+        deltas[j] = TestUtil.nextInt(random(), 1, maxDelta);
+      }
+      // the first block of a postings list may start with doc 0
+      if (random().nextBoolean()) {
+        deltas[0] = 0;
+      }
+      final long[] expected = new long[ForUtil.BLOCK_SIZE];
+      final long base = random().nextInt(1 << 20);
+      for (int j = 0; j < ForUtil.BLOCK_SIZE; ++j) {
+        expected[j] = (j == 0 ? base : expected[j - 1]) + deltas[j];
+      }
+
+      try (IndexOutput out = d.createOutput("test.bin", IOContext.DEFAULT)) {
+        forDeltaUtil.encodeDeltas(deltas, out);
+        // dense deltas are encoded as a bit set, which is smaller than packed deltas
+        assertTrue(out.getFilePointer() <= 1 + new ForUtil().numBytes(PackedInts.bitsRequired(maxDelta)));
+      }
+
+      try (IndexInput in = d.openInput("test.bin", IOContext.READONCE)) {
+        final long[] restored = new long[ForUtil.BLOCK_SIZE];
+        forDeltaUtil.decodeAndPrefixSum(in, base, restored);
+        assertArrayEquals(expected, restored);
+      }
+
+      try (IndexInput in = d.openInput("test.bin", IOContext.READONCE)) {
+        final long[] bitSet = new long[ForDeltaUtil.MAX_BIT_SET_LONGS];
+        final int numLongs = forDeltaUtil.decodeAndPrefixSumOrBitSet(in, base, new long[ForUtil.BLOCK_SIZE], bitSet);
+        assertTrue(numLongs > 0);
+        final long[] restored = new long[ForUtil.BLOCK_SIZE];
+        ForDeltaUtil.bitSetToLongs(bitSet, numLongs, base, restored);
+        assertArrayEquals(expected, restored);
+      }
+
+      try (IndexInput in = d.openInput("test.bin", IOContext.READONCE)) {
+        forDeltaUtil.skip(in);
+        assertEquals(in.length(), in.getFilePointer());
+      }
+      d.deleteFile("test.bin");
+    }
+    d.close();
+  }
 }
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.English;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+
+/** Tests {@link IndexWriterConfig#setAnalysisExecutor}. */
+public class TestConcurrentFieldAnalysis extends LuceneTestCase {
+
+  private static void indexRandomDocs(Directory dir, Analyzer analyzer, ExecutorService executor, long seed) throws IOException {
+    IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
+    iwc.setAnalysisExecutor(executor);
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    FieldType withVectors = new FieldType(TextField.TYPE_NOT_STORED);
+    withVectors.setStoreTermVectors(true);
+    withVectors.setStoreTermVectorPositions(true);
+    withVectors.setStoreTermVectorOffsets(true);
+    withVectors.freeze();
+
+    Random random = new Random(seed);
+    try (IndexWriter w = new IndexWriter(dir, iwc)) {
+      int numDocs = atLeast(random, 50);
+      for (int i = 0; i < numDocs; i++) {
+        Document doc = new Document();
+        doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+        int numFields = random.nextInt(6);
+        for (int j = 0; j < numFields; j++) {
+          StringBuilder text = new StringBuilder();
+          int numWords = random.nextInt(500);
+          for (int k = 0; k < numWords; k++) {
+            text.append(English.intToEnglish(random.nextInt(1000))).append(' ');
+          }
+          // fields may be repeated, which makes them multi-valued
+          int type = random.nextInt(3);
+          switch (type) {
+            case 0:
+              doc.add(new Field("vectors", text.toString(), withVectors));
+              break;
+            case 1:
+              doc.add(new TextField("body", text.toString(), Field.Store.NO));
+              break;
+            default:
+              doc.add(new TextField("reader", new StringReader(text.toString())));
+              break;
+          }
+        }
+        w.addDocument(doc);
+      }
+    }
+  }
+
+  public void testSameIndexAsSerialAnalysis() throws Exception {
+    Analyzer analyzer = new MockAnalyzer(random());
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestConcurrentFieldAnalysis"));
+    long seed = random().nextLong();
+    try (Directory serialDir = newDirectory();
+         Directory concurrentDir = newDirectory()) {
+      indexRandomDocs(serialDir, analyzer, null, seed);
+      indexRandomDocs(concurrentDir, analyzer, executor, seed);
+      try (DirectoryReader serial = DirectoryReader.open(serialDir);
+           DirectoryReader concurrent = DirectoryReader.open(concurrentDir)) {
+        assertReaderEquals("concurrent field analysis", serial, concurrent);
+      }
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+      analyzer.close();
+    }
+  }
+
+  /** Fails on the term "fail" */
+  private static final class FailingFilter extends TokenFilter {
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    FailingFilter(TokenStream input) {
+      super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+      if (input.incrementToken()) {
+        if (termAtt.toString().equals("fail")) {
+          throw new IllegalArgumentException("failing on purpose");
+        }
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /** Records the thread that analyzes each field. */
+  private static final class ThreadRecordingFilter extends TokenFilter {
+    private final String field;
+    private final Map<String,String> threads;
+
+    ThreadRecordingFilter(TokenStream input, String field, Map<String,String> threads) {
+      super(input);
+      this.field = field;
+      this.threads = threads;
+    }
+
+    @Override
+    public void reset() throws IOException {
+      super.reset();
+      threads.put(field, Thread.currentThread().getName());
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+      return input.incrementToken();
+    }
+  }
+
+  public void testBufferedTokensAreBounded() throws Exception {
+    Map<String,String> threads = new ConcurrentHashMap<>();
+    Analyzer analyzer = new Analyzer(Analyzer.PER_FIELD_REUSE_STRATEGY) {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        MockTokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+        return new TokenStreamComponents(tokenizer, new ThreadRecordingFilter(tokenizer, fieldName, threads));
+      }
+    };
+    // runs every analysis on a new thread, but one at a time
+    Executor executor = r -> {
+      Thread thread = new Thread(r, "analysis");
+      thread.start();
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      text.append(English.intToEnglish(i)).append(' ');
+    }
+    Document doc = new Document();
+    doc.add(new TextField("a", text.toString(), Field.Store.NO));
+    doc.add(new TextField("b", "some text", Field.Store.NO));
+    doc.add(new TextField("c", "some more text", Field.Store.NO));
+
+    try (Directory dir = newDirectory();
+         IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(analyzer).setAnalysisExecutor(executor))) {
+      w.addDocument(doc);
+      assertEquals("analysis", threads.get("a"));
+      assertEquals("analysis", threads.get("b"));
+      assertEquals("analysis", threads.get("c"));
+    }
+
+    threads.clear();
+    try (Directory dir = newDirectory();
+         IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(analyzer).setAnalysisExecutor(executor).setRAMBufferSizeMB(0.01))) {
+      w.addDocument(doc);
+      // the tokens of the first field use more than the RAM buffer, so the other fields are analyzed inline
+      assertEquals("analysis", threads.get("a"));
+      assertEquals(Thread.currentThread().getName(), threads.get("b"));
+      assertEquals(Thread.currentThread().getName(), threads.get("c"));
+      try (DirectoryReader reader = DirectoryReader.open(w)) {
+        assertEquals(1, reader.docFreq(new Term("a", "twelve")));
+        assertEquals(1, reader.docFreq(new Term("c", "more")));
+      }
+    } finally {
+      analyzer.close();
+    }
+  }
+
+  public void testAnalysisException() throws Exception {
+    Analyzer analyzer = new Analyzer() {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        MockTokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+        return new TokenStreamComponents(tokenizer, new FailingFilter(tokenizer));
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(2, new NamedThreadFactory("TestConcurrentFieldAnalysis"));
+    try (Directory dir = newDirectory();
+         IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(analyzer).setAnalysisExecutor(executor))) {
+      Document doc = new Document();
+      doc.add(new TextField("a", "some text", Field.Store.NO));
+      doc.add(new TextField("b", "some more text that will fail", Field.Store.NO));
+      doc.add(new TextField("c", "even more text", Field.Store.NO));
+      IllegalArgumentException expected = expectThrows(IllegalArgumentException.class, () -> w.addDocument(doc));
+      assertEquals("failing on purpose", expected.getMessage());
+
+      // the failure is not aborting
+      Document ok = new Document();
+      ok.add(new TextField("a", "some text", Field.Store.NO));
+      ok.add(new TextField("b", "some more text", Field.Store.NO));
+      w.addDocument(ok);
+      try (DirectoryReader reader = DirectoryReader.open(w)) {
+        assertEquals(1, reader.numDocs());
+        assertEquals(2, reader.maxDoc());
+      }
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+      analyzer.close();
+    }
+  }
+}
@@ -311,6 +311,48 @@ public class TestIndexSorting extends LuceneTestCase {
     dir.close();
   }
 
+  public void testStoredFieldsOnSortedFlush() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(new Sort(new SortField("foo", SortField.Type.LONG)));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      // index in reverse order so that every document moves on flush
+      doc.add(new NumericDocValuesField("foo", numDocs - i));
+      if (i % 7 != 0) {
+        doc.add(new StoredField("id", i));
+        doc.add(new StoredField("long", (long) i << 32));
+        doc.add(new StoredField("float", i / 2f));
+        doc.add(new StoredField("double", i / 3d));
+        doc.add(new StoredField("string", "value " + i));
+        doc.add(new StoredField("binary", new BytesRef(Integer.toString(i))));
+      }
+      w.addDocument(doc);
+    }
+    DirectoryReader r = DirectoryReader.open(w);
+    LeafReader leaf = getOnlyLeafReader(r);
+    assertEquals(numDocs, leaf.maxDoc());
+    for (int docID = 0; docID < numDocs; docID++) {
+      final int i = numDocs - 1 - docID;
+      Document doc = leaf.document(docID);
+      if (i % 7 == 0) {
+        assertEquals(0, doc.getFields().size());
+      } else {
+        assertEquals(i, doc.getField("id").numericValue());
+        assertEquals((long) i << 32, doc.getField("long").numericValue());
+        assertEquals(i / 2f, doc.getField("float").numericValue());
+        assertEquals(i / 3d, doc.getField("double").numericValue());
+        assertEquals("value " + i, doc.get("string"));
+        assertEquals(new BytesRef(Integer.toString(i)), doc.getBinaryValue("binary"));
+      }
+    }
+    r.close();
+    w.close();
+    dir.close();
+  }
+
   public void testBasicMultiValuedString() throws Exception {
     Directory dir = newDirectory();
     IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
@@ -54,6 +54,8 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     assertEquals(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, conf.getRAMBufferSizeMB(), 0.0);
     assertEquals(IndexWriterConfig.DEFAULT_MAX_BUFFERED_DOCS, conf.getMaxBufferedDocs());
     assertEquals(IndexWriterConfig.DEFAULT_READER_POOLING, conf.getReaderPooling());
+    assertFalse(conf.getRecycleIndexingBuffers());
+    assertNull(conf.getAnalysisExecutor());
     assertNull(conf.getMergedSegmentWarmer());
     assertEquals(TieredMergePolicy.class, conf.getMergePolicy().getClass());
     assertEquals(FlushByRamOrCountsPolicy.class, conf.getFlushPolicy().getClass());
@@ -80,6 +82,8 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     getters.add("getMergedSegmentWarmer");
     getters.add("getMergePolicy");
     getters.add("getReaderPooling");
+    getters.add("getRecycleIndexingBuffers");
+    getters.add("getAnalysisExecutor");
     getters.add("getIndexerThreadPool");
     getters.add("getFlushPolicy");
     getters.add("getRAMPerThreadHardLimitMB");
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.util.Arrays;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IntBlockPool;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestIndexingBufferRecycler extends LuceneTestCase {
+
+  public void testReuseByteBlocks() {
+    IndexingBufferRecycler recycler = new IndexingBufferRecycler(new IndexWriterConfig(new MockAnalyzer(random())));
+    Counter bytesUsed = Counter.newCounter();
+    ByteBlockPool.Allocator allocator = recycler.newByteBlockAllocator(bytesUsed);
+    byte[][] blocks = new byte[3][];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = allocator.getByteBlock();
+      Arrays.fill(blocks[i], (byte) 42);
+    }
+    assertEquals(3 * ByteBlockPool.BYTE_BLOCK_SIZE, bytesUsed.get());
+    byte[] first = blocks[0];
+
+    allocator.recycleByteBlocks(blocks, 0, blocks.length);
+    assertEquals(0, bytesUsed.get());
+    assertEquals(3 * ByteBlockPool.BYTE_BLOCK_SIZE, recycler.ramBytesUsed());
+
+    // another allocator, e.g. of the next DWPT, picks up the recycled blocks
+    Counter otherBytesUsed = Counter.newCounter();
+    ByteBlockPool.Allocator other = recycler.newByteBlockAllocator(otherBytesUsed);
+    boolean sawFirst = false;
+    for (int i = 0; i < 3; i++) {
+      byte[] block = other.getByteBlock();
+      sawFirst |= block == first;
+      for (byte b : block) {
+        assertEquals("recycled blocks must be zero-filled", 0, b);
+      }
+    }
+    assertTrue(sawFirst);
+    assertEquals(3 * ByteBlockPool.BYTE_BLOCK_SIZE, otherBytesUsed.get());
+    assertEquals(0, recycler.ramBytesUsed());
+  }
+
+  public void testReuseIntBlocks() {
+    IndexingBufferRecycler recycler = new IndexingBufferRecycler(new IndexWriterConfig(new MockAnalyzer(random())));
+    Counter bytesUsed = Counter.newCounter();
+    IntBlockPool.Allocator allocator = recycler.newIntBlockAllocator(bytesUsed);
+    int[][] blocks = new int[] [] { allocator.getIntBlock(), allocator.getIntBlock() };
+    Arrays.fill(blocks[1], 7);
+    assertEquals(2 * IntBlockPool.INT_BLOCK_SIZE * Integer.BYTES, bytesUsed.get());
+    allocator.recycleIntBlocks(blocks, 1, 2);
+    assertEquals(IntBlockPool.INT_BLOCK_SIZE * Integer.BYTES, bytesUsed.get());
+    assertEquals(IntBlockPool.INT_BLOCK_SIZE * Integer.BYTES, recycler.ramBytesUsed());
+    int[] block = allocator.getIntBlock();
+    for (int i : block) {
+      assertEquals(0, i);
+    }
+    assertEquals(0, recycler.ramBytesUsed());
+  }
+
+  public void testBoundedByRAMBuffer() {
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setRAMBufferSizeMB(0.1);
+    IndexingBufferRecycler recycler = new IndexingBufferRecycler(iwc);
+    ByteBlockPool.Allocator allocator = recycler.newByteBlockAllocator(Counter.newCounter());
+    byte[][] blocks = new byte[10][];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = allocator.getByteBlock();
+    }
+    allocator.recycleByteBlocks(blocks, 0, blocks.length);
+    final long maxBytes = (long) (0.1 * 1024 * 1024);
+    assertTrue(recycler.ramBytesUsed() <= maxBytes);
+    assertEquals(maxBytes / ByteBlockPool.BYTE_BLOCK_SIZE * ByteBlockPool.BYTE_BLOCK_SIZE, recycler.ramBytesUsed());
+    recycler.clear();
+    assertEquals(0, recycler.ramBytesUsed());
+  }
+
+  public void testRecycledBytesAreReused() throws Exception {
+    try (Directory dir = newDirectory()) {
+      IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setRecycleIndexingBuffers(true);
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        assertEquals(0, w.getRecycledBytes());
+        for (int i = 0; i < 100; i++) {
+          Document doc = new Document();
+          doc.add(new TextField("body", TestUtil.randomSimpleString(random(), 1000), Field.Store.NO));
+          w.addDocument(doc);
+        }
+        assertTrue(w.ramBytesUsed() > 0);
+        w.flush();
+        final long recycledBytes = w.getRecycledBytes();
+        assertTrue(recycledBytes > 0);
+        // recycled buffers are reported separately from the indexing buffer
+        assertTrue(w.ramBytesUsed() < recycledBytes);
+
+        // the next DWPT takes its blocks from the recycler
+        Document doc = new Document();
+        doc.add(new TextField("body", "foo bar", Field.Store.NO));
+        w.addDocument(doc);
+        assertTrue(w.getRecycledBytes() < recycledBytes);
+      }
+    }
+  }
+
+  public void testIndexWithRecycledBuffers() throws Exception {
+    try (Directory dir = newDirectory()) {
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setRecycleIndexingBuffers(true);
+      iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 2, 20));
+      FieldType vectors = new FieldType(TextField.TYPE_NOT_STORED);
+      vectors.setStoreTermVectors(true);
+      vectors.setStoreTermVectorPositions(random().nextBoolean());
+      int numDocs = atLeast(200);
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        for (int i = 0; i < numDocs; i++) {
+          Document doc = new Document();
+          doc.add(new Field("body", "doc " + i + " " + TestUtil.randomSimpleString(random(), 100), vectors));
+          doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+          w.addDocument(doc);
+        }
+        w.commit();
+        // the blocks of flushed segments are waiting to be reused
+        assertTrue(w.getRecycledBytes() > 0);
+        try (DirectoryReader reader = DirectoryReader.open(w)) {
+          assertEquals(numDocs, reader.numDocs());
+          for (int i = 0; i < numDocs; i += 17) {
+            assertEquals(1, reader.docFreq(new Term("id", Integer.toString(i))));
+            assertEquals(1, reader.docFreq(new Term("body", Integer.toString(i))));
+          }
+        }
+      }
+    }
+  }
+}
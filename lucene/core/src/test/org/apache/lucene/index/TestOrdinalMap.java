@@ -25,12 +25,19 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.packed.PackedInts;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class TestOrdinalMap extends LuceneTestCase {
 
@@ -145,4 +152,177 @@ public class TestOrdinalMap extends LuceneTestCase {
     dir.close();
   }
 
+  private static void addRandomDocs(IndexWriter iw, int numDocs, int maxTerm) throws IOException {
+    for (int i = 0; i < numDocs; ++i) {
+      Document d = new Document();
+      for (int j = random().nextInt(3); j >= 0; --j) {
+        d.add(new SortedSetDocValuesField("ssdv", new BytesRef(Integer.toString(random().nextInt(maxTerm), Character.MAX_RADIX))));
+      }
+      iw.addDocument(d);
+    }
+  }
+
+  private static SortedSetDocValues[] getValues(IndexReader reader) throws IOException {
+    List<LeafReaderContext> leaves = reader.leaves();
+    SortedSetDocValues[] values = new SortedSetDocValues[leaves.size()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = DocValues.getSortedSet(leaves.get(i).reader(), "ssdv");
+    }
+    return values;
+  }
+
+  /** Check that {@code actual} maps the same terms to the same global ordinals as {@code expected}. */
+  private static void assertSameMapping(IndexReader reader, OrdinalMap expected, OrdinalMap actual) throws IOException {
+    assertEquals(expected.getValueCount(), actual.getValueCount());
+    SortedSetDocValues[] values = getValues(reader);
+    SortedSetDocValues[] firstSegmentValues = getValues(reader);
+    for (int i = 0; i < values.length; ++i) {
+      LongValues expectedGlobalOrds = expected.getGlobalOrds(i);
+      LongValues actualGlobalOrds = actual.getGlobalOrds(i);
+      for (long ord = 0; ord < values[i].getValueCount(); ++ord) {
+        long globalOrd = expectedGlobalOrds.get(ord);
+        assertEquals(globalOrd, actualGlobalOrds.get(ord));
+        int firstSegment = actual.getFirstSegmentNumber(globalOrd);
+        assertEquals(values[i].lookupOrd(ord),
+            firstSegmentValues[firstSegment].lookupOrd(actual.getFirstSegmentOrd(globalOrd)));
+      }
+    }
+  }
+
+  /** Check that the first segment is the least one that has the term, like with a sequential build. */
+  private static void assertSameFirstSegments(OrdinalMap expected, OrdinalMap actual) {
+    for (long globalOrd = 0; globalOrd < expected.getValueCount(); ++globalOrd) {
+      assertEquals(expected.getFirstSegmentNumber(globalOrd), actual.getFirstSegmentNumber(globalOrd));
+      assertEquals(expected.getFirstSegmentOrd(globalOrd), actual.getFirstSegmentOrd(globalOrd));
+    }
+  }
+
+  public void testParallelBuild() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig cfg = new IndexWriterConfig(new MockAnalyzer(random()))
+        .setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter iw = new IndexWriter(dir, cfg);
+    // a large segment so that the term space gets split
+    addRandomDocs(iw, 50000, 200000);
+    iw.commit();
+    for (int i = TestUtil.nextInt(random(), 1, 5); i > 0; --i) {
+      addRandomDocs(iw, TestUtil.nextInt(random(), 1, 10000), TestUtil.nextInt(random(), 1, 300000));
+      iw.commit();
+    }
+    DirectoryReader r = iw.getReader();
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4),
+        new NamedThreadFactory("TestOrdinalMap"));
+    try {
+      OrdinalMap expected = OrdinalMap.build(null, getValues(r), PackedInts.DEFAULT);
+      OrdinalMap actual = OrdinalMap.build(null, r.leaves(), "ssdv", PackedInts.DEFAULT, executor);
+      assertSameMapping(r, expected, actual);
+      assertSameFirstSegments(expected, actual);
+
+      // tasks that the executor rejects are run by the caller
+      actual = OrdinalMap.build(null, r.leaves(), "ssdv", PackedInts.DEFAULT, task -> {
+        throw new RejectedExecutionException();
+      });
+      assertSameMapping(r, expected, actual);
+
+      // the caller may be the only thread of the executor
+      ExecutorService singleThread = Executors.newSingleThreadExecutor(new NamedThreadFactory("TestOrdinalMap"));
+      try {
+        actual = singleThread.submit(() -> OrdinalMap.build(null, r.leaves(), "ssdv", PackedInts.DEFAULT, singleThread)).get();
+        assertSameMapping(r, expected, actual);
+      } finally {
+        singleThread.shutdown();
+        singleThread.awaitTermination(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    iw.close();
+    r.close();
+    dir.close();
+  }
+
+  private static int[] previousSegments(IndexReader previous, IndexReader reader) {
+    List<LeafReaderContext> previousLeaves = previous.leaves();
+    List<LeafReaderContext> leaves = reader.leaves();
+    int[] previousSegments = new int[previousLeaves.size()];
+    for (int i = 0; i < previousSegments.length; ++i) {
+      previousSegments[i] = -1;
+      for (int j = 0; j < leaves.size(); ++j) {
+        if (previousLeaves.get(i).reader().getCoreCacheHelper().getKey() == leaves.get(j).reader().getCoreCacheHelper().getKey()) {
+          previousSegments[i] = j;
+        }
+      }
+    }
+    return previousSegments;
+  }
+
+  public void testIncrementalBuild() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig cfg = new IndexWriterConfig(new MockAnalyzer(random()))
+        .setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter iw = new IndexWriter(dir, cfg);
+    for (int i = TestUtil.nextInt(random(), 1, 5); i > 0; --i) {
+      addRandomDocs(iw, TestUtil.nextInt(random(), 1, 1000), TestUtil.nextInt(random(), 1, 2000));
+      iw.commit();
+    }
+    DirectoryReader r = iw.getReader();
+    OrdinalMap map = OrdinalMap.build(null, getValues(r), PackedInts.DEFAULT);
+
+    for (int iter = 0; iter < 3; ++iter) {
+      for (int i = TestUtil.nextInt(random(), 0, 3); i > 0; --i) {
+        addRandomDocs(iw, TestUtil.nextInt(random(), 1, 1000), TestUtil.nextInt(random(), 1, 3000));
+        iw.commit();
+      }
+      DirectoryReader newReader = DirectoryReader.openIfChanged(r);
+      if (newReader == null) {
+        continue;
+      }
+      OrdinalMap incremental = OrdinalMap.build(null, getValues(newReader), PackedInts.DEFAULT, map, previousSegments(r, newReader));
+      OrdinalMap expected = OrdinalMap.build(null, getValues(newReader), PackedInts.DEFAULT);
+      assertSameMapping(newReader, expected, incremental);
+      assertSameFirstSegments(expected, incremental);
+      r.close();
+      r = newReader;
+      map = incremental;
+    }
+
+    iw.close();
+    r.close();
+    dir.close();
+  }
+
+  public void testIncrementalBuildAfterMerge() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig cfg = new IndexWriterConfig(new MockAnalyzer(random()));
+    IndexWriter iw = new IndexWriter(dir, cfg);
+    for (int i = 0; i < 3; ++i) {
+      addRandomDocs(iw, TestUtil.nextInt(random(), 1, 1000), TestUtil.nextInt(random(), 1, 2000));
+      iw.commit();
+    }
+    DirectoryReader r = iw.getReader();
+    OrdinalMap map = OrdinalMap.build(null, getValues(r), PackedInts.DEFAULT);
+
+    // segments of the previous map are merged away, which requires a full build
+    iw.forceMerge(1);
+    addRandomDocs(iw, TestUtil.nextInt(random(), 1, 1000), TestUtil.nextInt(random(), 1, 2000));
+    iw.commit();
+    DirectoryReader newReader = DirectoryReader.openIfChanged(r);
+    assertNotNull(newReader);
+    int[] previousSegments = previousSegments(r, newReader);
+    assertEquals(-1, previousSegments[0]);
+    OrdinalMap expected = OrdinalMap.build(null, getValues(newReader), PackedInts.DEFAULT);
+    OrdinalMap actual = OrdinalMap.build(null, getValues(newReader), PackedInts.DEFAULT, map, previousSegments);
+    assertSameMapping(newReader, expected, actual);
+
+    expectThrows(IllegalArgumentException.class,
+        () -> OrdinalMap.build(null, getValues(newReader), PackedInts.DEFAULT, map, new int[] { 0 }));
+
+    iw.close();
+    r.close();
+    newReader.close();
+    dir.close();
+  }
+
 }
@@ -21,10 +21,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
@@ -635,6 +637,13 @@ public class TestTieredMergePolicy extends BaseMergePolicyTestCase {
       tmp.setMaxCFSSegmentSizeMB(-2.0);
     });
     
+    tmp.setMaxFullFlushMergeSegmentMB(1.5);
+    assertEquals(1.5, tmp.getMaxFullFlushMergeSegmentMB(), EPSILON);
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      tmp.setMaxFullFlushMergeSegmentMB(-2.0);
+    });
+
     // TODO: Add more checks for other non-double setters!
   }
 
@@ -698,6 +707,65 @@ public class TestTieredMergePolicy extends BaseMergePolicyTestCase {
     assertEquals(10, merge.segments.size());
   }
 
+  public void testFullFlushMerges() throws IOException {
+    TieredMergePolicy policy = new TieredMergePolicy();
+    policy.setMaxMergeAtOnce(5);
+    SegmentInfos infos = new SegmentInfos(Version.LATEST.major);
+    infos.add(makeSegmentCommitInfo("_0", 1_000_000, 0, 1024, IndexWriter.SOURCE_MERGE));
+    for (int i = 1; i <= 12; ++i) {
+      infos.add(makeSegmentCommitInfo("_" + i, 100, 0, 0.1, IndexWriter.SOURCE_FLUSH));
+    }
+    MockMergeContext mergeContext = new MockMergeContext(SegmentCommitInfo::getDelCount);
+
+    // disabled by default
+    assertNull(policy.findFullFlushMerges(MergeTrigger.GET_READER, infos, mergeContext));
+
+    policy.setMaxFullFlushMergeSegmentMB(1);
+    MergeSpecification mergeSpec = policy.findFullFlushMerges(MergeTrigger.GET_READER, infos, mergeContext);
+    assertNotNull(mergeSpec);
+    assertEquals(3, mergeSpec.merges.size());
+    Set<SegmentCommitInfo> merged = new HashSet<>();
+    for (OneMerge merge : mergeSpec.merges) {
+      assertTrue(merge.segments.size() >= 2 && merge.segments.size() <= 5);
+      for (SegmentCommitInfo info : merge.segments) {
+        assertTrue(merged.add(info));
+        assertEquals(IndexWriter.SOURCE_FLUSH, info.info.getDiagnostics().get(IndexWriter.SOURCE));
+      }
+    }
+    assertEquals(12, merged.size());
+
+    // segments that are already merging are not eligible
+    Set<SegmentCommitInfo> merging = new HashSet<>();
+    for (int i = 1; i < infos.size() - 1; ++i) {
+      merging.add(infos.info(i));
+    }
+    mergeContext.setMergingSegments(merging);
+    assertNull(policy.findFullFlushMerges(MergeTrigger.COMMIT, infos, mergeContext));
+  }
+
+  public void testMergeOnGetReader() throws IOException {
+    try (Directory dir = newDirectory()) {
+      IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+      TieredMergePolicy tmp = new TieredMergePolicy();
+      tmp.setMaxFullFlushMergeSegmentMB(Double.POSITIVE_INFINITY);
+      iwc.setMergePolicy(tmp);
+      iwc.setMaxFullFlushMergeWaitMillis(Integer.MAX_VALUE);
+      iwc.setMergeScheduler(new SerialMergeScheduler());
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        for (int i = 0; i < 5; i++) {
+          Document doc = new Document();
+          doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+          w.addDocument(doc);
+          w.flush();
+        }
+        try (DirectoryReader reader = DirectoryReader.open(w)) {
+          assertEquals(5, reader.numDocs());
+          assertEquals(1, reader.leaves().size());
+        }
+      }
+    }
+  }
+
   /**
    * Make sure that singleton merges are considered when the max number of deletes is crossed.
    */
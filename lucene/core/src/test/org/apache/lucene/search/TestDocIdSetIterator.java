@@ -17,6 +17,7 @@
 
 package org.apache.lucene.search;
 
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LuceneTestCase;
 
 import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
@@ -52,4 +53,21 @@ public class TestDocIdSetIterator extends LuceneTestCase {
     assertEquals(19, disi.nextDoc());
     assertEquals(NO_MORE_DOCS, disi.nextDoc());
   }
+
+  public void testRangeIntoBitSet() throws Exception {
+    DocIdSetIterator disi = DocIdSetIterator.range(5, 20);
+    FixedBitSet bitSet = new FixedBitSet(30);
+    disi.intoBitSet(bitSet);
+    assertEquals(NO_MORE_DOCS, disi.docID());
+    assertEquals(15, bitSet.cardinality());
+    assertEquals(5, bitSet.nextSetBit(0));
+    assertEquals(19, bitSet.prevSetBit(29));
+
+    disi = DocIdSetIterator.range(5, 20);
+    bitSet = new FixedBitSet(30);
+    assertEquals(12, disi.advance(12));
+    disi.intoBitSet(bitSet);
+    assertEquals(7, bitSet.cardinality());
+    assertEquals(13, bitSet.nextSetBit(0));
+  }
 }
@@ -29,11 +29,15 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.lucene.search.SortField.FIELD_DOC;
 import static org.apache.lucene.search.SortField.FIELD_SCORE;
@@ -267,6 +271,71 @@ public class TestFieldSortOptimizationSkipping extends LuceneTestCase {
   }
 
 
+  public void testSkipNonCompetitiveSegments() throws IOException {
+    final Directory dir = newDirectory();
+    final IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    final int numSegments = TestUtil.nextInt(random(), 3, 10);
+    final int docsPerSegment = 100;
+    for (int i = 0; i < numSegments * docsPerSegment; ++i) {
+      final Document doc = new Document();
+      doc.add(new NumericDocValuesField("my_field", i));
+      doc.add(new LongPoint("my_field", i));
+      writer.addDocument(doc);
+      if ((i + 1) % docsPerSegment == 0) writer.flush(); // time-partitioned segments
+    }
+    final IndexReader reader = DirectoryReader.open(writer);
+    writer.close();
+    assertEquals(numSegments, reader.leaves().size());
+    IndexSearcher searcher = new IndexSearcher(reader);
+    final int numHits = 3;
+    final int totalHitsThreshold = 3;
+
+    { // once the queue is full with values from the first segment, the other segments are not competitive
+      final Sort sort = new Sort(new SortField("my_field", SortField.Type.LONG));
+      final TopFieldCollector collector = TopFieldCollector.create(sort, numHits, null, totalHitsThreshold);
+      final AtomicInteger visitedSegments = new AtomicInteger();
+      searcher.search(new MatchAllDocsQuery(), new FilterCollector(collector) {
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+          LeafCollector leafCollector = super.getLeafCollector(context);
+          visitedSegments.incrementAndGet();
+          return leafCollector;
+        }
+      });
+      TopDocs topDocs = collector.topDocs();
+      assertEquals(numHits, topDocs.scoreDocs.length);
+      for (int i = 0; i < numHits; i++) {
+        FieldDoc fieldDoc = (FieldDoc) topDocs.scoreDocs[i];
+        assertEquals(i, ((Long) fieldDoc.fields[0]).intValue());
+      }
+      assertEquals(1, visitedSegments.get());
+      assertEquals(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO, topDocs.totalHits.relation);
+    }
+
+    { // in reverse order every segment holds more competitive values than the previous one
+      final Sort sort = new Sort(new SortField("my_field", SortField.Type.LONG, true));
+      final TopFieldCollector collector = TopFieldCollector.create(sort, numHits, null, totalHitsThreshold);
+      final AtomicInteger visitedSegments = new AtomicInteger();
+      searcher.search(new MatchAllDocsQuery(), new FilterCollector(collector) {
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+          LeafCollector leafCollector = super.getLeafCollector(context);
+          visitedSegments.incrementAndGet();
+          return leafCollector;
+        }
+      });
+      TopDocs topDocs = collector.topDocs();
+      for (int i = 0; i < numHits; i++) {
+        FieldDoc fieldDoc = (FieldDoc) topDocs.scoreDocs[i];
+        assertEquals(numSegments * docsPerSegment - 1 - i, ((Long) fieldDoc.fields[0]).intValue());
+      }
+      assertEquals(numSegments, visitedSegments.get());
+    }
+
+    reader.close();
+    dir.close();
+  }
+
   public void testFloatSortOptimization() throws IOException {
     final Directory dir = newDirectory();
     final IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig());
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestIndexSortRangeQuery extends LuceneTestCase {
+
+  public void testLongRange() throws IOException {
+    final int iters = atLeast(5);
+    for (int iter = 0; iter < iters; ++iter) {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+      final boolean reverse = random().nextBoolean();
+      final boolean multiValued = random().nextBoolean();
+      SortField sortField = multiValued
+          ? new SortedNumericSortField("dv", SortField.Type.LONG, reverse)
+          : new SortField("dv", SortField.Type.LONG, reverse);
+      if (random().nextBoolean()) {
+        sortField.setMissingValue(TestUtil.nextLong(random(), -200, 200));
+      }
+      iwc.setIndexSort(new Sort(sortField));
+      RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+
+      final int numDocs = atLeast(200);
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        if (random().nextInt(10) != 0) {
+          final long value = TestUtil.nextLong(random(), -100, 100);
+          doc.add(multiValued ? new SortedNumericDocValuesField("dv", value) : new NumericDocValuesField("dv", value));
+          doc.add(new LongPoint("idx", value));
+        }
+        iw.addDocument(doc);
+      }
+      if (random().nextBoolean()) {
+        iw.deleteDocuments(LongPoint.newRangeQuery("idx", 0L, 10L));
+      }
+      final IndexReader reader = iw.getReader();
+      final IndexSearcher searcher = newSearcher(reader);
+      iw.close();
+
+      for (int i = 0; i < 100; ++i) {
+        final long min = random().nextBoolean() ? Long.MIN_VALUE : TestUtil.nextLong(random(), -110, 110);
+        final long max = random().nextBoolean() ? Long.MAX_VALUE : TestUtil.nextLong(random(), -110, 110);
+        final Query expected = LongPoint.newRangeQuery("idx", min, max);
+        // the fallback query must not be used on sorted segments
+        assertSameHits(searcher, expected, IndexSortRangeQuery.newLongRange("dv", min, max, new MatchNoDocsQuery()));
+      }
+
+      reader.close();
+      dir.close();
+    }
+  }
+
+  public void testDoubleRange() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    SortField sortField = new SortField("dv", SortField.Type.DOUBLE, random().nextBoolean());
+    iwc.setIndexSort(new Sort(sortField));
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextInt(10) != 0) {
+        final double value = random().nextInt(200) / 4d - 25;
+        doc.add(new DoubleDocValuesField("dv", value));
+        doc.add(new DoublePoint("idx", value));
+      }
+      iw.addDocument(doc);
+    }
+    final IndexReader reader = iw.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+    iw.close();
+
+    for (int i = 0; i < 100; ++i) {
+      final double min = random().nextInt(220) / 4d - 30;
+      final double max = random().nextInt(220) / 4d - 30;
+      final Query expected = DoublePoint.newRangeQuery("idx", min, max);
+      assertSameHits(searcher, expected, IndexSortRangeQuery.newDoubleRange("dv", min, max, new MatchNoDocsQuery()));
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testKeywordRange() throws IOException {
+    final int iters = atLeast(5);
+    for (int iter = 0; iter < iters; ++iter) {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+      final boolean reverse = random().nextBoolean();
+      final boolean multiValued = random().nextBoolean();
+      SortField sortField = multiValued
+          ? new SortedSetSortField("dv", reverse)
+          : new SortField("dv", SortField.Type.STRING, reverse);
+      if (random().nextBoolean()) {
+        sortField.setMissingValue(random().nextBoolean() ? SortField.STRING_FIRST : SortField.STRING_LAST);
+      }
+      iwc.setIndexSort(new Sort(sortField));
+      RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+
+      final int numDocs = atLeast(200);
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        if (random().nextInt(10) != 0) {
+          final BytesRef value = new BytesRef(TestUtil.randomSimpleString(random(), 1, 3));
+          doc.add(multiValued ? new SortedSetDocValuesField("dv", value) : new SortedDocValuesField("dv", value));
+          doc.add(new StringField("idx", value, Field.Store.NO));
+        }
+        iw.addDocument(doc);
+      }
+      final IndexReader reader = iw.getReader();
+      final IndexSearcher searcher = newSearcher(reader);
+      iw.close();
+
+      for (int i = 0; i < 100; ++i) {
+        final BytesRef min = random().nextInt(5) == 0 ? null : new BytesRef(TestUtil.randomSimpleString(random(), 1, 3));
+        final BytesRef max = random().nextInt(5) == 0 ? null : new BytesRef(TestUtil.randomSimpleString(random(), 1, 3));
+        final boolean minInclusive = random().nextBoolean();
+        final boolean maxInclusive = random().nextBoolean();
+        final Query expected = new TermRangeQuery("idx", min, max, minInclusive, maxInclusive);
+        assertSameHits(searcher, expected,
+            IndexSortRangeQuery.newKeywordRange("dv", min, minInclusive, max, maxInclusive, new MatchNoDocsQuery()));
+      }
+
+      reader.close();
+      dir.close();
+    }
+  }
+
+  public void testFallback() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    if (random().nextBoolean()) {
+      // sorted on another field
+      iwc.setIndexSort(new Sort(new SortField("other", SortField.Type.LONG)));
+    }
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+    for (int i = 0; i < 10; ++i) {
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("dv", i));
+      doc.add(new NumericDocValuesField("other", -i));
+      iw.addDocument(doc);
+    }
+    final IndexReader reader = iw.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+    iw.close();
+
+    assertEquals(10, searcher.count(IndexSortRangeQuery.newLongRange("dv", 3, 5, new MatchAllDocsQuery())));
+    // the sort field has a different type than the query
+    assertEquals(10, searcher.count(IndexSortRangeQuery.newIntRange("other", -5, -3, new MatchAllDocsQuery())));
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testMultipleValuesPerDocument() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(new Sort(new SortedNumericSortField("dv", SortField.Type.LONG)));
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+    Document doc = new Document();
+    doc.add(new SortedNumericDocValuesField("dv", 1));
+    doc.add(new SortedNumericDocValuesField("dv", 4));
+    iw.addDocument(doc);
+    final IndexReader reader = iw.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+    iw.close();
+
+    // multi-valued segments can't be binary-searched and use the fallback
+    Query fallback = SortedNumericDocValuesField.newSlowRangeQuery("dv", 2, 3);
+    assertEquals(0, searcher.count(IndexSortRangeQuery.newLongRange("dv", 2, 3, fallback)));
+    assertEquals(1, searcher.count(IndexSortRangeQuery.newLongRange("dv", 2, 3, new MatchAllDocsQuery())));
+
+    reader.close();
+    dir.close();
+  }
+
+  private void assertSameHits(IndexSearcher searcher, Query q1, Query q2) throws IOException {
+    final int maxDoc = searcher.getIndexReader().maxDoc();
+    final TopDocs td1 = searcher.search(q1, maxDoc, Sort.INDEXORDER);
+    final TopDocs td2 = searcher.search(q2, maxDoc, Sort.INDEXORDER);
+    assertEquals(q2.toString(), td1.totalHits.value, td2.totalHits.value);
+    for (int i = 0; i < td1.scoreDocs.length; ++i) {
+      assertEquals(td1.scoreDocs[i].doc, td2.scoreDocs[i].doc);
+    }
+  }
+
+  public void testEquals() {
+    Query q1 = IndexSortRangeQuery.newLongRange("foo", 3, 5, new MatchAllDocsQuery());
+    QueryUtils.checkEqual(q1, IndexSortRangeQuery.newLongRange("foo", 3, 5, new MatchAllDocsQuery()));
+    QueryUtils.checkUnequal(q1, IndexSortRangeQuery.newLongRange("foo", 3, 6, new MatchAllDocsQuery()));
+    QueryUtils.checkUnequal(q1, IndexSortRangeQuery.newLongRange("foo", 4, 5, new MatchAllDocsQuery()));
+    QueryUtils.checkUnequal(q1, IndexSortRangeQuery.newLongRange("bar", 3, 5, new MatchAllDocsQuery()));
+    QueryUtils.checkUnequal(q1, IndexSortRangeQuery.newIntRange("foo", 3, 5, new MatchAllDocsQuery()));
+    QueryUtils.checkUnequal(q1, IndexSortRangeQuery.newLongRange("foo", 3, 5, new TermQuery(new Term("foo", "bar"))));
+
+    Query q2 = IndexSortRangeQuery.newKeywordRange("foo", new BytesRef("a"), true, null, false, new MatchAllDocsQuery());
+    QueryUtils.checkEqual(q2, IndexSortRangeQuery.newKeywordRange("foo", new BytesRef("a"), true, null, false, new MatchAllDocsQuery()));
+    QueryUtils.checkUnequal(q2, IndexSortRangeQuery.newKeywordRange("foo", new BytesRef("a"), false, null, false, new MatchAllDocsQuery()));
+  }
+
+  public void testToString() {
+    Query q1 = IndexSortRangeQuery.newLongRange("foo", 3, 5, new MatchAllDocsQuery());
+    assertEquals("foo:[3 TO 5]", q1.toString());
+    assertEquals("[3 TO 5]", q1.toString("foo"));
+
+    Query q2 = IndexSortRangeQuery.newKeywordRange("foo", new BytesRef("bar"), false, null, true, new MatchAllDocsQuery());
+    assertEquals("foo:{bar TO *]", q2.toString());
+  }
+}
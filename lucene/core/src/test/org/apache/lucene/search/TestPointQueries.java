@@ -56,6 +56,7 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.RandomIndexWriter;
@@ -1075,6 +1076,40 @@ public class TestPointQueries extends LuceneTestCase {
     IOUtils.close(r, w, dir);
   }
 
+  public void testSkipSegmentOutsideRange() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig();
+    iwc.setCodec(getCodec());
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int segment = 0; segment < 3; segment++) {
+      for (int i = 0; i < 10; i++) {
+        Document doc = new Document();
+        doc.add(new LongPoint("value", segment * 100 + i));
+        w.addDocument(doc);
+      }
+      w.commit();
+    }
+
+    IndexReader r = DirectoryReader.open(w);
+    assertEquals(3, r.leaves().size());
+    IndexSearcher s = new IndexSearcher(r);
+    Query query = s.rewrite(LongPoint.newRangeQuery("value", 105L, 200L));
+    Weight weight = s.createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1f);
+    for (LeafReaderContext context : r.leaves()) {
+      long minValue = LongPoint.decodeDimension(context.reader().getPointValues("value").getMinPackedValue(), 0);
+      if (minValue == 100) {
+        assertNotNull(weight.scorerSupplier(context));
+      } else {
+        // the values of the segment are all outside of the query range
+        assertNull(weight.scorerSupplier(context));
+      }
+    }
+    assertEquals(6, s.count(query));
+
+    IOUtils.close(r, w, dir);
+  }
+
   public void testWrongNumDims() throws Exception {
     Directory dir = newDirectory();
     IndexWriterConfig iwc = newIndexWriterConfig();
@@ -18,7 +18,10 @@ package org.apache.lucene.store;
 
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 
@@ -43,6 +46,28 @@ public class TestMmapDirectory extends BaseDirectoryTestCase {
     assumeTrue(MMapDirectory.UNMAP_NOT_SUPPORTED_REASON, MMapDirectory.UNMAP_SUPPORTED);
   }
   
+  public void testAdvise() throws Exception {
+    final List<String> advised = new ArrayList<>();
+    try (Directory dir = new MMapDirectory(createTempDir("testAdvise")) {
+      @Override
+      protected void advise(String name, IOContext context, ByteBuffer[] buffers) {
+        assertSame(IOContext.READONCE, context);
+        assertEquals(1, buffers.length);
+        assertEquals(12, buffers[0].capacity());
+        advised.add(name);
+      }
+    }) {
+      try (IndexOutput out = dir.createOutput("test", IOContext.DEFAULT)) {
+        out.writeLong(42L);
+        out.writeInt(7);
+      }
+      try (IndexInput in = dir.openInput("test", IOContext.READONCE)) {
+        assertEquals(42L, in.readLong());
+      }
+    }
+    assertEquals(List.of("test"), advised);
+  }
+
   @Ignore("This test is for JVM testing purposes. There are no guarantees that it may not fail with SIGSEGV!")
   public void testAceWithThreads() throws Exception {
     for (int iter = 0; iter < 10; iter++) {
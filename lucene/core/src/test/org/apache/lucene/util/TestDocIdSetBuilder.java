@@ -86,6 +86,46 @@ public class TestDocIdSetBuilder extends LuceneTestCase {
     assertEquals(new BitDocIdSet(ref), result);
   }
 
+  public void testEstimatedValueCount() throws IOException {
+    final int maxDoc = 1000000 + random().nextInt(1000000);
+    DocIdSetBuilder builder = new DocIdSetBuilder(maxDoc);
+    // a dense estimate makes the builder use a bit set even for few docs
+    builder.setEstimatedValueCount(maxDoc / 2);
+    final FixedBitSet ref = new FixedBitSet(maxDoc);
+    DocIdSetBuilder.BulkAdder adder = builder.grow(3);
+    for (int i = 0; i < 3; ++i) {
+      int doc = random().nextInt(maxDoc);
+      adder.add(doc);
+      ref.set(doc);
+    }
+    DocIdSet result = builder.build();
+    assertTrue(result instanceof BitDocIdSet);
+    assertEquals(new BitDocIdSet(ref), result);
+
+    // a sparse estimate is a no-op
+    builder = new DocIdSetBuilder(maxDoc);
+    builder.setEstimatedValueCount(10);
+    builder.grow(1).add(42);
+    assertTrue(builder.build() instanceof IntArrayDocIdSet);
+  }
+
+  public void testAddRanges() throws IOException {
+    final int maxDoc = 100000 + random().nextInt(100000);
+    DocIdSetBuilder builder = new DocIdSetBuilder(maxDoc);
+    if (random().nextBoolean()) {
+      builder.setEstimatedValueCount(maxDoc);
+    }
+    final FixedBitSet ref = new FixedBitSet(maxDoc);
+    final int numRanges = 1 + random().nextInt(10);
+    for (int i = 0; i < numRanges; ++i) {
+      int from = random().nextInt(maxDoc - 1);
+      int to = TestUtil.nextInt(random(), from + 1, Math.min(maxDoc, from + 1000));
+      builder.grow(to - from).add(DocIdSetIterator.range(from, to));
+      ref.set(from, to);
+    }
+    assertEquals(new BitDocIdSet(ref), builder.build());
+  }
+
   public void testRandom() throws IOException {
     final int maxDoc = TEST_NIGHTLY ? TestUtil.nextInt(random(), 1, 10000000) : TestUtil.nextInt(random(), 1, 100000) ;
     for (int i = 1 ; i < maxDoc / 2; i <<=1) {
@@ -426,6 +426,35 @@ public class TestFixedBitSet extends BaseBitSetTestCase<FixedBitSet> {
     assertEquals(bitSet1.cardinality(), intersectionCount);
   }
   
+  public void testOrDocBaseBitSetIterator() throws IOException {
+    Random random = random();
+    int numBits = TestUtil.nextInt(random, 1000, 2000);
+    int docBase = TestUtil.nextInt(random, 0, numBits / 128) * 64;
+    int otherNumBits = TestUtil.nextInt(random, 1, numBits - docBase);
+
+    FixedBitSet bitSet = new FixedBitSet(numBits);
+    FixedBitSet expected = new FixedBitSet(numBits);
+    for (int i = 0; i < numBits; i += TestUtil.nextInt(random, 1, 50)) {
+      bitSet.set(i);
+      expected.set(i);
+    }
+    FixedBitSet other = new FixedBitSet(otherNumBits);
+    int cost = 0;
+    for (int i = 0; i < otherNumBits; i += TestUtil.nextInt(random, 1, 10)) {
+      other.set(i);
+      expected.set(docBase + i);
+      cost++;
+    }
+    bitSet.or(new DocBaseBitSetIterator(other, cost, docBase));
+    assertEquals(expected, bitSet);
+
+    DocBaseBitSetIterator iterator = new DocBaseBitSetIterator(other, cost, docBase);
+    for (int i = other.nextSetBit(0); i != DocIdSetIterator.NO_MORE_DOCS; i = i + 1 < otherNumBits ? other.nextSetBit(i + 1) : DocIdSetIterator.NO_MORE_DOCS) {
+      assertEquals(docBase + i, iterator.nextDoc());
+    }
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, iterator.nextDoc());
+  }
+
   // Demonstrates that the presence of ghost bits in the last used word can cause spurious failures
   public void testUnionCount() {
     Random random = random();
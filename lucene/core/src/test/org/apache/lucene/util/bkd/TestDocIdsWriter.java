@@ -18,9 +18,12 @@ package org.apache.lucene.util.bkd;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.lucene.index.PointValues.IntersectVisitor;
 import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
@@ -59,6 +62,37 @@ public class TestDocIdsWriter extends LuceneTestCase {
     }
   }
 
+  public void testContinuousIds() throws Exception {
+    int numIters = atLeast(100);
+    try (Directory dir = newDirectory()) {
+      for (int iter = 0; iter < numIters; ++iter) {
+        int[] docIDs = new int[TestUtil.nextInt(random(), 1, 5000)];
+        final int start = random().nextInt(1 << 20);
+        for (int i = 0; i < docIDs.length; ++i) {
+          docIDs[i] = start + i;
+        }
+        test(dir, docIDs);
+      }
+    }
+  }
+
+  public void testDenseSorted() throws Exception {
+    int numIters = atLeast(100);
+    try (Directory dir = newDirectory()) {
+      for (int iter = 0; iter < numIters; ++iter) {
+        final int size = TestUtil.nextInt(random(), 1, 5000);
+        final int min = random().nextInt(1 << 20);
+        final int range = size * TestUtil.nextInt(random(), 1, 20);
+        Set<Integer> set = new HashSet<>();
+        while (set.size() < size) {
+          set.add(min + random().nextInt(range));
+        }
+        int[] docIDs = set.stream().mapToInt(Integer::intValue).sorted().toArray();
+        test(dir, docIDs);
+      }
+    }
+  }
+
   private void test(Directory dir, int[] ints) throws Exception {
     final long len;
     try(IndexOutput out = dir.createOutput("tmp", IOContext.DEFAULT)) {
@@ -97,6 +131,37 @@ public class TestDocIdsWriter extends LuceneTestCase {
       assertArrayEquals(ints, read);
       assertEquals(len, in.getFilePointer());
     }
+    try (IndexInput in = dir.openInput("tmp", IOContext.READONCE)) {
+      int[] read = new int[ints.length];
+      DocIdsWriter.readInts(in, ints.length, new IntersectVisitor() {
+        int i = 0;
+        @Override
+        public void visit(int docID) throws IOException {
+          read[i++] = docID;
+        }
+
+        @Override
+        public void visit(DocIdSetIterator iterator) throws IOException {
+          assertEquals(-1, iterator.docID());
+          for (int docID = iterator.nextDoc(); docID != DocIdSetIterator.NO_MORE_DOCS; docID = iterator.nextDoc()) {
+            read[i++] = docID;
+          }
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) throws IOException {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+          throw new UnsupportedOperationException();
+        }
+
+      });
+      assertArrayEquals(ints, read);
+      assertEquals(len, in.getFilePointer());
+    }
     dir.deleteFile("tmp");
   }
 
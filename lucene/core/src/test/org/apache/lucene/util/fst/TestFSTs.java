@@ -53,6 +53,7 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDataOutput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.IOContext;
@@ -1661,4 +1662,76 @@ public class TestFSTs extends LuceneTestCase {
     assertEquals(5, (long) Util.get(fst, ac));
     assertEquals(7, (long) Util.get(fst, bd));
   }
+
+  private static List<BytesRef> randomSortedTerms(int count) {
+    Set<BytesRef> terms = new HashSet<>();
+    while (terms.size() < count) {
+      terms.add(new BytesRef(TestUtil.randomSimpleString(random(), 1, 20)));
+    }
+    List<BytesRef> sorted = new ArrayList<>(terms);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  private static FST<Long> build(FSTCompiler<Long> fstCompiler, List<BytesRef> terms) throws IOException {
+    IntsRefBuilder scratch = new IntsRefBuilder();
+    for (int i = 0; i < terms.size(); i++) {
+      fstCompiler.add(Util.toIntsRef(terms.get(i), scratch), (long) (i % 100));
+    }
+    return fstCompiler.compile();
+  }
+
+  private static void assertTerms(FST<Long> fst, List<BytesRef> terms) throws IOException {
+    for (int i = 0; i < terms.size(); i++) {
+      assertEquals(i % 100, (long) Util.get(fst, terms.get(i)));
+    }
+    BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<>(fst);
+    for (BytesRef term : terms) {
+      assertEquals(term, fstEnum.next().input);
+    }
+    assertNull(fstEnum.next());
+  }
+
+  public void testSuffixRAMLimit() throws Exception {
+    List<BytesRef> terms = randomSortedTerms(atLeast(20000));
+    PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    FST<Long> minimal = build(new FSTCompiler<>(FST.INPUT_TYPE.BYTE1, outputs), terms);
+    FST<Long> bounded = build(new FSTCompiler.Builder<>(FST.INPUT_TYPE.BYTE1, outputs).suffixRAMLimitMB(0.01).build(), terms);
+    assertTerms(minimal, terms);
+    assertTerms(bounded, terms);
+    // not all suffixes are shared anymore
+    assertTrue(bounded.ramBytesUsed() >= minimal.ramBytesUsed());
+
+    expectThrows(IllegalArgumentException.class, () -> new FSTCompiler.Builder<>(FST.INPUT_TYPE.BYTE1, outputs).suffixRAMLimitMB(0));
+  }
+
+  public void testDataOutput() throws Exception {
+    List<BytesRef> terms = randomSortedTerms(atLeast(20000));
+    PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    final double suffixRAMLimitMB = random().nextBoolean() ? Double.POSITIVE_INFINITY : 0.01;
+    final int bytesPageBits = TestUtil.nextInt(random(), 8, 15);
+
+    FST<Long> inMemory = build(new FSTCompiler.Builder<>(FST.INPUT_TYPE.BYTE1, outputs)
+        .suffixRAMLimitMB(suffixRAMLimitMB).bytesPageBits(bytesPageBits).build(), terms);
+    ByteBuffersDataOutput metaOut = new ByteBuffersDataOutput();
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    inMemory.save(metaOut, out);
+    expectThrows(IllegalStateException.class, () -> inMemory.saveMetadata(new ByteBuffersDataOutput()));
+
+    ByteBuffersDataOutput streamedMetaOut = new ByteBuffersDataOutput();
+    ByteBuffersDataOutput streamedOut = new ByteBuffersDataOutput();
+    FST<Long> streamed = build(new FSTCompiler.Builder<>(FST.INPUT_TYPE.BYTE1, outputs)
+        .suffixRAMLimitMB(suffixRAMLimitMB).bytesPageBits(bytesPageBits).dataOutput(streamedOut).build(), terms);
+    expectThrows(IllegalStateException.class, streamed::getBytesReader);
+    expectThrows(IllegalStateException.class, () -> streamed.save(new ByteBuffersDataOutput(), new ByteBuffersDataOutput()));
+    streamed.saveMetadata(streamedMetaOut);
+
+    FST<Long> loaded = new FST<>(streamedMetaOut.toDataInput(), streamedOut.toDataInput(), outputs);
+    assertTerms(loaded, terms);
+    if (suffixRAMLimitMB == Double.POSITIVE_INFINITY) {
+      // same minimal FST
+      assertArrayEquals(out.toArrayCopy(), streamedOut.toArrayCopy());
+      assertArrayEquals(metaOut.toArrayCopy(), streamedMetaOut.toArrayCopy());
+    }
+  }
 }
@@ -318,6 +318,25 @@ public class FacetsConfig {
 
   private void processFacetFields(TaxonomyWriter taxoWriter, Map<String,List<FacetField>> byField, Document doc) throws IOException {
 
+    // Add the categories of all fields at once, so that the taxonomy writer
+    // needs to synchronize at most once per document:
+    List<FacetLabel> labels = new ArrayList<>();
+    for (List<FacetField> facetFields : byField.values()) {
+      for (FacetField facetField : facetFields) {
+        FacetsConfig.DimConfig ft = getDimConfig(facetField.dim);
+        if (facetField.path.length > 1 && ft.hierarchical == false) {
+          throw new IllegalArgumentException("dimension \"" + facetField.dim + "\" is not hierarchical yet has " + facetField.path.length + " components");
+        }
+        labels.add(new FacetLabel(facetField.dim, facetField.path));
+      }
+    }
+    if (labels.isEmpty()) {
+      return;
+    }
+    checkTaxoWriter(taxoWriter);
+    int[] labelOrdinals = taxoWriter.addCategories(labels.toArray(new FacetLabel[0]));
+    int labelUpto = 0;
+
     for(Map.Entry<String,List<FacetField>> ent : byField.entrySet()) {
 
       String indexFieldName = ent.getKey();
@@ -327,14 +346,9 @@ public class FacetsConfig {
       for(FacetField facetField : ent.getValue()) {
 
         FacetsConfig.DimConfig ft = getDimConfig(facetField.dim);
-        if (facetField.path.length > 1 && ft.hierarchical == false) {
-          throw new IllegalArgumentException("dimension \"" + facetField.dim + "\" is not hierarchical yet has " + facetField.path.length + " components");
-        }
-      
-        FacetLabel cp = new FacetLabel(facetField.dim, facetField.path);
-
-        checkTaxoWriter(taxoWriter);
-        int ordinal = taxoWriter.addCategory(cp);
+        FacetLabel cp = labels.get(labelUpto);
+        int ordinal = labelOrdinals[labelUpto];
+        labelUpto++;
         ordinals.append(ordinal);
         //System.out.println("ords[" + (ordinals.length-1) + "]=" + ordinal);
         //System.out.println("  add cp=" + cp);
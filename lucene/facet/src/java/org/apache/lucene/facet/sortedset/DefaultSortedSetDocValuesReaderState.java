@@ -20,7 +20,9 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState.OrdRange;
@@ -37,6 +39,7 @@ import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.packed.PackedInts;
 
 /**
  * Default implementation of {@link SortedSetDocValuesFacetCounts}. You must ensure the original
@@ -63,9 +66,20 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
   /** Creates this, pulling doc values from the specified
    *  field. */
   public DefaultSortedSetDocValuesReaderState(IndexReader reader, String field) throws IOException {
+    this(reader, field, null);
+  }
+
+  /** Creates this, pulling doc values from the specified
+   *  field, and building the ordinal map of the field with
+   *  the threads of the given executor if it is not null. */
+  public DefaultSortedSetDocValuesReaderState(IndexReader reader, String field, Executor executor) throws IOException {
     this.field = field;
     this.reader = reader;
 
+    if (executor != null) {
+      buildOrdinalMap(executor);
+    }
+
     // We need this to create thread-safe MultiSortedSetDV
     // per collector:
     SortedSetDocValues dv = getDocValues();
@@ -107,6 +121,32 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
     }
   }
 
+  /** Builds and caches the ordinal map of the field, splitting the work across threads of the given executor. */
+  private void buildOrdinalMap(Executor executor) throws IOException {
+    final IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+    final List<LeafReaderContext> leaves = reader.leaves();
+    if (cacheHelper == null || leaves.size() <= 1) {
+      return;
+    }
+    boolean anyReal = false;
+    for (LeafReaderContext context : leaves) {
+      final FieldInfo fieldInfo = context.reader().getFieldInfos().fieldInfo(field);
+      if (fieldInfo != null) {
+        if (fieldInfo.getDocValuesType() != DocValuesType.SORTED_SET) {
+          // getDocValues reports the wrong doc values type
+          return;
+        }
+        anyReal = true;
+      }
+    }
+    if (anyReal) {
+      OrdinalMap map = OrdinalMap.build(cacheHelper.getKey(), leaves, field, PackedInts.DEFAULT, executor);
+      synchronized (cachedOrdMaps) {
+        cachedOrdMaps.put(field, map);
+      }
+    }
+  }
+
   /**
    * Return the memory usage of this object in bytes. Negative values are illegal.
    */
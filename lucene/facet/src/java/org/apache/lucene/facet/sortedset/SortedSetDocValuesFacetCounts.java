@@ -145,12 +145,20 @@ public class SortedSetDocValuesFacetCounts extends Facets {
       return null;
     }
 
-    LabelAndValue[] labelValues = new LabelAndValue[q.size()];
-    for(int i=labelValues.length-1;i>=0;i--) {
+    final long[] ords = new long[q.size()];
+    final int[] values = new int[q.size()];
+    for(int i=ords.length-1;i>=0;i--) {
       TopOrdAndIntQueue.OrdAndValue ordAndValue = q.pop();
-      final BytesRef term = dv.lookupOrd(ordAndValue.ord);
-      String[] parts = FacetsConfig.stringToPath(term.utf8ToString());
-      labelValues[i] = new LabelAndValue(parts[1], ordAndValue.value);
+      ords[i] = ordAndValue.ord;
+      values[i] = ordAndValue.value;
+    }
+
+    // resolve all labels at once, which is cheaper than looking up ords one by one
+    final BytesRef[] terms = dv.lookupOrds(ords);
+    LabelAndValue[] labelValues = new LabelAndValue[ords.length];
+    for(int i=0;i<labelValues.length;i++) {
+      String[] parts = FacetsConfig.stringToPath(terms[i].utf8ToString());
+      labelValues[i] = new LabelAndValue(parts[1], values[i]);
     }
 
     return new FacetResult(dim, new String[0], dimCount, labelValues, childCount);
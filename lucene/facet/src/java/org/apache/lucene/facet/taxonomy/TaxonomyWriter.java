@@ -65,6 +65,20 @@ public interface TaxonomyWriter extends Closeable, TwoPhaseCommit {
    * any of its descendants. 
    */ 
   public int addCategory(FacetLabel categoryPath) throws IOException;
+
+  /**
+   * Adds the given categories to the taxonomy, as if {@link #addCategory} was
+   * called for each of them in order, and returns their ordinals. Implementations
+   * may add categories that are not in the taxonomy yet more efficiently than
+   * one at a time.
+   */
+  public default int[] addCategories(FacetLabel... categoryPaths) throws IOException {
+    int[] ordinals = new int[categoryPaths.length];
+    for (int i = 0; i < categoryPaths.length; i++) {
+      ordinals[i] = addCategory(categoryPaths[i]);
+    }
+    return ordinals;
+  }
   
   /**
    * getParent() returns the ordinal of the parent category of the category
@@ -434,6 +434,39 @@ public class DirectoryTaxonomyWriter implements TaxonomyWriter {
     return res;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Categories are looked up in the cache without locking first, then the
+   * ones that are not cached are added while holding the lock only once.
+   */
+  @Override
+  public int[] addCategories(FacetLabel... categoryPaths) throws IOException {
+    ensureOpen();
+    int[] ordinals = new int[categoryPaths.length];
+    boolean allCached = true;
+    for (int i = 0; i < categoryPaths.length; i++) {
+      ordinals[i] = cache.get(categoryPaths[i]);
+      if (ordinals[i] < 0) {
+        allCached = false;
+      }
+    }
+    if (allCached == false) {
+      synchronized (this) {
+        for (int i = 0; i < categoryPaths.length; i++) {
+          if (ordinals[i] < 0) {
+            int res = findCategory(categoryPaths[i]);
+            if (res < 0) {
+              res = internalAddCategory(categoryPaths[i]);
+            }
+            ordinals[i] = res;
+          }
+        }
+      }
+    }
+    return ordinals;
+  }
+
   /**
    * Add a new category into the index (and the cache), and return its new
    * ordinal.
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.facet.taxonomy.writercache;
+
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.util.Accountable;
+
+/**
+ * A {@link UTF8TaxonomyWriterCache} that is split into shards, each with its
+ * own lock, so that many indexing threads can look up labels concurrently.
+ * Labels are assigned to shards by hash. Like {@link UTF8TaxonomyWriterCache},
+ * this cache never frees memory and stores labels as utf-8 bytes in large
+ * blocks, so the number of cached labels does not add objects to the heap.
+ *
+ * @lucene.experimental
+ */
+public final class ShardedUTF8TaxonomyWriterCache implements TaxonomyWriterCache, Accountable {
+
+  /** Default number of shards. */
+  public static final int DEFAULT_NUM_SHARDS = 16;
+
+  private final UTF8TaxonomyWriterCache[] shards;
+  private final int shardMask;
+
+  /** Creates a cache with {@link #DEFAULT_NUM_SHARDS} shards. */
+  public ShardedUTF8TaxonomyWriterCache() {
+    this(DEFAULT_NUM_SHARDS);
+  }
+
+  /**
+   * Creates a cache with the given number of shards, which must be a power of
+   * two. More shards reduce contention between threads, but each shard
+   * allocates its own blocks.
+   */
+  public ShardedUTF8TaxonomyWriterCache(int numShards) {
+    if (numShards < 1 || Integer.bitCount(numShards) != 1) {
+      throw new IllegalArgumentException("numShards must be a power of two, got " + numShards);
+    }
+    shards = new UTF8TaxonomyWriterCache[numShards];
+    for (int i = 0; i < numShards; i++) {
+      shards[i] = new UTF8TaxonomyWriterCache();
+    }
+    shardMask = numShards - 1;
+  }
+
+  private UTF8TaxonomyWriterCache shard(FacetLabel label) {
+    int hash = label.hashCode();
+    // spread the high bits, since the hash of short labels varies mostly in the low bits
+    hash ^= hash >>> 16;
+    return shards[hash & shardMask];
+  }
+
+  @Override
+  public int get(FacetLabel label) {
+    return shard(label).get(label);
+  }
+
+  @Override
+  public boolean put(FacetLabel label, int ord) {
+    return shard(label).put(label, ord);
+  }
+
+  @Override
+  public boolean isFull() {
+    // we are never full
+    return false;
+  }
+
+  @Override
+  public void clear() {
+    for (UTF8TaxonomyWriterCache shard : shards) {
+      shard.clear();
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (UTF8TaxonomyWriterCache shard : shards) {
+      size += shard.size();
+    }
+    return size;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytes = 0;
+    for (UTF8TaxonomyWriterCache shard : shards) {
+      bytes += shard.ramBytesUsed();
+    }
+    return bytes;
+  }
+
+  @Override
+  public void close() {
+    for (UTF8TaxonomyWriterCache shard : shards) {
+      shard.close();
+    }
+  }
+}
@@ -36,8 +36,12 @@ import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
@@ -345,6 +349,49 @@ public class TestSortedSetDocValuesFacets extends FacetTestCase {
     IOUtils.close(searcher.getIndexReader(), indexDir, taxoDir);
   }
 
+  public void testParallelOrdinalMap() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    FacetsConfig config = new FacetsConfig();
+    // a segment with enough unique values to split the ordinal map build
+    for (int i = 0; i < 40000; i++) {
+      Document doc = new Document();
+      doc.add(new SortedSetDocValuesFacetField("a", Integer.toString(random().nextInt(100000))));
+      w.addDocument(config.build(doc));
+    }
+    w.commit();
+    for (int i = 0; i < 100; i++) {
+      Document doc = new Document();
+      doc.add(new SortedSetDocValuesFacetField("a", Integer.toString(random().nextInt(200000))));
+      doc.add(new SortedSetDocValuesFacetField("b", "bar"));
+      w.addDocument(config.build(doc));
+    }
+    w.commit();
+    IndexReader r = DirectoryReader.open(w);
+
+    ExecutorService exec = new ThreadPoolExecutor(1, TestUtil.nextInt(random(), 2, 6), Long.MAX_VALUE, TimeUnit.MILLISECONDS,
+                                                  new LinkedBlockingQueue<Runnable>(),
+                                                  new NamedThreadFactory("TestSortedSetDocValuesFacets"));
+    try {
+      SortedSetDocValuesReaderState expected = new DefaultSortedSetDocValuesReaderState(r);
+      SortedSetDocValuesReaderState actual = new DefaultSortedSetDocValuesReaderState(r, FacetsConfig.DEFAULT_INDEX_FIELD_NAME, exec);
+      assertEquals(expected.getSize(), actual.getSize());
+      assertEquals(expected.getPrefixToOrdRange().keySet(), actual.getPrefixToOrdRange().keySet());
+      SortedSetDocValues expectedValues = expected.getDocValues();
+      SortedSetDocValues actualValues = actual.getDocValues();
+      for (int ord = 0; ord < expected.getSize(); ord++) {
+        assertEquals(expectedValues.lookupOrd(ord), actualValues.lookupOrd(ord));
+      }
+      IndexSearcher searcher = newSearcher(r);
+      assertEquals(getAllFacets(searcher, expected, null).getTopChildren(10, "a"),
+          getAllFacets(searcher, actual, null).getTopChildren(10, "a"));
+    } finally {
+      exec.shutdownNow();
+    }
+    w.close();
+    IOUtils.close(r, dir);
+  }
+
   private static Facets getAllFacets(IndexSearcher searcher, SortedSetDocValuesReaderState state,
                                      ExecutorService exec) throws IOException, InterruptedException {
     if (random().nextBoolean()) {
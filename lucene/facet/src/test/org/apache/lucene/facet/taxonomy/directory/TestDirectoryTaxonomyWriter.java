@@ -33,6 +33,7 @@ import org.apache.lucene.facet.taxonomy.FacetLabel;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter.MemoryOrdinalMap;
 import org.apache.lucene.facet.taxonomy.writercache.LruTaxonomyWriterCache;
+import org.apache.lucene.facet.taxonomy.writercache.ShardedUTF8TaxonomyWriterCache;
 import org.apache.lucene.facet.taxonomy.writercache.TaxonomyWriterCache;
 import org.apache.lucene.facet.taxonomy.writercache.UTF8TaxonomyWriterCache;
 import org.apache.lucene.index.DirectoryReader;
@@ -254,9 +255,12 @@ public class TestDirectoryTaxonomyWriter extends FacetTestCase {
     final ConcurrentHashMap<String,String> values = new ConcurrentHashMap<>();
     final double d = random().nextDouble();
     final TaxonomyWriterCache cache;
-    if (d < 0.7) {
+    if (d < 0.35) {
       // this is the fastest, yet most memory consuming
       cache = new UTF8TaxonomyWriterCache();
+    } else if (d < 0.7) {
+      // same as UTF8, but with less contention between threads
+      cache = new ShardedUTF8TaxonomyWriterCache(1 << random().nextInt(5));
     } else if (TEST_NIGHTLY && d > 0.98) {
       // this is the slowest, but tests the writer concurrency when no caching is done.
       // only pick it during NIGHTLY tests, and even then, with very low chances.
@@ -280,7 +284,12 @@ public class TestDirectoryTaxonomyWriter extends FacetTestCase {
               int value = random.nextInt(range);
               FacetLabel cp = new FacetLabel(Integer.toString(value / 1000), Integer.toString(value / 10000),
                   Integer.toString(value / 100000), Integer.toString(value));
-              int ord = tw.addCategory(cp);
+              int ord;
+              if (random.nextBoolean()) {
+                ord = tw.addCategory(cp);
+              } else {
+                ord = tw.addCategories(cp.subpath(2), cp)[1];
+              }
               assertTrue("invalid parent for ordinal " + ord + ", category " + cp, tw.getParent(ord) != -1);
               String l1 = FacetsConfig.pathToString(cp.components, 1);
               String l2 = FacetsConfig.pathToString(cp.components, 2);
@@ -332,6 +341,28 @@ public class TestDirectoryTaxonomyWriter extends FacetTestCase {
     IOUtils.close(dtr, dir);
   }
 
+  public void testAddCategories() throws Exception {
+    Directory dir = newDirectory();
+    DirectoryTaxonomyWriter tw = new DirectoryTaxonomyWriter(dir);
+    int existing = tw.addCategory(new FacetLabel("a", "b"));
+    FacetLabel[] labels = new FacetLabel[] {
+        new FacetLabel("a", "b"), new FacetLabel("c", "d", "e"), new FacetLabel("a"), new FacetLabel("c", "d", "e"), new FacetLabel("c", "d")
+    };
+    int[] ordinals = tw.addCategories(labels);
+    assertEquals(labels.length, ordinals.length);
+    assertEquals(existing, ordinals[0]);
+    assertEquals(ordinals[1], ordinals[3]);
+    assertEquals(ordinals[4], tw.getParent(ordinals[1]));
+    assertEquals(ordinals[2], tw.getParent(existing));
+    for (int i = 0; i < labels.length; i++) {
+      assertEquals(ordinals[i], tw.addCategory(labels[i]));
+    }
+    // root + a, a/b, c, c/d, c/d/e
+    assertEquals(6, tw.getSize());
+    assertEquals(0, tw.addCategories().length);
+    IOUtils.close(tw, dir);
+  }
+
   private long getEpoch(Directory taxoDir) throws IOException {
     SegmentInfos infos = SegmentInfos.readLatestCommit(taxoDir);
     return Long.parseLong(infos.getUserData().get(DirectoryTaxonomyWriter.INDEX_EPOCH));
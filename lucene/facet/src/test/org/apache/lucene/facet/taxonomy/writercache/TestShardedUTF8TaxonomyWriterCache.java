@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.facet.taxonomy.writercache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.facet.FacetTestCase;
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+
+public class TestShardedUTF8TaxonomyWriterCache extends FacetTestCase {
+
+  public void testIllegalNumShards() {
+    expectThrows(IllegalArgumentException.class, () -> new ShardedUTF8TaxonomyWriterCache(0));
+    expectThrows(IllegalArgumentException.class, () -> new ShardedUTF8TaxonomyWriterCache(3));
+  }
+
+  public void testPutGet() {
+    ShardedUTF8TaxonomyWriterCache cache = new ShardedUTF8TaxonomyWriterCache(1 << random().nextInt(5));
+    int numLabels = atLeast(10000);
+    for (int ord = 0; ord < numLabels; ord++) {
+      assertEquals(LabelToOrdinal.INVALID_ORDINAL, cache.get(new FacetLabel("foo", Integer.toString(ord))));
+      assertFalse(cache.put(new FacetLabel("foo", Integer.toString(ord)), ord));
+    }
+    assertEquals(numLabels, cache.size());
+    assertFalse(cache.isFull());
+    for (int ord = 0; ord < numLabels; ord++) {
+      assertEquals(ord, cache.get(new FacetLabel("foo", Integer.toString(ord))));
+    }
+    assertTrue(cache.ramBytesUsed() > 0);
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(LabelToOrdinal.INVALID_ORDINAL, cache.get(new FacetLabel("foo", "0")));
+    cache.close();
+  }
+
+  public void testConcurrentPutGet() throws Exception {
+    ShardedUTF8TaxonomyWriterCache cache = new ShardedUTF8TaxonomyWriterCache();
+    int numLabels = atLeast(10000);
+    AtomicInteger nextOrd = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[atLeast(3)];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+          for (int ord = nextOrd.getAndIncrement(); ord < numLabels; ord = nextOrd.getAndIncrement()) {
+            FacetLabel label = new FacetLabel("dim", Integer.toString(ord % 100), Integer.toString(ord));
+            cache.put(label, ord);
+            assertEquals(ord, cache.get(label));
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numLabels, cache.size());
+    for (int ord = 0; ord < numLabels; ord++) {
+      assertEquals(ord, cache.get(new FacetLabel("dim", Integer.toString(ord % 100), Integer.toString(ord))));
+    }
+  }
+}
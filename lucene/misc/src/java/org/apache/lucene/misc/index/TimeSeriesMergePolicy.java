@@ -0,0 +1,487 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * A {@link MergePolicy} for append-only time-series indexes, such as logs,
+ * where documents carry a timestamp indexed as a {@link LongPoint} and mostly
+ * arrive in timestamp order.
+ * <p>
+ * Segments are ordered by the minimum and maximum timestamps of their
+ * {@link PointValues}, and only segments that are next to each other in this
+ * order are merged together. Merged segments therefore cover a contiguous time
+ * range that doesn't overlap with more segments than the merged ones did, so
+ * that queries on recent time ranges can skip whole segments based on their
+ * point values. Within this order, segments are merged by levels, like
+ * {@link org.apache.lucene.index.LogMergePolicy}: {@link #setMergeFactor
+ * mergeFactor} adjacent segments of the same level are merged into one segment
+ * of the next level.
+ * <p>
+ * Segments whose most recent timestamp is older than {@link #setMaxMergeAge
+ * maxMergeAge} compared to the most recent timestamp of the index are never
+ * merged again, which bounds the write amplification of old data. Segments that
+ * don't have points for the timestamp field are never merged by natural merges.
+ * <p>
+ * <b>NOTE</b>: the timestamp range of a segment is read from its points
+ * index the first time the segment is considered for merging, and then cached
+ * for the lifetime of the segment.
+ *
+ * @lucene.experimental
+ */
+public class TimeSeriesMergePolicy extends MergePolicy {
+
+  /** Default noCFSRatio.  If a merge's size is {@code >= 10%} of
+   *  the index, then we disable compound file for it.
+   *  @see MergePolicy#setNoCFSRatio */
+  public static final double DEFAULT_NO_CFS_RATIO = 0.1;
+
+  /** Default merge factor, see {@link #setMergeFactor}. */
+  public static final int DEFAULT_MERGE_FACTOR = 10;
+
+  /** Default maximum size of a merged segment, see {@link #setMaxMergedSegmentMB}. */
+  public static final double DEFAULT_MAX_MERGED_SEGMENT_MB = 5 * 1024;
+
+  /** Default floor segment size, see {@link #setFloorSegmentMB}. */
+  public static final double DEFAULT_FLOOR_SEGMENT_MB = 2;
+
+  private final String field;
+  private int mergeFactor = DEFAULT_MERGE_FACTOR;
+  private int maxMergeAtOnceExplicit = 30;
+  private long maxMergedSegmentBytes = (long) (DEFAULT_MAX_MERGED_SEGMENT_MB * 1024 * 1024);
+  private long floorSegmentBytes = (long) (DEFAULT_FLOOR_SEGMENT_MB * 1024 * 1024);
+  private long maxMergeAge = Long.MAX_VALUE;
+  private double forceMergeDeletesPctAllowed = 10.0;
+
+  // cache of timestamp ranges, keyed by segment name and ID
+  private final Map<String, TimeRange> ranges = new HashMap<>();
+
+  /** Create a new instance that orders segments by the values of the given
+   *  {@link LongPoint} field. */
+  public TimeSeriesMergePolicy(String field) {
+    super(DEFAULT_NO_CFS_RATIO, DEFAULT_MAX_CFS_SEGMENT_SIZE);
+    this.field = Objects.requireNonNull(field);
+  }
+
+  /** Returns the field that holds timestamps. */
+  public String getField() {
+    return field;
+  }
+
+  /** Number of adjacent segments of the same level that are merged together.
+   *  Default is {@value #DEFAULT_MERGE_FACTOR}. */
+  public TimeSeriesMergePolicy setMergeFactor(int v) {
+    if (v < 2) {
+      throw new IllegalArgumentException("mergeFactor must be > 1 (got " + v + ")");
+    }
+    mergeFactor = v;
+    return this;
+  }
+
+  /** Returns the current mergeFactor.
+   *
+   * @see #setMergeFactor */
+  public int getMergeFactor() {
+    return mergeFactor;
+  }
+
+  /** Maximum number of segments to be merged at a time when forceMerge or
+   *  forceMergeDeletes is called. Default is 30. */
+  public TimeSeriesMergePolicy setMaxMergeAtOnceExplicit(int v) {
+    if (v < 2) {
+      throw new IllegalArgumentException("maxMergeAtOnceExplicit must be > 1 (got " + v + ")");
+    }
+    maxMergeAtOnceExplicit = v;
+    return this;
+  }
+
+  /** Returns the current maxMergeAtOnceExplicit setting.
+   *
+   * @see #setMaxMergeAtOnceExplicit */
+  public int getMaxMergeAtOnceExplicit() {
+    return maxMergeAtOnceExplicit;
+  }
+
+  /** Natural merges never produce segments that are larger than this size.
+   *  Default is 5 GB. */
+  public TimeSeriesMergePolicy setMaxMergedSegmentMB(double v) {
+    if (v < 0.0) {
+      throw new IllegalArgumentException("maxMergedSegmentMB must be >=0 (got " + v + ")");
+    }
+    v *= 1024 * 1024;
+    maxMergedSegmentBytes = v > Long.MAX_VALUE ? Long.MAX_VALUE : (long) v;
+    return this;
+  }
+
+  /** Returns the current maxMergedSegmentMB setting.
+   *
+   * @see #setMaxMergedSegmentMB */
+  public double getMaxMergedSegmentMB() {
+    return maxMergedSegmentBytes / 1024. / 1024.;
+  }
+
+  /** Segments smaller than this are rounded up to this size when computing
+   *  their level, so that all tiny flushed segments belong to the same level.
+   *  Default is 2 MB. */
+  public TimeSeriesMergePolicy setFloorSegmentMB(double v) {
+    if (v <= 0.0) {
+      throw new IllegalArgumentException("floorSegmentMB must be > 0.0 (got " + v + ")");
+    }
+    v *= 1024 * 1024;
+    floorSegmentBytes = v > Long.MAX_VALUE ? Long.MAX_VALUE : (long) v;
+    return this;
+  }
+
+  /** Returns the current floorSegmentMB.
+   *
+   * @see #setFloorSegmentMB */
+  public double getFloorSegmentMB() {
+    return floorSegmentBytes / 1024. / 1024.;
+  }
+
+  /** Segments whose maximum timestamp is more than this amount, expressed in
+   *  the unit of the timestamp field, behind the maximum timestamp of the index
+   *  are not considered for natural merges anymore. Default is
+   *  {@link Long#MAX_VALUE}, meaning that segments are never frozen. */
+  public TimeSeriesMergePolicy setMaxMergeAge(long v) {
+    if (v < 0) {
+      throw new IllegalArgumentException("maxMergeAge must be >= 0 (got " + v + ")");
+    }
+    maxMergeAge = v;
+    return this;
+  }
+
+  /** Returns the current maxMergeAge.
+   *
+   * @see #setMaxMergeAge */
+  public long getMaxMergeAge() {
+    return maxMergeAge;
+  }
+
+  /** When forceMergeDeletes is called, we only merge away a
+   *  segment if its delete percentage is over this
+   *  threshold.  Default is 10%. */
+  public TimeSeriesMergePolicy setForceMergeDeletesPctAllowed(double v) {
+    if (v < 0.0 || v > 100.0) {
+      throw new IllegalArgumentException("forceMergeDeletesPctAllowed must be between 0.0 and 100.0 inclusive (got " + v + ")");
+    }
+    forceMergeDeletesPctAllowed = v;
+    return this;
+  }
+
+  /** Returns the current forceMergeDeletesPctAllowed setting.
+   *
+   * @see #setForceMergeDeletesPctAllowed */
+  public double getForceMergeDeletesPctAllowed() {
+    return forceMergeDeletesPctAllowed;
+  }
+
+  /** Min and max timestamps of a segment. */
+  private static final class TimeRange {
+    final long min, max;
+
+    TimeRange(long min, long max) {
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  /** A segment together with the values that we need to make merge decisions. */
+  private static final class SegmentInfoAndRange {
+    final SegmentCommitInfo info;
+    final TimeRange range;
+    final long size;
+
+    SegmentInfoAndRange(SegmentCommitInfo info, TimeRange range, long size) {
+      this.info = info;
+      this.range = range;
+      this.size = size;
+    }
+  }
+
+  private static String cacheKey(SegmentCommitInfo info) {
+    return info.info.name + "_" + StringHelper.idToString(info.info.getId());
+  }
+
+  /** Returns the time range of the given segment, or {@code null} if it has no points for {@link #getField()}. */
+  private synchronized TimeRange getRange(SegmentCommitInfo info) throws IOException {
+    final String key = cacheKey(info);
+    if (ranges.containsKey(key) == false) {
+      ranges.put(key, readRange(info));
+    }
+    return ranges.get(key);
+  }
+
+  private TimeRange readRange(SegmentCommitInfo info) throws IOException {
+    final Codec codec = info.info.getCodec();
+    final FieldInfos fieldInfos = readFieldInfos(info);
+    final FieldInfo fieldInfo = fieldInfos.fieldInfo(field);
+    if (fieldInfo == null
+        || fieldInfo.getPointDimensionCount() != 1
+        || fieldInfo.getPointNumBytes() != Long.BYTES) {
+      return null;
+    }
+    Directory cfs = null;
+    try {
+      Directory dir = info.info.dir;
+      if (info.info.getUseCompoundFile()) {
+        dir = cfs = codec.compoundFormat().getCompoundReader(dir, info.info, IOContext.READ);
+      }
+      try (PointsReader reader = codec.pointsFormat().fieldsReader(
+          new SegmentReadState(dir, info.info, fieldInfos, IOContext.READ))) {
+        PointValues values = reader.getValues(field);
+        if (values == null || values.size() == 0) {
+          return null;
+        }
+        return new TimeRange(LongPoint.decodeDimension(values.getMinPackedValue(), 0),
+            LongPoint.decodeDimension(values.getMaxPackedValue(), 0));
+      }
+    } finally {
+      IOUtils.close(cfs);
+    }
+  }
+
+  private static FieldInfos readFieldInfos(SegmentCommitInfo info) throws IOException {
+    final Codec codec = info.info.getCodec();
+    if (info.hasFieldUpdates()) {
+      // there are updates, we read latest (always outside of CFS)
+      final String segmentSuffix = Long.toString(info.getFieldInfosGen(), Character.MAX_RADIX);
+      return codec.fieldInfosFormat().read(info.info.dir, info.info, segmentSuffix, IOContext.READONCE);
+    } else if (info.info.getUseCompoundFile()) {
+      try (Directory cfs = codec.compoundFormat().getCompoundReader(info.info.dir, info.info, IOContext.DEFAULT)) {
+        return codec.fieldInfosFormat().read(cfs, info.info, "", IOContext.READONCE);
+      }
+    } else {
+      return codec.fieldInfosFormat().read(info.info.dir, info.info, "", IOContext.READONCE);
+    }
+  }
+
+  /**
+   * Returns the given segments that have a time range, ordered by time range.
+   * Also drops cached ranges of segments that are gone.
+   */
+  private List<SegmentInfoAndRange> sortByTimeRange(Iterable<SegmentCommitInfo> infos, MergeContext mergeContext) throws IOException {
+    List<SegmentInfoAndRange> sorted = new ArrayList<>();
+    Set<String> keys = new HashSet<>();
+    for (SegmentCommitInfo info : infos) {
+      keys.add(cacheKey(info));
+      TimeRange range = getRange(info);
+      if (range != null) {
+        sorted.add(new SegmentInfoAndRange(info, range, size(info, mergeContext)));
+      }
+    }
+    synchronized (this) {
+      ranges.keySet().retainAll(keys);
+    }
+    sorted.sort((a, b) -> {
+      int cmp = Long.compare(a.range.min, b.range.min);
+      if (cmp == 0) {
+        cmp = Long.compare(a.range.max, b.range.max);
+      }
+      if (cmp == 0) {
+        cmp = a.info.info.name.compareTo(b.info.info.name);
+      }
+      return cmp;
+    });
+    return sorted;
+  }
+
+  private boolean isFrozen(SegmentInfoAndRange segment, long maxTimestamp) {
+    if (maxMergeAge == Long.MAX_VALUE) {
+      return false;
+    }
+    final long age = maxTimestamp - segment.range.max;
+    // a negative age means that the subtraction overflowed
+    return age < 0 || age > maxMergeAge;
+  }
+
+  private int level(long size) {
+    return (int) (Math.log(Math.max(size, floorSegmentBytes)) / Math.log(mergeFactor));
+  }
+
+  @Override
+  public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+    final List<SegmentInfoAndRange> sorted = sortByTimeRange(segmentInfos, mergeContext);
+    if (sorted.isEmpty()) {
+      return null;
+    }
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    long maxTimestamp = Long.MIN_VALUE;
+    for (SegmentInfoAndRange segment : sorted) {
+      maxTimestamp = Math.max(maxTimestamp, segment.range.max);
+    }
+
+    MergeSpecification spec = null;
+    // Walk segments by time order and merge runs of mergeFactor adjacent segments that are on the same level
+    int start = 0;
+    while (start + mergeFactor <= sorted.size()) {
+      final SegmentInfoAndRange first = sorted.get(start);
+      final int level = level(first.size);
+      long mergeSize = 0;
+      int end = start;
+      for (; end < start + mergeFactor; end++) {
+        final SegmentInfoAndRange segment = sorted.get(end);
+        if (merging.contains(segment.info)
+            || isFrozen(segment, maxTimestamp)
+            || level(segment.size) != level) {
+          break;
+        }
+        mergeSize += segment.size;
+      }
+      if (end == start + mergeFactor && mergeSize <= maxMergedSegmentBytes) {
+        List<SegmentCommitInfo> segments = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+          segments.add(sorted.get(i).info);
+        }
+        if (verbose(mergeContext)) {
+          message("add merge=" + segString(mergeContext, segments) + " level=" + level + " size=" + String.format(Locale.ROOT, "%.3f MB", mergeSize / 1024. / 1024.), mergeContext);
+        }
+        if (spec == null) {
+          spec = new MergeSpecification();
+        }
+        spec.add(new OneMerge(segments));
+        start = end;
+      } else if (end == start + mergeFactor) {
+        // too large, try again without the oldest segment of the run
+        start++;
+      } else {
+        // the run is broken, restart at the segment that broke it unless it is the first one
+        start = Math.max(start + 1, end);
+      }
+    }
+    return spec;
+  }
+
+  @Override
+  public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount,
+      Map<SegmentCommitInfo, Boolean> segmentsToMerge, MergeContext mergeContext) throws IOException {
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    List<SegmentCommitInfo> candidates = new ArrayList<>();
+    for (SegmentCommitInfo info : segmentInfos) {
+      if (segmentsToMerge.containsKey(info)) {
+        if (merging.contains(info)) {
+          // wait for running merges to complete before merging again so that we only merge segments that are adjacent in time
+          return null;
+        }
+        candidates.add(info);
+      }
+    }
+    final List<SegmentInfoAndRange> sorted = sortByTimeRange(candidates, mergeContext);
+    // segments without timestamps go last
+    Set<SegmentCommitInfo> withRange = new HashSet<>();
+    for (SegmentInfoAndRange segment : sorted) {
+      withRange.add(segment.info);
+    }
+    for (SegmentCommitInfo info : candidates) {
+      if (withRange.contains(info) == false) {
+        sorted.add(new SegmentInfoAndRange(info, null, size(info, mergeContext)));
+      }
+    }
+
+    if (sorted.size() <= maxSegmentCount) {
+      if (sorted.size() == 1 && isMerged(segmentInfos, sorted.get(0).info, mergeContext) == false) {
+        MergeSpecification spec = new MergeSpecification();
+        spec.add(new OneMerge(List.of(sorted.get(0).info)));
+        return spec;
+      }
+      return null;
+    }
+
+    // merge the adjacent segments that have the lowest total size, other merges will cascade
+    final int numToMerge = Math.min(sorted.size() - maxSegmentCount + 1, maxMergeAtOnceExplicit);
+    int bestStart = 0;
+    long bestSize = Long.MAX_VALUE;
+    for (int start = 0; start + numToMerge <= sorted.size(); start++) {
+      long size = 0;
+      for (int i = start; i < start + numToMerge; i++) {
+        size += sorted.get(i).size;
+      }
+      if (size < bestSize) {
+        bestSize = size;
+        bestStart = start;
+      }
+    }
+    List<SegmentCommitInfo> segments = new ArrayList<>();
+    for (int i = bestStart; i < bestStart + numToMerge; i++) {
+      segments.add(sorted.get(i).info);
+    }
+    if (verbose(mergeContext)) {
+      message("add forced merge=" + segString(mergeContext, segments), mergeContext);
+    }
+    MergeSpecification spec = new MergeSpecification();
+    spec.add(new OneMerge(segments));
+    return spec;
+  }
+
+  @Override
+  public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    MergeSpecification spec = null;
+    for (SegmentCommitInfo info : segmentInfos) {
+      double pctDeletes = 100. * ((double) mergeContext.numDeletesToMerge(info)) / info.info.maxDoc();
+      if (pctDeletes > forceMergeDeletesPctAllowed && merging.contains(info) == false) {
+        // singleton merges leave time ranges untouched
+        if (spec == null) {
+          spec = new MergeSpecification();
+        }
+        spec.add(new OneMerge(List.of(info)));
+      }
+    }
+    return spec;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[" + getClass().getSimpleName() + ": ");
+    sb.append("field=").append(field).append(", ");
+    sb.append("mergeFactor=").append(mergeFactor).append(", ");
+    sb.append("maxMergeAtOnceExplicit=").append(maxMergeAtOnceExplicit).append(", ");
+    sb.append("maxMergedSegmentMB=").append(getMaxMergedSegmentMB()).append(", ");
+    sb.append("floorSegmentMB=").append(getFloorSegmentMB()).append(", ");
+    sb.append("maxMergeAge=").append(maxMergeAge).append(", ");
+    sb.append("forceMergeDeletesPctAllowed=").append(forceMergeDeletesPctAllowed).append(", ");
+    sb.append("maxCFSSegmentSizeMB=").append(getMaxCFSSegmentSizeMB()).append(", ");
+    sb.append("noCFSRatio=").append(noCFSRatio);
+    sb.append("]");
+    return sb.toString();
+  }
+}
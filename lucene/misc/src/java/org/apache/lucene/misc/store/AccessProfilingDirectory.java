@@ -0,0 +1,536 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A {@link Directory} that records which regions of files are read by
+ * searches, so that the same regions can be loaded into the page cache
+ * ahead of time when the index is opened again, e.g. after a restart or
+ * after the index has been copied to a new replica.
+ * <p>
+ * Files are split into regions of {@code regionSize} bytes, and an input
+ * that is opened through this directory marks the regions it reads. Inputs
+ * that are opened for merges or with {@link IOContext#READONCE} are not
+ * recorded. Call {@link #saveProfile()}, e.g. after a commit or before
+ * shutting down, to persist the recorded regions in a
+ * {@value #PROFILE_FILE_PREFIX}_N file next to the index files, and
+ * {@link #preload(Executor)} after opening the directory to read the
+ * regions of the last saved profile in the background.
+ * <p>
+ * Inputs only look up the region they read after a seek or when they cross
+ * a region boundary, so recording adds little overhead to sequential reads.
+ * Recording is best-effort: regions that are read concurrently by several
+ * threads may occasionally not be recorded.
+ *
+ * @lucene.experimental
+ */
+public class AccessProfilingDirectory extends FilterDirectory {
+
+  /** Prefix of the name of profile files. */
+  public static final String PROFILE_FILE_PREFIX = "access_profile";
+
+  /** Default size of a region: {@value}. */
+  public static final int DEFAULT_REGION_SIZE = 1 << 16;
+
+  static final String CODEC_NAME = "AccessProfile";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  private final int regionShift;
+  private final Map<String,FileProfile> profiles = new ConcurrentHashMap<>();
+  private final AtomicLong preloadedBytes = new AtomicLong();
+  private volatile boolean recording = true;
+  private volatile boolean closed;
+  private long generation = -1;
+
+  /**
+   * Create a new AccessProfilingDirectory.
+   *
+   * @param in the directory to wrap
+   * @param regionSize the granularity of recorded regions, must be a power of two
+   */
+  public AccessProfilingDirectory(Directory in, int regionSize) {
+    super(in);
+    if (regionSize <= 0 || Integer.bitCount(regionSize) != 1) {
+      throw new IllegalArgumentException("regionSize must be a power of two, got " + regionSize);
+    }
+    this.regionShift = Integer.numberOfTrailingZeros(regionSize);
+  }
+
+  /** Create a new AccessProfilingDirectory with the default region size. */
+  public AccessProfilingDirectory(Directory in) {
+    this(in, DEFAULT_REGION_SIZE);
+  }
+
+  /** Enable or disable recording of inputs that are opened from now on. */
+  public void setRecording(boolean recording) {
+    this.recording = recording;
+  }
+
+  /** Returns whether inputs that are opened from now on are recorded.
+   *  @see #setRecording */
+  public boolean getRecording() {
+    return recording;
+  }
+
+  /** Returns the number of bytes that have been read by {@link #preload(Executor)}. */
+  public long getPreloadedBytes() {
+    return preloadedBytes.get();
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    final IndexInput input = in.openInput(name, context);
+    if (recording == false
+        || context.context == IOContext.Context.MERGE
+        || context.readOnce
+        || name.startsWith(PROFILE_FILE_PREFIX)) {
+      return input;
+    }
+    final long length = input.length();
+    FileProfile profile = profiles.compute(name, (n, p) -> p == null || p.length != length ? new FileProfile(length, regionShift) : p);
+    return new ProfilingIndexInput(input, profile, 0L);
+  }
+
+  @Override
+  public void deleteFile(String name) throws IOException {
+    in.deleteFile(name);
+    profiles.remove(name);
+  }
+
+  @Override
+  public void rename(String source, String dest) throws IOException {
+    in.rename(source, dest);
+    final FileProfile profile = profiles.remove(source);
+    if (profile != null) {
+      profiles.put(dest, profile);
+    } else {
+      profiles.remove(dest);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    super.close();
+  }
+
+  /** Returns the regions of the given file that have been recorded since
+   *  this directory was opened, or null if the file was not read. */
+  FixedBitSet getRecordedRegions(String name) {
+    final FileProfile profile = profiles.get(name);
+    return profile == null ? null : profile.toBitSet();
+  }
+
+  /**
+   * Write the regions that have been read since this directory was opened,
+   * merged with the regions of the previous profile, to a new profile file
+   * and delete older profiles. Files that no longer exist are not included.
+   */
+  public synchronized void saveProfile() throws IOException {
+    final Set<String> files = new HashSet<>();
+    Collections.addAll(files, in.listAll());
+    final ProfileFile previous = readLatestProfile(files);
+    final Map<String,FixedBitSet> regions = new HashMap<>();
+    if (previous != null && previous.regionShift == regionShift) {
+      regions.putAll(previous.regions);
+    }
+    for (Map.Entry<String,FileProfile> entry : profiles.entrySet()) {
+      final FixedBitSet recorded = entry.getValue().toBitSet();
+      regions.merge(entry.getKey(), recorded, (a, b) -> {
+        if (a.length() != b.length()) {
+          // the file was replaced
+          return b;
+        }
+        a.or(b);
+        return a;
+      });
+    }
+
+    final List<String> toDelete = new ArrayList<>();
+    for (String file : files) {
+      if (file.startsWith(PROFILE_FILE_PREFIX)) {
+        toDelete.add(file);
+        generation = Math.max(generation, generation(file));
+      }
+    }
+    final String profileName = IndexFileNames.fileNameFromGeneration(PROFILE_FILE_PREFIX, "", ++generation);
+    boolean success = false;
+    try (IndexOutput out = in.createOutput(profileName, IOContext.DEFAULT)) {
+      CodecUtil.writeHeader(out, CODEC_NAME, VERSION_CURRENT);
+      out.writeVInt(regionShift);
+      final Map<String,Long> lengths = new HashMap<>();
+      for (Map.Entry<String,FixedBitSet> entry : regions.entrySet()) {
+        if (files.contains(entry.getKey())) {
+          final long length = in.fileLength(entry.getKey());
+          if (numRegions(length, regionShift) == entry.getValue().length()) {
+            lengths.put(entry.getKey(), length);
+          }
+        }
+      }
+      out.writeVInt(lengths.size());
+      for (Map.Entry<String,Long> entry : lengths.entrySet()) {
+        out.writeString(entry.getKey());
+        out.writeVLong(entry.getValue());
+        final FixedBitSet fileRegions = regions.get(entry.getKey());
+        final long[] bits = fileRegions.getBits();
+        final int numWords = FixedBitSet.bits2words(fileRegions.length());
+        out.writeVInt(numWords);
+        for (int i = 0; i < numWords; i++) {
+          out.writeLong(bits[i]);
+        }
+      }
+      CodecUtil.writeFooter(out);
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.deleteFilesIgnoringExceptions(in, profileName);
+      }
+    }
+    in.sync(Collections.singleton(profileName));
+    in.syncMetaData();
+    IOUtils.deleteFilesIgnoringExceptions(in, toDelete);
+  }
+
+  /**
+   * Read the regions of the last saved profile using the given executor,
+   * so that they are loaded in the page cache by the time searches need
+   * them. The returned future completes when all regions have been read.
+   * Regions of files that no longer exist or whose length changed are
+   * skipped.
+   */
+  public CompletableFuture<Void> preload(Executor executor) {
+    return CompletableFuture.runAsync(() -> {
+      try {
+        doPreload();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, executor);
+  }
+
+  private void doPreload() throws IOException {
+    final Set<String> files = new HashSet<>();
+    Collections.addAll(files, in.listAll());
+    final ProfileFile profile;
+    synchronized (this) {
+      profile = readLatestProfile(files);
+    }
+    if (profile == null) {
+      return;
+    }
+    final long regionSize = 1L << profile.regionShift;
+    final byte[] buffer = new byte[(int) Math.min(regionSize, 1 << 16)];
+    for (Map.Entry<String,FixedBitSet> entry : profile.regions.entrySet()) {
+      final String file = entry.getKey();
+      final FixedBitSet regions = entry.getValue();
+      if (files.contains(file) == false) {
+        continue;
+      }
+      try (IndexInput input = in.openInput(file, IOContext.READ)) {
+        if (input.length() != profile.lengths.get(file)) {
+          continue;
+        }
+        for (int region = regions.nextSetBit(0); region != DocIdSetIterator.NO_MORE_DOCS;
+             region = region + 1 >= regions.length() ? DocIdSetIterator.NO_MORE_DOCS : regions.nextSetBit(region + 1)) {
+          if (closed) {
+            throw new AlreadyClosedException("this Directory is closed");
+          }
+          final long start = region * regionSize;
+          final long end = Math.min(start + regionSize, input.length());
+          input.seek(start);
+          for (long pos = start; pos < end; ) {
+            final int len = (int) Math.min(buffer.length, end - pos);
+            input.readBytes(buffer, 0, len);
+            pos += len;
+          }
+          preloadedBytes.addAndGet(end - start);
+        }
+      } catch (NoSuchFileException e) {
+        // deleted concurrently
+      }
+    }
+  }
+
+  private static long generation(String fileName) {
+    if (fileName.equals(PROFILE_FILE_PREFIX)) {
+      return 0;
+    }
+    return Long.parseLong(fileName.substring(PROFILE_FILE_PREFIX.length() + 1), Character.MAX_RADIX);
+  }
+
+  /** Read the profile with the highest generation, or null if there is none or it can't be read. */
+  private ProfileFile readLatestProfile(Set<String> files) throws IOException {
+    String latest = null;
+    for (String file : files) {
+      if (file.startsWith(PROFILE_FILE_PREFIX) && (latest == null || generation(file) > generation(latest))) {
+        latest = file;
+      }
+    }
+    if (latest == null) {
+      return null;
+    }
+    try (ChecksumIndexInput input = in.openChecksumInput(latest, IOContext.READONCE)) {
+      Throwable priorE = null;
+      ProfileFile profile = null;
+      try {
+        CodecUtil.checkHeader(input, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+        profile = new ProfileFile(input.readVInt());
+        final int count = input.readVInt();
+        for (int i = 0; i < count; i++) {
+          final String file = input.readString();
+          final long length = input.readVLong();
+          final long[] bits = new long[input.readVInt()];
+          for (int j = 0; j < bits.length; j++) {
+            bits[j] = input.readLong();
+          }
+          profile.lengths.put(file, length);
+          profile.regions.put(file, new FixedBitSet(bits, numRegions(length, profile.regionShift)));
+        }
+      } catch (Throwable t) {
+        priorE = t;
+      } finally {
+        CodecUtil.checkFooter(input, priorE);
+      }
+      return profile;
+    } catch (IOException e) {
+      // a profile is only a hint, ignore profiles that can't be read
+      return null;
+    }
+  }
+
+  private static int numRegions(long length, int regionShift) {
+    return Math.toIntExact(Math.max(1, (length + (1L << regionShift) - 1) >>> regionShift));
+  }
+
+  private static class ProfileFile {
+    final int regionShift;
+    final Map<String,Long> lengths = new HashMap<>();
+    final Map<String,FixedBitSet> regions = new HashMap<>();
+
+    ProfileFile(int regionShift) {
+      this.regionShift = regionShift;
+    }
+  }
+
+  /** Regions of a file that have been read. */
+  private static class FileProfile {
+    final long length;
+    final int regionShift;
+    // not thread-safe on purpose, concurrent updates of the same word may lose bits
+    final long[] bits;
+
+    FileProfile(long length, int regionShift) {
+      this.length = length;
+      this.regionShift = regionShift;
+      this.bits = new long[FixedBitSet.bits2words(numRegions(length, regionShift))];
+    }
+
+    void mark(long fromRegion, long toRegion) {
+      for (long region = fromRegion; region <= toRegion; ++region) {
+        bits[(int) (region >>> 6)] |= 1L << region;
+      }
+    }
+
+    FixedBitSet toBitSet() {
+      return new FixedBitSet(bits.clone(), numRegions(length, regionShift));
+    }
+  }
+
+  /** Marks the regions that are read in its {@link FileProfile}. */
+  private static final class ProfilingIndexInput extends IndexInput {
+    private final IndexInput in;
+    private final FileProfile profile;
+    /** start of this input in the file, non-zero for slices */
+    private final long offset;
+    /** number of bytes that can be read before leaving the last marked region, 0 after a seek */
+    private long remaining;
+
+    ProfilingIndexInput(IndexInput in, FileProfile profile, long offset) {
+      super("ProfilingIndexInput(" + in + ")");
+      this.in = in;
+      this.profile = profile;
+      this.offset = offset;
+    }
+
+    /** Called before reading {@code length} bytes at the current position. */
+    private void beforeRead(long length) {
+      remaining -= length;
+      if (remaining < 0) {
+        mark(length);
+      }
+    }
+
+    private void mark(long length) {
+      final long start = offset + in.getFilePointer();
+      final long end = start + length;
+      final long fromRegion = start >>> profile.regionShift;
+      final long toRegion = (Math.max(start + 1, end) - 1) >>> profile.regionShift;
+      profile.mark(fromRegion, Math.min(toRegion, (profile.bits.length << 6) - 1));
+      remaining = ((toRegion + 1) << profile.regionShift) - end;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      beforeRead(Byte.BYTES);
+      return in.readByte();
+    }
+
+    @Override
+    public void readBytes(byte[] b, int off, int len) throws IOException {
+      beforeRead(len);
+      in.readBytes(b, off, len);
+    }
+
+    @Override
+    public short readShort() throws IOException {
+      beforeRead(Short.BYTES);
+      return in.readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+      beforeRead(Integer.BYTES);
+      return in.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+      beforeRead(Long.BYTES);
+      return in.readLong();
+    }
+
+    @Override
+    public void readLELongs(long[] dst, int off, int length) throws IOException {
+      beforeRead((long) length * Long.BYTES);
+      in.readLELongs(dst, off, length);
+    }
+
+    @Override
+    public void skipBytes(long numBytes) throws IOException {
+      in.skipBytes(numBytes);
+      remaining = Math.min(remaining - numBytes, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    @Override
+    public long getFilePointer() {
+      return in.getFilePointer();
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      in.seek(pos);
+      remaining = 0;
+    }
+
+    @Override
+    public long length() {
+      return in.length();
+    }
+
+    @Override
+    public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+      return new ProfilingIndexInput(in.slice(sliceDescription, offset, length), profile, this.offset + offset);
+    }
+
+    @Override
+    public RandomAccessInput randomAccessSlice(long offset, long length) throws IOException {
+      final RandomAccessInput slice = in.randomAccessSlice(offset, length);
+      final long sliceOffset = this.offset + offset;
+      return new RandomAccessInput() {
+        private long lastRegion = -1;
+
+        private void mark(long pos, int length) {
+          final long fromRegion = (sliceOffset + pos) >>> profile.regionShift;
+          final long toRegion = (sliceOffset + pos + length - 1) >>> profile.regionShift;
+          if (fromRegion != lastRegion || toRegion != lastRegion) {
+            profile.mark(fromRegion, Math.min(toRegion, (profile.bits.length << 6) - 1));
+            lastRegion = toRegion;
+          }
+        }
+
+        @Override
+        public byte readByte(long pos) throws IOException {
+          mark(pos, Byte.BYTES);
+          return slice.readByte(pos);
+        }
+
+        @Override
+        public short readShort(long pos) throws IOException {
+          mark(pos, Short.BYTES);
+          return slice.readShort(pos);
+        }
+
+        @Override
+        public int readInt(long pos) throws IOException {
+          mark(pos, Integer.BYTES);
+          return slice.readInt(pos);
+        }
+
+        @Override
+        public long readLong(long pos) throws IOException {
+          mark(pos, Long.BYTES);
+          return slice.readLong(pos);
+        }
+
+        @Override
+        public String toString() {
+          return "ProfilingRandomAccessInput(" + slice + ")";
+        }
+      };
+    }
+
+    @Override
+    public ProfilingIndexInput clone() {
+      return new ProfilingIndexInput(in.clone(), profile, offset);
+    }
+  }
+}
@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.BufferedIndexInput;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FSLockFactory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.LockFactory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+/**
+ * An {@link FSDirectory} implementation that reads through an
+ * {@link AsynchronousFileChannel}, so that many reads can be in flight at the
+ * same time. This helps on devices that only reach their full throughput with
+ * deep queues (NVMe SSDs, network block devices) when the index does not fit
+ * in the page cache.
+ * <p>
+ * Reads are issued on a pool of {@code queueDepth} threads that is owned by
+ * this directory, and the number of outstanding asynchronous reads is bounded
+ * by the same queue depth. Inputs opened by this directory are
+ * {@link AsyncReadIndexInput}s, which expose
+ * {@link AsyncReadIndexInput#prefetch(long, long)} so that callers that know
+ * which bytes they are going to need next can submit those reads ahead of
+ * time. Inputs also read ahead on their own when they detect sequential
+ * access.
+ * <p>
+ * Prefetching is only a hint: when the queue is full, prefetch requests are
+ * dropped and the data is read synchronously when it is needed.
+ * <p>
+ * This class only uses AsynchronousFileChannel when reading; writing is
+ * achieved with {@link FSDirectory.FSIndexOutput}.
+ *
+ * @lucene.experimental
+ */
+public class AsyncReadDirectory extends FSDirectory {
+
+  /** Default maximum number of asynchronous reads in flight: {@value}. */
+  public static final int DEFAULT_QUEUE_DEPTH = 32;
+
+  /** Default number of blocks to read ahead on sequential access: {@value}. */
+  public static final int DEFAULT_READ_AHEAD_BLOCKS = 4;
+
+  /** Size of the blocks that are read asynchronously: {@value}. */
+  public static final int BLOCK_SIZE = 16384;
+
+  private final int queueDepth;
+  private final int readAheadBlocks;
+  private final ExecutorService executor;
+  private final Semaphore queue;
+
+  /** Create a new AsyncReadDirectory for the named location.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @param lockFactory the lock factory to use
+   * @param queueDepth the maximum number of asynchronous reads in flight
+   * @param readAheadBlocks how many blocks to read ahead of sequential reads,
+   *        or 0 to disable read-ahead
+   * @throws IOException if there is a low-level I/O error
+   */
+  public AsyncReadDirectory(Path path, LockFactory lockFactory, int queueDepth, int readAheadBlocks) throws IOException {
+    super(path, lockFactory);
+    if (queueDepth < 1) {
+      throw new IllegalArgumentException("queueDepth must be >= 1, got " + queueDepth);
+    }
+    if (readAheadBlocks < 0 || readAheadBlocks > queueDepth) {
+      throw new IllegalArgumentException("readAheadBlocks must be in [0, queueDepth=" + queueDepth + "], got " + readAheadBlocks);
+    }
+    this.queueDepth = queueDepth;
+    this.readAheadBlocks = readAheadBlocks;
+    this.executor = Executors.newFixedThreadPool(queueDepth, new NamedThreadFactory("AsyncReadDirectory"));
+    this.queue = new Semaphore(queueDepth);
+  }
+
+  /** Create a new AsyncReadDirectory for the named location with the default
+   *  queue depth and read-ahead.
+   *
+   * @param path the path of the directory
+   * @param lockFactory the lock factory to use
+   * @throws IOException if there is a low-level I/O error
+   */
+  public AsyncReadDirectory(Path path, LockFactory lockFactory) throws IOException {
+    this(path, lockFactory, DEFAULT_QUEUE_DEPTH, DEFAULT_READ_AHEAD_BLOCKS);
+  }
+
+  /** Create a new AsyncReadDirectory for the named location and {@link FSLockFactory#getDefault()}.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @throws IOException if there is a low-level I/O error
+   */
+  public AsyncReadDirectory(Path path) throws IOException {
+    this(path, FSLockFactory.getDefault());
+  }
+
+  /** Returns the maximum number of asynchronous reads in flight. */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /** Returns the number of blocks that are read ahead of sequential reads. */
+  public int getReadAheadBlocks() {
+    return readAheadBlocks;
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    ensureCanRead(name);
+    Path path = getDirectory().resolve(name);
+    AsynchronousFileChannel channel = AsynchronousFileChannel.open(path,
+        Collections.singleton(StandardOpenOption.READ), executor);
+    boolean success = false;
+    try {
+      final AsyncReadIndexInput indexInput = new AsyncReadIndexInput("AsyncReadIndexInput(path=\"" + path + "\")",
+          channel, context, this);
+      success = true;
+      return indexInput;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(channel);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      }
+    }
+  }
+
+  /**
+   * Reads bytes with an {@link AsynchronousFileChannel}. Blocks that have been
+   * prefetched are served from memory, other reads wait for a read on the
+   * channel to complete.
+   * <p>
+   * Like any other {@link IndexInput}, instances of this class are not
+   * thread-safe, but clones and slices keep track of their own prefetched
+   * blocks and can be used from other threads.
+   */
+  public static final class AsyncReadIndexInput extends BufferedIndexInput {
+
+    private final AsynchronousFileChannel channel;
+    private final AsyncReadDirectory directory;
+    /** is this instance a clone and hence does not own the file to close it */
+    private boolean isClone = false;
+    /** start offset: non-zero in the slice case */
+    private final long off;
+    /** end offset (start+length) */
+    private final long end;
+    /** length of the whole file, prefetched blocks may extend past the end of a slice */
+    private final long fileLength;
+    /** prefetched blocks by absolute block index, in insertion order */
+    private Map<Long,CompletableFuture<ByteBuffer>> blocks;
+    /** absolute index of the last block that was read, to detect sequential access */
+    private long lastBlock = -2;
+
+    AsyncReadIndexInput(String resourceDesc, AsynchronousFileChannel channel, IOContext context,
+        AsyncReadDirectory directory) throws IOException {
+      super(resourceDesc, context);
+      this.channel = channel;
+      this.directory = directory;
+      this.off = 0L;
+      this.end = channel.size();
+      this.fileLength = end;
+      this.blocks = newBlockMap(directory.queueDepth);
+    }
+
+    private AsyncReadIndexInput(String resourceDesc, AsynchronousFileChannel channel, long off, long length,
+        long fileLength, int bufferSize, AsyncReadDirectory directory) {
+      super(resourceDesc, bufferSize);
+      this.channel = channel;
+      this.directory = directory;
+      this.off = off;
+      this.end = off + length;
+      this.fileLength = fileLength;
+      this.isClone = true;
+      this.blocks = newBlockMap(directory.queueDepth);
+    }
+
+    private static Map<Long,CompletableFuture<ByteBuffer>> newBlockMap(int maxSize) {
+      return new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long,CompletableFuture<ByteBuffer>> eldest) {
+          return size() > maxSize;
+        }
+      };
+    }
+
+    @Override
+    public void close() throws IOException {
+      blocks.clear();
+      if (!isClone) {
+        channel.close();
+      }
+    }
+
+    @Override
+    public AsyncReadIndexInput clone() {
+      AsyncReadIndexInput clone = (AsyncReadIndexInput) super.clone();
+      clone.isClone = true;
+      clone.blocks = newBlockMap(directory.queueDepth);
+      clone.lastBlock = -2;
+      return clone;
+    }
+
+    @Override
+    public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > this.length()) {
+        throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length() + ": "  + this);
+      }
+      return new AsyncReadIndexInput(getFullSliceDescription(sliceDescription), channel, off + offset, length,
+          fileLength, getBufferSize(), directory);
+    }
+
+    @Override
+    public final long length() {
+      return end - off;
+    }
+
+    /**
+     * Hint that the given range of this input is going to be read soon. This
+     * submits asynchronous reads for the blocks that cover this range and
+     * returns immediately. Blocks are not read if too many reads are already
+     * in flight.
+     *
+     * @param offset the start of the range, relative to this input
+     * @param length the length of the range
+     */
+    public void prefetch(long offset, long length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > length()) {
+        throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength=" + length() + ": " + this);
+      }
+      if (length == 0) {
+        return;
+      }
+      final long firstBlock = (off + offset) / BLOCK_SIZE;
+      final long lastBlock = (off + offset + length - 1) / BLOCK_SIZE;
+      for (long block = firstBlock; block <= lastBlock; ++block) {
+        if (submit(block) == false) {
+          break;
+        }
+      }
+    }
+
+    /** Submit an asynchronous read for the given block, returns false if the queue is full. */
+    private boolean submit(long block) {
+      if (blocks.containsKey(block)) {
+        return true;
+      }
+      final long blockStart = block * BLOCK_SIZE;
+      if (blockStart >= end) {
+        return true;
+      }
+      if (directory.queue.tryAcquire() == false) {
+        return false;
+      }
+      final CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+      future.whenComplete((buffer, exception) -> directory.queue.release());
+      final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BLOCK_SIZE, fileLength - blockStart));
+      try {
+        read(buffer, blockStart, future);
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+      }
+      blocks.put(block, future);
+      return true;
+    }
+
+    /** Read until the buffer is full, short reads are continued from where they stopped. */
+    private void read(ByteBuffer buffer, long position, CompletableFuture<ByteBuffer> future) {
+      channel.read(buffer, position, null, new CompletionHandler<Integer,Void>() {
+        @Override
+        public void completed(Integer result, Void attachment) {
+          if (result < 0) {
+            future.completeExceptionally(new EOFException("read past EOF: " + AsyncReadIndexInput.this));
+          } else if (buffer.hasRemaining()) {
+            read(buffer, position + result, future);
+          } else {
+            buffer.flip();
+            future.complete(buffer);
+          }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+          future.completeExceptionally(exc);
+        }
+      });
+    }
+
+    @Override
+    protected void readInternal(ByteBuffer b) throws IOException {
+      long pos = getFilePointer() + off;
+
+      if (pos + b.remaining() > end) {
+        throw new EOFException("read past EOF: " + this);
+      }
+
+      try {
+        while (b.hasRemaining()) {
+          final long block = pos / BLOCK_SIZE;
+          if (block == lastBlock + 1 && directory.readAheadBlocks > 0) {
+            // sequential access, read ahead of the current block
+            for (long i = 1; i <= directory.readAheadBlocks; ++i) {
+              if (submit(block + i) == false) {
+                break;
+              }
+            }
+          }
+          lastBlock = block;
+
+          final CompletableFuture<ByteBuffer> prefetched = blocks.get(block);
+          if (prefetched != null) {
+            final ByteBuffer buffer = prefetched.get().duplicate();
+            final int offsetInBlock = (int) (pos - block * BLOCK_SIZE);
+            final int toCopy = Math.min(b.remaining(), buffer.limit() - offsetInBlock);
+            buffer.position(offsetInBlock).limit(offsetInBlock + toCopy);
+            b.put(buffer);
+            pos += toCopy;
+          } else {
+            // not prefetched, read up to the end of the current block
+            final int toRead = (int) Math.min(b.remaining(), (block + 1) * BLOCK_SIZE - pos);
+            final int limit = b.limit();
+            b.limit(b.position() + toRead);
+            while (b.hasRemaining()) {
+              final int i = channel.read(b, pos).get();
+              if (i < 0) { // be defensive here, even though we checked before hand, something could have changed
+                throw new EOFException("read past EOF: " + this + " buffer: " + b + " end: " + end);
+              }
+              pos += i;
+            }
+            b.limit(limit);
+          }
+        }
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw new IOException(cause.getMessage() + ": " + this, cause);
+        }
+        throw IOUtils.rethrowAlways(cause);
+      }
+    }
+
+    @Override
+    protected void seekInternal(long pos) throws IOException {
+      if (pos > length()) {
+        throw new EOFException("read past EOF: pos=" + pos + " vs length=" + length() + ": " + this);
+      }
+    }
+  }
+}
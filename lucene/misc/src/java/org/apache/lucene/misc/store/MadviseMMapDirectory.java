@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.store.FSLockFactory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.LockFactory;
+import org.apache.lucene.store.MMapDirectory;
+
+/**
+ * A {@link MMapDirectory} that tells the operating system how mapped files
+ * are going to be accessed, using {@code madvise} through
+ * {@link NativePosixUtil}. By default:
+ * <ul>
+ *   <li>files that are opened for merging or with
+ *   {@link IOContext#READONCE} are read sequentially, so the kernel may read
+ *   ahead more aggressively and drop pages once they have been read,</li>
+ *   <li>files whose extension is in {@link #getPreloadExtensions()} are
+ *   loaded asynchronously into the page cache,</li>
+ *   <li>files whose extension is in {@link #getRandomAccessExtensions()},
+ *   by default terms indexes, doc values, points and vectors, disable kernel
+ *   read-ahead so that random lookups do not evict useful pages,</li>
+ *   <li>files whose extension is in {@link #getSequentialExtensions()} are
+ *   read sequentially,</li>
+ *   <li>other files keep the default behavior of the operating system.</li>
+ * </ul>
+ * Since each input maps its file separately, advice that is given for a
+ * merge does not affect inputs of the same file that are used for searching.
+ * Override {@link #getAdvice(String, IOContext)} for more control.
+ * <p>
+ * To use this you must compile
+ * NativePosixUtil.cpp (exposes Linux-specific APIs through
+ * JNI) for your platform, by running <code>./gradlew build</code>, and then putting the resulting
+ * <code>libLuceneNativeIO.so</code> or <code>libLuceneNativeIO.dylib</code>
+ * (from <code>lucene/misc/native/build/lib/release/platform/</code>) onto your dynamic
+ * linker search path.
+ *
+ * @lucene.experimental
+ */
+public class MadviseMMapDirectory extends MMapDirectory {
+
+  /** Extensions of files that are accessed randomly by default. */
+  public static final Set<String> DEFAULT_RANDOM_ACCESS_EXTENSIONS = Set.of(
+      "tip", "tim", "dvd", "nvd", "kdi", "kdd", "vec", "vex", "bfu");
+
+  private volatile Set<String> randomAccessExtensions = DEFAULT_RANDOM_ACCESS_EXTENSIONS;
+  private volatile Set<String> sequentialExtensions = Collections.emptySet();
+  private volatile Set<String> preloadExtensions = Collections.emptySet();
+
+  /** Create a new MadviseMMapDirectory for the named location.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @param lockFactory the lock factory to use
+   * @param maxChunkSize maximum chunk size (default is 1 GiBytes for
+   * 64 bit JVMs and 256 MiBytes for 32 bit JVMs) used for memory mapping.
+   * @throws IOException if there is a low-level I/O error
+   */
+  public MadviseMMapDirectory(Path path, LockFactory lockFactory, int maxChunkSize) throws IOException {
+    super(path, lockFactory, maxChunkSize);
+  }
+
+  /** Create a new MadviseMMapDirectory for the named location.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @param lockFactory the lock factory to use
+   * @throws IOException if there is a low-level I/O error
+   */
+  public MadviseMMapDirectory(Path path, LockFactory lockFactory) throws IOException {
+    super(path, lockFactory);
+  }
+
+  /** Create a new MadviseMMapDirectory for the named location and {@link FSLockFactory#getDefault()}.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @throws IOException if there is a low-level I/O error
+   */
+  public MadviseMMapDirectory(Path path) throws IOException {
+    super(path);
+  }
+
+  /** Set the extensions of files that are accessed randomly. */
+  public void setRandomAccessExtensions(Set<String> extensions) {
+    this.randomAccessExtensions = Set.copyOf(extensions);
+  }
+
+  /** Returns the extensions of files that are accessed randomly.
+   *  @see #setRandomAccessExtensions */
+  public Set<String> getRandomAccessExtensions() {
+    return randomAccessExtensions;
+  }
+
+  /** Set the extensions of files that are read sequentially even when they
+   *  are not opened for a merge. */
+  public void setSequentialExtensions(Set<String> extensions) {
+    this.sequentialExtensions = Set.copyOf(extensions);
+  }
+
+  /** Returns the extensions of files that are read sequentially.
+   *  @see #setSequentialExtensions */
+  public Set<String> getSequentialExtensions() {
+    return sequentialExtensions;
+  }
+
+  /** Set the extensions of files that should be loaded into the page cache
+   *  when they are opened. Unlike {@link #setPreload(boolean)}, this does not
+   *  block until the file has been loaded. */
+  public void setPreloadExtensions(Set<String> extensions) {
+    this.preloadExtensions = Set.copyOf(extensions);
+  }
+
+  /** Returns the extensions of files that are loaded into the page cache
+   *  when they are opened.
+   *  @see #setPreloadExtensions */
+  public Set<String> getPreloadExtensions() {
+    return preloadExtensions;
+  }
+
+  /**
+   * Returns the advice to give for a file that is being opened, one of
+   * {@link NativePosixUtil#NORMAL}, {@link NativePosixUtil#SEQUENTIAL},
+   * {@link NativePosixUtil#RANDOM} or {@link NativePosixUtil#WILLNEED}.
+   * No advice is given if this returns {@link NativePosixUtil#NORMAL}.
+   */
+  protected int getAdvice(String name, IOContext context) {
+    if (context.context == IOContext.Context.MERGE || context.readOnce) {
+      return NativePosixUtil.SEQUENTIAL;
+    }
+    final String extension = IndexFileNames.getExtension(name);
+    if (extension == null) {
+      return NativePosixUtil.NORMAL;
+    } else if (preloadExtensions.contains(extension)) {
+      return NativePosixUtil.WILLNEED;
+    } else if (randomAccessExtensions.contains(extension)) {
+      return NativePosixUtil.RANDOM;
+    } else if (sequentialExtensions.contains(extension)) {
+      return NativePosixUtil.SEQUENTIAL;
+    }
+    return NativePosixUtil.NORMAL;
+  }
+
+  @Override
+  protected void advise(String name, IOContext context, ByteBuffer[] buffers) throws IOException {
+    final int advice = getAdvice(name, context);
+    if (advice != NativePosixUtil.NORMAL) {
+      NativePosixUtil.madvise(buffers, advice);
+    }
+  }
+}
@@ -22,7 +22,7 @@ import java.nio.ByteBuffer;
 
 /**
  * Provides JNI access to native methods such as madvise() for
- * {@link NativeUnixDirectory}
+ * {@link NativeUnixDirectory} and {@link MadviseMMapDirectory}
  */
 public final class NativePosixUtil {
   public final static int NORMAL = 0;
@@ -42,6 +42,18 @@ public final class NativePosixUtil {
   public static native FileDescriptor open_direct(String filename, boolean read) throws IOException;
   public static native long pread(FileDescriptor fd, long pos, ByteBuffer byteBuf) throws IOException;
 
+  /**
+   * Applies the given advice to each of the given buffers, which must be
+   * direct buffers, e.g. memory-mapped files. Empty buffers are skipped.
+   */
+  public static void madvise(ByteBuffer[] buffers, int advise) throws IOException {
+    for (ByteBuffer buffer : buffers) {
+      if (buffer.capacity() > 0) {
+        madvise(buffer, advise);
+      }
+    }
+  }
+
   public static void advise(FileDescriptor fd, long offset, long len, int advise) throws IOException {
     final int code = posix_fadvise(fd, offset, len, advise);
     if (code != 0) {
@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A {@link Directory} that keeps copies of recently used files of a slow
+ * delegate directory, e.g. on network block storage, in a fast cache
+ * directory, typically on a local SSD.
+ * <p>
+ * Index files are write-once, so whole files are cached: files are copied to
+ * the cache when they are written through this directory, or when they are
+ * opened for searching and are not cached yet. Reads of cached files never
+ * hit the delegate. The total size of cached files is bounded, files that
+ * have been least recently opened are evicted first.
+ * <p>
+ * The delegate remains the source of truth: all writes, deletes, renames and
+ * syncs go to the delegate first, and the cache never needs to be synced.
+ * Writes to the cache are best-effort: if writing a copy fails, e.g. because
+ * the cache disk is full, the copy is dropped and only the delegate is written.
+ * When this directory is created, files that are already in the cache
+ * directory are only kept if the delegate has a file with the same name,
+ * length and checksum, and if the checksum of the entire cached copy is
+ * correct, since copies may have been torn by a crash. The cache directory can
+ * so be reused across restarts.
+ * <p>
+ * The cache directory must not be shared with another index.
+ *
+ * @lucene.experimental
+ */
+public class TieredCachingDirectory extends FilterDirectory {
+
+  private final Directory cache;
+  private final long maxCacheBytes;
+
+  /** Lengths of cached files, in access order. */
+  private final LinkedHashMap<String,Long> cachedFiles = new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedBytes;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * Create a new TieredCachingDirectory that caches files of {@code delegate}
+   * in {@code cache}, which is closed when this directory is closed.
+   *
+   * @param delegate the slow directory that holds the index
+   * @param cache the fast directory that holds copies of recently used files
+   * @param maxCacheMB the maximum total size of cached files, in MB
+   * @throws IOException if there is a low-level I/O error while checking
+   *         files that are already in the cache
+   */
+  public TieredCachingDirectory(Directory delegate, Directory cache, double maxCacheMB) throws IOException {
+    super(delegate);
+    if (maxCacheMB < 0) {
+      throw new IllegalArgumentException("maxCacheMB must be >= 0, got " + maxCacheMB);
+    }
+    this.cache = cache;
+    this.maxCacheBytes = (long) (maxCacheMB * 1024 * 1024);
+    loadCache();
+  }
+
+  /** Keep files that were cached before if they still match the delegate. */
+  private synchronized void loadCache() throws IOException {
+    final List<String> toDelete = new ArrayList<>();
+    for (String name : cache.listAll()) {
+      if (isValidCopy(name)) {
+        final long length = cache.fileLength(name);
+        cachedFiles.put(name, length);
+        cachedBytes += length;
+      } else {
+        toDelete.add(name);
+      }
+    }
+    IOUtils.deleteFilesIgnoringExceptions(cache, toDelete);
+    evict(0);
+  }
+
+  private boolean isValidCopy(String name) {
+    try (IndexInput cached = cache.openInput(name, IOContext.READONCE);
+         IndexInput original = in.openInput(name, IOContext.READONCE)) {
+      // the cache is not synced, so verify the whole copy, not only its footer
+      return cached.length() == original.length()
+          && CodecUtil.retrieveChecksum(original) == CodecUtil.checksumEntireFile(cached);
+    } catch (IOException e) {
+      // missing in the delegate, truncated, corrupt or not a Lucene file
+      return false;
+    }
+  }
+
+  /**
+   * Return true if the file that is being written with the given context
+   * should also be written to the cache. The default implementation caches
+   * all files except files of merged segments that are expected to be larger
+   * than the cache, and temporary files, which are not created through this
+   * method. Copies of files that grow larger than the cache are dropped while
+   * they are written in any case.
+   */
+  protected boolean doCacheWrite(String name, IOContext context) {
+    return context.context != IOContext.Context.MERGE || context.mergeInfo.estimatedMergeBytes <= maxCacheBytes;
+  }
+
+  /**
+   * Return true if the file that is being opened with the given context
+   * should be copied to the cache if it is not cached yet. The default
+   * implementation does not cache files that are only read once, e.g. by
+   * merges.
+   */
+  protected boolean doCacheRead(String name, IOContext context) {
+    return context.context != IOContext.Context.MERGE && context.readOnce == false;
+  }
+
+  @Override
+  public IndexOutput createOutput(String name, IOContext context) throws IOException {
+    final IndexOutput out = in.createOutput(name, context);
+    if (maxCacheBytes == 0 || doCacheWrite(name, context) == false) {
+      return out;
+    }
+    synchronized (this) {
+      uncache(name);
+    }
+    final IndexOutput cacheOut;
+    try {
+      cacheOut = cache.createOutput(name, context);
+    } catch (IOException e) {
+      // the cache is best-effort, e.g. a copy that could not be evicted yet
+      // because it is still open
+      return out;
+    }
+    return new CachingIndexOutput(out, cacheOut);
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    synchronized (this) {
+      if (cachedFiles.get(name) != null) {
+        hitCount.incrementAndGet();
+        return cache.openInput(name, context);
+      }
+    }
+    missCount.incrementAndGet();
+    if (maxCacheBytes > 0 && doCacheRead(name, context)) {
+      final long length = in.fileLength(name);
+      if (length <= maxCacheBytes) {
+        try {
+          copyToCache(name, length);
+        } catch (IOException e) {
+          // the cache is best-effort, read from the delegate
+        }
+        synchronized (this) {
+          if (cachedFiles.get(name) != null) {
+            return cache.openInput(name, context);
+          }
+        }
+      }
+    }
+    return in.openInput(name, context);
+  }
+
+  /** Copy a file to the cache under a temporary name, so that the copy does not block other threads. */
+  private void copyToCache(String name, long length) throws IOException {
+    String tmpName = null;
+    boolean success = false;
+    try {
+      try (IndexInput input = in.openInput(name, IOContext.READONCE);
+           IndexOutput output = cache.createTempOutput(name, "cache", IOContext.DEFAULT)) {
+        tmpName = output.getName();
+        output.copyBytes(input, length);
+      }
+      synchronized (this) {
+        if (cachedFiles.containsKey(name) == false) {
+          cache.rename(tmpName, name);
+          tmpName = null;
+          add(name, length);
+        }
+      }
+      success = true;
+    } finally {
+      if (tmpName != null) {
+        if (success) {
+          cache.deleteFile(tmpName);
+        } else {
+          IOUtils.deleteFilesIgnoringExceptions(cache, tmpName);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void deleteFile(String name) throws IOException {
+    in.deleteFile(name);
+    synchronized (this) {
+      uncache(name);
+    }
+  }
+
+  @Override
+  public long fileLength(String name) throws IOException {
+    synchronized (this) {
+      final Long length = cachedFiles.get(name);
+      if (length != null) {
+        return length;
+      }
+    }
+    return in.fileLength(name);
+  }
+
+  @Override
+  public void rename(String source, String dest) throws IOException {
+    in.rename(source, dest);
+    synchronized (this) {
+      uncache(dest);
+      final Long length = cachedFiles.remove(source);
+      if (length != null) {
+        cachedBytes -= length;
+        try {
+          cache.rename(source, dest);
+        } catch (IOException e) {
+          IOUtils.deleteFilesIgnoringExceptions(cache, source);
+          return;
+        }
+        add(dest, length);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(cache, in);
+  }
+
+  /** Returns the number of times a file was opened from the cache. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of times a file was opened that was not cached. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of files that have been evicted from the cache. */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /** Returns the total size of cached files. */
+  public synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  /** Returns the names of cached files, from least to most recently used. */
+  public synchronized String[] listCachedFiles() {
+    return cachedFiles.keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public String toString() {
+    return "TieredCachingDirectory(" + in + "; cache=" + cache + " maxCacheMB=" + (maxCacheBytes/1024/1024.) + ")";
+  }
+
+  private void add(String name, long length) throws IOException {
+    assert Thread.holdsLock(this);
+    if (length > maxCacheBytes) {
+      IOUtils.deleteFilesIgnoringExceptions(cache, name);
+      return;
+    }
+    evict(length);
+    cachedFiles.put(name, length);
+    cachedBytes += length;
+  }
+
+  /** Evict least recently used files until {@code extraBytes} fit in the cache. */
+  private void evict(long extraBytes) throws IOException {
+    assert Thread.holdsLock(this);
+    final Iterator<Map.Entry<String,Long>> it = cachedFiles.entrySet().iterator();
+    while (cachedBytes + extraBytes > maxCacheBytes && it.hasNext()) {
+      final Map.Entry<String,Long> entry = it.next();
+      it.remove();
+      cachedBytes -= entry.getValue();
+      evictionCount.incrementAndGet();
+      IOUtils.deleteFilesIgnoringExceptions(cache, entry.getKey());
+    }
+  }
+
+  private void uncache(String name) throws IOException {
+    assert Thread.holdsLock(this);
+    final Long length = cachedFiles.remove(name);
+    if (length != null) {
+      cachedBytes -= length;
+      IOUtils.deleteFilesIgnoringExceptions(cache, name);
+    }
+  }
+
+  /**
+   * Writes to the delegate and to the cache, the file is added to the cache once both are closed.
+   * The copy in the cache is dropped if writing it fails or if it grows larger than the cache.
+   */
+  private final class CachingIndexOutput extends IndexOutput {
+
+    private final IndexOutput delegate;
+    private IndexOutput cacheOut;
+    private boolean closed;
+
+    CachingIndexOutput(IndexOutput delegate, IndexOutput cacheOut) {
+      super("CachingIndexOutput(" + delegate + ")", delegate.getName());
+      this.delegate = delegate;
+      this.cacheOut = cacheOut;
+    }
+
+    /** Stop writing to the cache and delete the partial copy. */
+    private void dropCacheOutput() {
+      if (cacheOut != null) {
+        IOUtils.closeWhileHandlingException(cacheOut);
+        IOUtils.deleteFilesIgnoringExceptions(cache, cacheOut.getName());
+        cacheOut = null;
+      }
+    }
+
+    /** Return true if {@code length} more bytes should be written to the cache. */
+    private boolean cacheWrite(long length) {
+      if (cacheOut != null && cacheOut.getFilePointer() + length > maxCacheBytes) {
+        // too large to be cached, don't fill the cache disk with it
+        dropCacheOutput();
+      }
+      return cacheOut != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      boolean success = false;
+      try {
+        delegate.close();
+        success = true;
+      } finally {
+        if (success == false) {
+          dropCacheOutput();
+        }
+      }
+      if (cacheOut != null) {
+        final long length = cacheOut.getFilePointer();
+        try {
+          cacheOut.close();
+        } catch (IOException e) {
+          // the cache is best-effort
+          dropCacheOutput();
+          return;
+        }
+        synchronized (TieredCachingDirectory.this) {
+          add(getName(), length);
+        }
+      }
+    }
+
+    @Override
+    public long getFilePointer() {
+      return delegate.getFilePointer();
+    }
+
+    @Override
+    public long getChecksum() throws IOException {
+      return delegate.getChecksum();
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+      delegate.writeByte(b);
+      if (cacheWrite(1)) {
+        try {
+          cacheOut.writeByte(b);
+        } catch (IOException e) {
+          // the cache is best-effort, e.g. its disk is full
+          dropCacheOutput();
+        }
+      }
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+      delegate.writeBytes(b, offset, length);
+      if (cacheWrite(length)) {
+        try {
+          cacheOut.writeBytes(b, offset, length);
+        } catch (IOException e) {
+          // the cache is best-effort, e.g. its disk is full
+          dropCacheOutput();
+        }
+      }
+    }
+  }
+}
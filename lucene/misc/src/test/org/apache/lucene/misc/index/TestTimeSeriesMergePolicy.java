@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.BaseMergePolicyTestCase.MockMergeContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MergePolicy.MergeSpecification;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestTimeSeriesMergePolicy extends LuceneTestCase {
+
+  private static Document newDocument(long timestamp) {
+    Document doc = new Document();
+    doc.add(new LongPoint("ts", timestamp));
+    doc.add(new StoredField("ts", timestamp));
+    return doc;
+  }
+
+  public void testMergedSegmentsDoNotOverlap() throws IOException {
+    try (Directory dir = newDirectory()) {
+      TimeSeriesMergePolicy mp = new TimeSeriesMergePolicy("ts");
+      mp.setMergeFactor(3);
+      mp.setNoCFSRatio(random().nextBoolean() ? 0 : 1);
+      IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setMergePolicy(mp);
+      iwc.setMergeScheduler(new SerialMergeScheduler());
+      iwc.setMaxBufferedDocs(10);
+      iwc.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+      iwc.setUseCompoundFile(random().nextBoolean());
+      final int numDocs = atLeast(300);
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        for (int i = 0; i < numDocs; i++) {
+          w.addDocument(newDocument(i));
+        }
+        try (DirectoryReader reader = DirectoryReader.open(w)) {
+          assertEquals(numDocs, reader.numDocs());
+          assertTrue(reader.leaves().size() < numDocs / 10);
+          List<long[]> ranges = new ArrayList<>();
+          for (LeafReaderContext ctx : reader.leaves()) {
+            PointValues values = ctx.reader().getPointValues("ts");
+            ranges.add(new long[] {
+                LongPoint.decodeDimension(values.getMinPackedValue(), 0),
+                LongPoint.decodeDimension(values.getMaxPackedValue(), 0)});
+          }
+          ranges.sort(Comparator.comparingLong(r -> r[0]));
+          for (int i = 1; i < ranges.size(); i++) {
+            assertTrue("segments overlap", ranges.get(i - 1)[1] < ranges.get(i)[0]);
+          }
+        }
+      }
+    }
+  }
+
+  public void testFindMerges() throws IOException {
+    try (Directory dir = newDirectory()) {
+      IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+      iwc.setMaxBufferedDocs(10);
+      iwc.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        for (int i = 0; i < 100; i++) {
+          w.addDocument(newDocument(i));
+        }
+        // a segment without timestamps is never merged
+        w.addDocument(new Document());
+      }
+      SegmentInfos infos = SegmentInfos.readLatestCommit(dir);
+      assertEquals(11, infos.size());
+      MockMergeContext mergeContext = new MockMergeContext(SegmentCommitInfo::getDelCount);
+
+      TimeSeriesMergePolicy mp = new TimeSeriesMergePolicy("ts");
+      mp.setMergeFactor(3);
+      MergeSpecification spec = mp.findMerges(MergeTrigger.EXPLICIT, infos, mergeContext);
+      assertNotNull(spec);
+      assertEquals(3, spec.merges.size());
+      for (int i = 0; i < 3; i++) {
+        assertEquals(infos.asList().subList(3 * i, 3 * i + 3), spec.merges.get(i).segments);
+      }
+
+      // segments whose timestamps are all older than 99 - 35 = 64 are frozen
+      mp.setMaxMergeAge(35);
+      spec = mp.findMerges(MergeTrigger.EXPLICIT, infos, mergeContext);
+      assertNotNull(spec);
+      assertEquals(1, spec.merges.size());
+      assertEquals(infos.asList().subList(6, 9), spec.merges.get(0).segments);
+
+      mp.setMaxMergeAge(15);
+      assertNull(mp.findMerges(MergeTrigger.EXPLICIT, infos, mergeContext));
+    }
+  }
+
+  public void testForceMerge() throws IOException {
+    try (Directory dir = newDirectory()) {
+      IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setMergePolicy(new TimeSeriesMergePolicy("ts").setMaxMergeAtOnceExplicit(3));
+      iwc.setMaxBufferedDocs(10);
+      iwc.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        final int numDocs = atLeast(100);
+        for (int i = 0; i < numDocs; i++) {
+          w.addDocument(newDocument(i));
+        }
+        w.forceMerge(1);
+        try (DirectoryReader reader = DirectoryReader.open(w)) {
+          assertEquals(1, reader.leaves().size());
+          assertEquals(numDocs, reader.numDocs());
+        }
+      }
+    }
+  }
+
+  public void testSetters() {
+    TimeSeriesMergePolicy mp = new TimeSeriesMergePolicy("ts");
+    assertEquals("ts", mp.getField());
+    expectThrows(IllegalArgumentException.class, () -> mp.setMergeFactor(1));
+    expectThrows(IllegalArgumentException.class, () -> mp.setMaxMergeAtOnceExplicit(1));
+    expectThrows(IllegalArgumentException.class, () -> mp.setMaxMergedSegmentMB(-1));
+    expectThrows(IllegalArgumentException.class, () -> mp.setFloorSegmentMB(0));
+    expectThrows(IllegalArgumentException.class, () -> mp.setMaxMergeAge(-1));
+    expectThrows(IllegalArgumentException.class, () -> mp.setForceMergeDeletesPctAllowed(101));
+    mp.setMergeFactor(5);
+    assertEquals(5, mp.getMergeFactor());
+    mp.setFloorSegmentMB(1);
+    assertEquals(1.0, mp.getFloorSegmentMB(), 0d);
+    mp.setMaxMergeAge(1000);
+    assertEquals(1000, mp.getMaxMergeAge());
+  }
+}
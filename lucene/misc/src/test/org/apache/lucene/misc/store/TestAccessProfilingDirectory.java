@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.lucene.store.BaseDirectoryTestCase;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.FixedBitSet;
+
+/**
+ * Tests AccessProfilingDirectory
+ */
+public class TestAccessProfilingDirectory extends BaseDirectoryTestCase {
+
+  @Override
+  protected Directory getDirectory(Path path) throws IOException {
+    return new AccessProfilingDirectory(newFSDirectory(path), 1 << random().nextInt(17));
+  }
+
+  private static void writeFile(Directory dir, String name, int length) throws IOException {
+    try (IndexOutput out = dir.createOutput(name, IOContext.DEFAULT)) {
+      for (int i = 0; i < length; i++) {
+        out.writeByte((byte) i);
+      }
+    }
+  }
+
+  public void testRecord() throws IOException {
+    try (AccessProfilingDirectory dir = new AccessProfilingDirectory(newDirectory(), 1024)) {
+      writeFile(dir, "a", 10 * 1024);
+      assertNull(dir.getRecordedRegions("a"));
+      try (IndexInput in = dir.openInput("a", IOContext.DEFAULT)) {
+        in.seek(1024 + 3);
+        in.readByte();
+        IndexInput slice = in.slice("slice", 4 * 1024, 4 * 1024);
+        slice.seek(1023);
+        slice.readBytes(new byte[1026], 0, 1026);
+      }
+      FixedBitSet regions = dir.getRecordedRegions("a");
+      assertEquals(10, regions.length());
+      assertEquals(4, regions.cardinality());
+      assertTrue(regions.get(1));
+      assertTrue(regions.get(4));
+      assertTrue(regions.get(5));
+      assertTrue(regions.get(6));
+
+      // sequential reads are recorded whenever they cross a region boundary
+      try (IndexInput in = dir.openInput("a", IOContext.DEFAULT)) {
+        in.seek(7 * 1024 - 6);
+        in.readInt();
+        in.readLong();
+        in.readByte();
+        in.skipBytes(1024);
+        in.readShort();
+      }
+      regions = dir.getRecordedRegions("a");
+      assertEquals(6, regions.cardinality());
+      assertTrue(regions.get(7));
+      assertTrue(regions.get(8));
+
+      try (IndexInput in = dir.openInput("a", IOContext.DEFAULT)) {
+        RandomAccessInput slice = in.randomAccessSlice(2 * 1024, 4 * 1024);
+        slice.readLong(1020);
+        slice.readByte(1030);
+      }
+      regions = dir.getRecordedRegions("a");
+      assertEquals(8, regions.cardinality());
+      assertTrue(regions.get(2));
+      assertTrue(regions.get(3));
+
+      dir.rename("a", "a2");
+      assertNull(dir.getRecordedRegions("a"));
+      assertEquals(regions, dir.getRecordedRegions("a2"));
+
+      // merges are not recorded
+      writeFile(dir, "b", 1024);
+      try (IndexInput in = dir.openInput("b", IOContext.READONCE)) {
+        in.readByte();
+      }
+      assertNull(dir.getRecordedRegions("b"));
+    }
+  }
+
+  public void testSaveAndPreload() throws IOException {
+    Path path = createTempDir();
+    try (AccessProfilingDirectory dir = new AccessProfilingDirectory(newFSDirectory(path), 1024)) {
+      writeFile(dir, "a", 10 * 1024);
+      writeFile(dir, "b", 100);
+      writeFile(dir, "c", 100);
+      try (IndexInput in = dir.openInput("a", IOContext.DEFAULT)) {
+        in.seek(2048);
+        in.readByte();
+        in.seek(10 * 1024 - 1);
+        in.readByte();
+      }
+      for (String name : new String[] {"b", "c"}) {
+        try (IndexInput in = dir.openInput(name, IOContext.DEFAULT)) {
+          in.readByte();
+        }
+      }
+      dir.saveProfile();
+      dir.deleteFile("c");
+    }
+
+    try (AccessProfilingDirectory dir = new AccessProfilingDirectory(newFSDirectory(path), 1024)) {
+      dir.preload(Runnable::run).join();
+      // 1024 + 1024 + 100 bytes
+      assertEquals(2148, dir.getPreloadedBytes());
+
+      // the next profile includes regions of the previous one
+      try (IndexInput in = dir.openInput("a", IOContext.DEFAULT)) {
+        in.seek(0);
+        in.readByte();
+      }
+      dir.saveProfile();
+      assertEquals(1, Arrays.stream(dir.listAll()).filter(f -> f.startsWith(AccessProfilingDirectory.PROFILE_FILE_PREFIX)).count());
+    }
+
+    try (AccessProfilingDirectory dir = new AccessProfilingDirectory(newFSDirectory(path), 1024)) {
+      dir.preload(Runnable::run).join();
+      assertEquals(3172, dir.getPreloadedBytes());
+    }
+  }
+
+  public void testPreloadWithoutProfile() throws IOException {
+    try (AccessProfilingDirectory dir = new AccessProfilingDirectory(newDirectory())) {
+      dir.preload(Runnable::run).join();
+      assertEquals(0, dir.getPreloadedBytes());
+    }
+  }
+
+  public void testIllegalRegionSize() throws IOException {
+    try (Directory dir = newDirectory()) {
+      expectThrows(IllegalArgumentException.class, () -> new AccessProfilingDirectory(dir, 1000));
+      expectThrows(IllegalArgumentException.class, () -> new AccessProfilingDirectory(dir, 0));
+    }
+  }
+}
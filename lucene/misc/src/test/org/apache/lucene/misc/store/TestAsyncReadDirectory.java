@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.lucene.misc.store.AsyncReadDirectory.AsyncReadIndexInput;
+import org.apache.lucene.store.BaseDirectoryTestCase;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSLockFactory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests AsyncReadDirectory
+ */
+public class TestAsyncReadDirectory extends BaseDirectoryTestCase {
+
+  @Override
+  protected Directory getDirectory(Path path) throws IOException {
+    final int queueDepth = TestUtil.nextInt(random(), 1, 8);
+    return new AsyncReadDirectory(path, FSLockFactory.getDefault(), queueDepth, random().nextInt(queueDepth + 1));
+  }
+
+  public void testPrefetch() throws IOException {
+    final int queueDepth = TestUtil.nextInt(random(), 1, 8);
+    final int readAhead = random().nextInt(queueDepth + 1);
+    try (Directory dir = new AsyncReadDirectory(createTempDir(), FSLockFactory.getDefault(), queueDepth, readAhead)) {
+      final byte[] data = new byte[TestUtil.nextInt(random(), 1, 10 * AsyncReadDirectory.BLOCK_SIZE)];
+      random().nextBytes(data);
+      try (IndexOutput out = dir.createOutput("file", newIOContext(random()))) {
+        out.writeBytes(data, data.length);
+      }
+      try (IndexInput in = dir.openInput("file", IOContext.DEFAULT)) {
+        final int iters = atLeast(100);
+        for (int i = 0; i < iters; i++) {
+          final int sliceStart = random().nextInt(data.length);
+          final int sliceLength = random().nextInt(data.length - sliceStart + 1);
+          final boolean slice = random().nextBoolean();
+          final IndexInput input = slice ? in.slice("slice", sliceStart, sliceLength) : in.clone();
+          final int base = slice ? sliceStart : 0;
+          final int offset = random().nextInt((int) input.length() + 1);
+          final int length = random().nextInt((int) input.length() - offset + 1);
+          ((AsyncReadIndexInput) input).prefetch(offset, length);
+          input.seek(offset);
+          final byte[] bytes = new byte[length];
+          input.readBytes(bytes, 0, length);
+          assertArrayEquals(ArrayUtil.copyOfSubArray(data, base + offset, base + offset + length), bytes);
+        }
+        expectThrows(IllegalArgumentException.class, () -> ((AsyncReadIndexInput) in).prefetch(0, data.length + 1));
+      }
+    }
+  }
+
+  public void testIllegalArguments() {
+    Path path = createTempDir();
+    expectThrows(IllegalArgumentException.class, () -> new AsyncReadDirectory(path, FSLockFactory.getDefault(), 0, 0));
+    expectThrows(IllegalArgumentException.class, () -> new AsyncReadDirectory(path, FSLockFactory.getDefault(), 2, 3));
+  }
+}
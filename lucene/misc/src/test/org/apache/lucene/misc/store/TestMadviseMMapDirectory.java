@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.lucene.store.BaseDirectoryTestCase;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MergeInfo;
+import org.junit.Rule;
+import org.junit.rules.TestRule;
+
+/**
+ * Tests MadviseMMapDirectory
+ */
+public class TestMadviseMMapDirectory extends BaseDirectoryTestCase {
+  @Rule
+  public static TestRule requiresNative = new NativeLibEnableRule(
+      EnumSet.of(NativeLibEnableRule.OperatingSystem.MAC,
+          NativeLibEnableRule.OperatingSystem.FREE_BSD,
+          NativeLibEnableRule.OperatingSystem.LINUX));
+
+  @Override
+  protected Directory getDirectory(Path path) throws IOException {
+    MadviseMMapDirectory dir = new MadviseMMapDirectory(path);
+    if (random().nextBoolean()) {
+      dir.setPreloadExtensions(Set.of("tip", "tim"));
+    }
+    return dir;
+  }
+
+  public void testGetAdvice() throws IOException {
+    try (MadviseMMapDirectory dir = new MadviseMMapDirectory(createTempDir())) {
+      IOContext merge = new IOContext(new MergeInfo(1000, 1 << 20, false, 1));
+      assertEquals(NativePosixUtil.SEQUENTIAL, dir.getAdvice("_0.fdt", merge));
+      assertEquals(NativePosixUtil.SEQUENTIAL, dir.getAdvice("_0.tip", IOContext.READONCE));
+      assertEquals(NativePosixUtil.RANDOM, dir.getAdvice("_0_Lucene90_0.dvd", IOContext.READ));
+      assertEquals(NativePosixUtil.NORMAL, dir.getAdvice("_0.fdt", IOContext.READ));
+      assertEquals(NativePosixUtil.NORMAL, dir.getAdvice("segments_1", IOContext.READ));
+
+      dir.setSequentialExtensions(Set.of("fdt"));
+      dir.setPreloadExtensions(Set.of("dvd"));
+      assertEquals(NativePosixUtil.SEQUENTIAL, dir.getAdvice("_0.fdt", IOContext.READ));
+      assertEquals(NativePosixUtil.WILLNEED, dir.getAdvice("_0_Lucene90_0.dvd", IOContext.READ));
+      dir.setRandomAccessExtensions(Set.of());
+      assertEquals(NativePosixUtil.NORMAL, dir.getAdvice("_0.tip", IOContext.READ));
+    }
+  }
+
+  public void testAdviseOnOpen() throws IOException {
+    try (MadviseMMapDirectory dir = new MadviseMMapDirectory(createTempDir())) {
+      dir.setPreloadExtensions(Set.of("kdd"));
+      for (String name : new String[] {"_0.tip", "_0.kdd", "_0.fdt"}) {
+        try (IndexOutput out = dir.createOutput(name, IOContext.DEFAULT)) {
+          for (int i = 0; i < 10000; i++) {
+            out.writeInt(i);
+          }
+        }
+        try (IndexInput in = dir.openInput(name, random().nextBoolean() ? IOContext.READONCE : IOContext.READ)) {
+          in.seek(4 * 1234);
+          assertEquals(1234, in.readInt());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.misc.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.BaseDirectoryTestCase;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MergeInfo;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * Tests TieredCachingDirectory
+ */
+public class TestTieredCachingDirectory extends BaseDirectoryTestCase {
+
+  @Override
+  protected Directory getDirectory(Path path) throws IOException {
+    return new TieredCachingDirectory(newFSDirectory(path), newFSDirectory(createTempDir()), random().nextInt(3) * 0.1);
+  }
+
+  private static void writeFile(Directory dir, String name, int length) throws IOException {
+    try (IndexOutput out = dir.createOutput(name, IOContext.DEFAULT)) {
+      CodecUtil.writeHeader(out, "test", 0);
+      for (long i = CodecUtil.headerLength("test"); i < length - CodecUtil.footerLength(); i++) {
+        out.writeByte((byte) i);
+      }
+      CodecUtil.writeFooter(out);
+    }
+  }
+
+  public void testCacheOnWriteAndRead() throws IOException {
+    Directory delegate = newDirectory();
+    try (TieredCachingDirectory dir = new TieredCachingDirectory(delegate, newFSDirectory(createTempDir()), 1)) {
+      writeFile(dir, "a", 1000);
+      assertEquals(1000, dir.getCachedBytes());
+      assertArrayEquals(new String[] {"a"}, dir.listCachedFiles());
+      dir.openInput("a", IOContext.DEFAULT).close();
+      assertEquals(1, dir.getHitCount());
+      assertEquals(0, dir.getMissCount());
+
+      // written directly to the delegate, cached when it's first opened
+      writeFile(delegate, "b", 2000);
+      try (IndexInput input = dir.openInput("b", IOContext.READ)) {
+        CodecUtil.checksumEntireFile(input);
+      }
+      assertEquals(1, dir.getMissCount());
+      assertEquals(3000, dir.getCachedBytes());
+      dir.openInput("b", IOContext.READ).close();
+      assertEquals(2, dir.getHitCount());
+
+      // merges don't populate the cache
+      writeFile(delegate, "c", 3000);
+      dir.openInput("c", IOContext.READONCE).close();
+      assertEquals(2, dir.listCachedFiles().length);
+
+      dir.deleteFile("a");
+      assertEquals(2000, dir.getCachedBytes());
+      assertArrayEquals(new String[] {"b"}, dir.listCachedFiles());
+
+      dir.rename("b", "d");
+      assertArrayEquals(new String[] {"d"}, dir.listCachedFiles());
+      assertEquals(2000, dir.fileLength("d"));
+      assertArrayEquals(new String[] {"c", "d"}, dir.listAll());
+    }
+  }
+
+  public void testEviction() throws IOException {
+    try (TieredCachingDirectory dir = new TieredCachingDirectory(newDirectory(), newFSDirectory(createTempDir()), 0.01)) {
+      final long maxCacheBytes = (long) (0.01 * 1024 * 1024);
+      writeFile(dir, "a", 4000);
+      writeFile(dir, "b", 4000);
+      assertEquals(0, dir.getEvictionCount());
+      // a becomes the most recently used file
+      dir.openInput("a", IOContext.DEFAULT).close();
+      writeFile(dir, "c", 4000);
+      assertEquals(1, dir.getEvictionCount());
+      assertArrayEquals(new String[] {"a", "c"}, dir.listCachedFiles());
+      assertTrue(dir.getCachedBytes() <= maxCacheBytes);
+
+      // too large to be cached
+      writeFile(dir, "d", (int) maxCacheBytes + 1);
+      assertFalse(Arrays.asList(dir.listCachedFiles()).contains("d"));
+      try (IndexInput in = dir.openInput("d", IOContext.DEFAULT)) {
+        CodecUtil.checksumEntireFile(in);
+      }
+      assertTrue(dir.getCachedBytes() <= maxCacheBytes);
+    }
+  }
+
+  public void testLargeFileNotCachedWhileWriting() throws IOException {
+    Directory cache = newFSDirectory(createTempDir());
+    try (TieredCachingDirectory dir = new TieredCachingDirectory(newDirectory(), cache, 0.01)) {
+      final long maxCacheBytes = (long) (0.01 * 1024 * 1024);
+      try (IndexOutput out = dir.createOutput("a", IOContext.DEFAULT)) {
+        CodecUtil.writeHeader(out, "test", 0);
+        out.writeBytes(new byte[(int) maxCacheBytes], (int) maxCacheBytes);
+        // the partial copy is deleted as soon as the file outgrows the cache
+        assertFalse(Arrays.asList(cache.listAll()).contains("a"));
+        CodecUtil.writeFooter(out);
+      }
+      assertEquals(0, dir.listCachedFiles().length);
+      try (IndexInput in = dir.openInput("a", IOContext.DEFAULT)) {
+        CodecUtil.checksumEntireFile(in);
+      }
+
+      // merged segments that are expected to be larger than the cache are not teed
+      assertFalse(dir.doCacheWrite("b", new IOContext(new MergeInfo(1000, maxCacheBytes + 1, false, 1))));
+      assertTrue(dir.doCacheWrite("b", new IOContext(new MergeInfo(10, maxCacheBytes / 2, false, 1))));
+      assertTrue(dir.doCacheWrite("b", IOContext.DEFAULT));
+    }
+  }
+
+  public void testCacheWriteFailure() throws IOException {
+    final int maxCacheFileLength = 500;
+    Directory cache = new FilterDirectory(newFSDirectory(createTempDir())) {
+      @Override
+      public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        // simulates a full cache disk
+        final IndexOutput out = super.createOutput(name, context);
+        return new IndexOutput(out.toString(), out.getName()) {
+          @Override
+          public void close() throws IOException {
+            out.close();
+          }
+
+          @Override
+          public long getFilePointer() {
+            return out.getFilePointer();
+          }
+
+          @Override
+          public long getChecksum() throws IOException {
+            return out.getChecksum();
+          }
+
+          @Override
+          public void writeByte(byte b) throws IOException {
+            if (out.getFilePointer() >= maxCacheFileLength) {
+              throw new IOException("fake disk full");
+            }
+            out.writeByte(b);
+          }
+
+          @Override
+          public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+              writeByte(b[offset + i]);
+            }
+          }
+        };
+      }
+    };
+    try (TieredCachingDirectory dir = new TieredCachingDirectory(newDirectory(), cache, 1)) {
+      writeFile(dir, "a", 400);
+      writeFile(dir, "b", 1000);
+      assertArrayEquals(new String[] {"a"}, dir.listCachedFiles());
+      assertArrayEquals(new String[] {"a"}, cache.listAll());
+      assertEquals(1000, dir.fileLength("b"));
+      try (IndexInput in = dir.openInput("b", IOContext.READONCE)) {
+        CodecUtil.checksumEntireFile(in);
+      }
+    }
+  }
+
+  public void testReuseCacheOnRestart() throws IOException {
+    Path indexPath = createTempDir();
+    Path cachePath = createTempDir();
+    try (TieredCachingDirectory dir = new TieredCachingDirectory(newFSDirectory(indexPath), newFSDirectory(cachePath), 1)) {
+      writeFile(dir, "a", 1000);
+      writeFile(dir, "b", 1000);
+      writeFile(dir, "c", 1000);
+      writeFile(dir, "d", 1000);
+    }
+    try (Directory delegate = newFSDirectory(indexPath)) {
+      delegate.deleteFile("b");
+      delegate.deleteFile("c");
+      // same name and length, but different content
+      try (IndexOutput out = delegate.createOutput("c", IOContext.DEFAULT)) {
+        CodecUtil.writeHeader(out, "other", 0);
+        out.writeBytes(new byte[1000 - CodecUtil.headerLength("other") - CodecUtil.footerLength()], 1000 - CodecUtil.headerLength("other") - CodecUtil.footerLength());
+        CodecUtil.writeFooter(out);
+      }
+    }
+    try (Directory cache = newFSDirectory(cachePath)) {
+      try (IndexOutput out = cache.createOutput("garbage", IOContext.DEFAULT)) {
+        out.writeInt(42);
+      }
+      // torn copy: same length and footer, but a corrupt body
+      byte[] bytes = new byte[1000];
+      try (IndexInput in = cache.openInput("d", IOContext.READONCE)) {
+        in.readBytes(bytes, 0, bytes.length);
+      }
+      bytes[500] ^= 1;
+      cache.deleteFile("d");
+      try (IndexOutput out = cache.createOutput("d", IOContext.DEFAULT)) {
+        out.writeBytes(bytes, bytes.length);
+      }
+    }
+    try (TieredCachingDirectory dir = new TieredCachingDirectory(newFSDirectory(indexPath), newFSDirectory(cachePath), 1)) {
+      assertArrayEquals(new String[] {"a"}, dir.listCachedFiles());
+      dir.openInput("a", IOContext.DEFAULT).close();
+      assertEquals(1, dir.getHitCount());
+    }
+  }
+
+  public void testIndexing() throws IOException {
+    try (TieredCachingDirectory dir = new TieredCachingDirectory(newDirectory(), newFSDirectory(createTempDir()), 0.5)) {
+      final int numDocs = atLeast(100);
+      try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(new MockAnalyzer(random())))) {
+        for (int i = 0; i < numDocs; i++) {
+          Document doc = new Document();
+          doc.add(newStringField("id", Integer.toString(i), Field.Store.YES));
+          w.addDocument(doc);
+          if (random().nextInt(20) == 0) {
+            w.commit();
+          }
+        }
+        w.forceMerge(1);
+      }
+      try (DirectoryReader reader = DirectoryReader.open(dir)) {
+        IndexSearcher searcher = newSearcher(reader);
+        for (int i = 0; i < numDocs; i += 7) {
+          assertEquals(1, searcher.count(new TermQuery(new Term("id", Integer.toString(i)))));
+        }
+      }
+      for (String file : dir.listCachedFiles()) {
+        assertTrue(file, Arrays.asList(dir.listAll()).contains(file));
+      }
+      assertTrue(dir.getHitCount() > 0);
+    }
+  }
+
+  public void testIllegalArguments() throws IOException {
+    Directory delegate = newDirectory();
+    Directory cache = newDirectory();
+    expectThrows(IllegalArgumentException.class, () -> new TieredCachingDirectory(delegate, cache, -1));
+    IOUtils.close(delegate, cache);
+  }
+}
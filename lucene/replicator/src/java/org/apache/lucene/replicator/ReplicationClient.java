@@ -17,6 +17,7 @@
 package org.apache.lucene.replicator;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
@@ -155,6 +156,9 @@ public class ReplicationClient implements Closeable {
   /** The component name to use with {@link InfoStream#isEnabled(String)}. */
   public static final String INFO_STREAM_COMPONENT = "ReplicationThread";
   
+  /** The default number of times the copy of a file is resumed after it was interrupted. */
+  public static final int DEFAULT_MAX_RESUME_ATTEMPTS = 3;
+  
   private final Replicator replicator;
   private final ReplicationHandler handler;
   private final SourceDirectoryFactory factory;
@@ -164,6 +168,7 @@ public class ReplicationClient implements Closeable {
   private volatile ReplicationThread updateThread;
   private volatile boolean closed = false;
   private volatile InfoStream infoStream = InfoStream.getDefault();
+  private volatile int maxResumeAttempts = DEFAULT_MAX_RESUME_ATTEMPTS;
   
   /**
    * Constructor.
@@ -178,10 +183,70 @@ public class ReplicationClient implements Closeable {
     this.factory = factory;
   }
   
-  private void copyBytes(IndexOutput out, InputStream in) throws IOException {
-    int numBytes;
-    while ((numBytes = in.read(copyBuffer)) > 0) {
-      out.writeBytes(copyBuffer, 0, numBytes);
+  /**
+   * Copies a file to the given output. If reading the file is interrupted by
+   * an {@link IOException} other than {@link SessionExpiredException}, or if
+   * the stream ends before {@link RevisionFile#size} bytes were read, the copy
+   * resumes where it stopped up to {@link #getMaxResumeAttempts()} times, so
+   * that large files are not transferred again from the start. Exceptions
+   * hit while writing are not retried.
+   */
+  private void copyFile(String sessionID, String source, RevisionFile file, IndexOutput out) throws IOException {
+    int attempt = 0;
+    while (true) {
+      final long offset = out.getFilePointer();
+      IOException failure = null;
+      InputStream in = null;
+      try {
+        in = replicator.obtainFile(sessionID, source, file.fileName, offset);
+        while (true) {
+          final int numBytes;
+          try {
+            numBytes = in.read(copyBuffer);
+          } catch (SessionExpiredException e) {
+            throw e;
+          } catch (IOException e) {
+            failure = e;
+            break;
+          }
+          if (numBytes <= 0) {
+            break;
+          }
+          out.writeBytes(copyBuffer, 0, numBytes);
+        }
+      } catch (SessionExpiredException e) {
+        throw e;
+      } catch (IOException e) {
+        if (in != null) {
+          // failed to write
+          throw e;
+        }
+        failure = e;
+      } finally {
+        IOUtils.closeWhileHandlingException(in);
+      }
+      
+      final long copied = out.getFilePointer();
+      if (failure == null && (file.size < 0 || copied == file.size)) {
+        return;
+      }
+      if (failure == null && copied > file.size) {
+        throw new IOException("file " + file.fileName + " (source=" + source + ") is longer than expected: expected="
+            + file.size + " actual=" + copied);
+      }
+      if (file.size < 0 || ++attempt > maxResumeAttempts || (failure == null && copied == offset)) {
+        // we cannot know where to resume, we ran out of attempts or the
+        // replicator has nothing more to send us
+        if (failure != null) {
+          throw failure;
+        }
+        throw new EOFException("file " + file.fileName + " (source=" + source + ") is truncated: expected=" + file.size
+            + " actual=" + copied);
+      }
+      if (infoStream.isEnabled(INFO_STREAM_COMPONENT)) {
+        infoStream.message(INFO_STREAM_COMPONENT, "doUpdate(): resume copy of file=" + file.fileName + " source=" + source
+            + " at offset=" + copied + " of " + file.size + " attempt=" + attempt + (failure == null ? "" : " failure=" + failure));
+      }
     }
   }
   
@@ -218,17 +283,10 @@ public class ReplicationClient implements Closeable {
             }
             return;
           }
-          InputStream in = null;
-          IndexOutput out = null;
-          try {
-            in = replicator.obtainFile(session.id, source, file.fileName);
-            out = dir.createOutput(file.fileName, IOContext.DEFAULT);
-            copyBytes(out, in);
-            cpFiles.add(file.fileName);
-            // TODO add some validation, on size / checksum
-          } finally {
-            IOUtils.close(in, out);
+          try (IndexOutput out = dir.createOutput(file.fileName, IOContext.DEFAULT)) {
+            copyFile(session.id, source, file, out);
           }
+          cpFiles.add(file.fileName);
         }
       }
       // only notify if all required files were successfully obtained.
@@ -404,6 +462,27 @@ public class ReplicationClient implements Closeable {
     }
   }
 
+  /**
+   * Sets how many times the copy of a single file may be resumed after it was
+   * interrupted, {@code 0} disables resuming. Resuming requires the
+   * {@link RevisionFile#size size} of the file to be known.
+   */
+  public void setMaxResumeAttempts(int maxResumeAttempts) {
+    if (maxResumeAttempts < 0) {
+      throw new IllegalArgumentException("maxResumeAttempts must be >= 0, got " + maxResumeAttempts);
+    }
+    this.maxResumeAttempts = maxResumeAttempts;
+  }
+  
+  /**
+   * Returns how many times the copy of a single file may be resumed.
+   * 
+   * @see #setMaxResumeAttempts(int)
+   */
+  public int getMaxResumeAttempts() {
+    return maxResumeAttempts;
+  }
+  
   /** Sets the {@link InfoStream} to use for logging messages. */
   public void setInfoStream(InfoStream infoStream) {
     if (infoStream == null) {
@@ -17,6 +17,7 @@
 package org.apache.lucene.replicator;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -76,4 +77,47 @@ public interface Replicator extends Closeable {
    */
   public InputStream obtainFile(String sessionID, String source, String fileName) throws IOException;
   
+  /**
+   * Returns an {@link InputStream} for the requested file and source in the
+   * context of the given {@link SessionToken#id session}, starting at
+   * {@code offset}. This allows to resume the copy of a file that was
+   * interrupted without obtaining it again from the start. The default
+   * implementation skips the first {@code offset} bytes of
+   * {@link #obtainFile(String, String, String)}, implementations that
+   * transfer files over the network should override it to only send the bytes
+   * after {@code offset}.
+   * <p>
+   * <b>NOTE:</b> it is the caller's responsibility to close the returned
+   * stream.
+   * 
+   * @throws SessionExpiredException if the specified session has already
+   *         expired
+   */
+  public default InputStream obtainFile(String sessionID, String source, String fileName, long offset) throws IOException {
+    if (offset < 0) {
+      throw new IllegalArgumentException("offset must be >= 0, got " + offset);
+    }
+    final InputStream in = obtainFile(sessionID, source, fileName);
+    boolean success = false;
+    try {
+      long remaining = offset;
+      while (remaining > 0) {
+        final long skipped = in.skip(remaining);
+        if (skipped > 0) {
+          remaining -= skipped;
+        } else if (in.read() != -1) {
+          remaining--;
+        } else {
+          throw new EOFException("offset " + offset + " is beyond the end of file " + fileName + " (source=" + source + ")");
+        }
+      }
+      success = true;
+      return in;
+    } finally {
+      if (success == false) {
+        in.close();
+      }
+    }
+  }
+  
 }
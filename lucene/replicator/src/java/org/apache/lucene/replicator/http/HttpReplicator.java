@@ -81,6 +81,29 @@ public class HttpReplicator extends HttpClientBase implements Replicator {
     });
   }
   
+  @Override
+  public InputStream obtainFile(String sessionID, String source, String fileName, long offset) throws IOException {
+    if (offset == 0) {
+      return obtainFile(sessionID, source, fileName);
+    }
+    if (offset < 0) {
+      throw new IllegalArgumentException("offset must be >= 0, got " + offset);
+    }
+    String[] params = new String[] {
+        ReplicationService.REPLICATE_SESSION_ID_PARAM, sessionID,
+        ReplicationService.REPLICATE_SOURCE_PARAM, source,
+        ReplicationService.REPLICATE_FILENAME_PARAM, fileName,
+        ReplicationService.REPLICATE_OFFSET_PARAM, Long.toString(offset),
+    };
+    final HttpResponse response = executeGET(ReplicationAction.OBTAIN.name(), params);
+    return doAction(response, false, new Callable<InputStream>() {
+      @Override
+      public InputStream call() throws Exception {
+        return responseInputStream(response, true);
+      }
+    });
+  }
+  
   @Override
   public void publish(Revision revision) throws IOException {
     throw new UnsupportedOperationException(
@@ -77,6 +77,9 @@ public class ReplicationService {
   /** Request parameter name for providing the file's name. */
   public final static String REPLICATE_FILENAME_PARAM = "filename";
   
+  /** Request parameter name for providing the offset to start reading the file from. */
+  public final static String REPLICATE_OFFSET_PARAM = "offset";
+  
   private static final int SHARD_IDX = 0, ACTION_IDX = 1;
   
   private final Map<String,Replicator> replicators;
@@ -158,7 +161,13 @@ public class ReplicationService {
           final String sessionID = extractRequestParam(req, REPLICATE_SESSION_ID_PARAM);
           final String fileName = extractRequestParam(req, REPLICATE_FILENAME_PARAM);
           final String source = extractRequestParam(req, REPLICATE_SOURCE_PARAM);
-          InputStream in = replicator.obtainFile(sessionID, source, fileName);
+          final String offset = req.getParameter(REPLICATE_OFFSET_PARAM);
+          InputStream in;
+          if (offset == null) {
+            in = replicator.obtainFile(sessionID, source, fileName);
+          } else {
+            in = replicator.obtainFile(sessionID, source, fileName, Long.parseLong(offset));
+          }
           try {
             copy(in, resOut);
           } finally {
@@ -24,6 +24,8 @@ import java.util.Locale;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RateLimitedIndexOutput;
+import org.apache.lucene.store.RateLimiter;
 
 /** Copies one file from an incoming DataInput to a dest filename in a local Directory */
 
@@ -46,7 +48,9 @@ public class CopyOneFile implements Closeable {
     this.dest = dest;
     this.buffer = buffer;
     // TODO: pass correct IOCtx, e.g. seg total size
-    out = dest.createTempOutput(name, "copy", IOContext.DEFAULT);
+    IndexOutput tmpOut = dest.createTempOutput(name, "copy", IOContext.DEFAULT);
+    RateLimiter rateLimiter = dest.getCopyRateLimiter();
+    out = rateLimiter == null ? tmpOut : new RateLimitedIndexOutput(rateLimiter, tmpOut);
     tmpName = out.getName();
 
     // last 8 bytes are checksum, which we write ourselves after copying all bytes and confirming checksum:
@@ -0,0 +1,478 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.replicator.nrt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+/** A {@link CopyJob} that copies up to {@code maxConcurrentFiles} files at the same time on an {@link Executor}, each over its own
+ *  {@link DataInput} as returned by {@link #openFile}, so that the copy of one file is not stalled by network round-trips or disk writes
+ *  of another.  Checksums are computed while bytes are written, and verified as soon as the last byte of each file was copied.  Copies
+ *  are throttled by the {@link ReplicaNode#setCopyRateLimiter rate limiter} of the replica.
+ *
+ *  <p>Unlike {@link CopyJob}s that are driven by repeated calls from the replica, this job drives itself once {@link #start} is called,
+ *  so {@link ReplicaNode#launch} has nothing left to do.  {@link CopyJob#onceDone} is called from the executor once all files are copied
+ *  or the job failed or was cancelled.
+ *
+ *  <p>When a new NRT point supersedes this job, {@link #transferAndCancel} hands the files that are still being copied over to the new
+ *  job, which continues copying them from the same inputs.
+ *
+ *  <p>Replicas use this job by returning it from {@link ReplicaNode#newCopyJob}, with {@link #openFile} implemented over their own
+ *  transport, for instance by opening one connection to the primary per file.
+ *
+ * @lucene.experimental */
+public abstract class ParallelCopyJob extends CopyJob {
+
+  /** Default maximum number of files that are copied at the same time. */
+  public static final int DEFAULT_MAX_CONCURRENT_FILES = 4;
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private final Executor executor;
+  private final int maxConcurrentFiles;
+
+  /** Files that are currently being copied, and the input they are copied from */
+  private final Map<CopyOneFile,DataInput> inProgress = new HashMap<>();
+
+  /** Input of a file whose copy was carried over from a previous job */
+  private DataInput resumedInput;
+
+  /** In-progress files that were carried over from a previous {@link ParallelCopyJob}, and the input they are copied from */
+  private final Map<CopyOneFile,DataInput> transferred = new LinkedHashMap<>();
+
+  /** Set while a newer job takes over our in-progress files: copies stop after their current chunk instead of running to the end */
+  private volatile boolean suspending;
+
+  /** Files whose copy was stopped while suspending, and the input they are copied from */
+  private final Map<CopyOneFile,DataInput> suspended = new HashMap<>();
+
+  private Iterator<Map.Entry<String,FileMetaData>> pending;
+  private int running;
+  private boolean done;
+  private final CountDownLatch finished = new CountDownLatch(1);
+
+  protected ParallelCopyJob(String reason, Map<String,FileMetaData> files, ReplicaNode dest, boolean highPriority, OnceDone onceDone,
+                            Executor executor, int maxConcurrentFiles) throws IOException {
+    super(reason, files, dest, highPriority, onceDone);
+    if (maxConcurrentFiles < 1) {
+      throw new IllegalArgumentException("maxConcurrentFiles must be >= 1, got " + maxConcurrentFiles);
+    }
+    this.executor = executor;
+    this.maxConcurrentFiles = maxConcurrentFiles;
+  }
+
+  /** Opens a stream of the bytes of the specified file on the primary, starting at {@code offset}, followed by its checksum as a long.
+   *  The returned input is closed once the file is copied if it implements {@link Closeable}.  This is called concurrently for different
+   *  files. */
+  protected abstract DataInput openFile(String fileName, FileMetaData metaData, long offset) throws IOException;
+
+  @Override
+  protected CopyOneFile newCopyOneFile(CopyOneFile prev) {
+    assert resumedInput == null;
+    try {
+      resumedInput = openFile(prev.name, prev.metaData, prev.getBytesCopied());
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    return new CopyOneFile(prev, resumedInput);
+  }
+
+  /** Transfers already copied files of the previous job, like {@link CopyJob#transferAndCancel}, and also takes over all files that a
+   *  previous {@link ParallelCopyJob} is in the process of copying, together with their inputs, so that large files are not restarted
+   *  from the beginning on every new NRT point. */
+  @Override
+  public synchronized void transferAndCancel(CopyJob prevJob) throws IOException {
+    if (prevJob instanceof ParallelCopyJob == false) {
+      super.transferAndCancel(prevJob);
+      return;
+    }
+    final ParallelCopyJob prev = (ParallelCopyJob) prevJob;
+    try {
+      prev.suspend();
+      synchronized (prev) {
+        if (prev.exc == null) {
+          takeOverSuspendedFiles(prev);
+        }
+      }
+      super.transferAndCancel(prev);
+    } finally {
+      prev.finishSuspended();
+    }
+  }
+
+  /** Stops all copies after their current chunk and waits for them to park their files */
+  private synchronized void suspend() {
+    if (exc != null || pending == null) {
+      // cancelled or not started
+      return;
+    }
+    suspending = true;
+    try {
+      while (running > 0) {
+        wait();
+      }
+    } catch (InterruptedException ie) {
+      throw new ThreadInterruptedException(ie);
+    }
+  }
+
+  private void takeOverSuspendedFiles(ParallelCopyJob prev) {
+    assert Thread.holdsLock(this);
+    assert Thread.holdsLock(prev);
+    Iterator<Map.Entry<String,FileMetaData>> it = toCopy.iterator();
+    while (it.hasNext()) {
+      Map.Entry<String,FileMetaData> ent = it.next();
+      Iterator<Map.Entry<CopyOneFile,DataInput>> suspendedIt = prev.suspended.entrySet().iterator();
+      while (suspendedIt.hasNext()) {
+        Map.Entry<CopyOneFile,DataInput> suspendedEnt = suspendedIt.next();
+        CopyOneFile file = suspendedEnt.getKey();
+        if (file.name.equals(ent.getKey())
+            && file.metaData.length == ent.getValue().length
+            && file.metaData.checksum == ent.getValue().checksum) {
+          dest.message("xfer: carry over in-progress file " + file.name + " (" + file.tmpName + ") bytesCopied=" + file.getBytesCopied() + " of " + file.bytesToCopy);
+          transferred.put(file, suspendedEnt.getValue());
+          suspendedIt.remove();
+          // So it's not in our copy list anymore:
+          it.remove();
+          break;
+        }
+      }
+    }
+  }
+
+  /** Deletes the files that the newer job did not take over, and completes this job, which must have been cancelled by now */
+  private void finishSuspended() {
+    final boolean complete;
+    synchronized (this) {
+      if (suspending == false) {
+        return;
+      }
+      suspending = false;
+      assert exc != null;
+      for (Map.Entry<CopyOneFile,DataInput> ent : suspended.entrySet()) {
+        deletePartialFile(ent.getKey(), ent.getValue());
+      }
+      suspended.clear();
+      complete = isComplete();
+    }
+    if (complete) {
+      // Like when copies notice that we are cancelled, call OnceDone from the executor, not from the thread that transfers our files
+      try {
+        executor.execute(this::onDone);
+      } catch (RejectedExecutionException e) {
+        onDone();
+      }
+    }
+  }
+
+  private void deletePartialFile(CopyOneFile file, DataInput in) {
+    IOUtils.closeWhileHandlingException(file);
+    if (in instanceof Closeable) {
+      IOUtils.closeWhileHandlingException((Closeable) in);
+    }
+    try {
+      dest.deleter.deleteNewFile(file.tmpName);
+    } catch (Throwable t) {
+      dest.message("ignore exception deleting partial file " + file.tmpName + ": " + t);
+    }
+  }
+
+  @Override
+  public void start() throws IOException {
+    final boolean complete;
+    synchronized (this) {
+      if (pending != null) {
+        throw new IllegalStateException("already started");
+      }
+      pending = toCopy.iterator();
+      for (Map.Entry<String,FileMetaData> ent : toCopy) {
+        totBytes += ent.getValue().length;
+      }
+      dest.message("ParallelCopyJob.start: files count=" + toCopy.size() + " totBytes=" + totBytes + " maxConcurrentFiles=" + maxConcurrentFiles);
+      if (current != null) {
+        // We resumed an already in-progress copy from a previous job; we do this one first:
+        final CopyOneFile resumed = current;
+        final DataInput in = resumedInput;
+        current = null;
+        resumedInput = null;
+        inProgress.put(resumed, in);
+        running++;
+        executor.execute(() -> copy(resumed, in));
+      }
+      // Then files that were in progress in a previous ParallelCopyJob:
+      for (Map.Entry<CopyOneFile,DataInput> ent : transferred.entrySet()) {
+        final CopyOneFile resumed = ent.getKey();
+        final DataInput in = ent.getValue();
+        totBytes += resumed.metaData.length;
+        inProgress.put(resumed, in);
+        running++;
+        executor.execute(() -> copy(resumed, in));
+      }
+      transferred.clear();
+      launchPending();
+      complete = isComplete();
+    }
+    if (complete) {
+      onDone();
+    }
+  }
+
+  /** Submits pending files as long as fewer than maxConcurrentFiles are being copied */
+  private void launchPending() {
+    assert Thread.holdsLock(this);
+    while (running < maxConcurrentFiles && exc == null && suspending == false && pending.hasNext()) {
+      final Map.Entry<String,FileMetaData> ent = pending.next();
+      running++;
+      executor.execute(() -> copy(ent.getKey(), ent.getValue()));
+    }
+  }
+
+  private boolean isComplete() {
+    assert Thread.holdsLock(this);
+    if (done == false && running == 0 && suspending == false && (exc != null || pending.hasNext() == false)) {
+      done = true;
+      return true;
+    }
+    return false;
+  }
+
+  private void copy(String fileName, FileMetaData metaData) {
+    DataInput in = null;
+    CopyOneFile file = null;
+    try {
+      if (exc == null && suspending == false) {
+        in = openFile(fileName, metaData, 0);
+        file = new CopyOneFile(in, dest, fileName, metaData, new byte[BUFFER_SIZE]);
+      }
+    } catch (Throwable t) {
+      fileDone(null, in, t);
+      return;
+    }
+    if (file != null) {
+      synchronized (this) {
+        inProgress.put(file, in);
+      }
+    }
+    copy(file, in);
+  }
+
+  private void copy(CopyOneFile file, DataInput in) {
+    Throwable failure = null;
+    try {
+      if (file != null) {
+        while (exc == null && suspending == false && file.visit() == false) {
+        }
+      }
+    } catch (Throwable t) {
+      failure = t;
+    }
+    fileDone(file, in, failure);
+  }
+
+  private void fileDone(CopyOneFile file, DataInput in, Throwable failure) {
+    final boolean complete;
+    synchronized (this) {
+      running--;
+      boolean keepInput = false;
+      if (file != null) {
+        inProgress.remove(file);
+        final boolean copied = file.getBytesCopied() > file.bytesToCopy;
+        if (failure == null && exc == null && copied) {
+          copiedFiles.put(file.name, file.tmpName);
+          totBytesCopied += file.getBytesCopied();
+          assert totBytesCopied <= totBytes: "totBytesCopied=" + totBytesCopied + " totBytes=" + totBytes;
+        } else if (failure == null && exc == null && suspending) {
+          // A newer job is taking over our in-progress files: keep the partial file and its input for it
+          suspended.put(file, in);
+          keepInput = true;
+        } else {
+          // We failed or were cancelled: drop this file, whether it was fully copied or not
+          if (copied == false) {
+            IOUtils.closeWhileHandlingException(file);
+          }
+          try {
+            dest.deleter.deleteNewFile(file.tmpName);
+          } catch (Throwable t) {
+            dest.message("ignore exception deleting partial file " + file.tmpName + ": " + t);
+          }
+        }
+      }
+      if (keepInput == false && in instanceof Closeable) {
+        IOUtils.closeWhileHandlingException((Closeable) in);
+      }
+      if (failure != null) {
+        try {
+          cancel("exc during copy", failure);
+        } catch (Throwable t) {
+          dest.message("ignore exception during cancel: " + t);
+        }
+      }
+      launchPending();
+      complete = isComplete();
+      // suspend() waits for running copies
+      notifyAll();
+    }
+    if (complete) {
+      onDone();
+    }
+  }
+
+  private void onDone() {
+    dest.message(String.format(Locale.ROOT, "ParallelCopyJob: done%s; took %.1f msec to copy %s",
+                               exc == null ? "" : " (failed: " + cancelReason + ")",
+                               (System.nanoTime() - startNS)/1000000.0,
+                               Node.bytesToString(totBytesCopied)));
+    try {
+      if (onceDone != null) {
+        onceDone.run(this);
+      }
+    } catch (Throwable t) {
+      dest.message("ignore exception calling OnceDone: " + t);
+    } finally {
+      finished.countDown();
+    }
+  }
+
+  @Override
+  public void runBlocking() throws Exception {
+    final boolean started;
+    synchronized (this) {
+      started = pending != null;
+    }
+    if (started == false) {
+      start();
+    }
+    try {
+      finished.await();
+    } catch (InterruptedException ie) {
+      throw new ThreadInterruptedException(ie);
+    }
+    if (getFailed()) {
+      if (exc instanceof IOException) {
+        throw (IOException) exc;
+      }
+      throw new RuntimeException("copy failed: " + cancelReason, exc);
+    }
+  }
+
+  @Override
+  public synchronized void cancel(String reason, Throwable exc) throws IOException {
+    try {
+      super.cancel(reason, exc);
+    } finally {
+      if (resumedInput instanceof Closeable) {
+        IOUtils.closeWhileHandlingException((Closeable) resumedInput);
+      }
+      resumedInput = null;
+      for (Map.Entry<CopyOneFile,DataInput> ent : transferred.entrySet()) {
+        deletePartialFile(ent.getKey(), ent.getValue());
+      }
+      transferred.clear();
+      for (Map.Entry<CopyOneFile,DataInput> ent : suspended.entrySet()) {
+        deletePartialFile(ent.getKey(), ent.getValue());
+      }
+      suspended.clear();
+    }
+    // files that are still being copied notice that we are cancelled and delete their temp files
+  }
+
+  @Override
+  public void finish() throws IOException {
+    dest.message(String.format(Locale.ROOT,
+                               "top: file copy done; took %.1f msec to copy %d bytes; now rename %d tmp files",
+                               (System.nanoTime() - startNS)/1000000.0,
+                               totBytesCopied,
+                               copiedFiles.size()));
+
+    for(Map.Entry<String,String> ent : copiedFiles.entrySet()) {
+      String tmpFileName = ent.getValue();
+      String fileName = ent.getKey();
+
+      if (Node.VERBOSE_FILES) {
+        dest.message("rename file " + tmpFileName + " to " + fileName);
+      }
+
+      dest.dir.rename(tmpFileName, fileName);
+    }
+
+    copiedFiles.clear();
+  }
+
+  @Override
+  public boolean getFailed() {
+    return exc != null;
+  }
+
+  @Override
+  public synchronized long getTotalBytesCopied() {
+    return totBytesCopied;
+  }
+
+  @Override
+  public synchronized Set<String> getFileNamesToCopy() {
+    Set<String> fileNames = new HashSet<>();
+    for(Map.Entry<String,FileMetaData> ent : toCopy) {
+      fileNames.add(ent.getKey());
+    }
+    return fileNames;
+  }
+
+  @Override
+  public Set<String> getFileNames() {
+    return files.keySet();
+  }
+
+  @Override
+  public boolean conflicts(CopyJob other) {
+    Set<String> filesToCopy = getFileNamesToCopy();
+    for (String fileName : other.getFileNamesToCopy()) {
+      if (filesToCopy.contains(fileName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Higher priority and then "first come first serve" order. */
+  @Override
+  public int compareTo(CopyJob other) {
+    if (highPriority != other.highPriority) {
+      return highPriority ? -1 : 1;
+    }
+    return Long.compare(ord, other.ord);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "ParallelCopyJob(ord=" + ord + " " + reason + " highPriority=" + highPriority + " files count=" + files.size() + " bytesCopied=" + totBytesCopied + " (of " + totBytes + ") filesCopied=" + copiedFiles.size() + " inProgress=" + inProgress.size() + ")";
+  }
+}
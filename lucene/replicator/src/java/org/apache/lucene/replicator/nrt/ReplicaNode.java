@@ -50,6 +50,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.RateLimiter;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.Version;
 
@@ -82,6 +83,9 @@ public abstract class ReplicaNode extends Node {
   /** Primary gen last time we successfully replicated: */
   protected long lastPrimaryGen;
 
+  /** Limits the rate at which all copy jobs of this node write copied files, or null if unlimited */
+  private volatile RateLimiter copyRateLimiter;
+
   public ReplicaNode(int id, Directory dir, SearcherFactory searcherFactory, PrintStream printStream) throws IOException {
     super(id, dir, searcherFactory, printStream);
 
@@ -567,9 +571,10 @@ public abstract class ReplicaNode extends Node {
       return null;
     }
 
-    // Runs in the background jobs thread, maybe slowly/throttled, and calls finishSync once it's done:
-    launch(curNRTCopy);
-    return curNRTCopy;
+    // Runs in the background jobs thread, maybe slowly/throttled, and calls finishSync once it's done.  NOTE: a job that copies on its
+    // own threads may already be done here, and have cleared curNRTCopy:
+    launch(job);
+    return job;
   }
 
   public synchronized boolean isCopying() {
@@ -713,6 +718,18 @@ public abstract class ReplicaNode extends Node {
     return dir.createTempOutput(prefix, suffix, IOContext.DEFAULT);
   }
 
+  /** Sets the {@link RateLimiter} that limits the rate at which files are copied from the primary, shared by all copy jobs of this node,
+   *  or null to not limit it.  This only applies to files that start copying after this is called. */
+  public void setCopyRateLimiter(RateLimiter copyRateLimiter) {
+    this.copyRateLimiter = copyRateLimiter;
+  }
+
+  /** Returns the {@link RateLimiter} that limits the rate at which files are copied, or null if unlimited.
+   *  @see #setCopyRateLimiter */
+  public RateLimiter getCopyRateLimiter() {
+    return copyRateLimiter;
+  }
+
   /** Compares incoming per-file identity (id, checksum, header, footer) versus what we have locally and returns the subset of the incoming
    *  files that need copying */
   public List<Map.Entry<String,FileMetaData>> getFilesToCopy(Map<String,FileMetaData> files) throws IOException {
@@ -17,9 +17,13 @@
 package org.apache.lucene.replicator;
 
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.document.Document;
@@ -205,6 +209,108 @@ public class TestIndexReplicationClient extends ReplicatorTestCase {
     client.updateNow();
   }
 
+  /** Interrupts the first transfer of every file after a few bytes. */
+  private static class InterruptingReplicator implements Replicator {
+    
+    private final Replicator in;
+    private final Set<String> interrupted = ConcurrentHashMap.newKeySet();
+    final AtomicInteger resumed = new AtomicInteger();
+    
+    InterruptingReplicator(Replicator in) {
+      this.in = in;
+    }
+    
+    @Override
+    public void publish(Revision revision) throws IOException {
+      in.publish(revision);
+    }
+    
+    @Override
+    public SessionToken checkForUpdate(String currVersion) throws IOException {
+      return in.checkForUpdate(currVersion);
+    }
+    
+    @Override
+    public void release(String sessionID) throws IOException {
+      in.release(sessionID);
+    }
+    
+    @Override
+    public InputStream obtainFile(String sessionID, String source, String fileName) throws IOException {
+      final InputStream stream = in.obtainFile(sessionID, source, fileName);
+      if (interrupted.add(sessionID + "/" + source + "/" + fileName) == false) {
+        return stream;
+      }
+      return new FilterInputStream(stream) {
+        private int remaining = 10;
+        
+        @Override
+        public int read() throws IOException {
+          if (remaining-- == 0) {
+            throw new IOException("interrupted");
+          }
+          return super.read();
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          if (remaining == 0) {
+            throw new IOException("interrupted");
+          }
+          final int read = super.read(b, off, Math.min(len, remaining));
+          if (read > 0) {
+            remaining -= read;
+          }
+          return read;
+        }
+      };
+    }
+    
+    @Override
+    public InputStream obtainFile(String sessionID, String source, String fileName, long offset) throws IOException {
+      if (offset > 0) {
+        resumed.incrementAndGet();
+      }
+      return Replicator.super.obtainFile(sessionID, source, fileName, offset);
+    }
+    
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+  
+  @Test
+  public void testResumeInterruptedCopy() throws Exception {
+    InterruptingReplicator interrupting = new InterruptingReplicator(replicator);
+    client.close();
+    client = new ReplicationClient(interrupting, handler, sourceDirFactory);
+    
+    // Callback validates the replicated index
+    replicator.publish(createRevision(1));
+    client.updateNow();
+    assertNotNull(handler.currentVersion());
+    assertTrue(interrupting.resumed.get() > 0);
+    
+    int resumed = interrupting.resumed.get();
+    replicator.publish(createRevision(2));
+    client.updateNow();
+    assertTrue(interrupting.resumed.get() > resumed);
+  }
+  
+  @Test
+  public void testResumeDisabled() throws Exception {
+    client.close();
+    client = new ReplicationClient(new InterruptingReplicator(replicator), handler, sourceDirFactory);
+    client.setMaxResumeAttempts(0);
+    expectThrows(IllegalArgumentException.class, () -> client.setMaxResumeAttempts(-1));
+    
+    replicator.publish(createRevision(1));
+    IOException expected = expectThrows(IOException.class, client::updateNow);
+    assertEquals("interrupted", expected.getMessage());
+    assertNull(handler.currentVersion());
+  }
+  
   /*
    * This test verifies that the client and handler do not end up in a corrupt
    * index if exceptions are thrown at any point during replication. Either when
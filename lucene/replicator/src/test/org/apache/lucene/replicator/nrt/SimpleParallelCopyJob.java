@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.replicator.nrt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.util.IOUtils;
+
+/** Copies files from the primary over one connection per file.  When the job copies an NRT point, the connection that fetched the
+ *  {@link CopyState} stays open until the job is done or cancelled, so that the primary keeps the files of this NRT point. */
+class SimpleParallelCopyJob extends ParallelCopyJob {
+
+  private final int primaryTCPPort;
+  private final CopyState copyState;
+
+  /** Holds the CopyState on the primary, or null if the primary did not send one, e.g. for merge pre-copying */
+  private Connection stateConnection;
+
+  public SimpleParallelCopyJob(String reason, int primaryTCPPort, Connection stateConnection, CopyState copyState, SimpleReplicaNode dest,
+                               Map<String,FileMetaData> files, boolean highPriority, OnceDone onceDone,
+                               Executor executor, int maxConcurrentFiles) throws IOException {
+    super(reason, files, dest, highPriority, releaseThen(onceDone), executor, maxConcurrentFiles);
+    dest.message("create SimpleParallelCopyJob o" + ord + " maxConcurrentFiles=" + maxConcurrentFiles);
+    this.primaryTCPPort = primaryTCPPort;
+    this.stateConnection = stateConnection;
+    this.copyState = copyState;
+  }
+
+  /** Releases the CopyState on the primary before calling the provided {@link OnceDone} */
+  private static OnceDone releaseThen(OnceDone onceDone) {
+    return job -> {
+      ((SimpleParallelCopyJob) job).releaseCopyState();
+      if (onceDone != null) {
+        onceDone.run(job);
+      }
+    };
+  }
+
+  /** Tells the primary that we are done fetching files over this connection, and closes it */
+  private static void releaseConnection(Connection c) {
+    try {
+      c.out.writeByte((byte) 1);
+      c.flush();
+      c.s.shutdownOutput();
+    } catch (Throwable t) {
+      // The primary releases the CopyState when the connection breaks anyway
+    } finally {
+      IOUtils.closeWhileHandlingException(c);
+    }
+  }
+
+  private synchronized void releaseCopyState() {
+    if (stateConnection != null) {
+      releaseConnection(stateConnection);
+      stateConnection = null;
+    }
+  }
+
+  @Override
+  protected DataInput openFile(String fileName, FileMetaData metaData, long offset) throws IOException {
+    Connection c = new Connection(primaryTCPPort);
+    boolean success = false;
+    try {
+      c.out.writeByte(SimplePrimaryNode.CMD_FETCH_FILES);
+      c.out.writeVInt(dest.id);
+      // We already have the CopyState:
+      c.out.writeByte((byte) 0);
+      c.out.writeByte((byte) 0);
+      c.out.writeString(fileName);
+      c.out.writeVLong(offset);
+      c.out.writeByte((byte) 1);
+      c.flush();
+      c.s.shutdownOutput();
+
+      long len = c.in.readVLong();
+      if (len != metaData.length) {
+        throw new IllegalStateException("file " + fileName + ": meta data says length=" + metaData.length + " but c.in says " + len);
+      }
+      success = true;
+      return new ConnectionDataInput(c);
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(c);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void cancel(String reason, Throwable exc) throws IOException {
+    try {
+      super.cancel(reason, exc);
+    } finally {
+      // Files that are still being copied are deleted, so we don't need the primary to keep them anymore:
+      releaseCopyState();
+    }
+  }
+
+  @Override
+  public CopyState getCopyState() {
+    return copyState;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "Simple" + super.toString();
+  }
+
+  /** Reads the bytes of one file from a connection, and closes the connection once the file is copied */
+  private static class ConnectionDataInput extends DataInput implements Closeable {
+    private final Connection c;
+
+    ConnectionDataInput(Connection c) {
+      this.c = c;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      return c.in.readByte();
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len) throws IOException {
+      c.in.readBytes(b, offset, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      c.close();
+    }
+  }
+}
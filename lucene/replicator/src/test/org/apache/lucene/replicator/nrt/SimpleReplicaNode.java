@@ -30,6 +30,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -50,7 +53,10 @@ import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.store.RateLimitedIndexOutput;
 import org.apache.lucene.store.RateLimiter;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
 
 class SimpleReplicaNode extends ReplicaNode {
   final int tcpPort;
@@ -61,6 +67,10 @@ class SimpleReplicaNode extends ReplicaNode {
   final AtomicLong bytesSinceLastRateLimiterCheck = new AtomicLong();
   final Random random;
 
+  /** Runs the copies of {@link SimpleParallelCopyJob}s, or null if this node copies files with {@link SimpleCopyJob}s */
+  final ExecutorService copyExecutor;
+  final int maxConcurrentFiles;
+
   /** Changes over time, as primary node crashes and moves around */
   int curPrimaryTCPPort;
 
@@ -75,6 +85,16 @@ class SimpleReplicaNode extends ReplicaNode {
     message(String.format(Locale.ROOT, "top: will rate limit file fetch to %.2f MB/sec", mbPerSec));
     fetchRateLimiter = new RateLimiter.SimpleRateLimiter(mbPerSec);
     this.curPrimaryTCPPort = primaryTCPPort;
+
+    // Most of the time, copy files in parallel, each over its own connection:
+    if (random.nextInt(4) != 0) {
+      maxConcurrentFiles = TestUtil.nextInt(random, 1, 2 * ParallelCopyJob.DEFAULT_MAX_CONCURRENT_FILES);
+      message("top: will copy up to " + maxConcurrentFiles + " files in parallel");
+      copyExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("R" + id + ".copy"));
+    } else {
+      maxConcurrentFiles = 1;
+      copyExecutor = null;
+    }
     
     start(curPrimaryGen);
 
@@ -87,6 +107,10 @@ class SimpleReplicaNode extends ReplicaNode {
 
   @Override
   protected void launch(CopyJob job) {
+    if (job instanceof ParallelCopyJob) {
+      // Already copying on the executor since it was started
+      return;
+    }
     jobs.launch(job);
   }
 
@@ -101,12 +125,33 @@ class SimpleReplicaNode extends ReplicaNode {
         job.cancel("jobs closing", null);
       }
     }
+    if (copyExecutor != null) {
+      synchronized (this) {
+        if (curNRTCopy != null) {
+          curNRTCopy.cancel("closing", null);
+        }
+      }
+      // Cancelled copies stop after their current chunk; wait for them so they don't write to the directory once it is closed:
+      copyExecutor.shutdown();
+      try {
+        if (copyExecutor.awaitTermination(60, TimeUnit.SECONDS) == false) {
+          message("top: copy threads did not terminate after 60 seconds");
+        }
+      } catch (InterruptedException ie) {
+        throw new RuntimeException(ie);
+      }
+      message("top: copy executor terminated");
+    }
     super.close();
   }
 
   @Override
   protected CopyJob newCopyJob(String reason, Map<String,FileMetaData> files, Map<String,FileMetaData> prevFiles,
                                boolean highPriority, CopyJob.OnceDone onceDone) throws IOException {
+    if (copyExecutor != null) {
+      return newParallelCopyJob(reason, files, highPriority, onceDone);
+    }
+
     Connection c;
     CopyState copyState;
 
@@ -132,6 +177,32 @@ class SimpleReplicaNode extends ReplicaNode {
     return new SimpleCopyJob(reason, c, copyState, this, files, highPriority, onceDone);
   }
 
+  private CopyJob newParallelCopyJob(String reason, Map<String,FileMetaData> files, boolean highPriority,
+                                     CopyJob.OnceDone onceDone) throws IOException {
+    final int primaryTCPPort = curPrimaryTCPPort;
+    Connection c = null;
+    CopyState copyState = null;
+
+    if (files == null) {
+      // Ask primary for the latest CopyState; it keeps the files of this CopyState until we close this connection:
+      try {
+        c = new Connection(primaryTCPPort);
+        c.out.writeByte(SimplePrimaryNode.CMD_FETCH_FILES);
+        c.out.writeVInt(id);
+        c.out.writeByte((byte) 1);
+        c.flush();
+        copyState = SimpleServer.readCopyState(c.in);
+        files = copyState.files;
+      } catch (Throwable t) {
+        IOUtils.closeWhileHandlingException(c);
+        throw new NodeCommunicationException("exc while reading files to copy", t);
+      }
+    }
+
+    return new SimpleParallelCopyJob(reason, primaryTCPPort, c, copyState, this, files, highPriority, onceDone,
+                                     copyExecutor, maxConcurrentFiles);
+  }
+
   static Directory getDirectory(Random random, int id, Path path, boolean doCheckIndexOnClose) throws IOException {
     MockDirectoryWrapper dir = LuceneTestCase.newMockFSDirectory(path);
     
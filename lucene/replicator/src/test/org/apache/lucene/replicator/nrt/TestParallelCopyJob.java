@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.replicator.nrt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RateLimiter;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.apache.lucene.util.LuceneTestCase.SuppressSysoutChecks;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+@SuppressCodecs({"MockRandom", "Direct", "SimpleText"})
+@SuppressSysoutChecks(bugUrl = "ReplicaNode prints its messages")
+public class TestParallelCopyJob extends LuceneTestCase {
+
+  public void testCopy() throws Exception {
+    try (Directory source = newFSDirectory(createTempDir())) {
+      // closed by the replica
+      Directory dest = newFSDirectory(createTempDir());
+      Map<String,FileMetaData> files = indexAndListFiles(source);
+      ExecutorService executor = Executors.newFixedThreadPool(3, new NamedThreadFactory("TestParallelCopyJob"));
+      try (TestReplicaNode replica = new TestReplicaNode(dest)) {
+        replica.setCopyRateLimiter(new RateLimiter.SimpleRateLimiter(1000));
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger opened = new AtomicInteger();
+        ParallelCopyJob job = new TestCopyJob(files, replica, j -> done.countDown(), executor, source, false, opened);
+        job.runBlocking();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertFalse(job.getFailed());
+        assertEquals(files.size(), opened.get());
+        job.finish();
+        for (Map.Entry<String,FileMetaData> ent : files.entrySet()) {
+          FileMetaData copied = replica.readLocalFileMetaData(ent.getKey());
+          assertNotNull(copied);
+          assertEquals(ent.getValue().checksum, copied.checksum);
+          assertEquals(ent.getValue().length, copied.length);
+        }
+      } finally {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+      }
+    }
+  }
+
+  public void testChecksumMismatch() throws Exception {
+    try (Directory source = newFSDirectory(createTempDir())) {
+      // closed by the replica
+      Directory dest = newFSDirectory(createTempDir());
+      Map<String,FileMetaData> files = indexAndListFiles(source);
+      ExecutorService executor = Executors.newFixedThreadPool(3, new NamedThreadFactory("TestParallelCopyJob"));
+      try (TestReplicaNode replica = new TestReplicaNode(dest)) {
+        CountDownLatch done = new CountDownLatch(1);
+        ParallelCopyJob job = new TestCopyJob(files, replica, j -> done.countDown(), executor, source, true, new AtomicInteger());
+        IOException expected = expectThrows(IOException.class, job::runBlocking);
+        assertTrue(expected.getMessage().contains("checksum mismatch after file copy"));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(job.getFailed());
+        // all temporary files were removed
+        for (String fileName : replica.dir.listAll()) {
+          if (fileName.startsWith("extra") == false) {
+            assertEquals(IndexWriter.WRITE_LOCK_NAME, fileName);
+          }
+        }
+      } finally {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+      }
+    }
+  }
+
+  public void testSupersedeMidCopy() throws Exception {
+    try (Directory source = newFSDirectory(createTempDir())) {
+      // closed by the replica
+      Directory dest = newFSDirectory(createTempDir());
+      Map<String,FileMetaData> files = indexAndListFiles(source);
+      // a file that takes several visits to copy
+      files.put("big.bin", writeBigFile(source, "big.bin"));
+      ExecutorService executor = Executors.newFixedThreadPool(3, new NamedThreadFactory("TestParallelCopyJob"));
+      try (TestReplicaNode replica = new TestReplicaNode(dest)) {
+        CountDownLatch prevDone = new CountDownLatch(1);
+        TestCopyJob prev = new TestCopyJob(files, replica, j -> prevDone.countDown(), executor, source, false, new AtomicInteger());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        prev.gate("big.bin", started, resume);
+        prev.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // a new NRT point supersedes the job while it is copying the big file
+        TestCopyJob job = new TestCopyJob(files, replica, null, executor, source, false, new AtomicInteger());
+        Thread transfer = new Thread(() -> {
+          try {
+            job.transferAndCancel(prev);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        transfer.start();
+        // wait until the transfer waits for the copy of the big file to stop
+        while (transfer.getState() != Thread.State.WAITING) {
+          assertTrue(transfer.isAlive());
+          Thread.sleep(1);
+        }
+        resume.countDown();
+        transfer.join();
+        assertTrue(prevDone.await(10, TimeUnit.SECONDS));
+        assertTrue(prev.getFailed());
+
+        job.runBlocking();
+        assertFalse(job.getFailed());
+        assertFalse("the big file must be resumed, not copied again", job.openedFiles.contains("big.bin"));
+        job.finish();
+        for (Map.Entry<String,FileMetaData> ent : files.entrySet()) {
+          FileMetaData copied = replica.readLocalFileMetaData(ent.getKey());
+          assertNotNull(copied);
+          assertEquals(ent.getValue().checksum, copied.checksum);
+          assertEquals(ent.getValue().length, copied.length);
+        }
+        // no temporary files are left behind
+        Set<String> expected = new HashSet<>(files.keySet());
+        expected.add(IndexWriter.WRITE_LOCK_NAME);
+        Set<String> actual = new HashSet<>(Arrays.asList(replica.dir.listAll()));
+        actual.removeIf(fileName -> fileName.startsWith("extra"));
+        assertEquals(expected, actual);
+      } finally {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+      }
+    }
+  }
+
+  private static FileMetaData writeBigFile(Directory dir, String fileName) throws IOException {
+    try (IndexOutput out = dir.createOutput(fileName, IOContext.DEFAULT)) {
+      CodecUtil.writeIndexHeader(out, "test", 0, StringHelper.randomId(), "");
+      byte[] bytes = new byte[1 << 16];
+      for (int i = 0; i < 32; i++) {
+        random().nextBytes(bytes);
+        out.writeBytes(bytes, bytes.length);
+      }
+      CodecUtil.writeFooter(out);
+    }
+    return readMetaData(dir, fileName);
+  }
+
+  private static FileMetaData readMetaData(Directory dir, String fileName) throws IOException {
+    try (IndexInput in = dir.openInput(fileName, IOContext.READONCE)) {
+      byte[] header = CodecUtil.readIndexHeader(in);
+      byte[] footer = CodecUtil.readFooter(in);
+      return new FileMetaData(header, footer, in.length(), CodecUtil.retrieveChecksum(in));
+    }
+  }
+
+  private static Map<String,FileMetaData> indexAndListFiles(Directory dir) throws IOException {
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setUseCompoundFile(false);
+    try (IndexWriter w = new IndexWriter(dir, iwc)) {
+      int numDocs = atLeast(1000);
+      for (int i = 0; i < numDocs; i++) {
+        Document doc = new Document();
+        doc.add(new TextField("body", "doc " + i + " " + random().nextInt(1000), Field.Store.YES));
+        w.addDocument(doc);
+        if (random().nextInt(200) == 0) {
+          w.flush();
+        }
+      }
+    }
+    Map<String,FileMetaData> files = new HashMap<>();
+    for (String fileName : dir.listAll()) {
+      if (fileName.startsWith(IndexFileNames.SEGMENTS) || fileName.equals(IndexWriter.WRITE_LOCK_NAME) || fileName.startsWith("extra")) {
+        continue;
+      }
+      files.put(fileName, readMetaData(dir, fileName));
+    }
+    return files;
+  }
+
+  /** Reads files straight from the source directory, optionally flipping bits of one file or pausing the copy of one file. */
+  private static class TestCopyJob extends ParallelCopyJob {
+    private final Directory source;
+    private final boolean corrupt;
+    private final AtomicInteger opened;
+    final Set<String> openedFiles = ConcurrentHashMap.newKeySet();
+    private String gatedFile;
+    private CountDownLatch started, resume;
+
+    TestCopyJob(Map<String,FileMetaData> files, ReplicaNode dest, OnceDone onceDone, ExecutorService executor,
+                Directory source, boolean corrupt, AtomicInteger opened) throws IOException {
+      super("test", files, dest, false, onceDone, executor, 2);
+      this.source = source;
+      this.corrupt = corrupt;
+      this.opened = opened;
+    }
+
+    /** Makes the copy of the given file wait for {@code resume} after its first chunk, which counts down {@code started} */
+    void gate(String fileName, CountDownLatch started, CountDownLatch resume) {
+      this.gatedFile = fileName;
+      this.started = started;
+      this.resume = resume;
+    }
+
+    @Override
+    protected DataInput openFile(String fileName, FileMetaData metaData, long offset) throws IOException {
+      opened.incrementAndGet();
+      openedFiles.add(fileName);
+      IndexInput in = source.openInput(fileName, IOContext.READONCE);
+      in.seek(offset);
+      if (corrupt && fileName.endsWith(".si")) {
+        return new CorruptingDataInput(in);
+      }
+      if (fileName.equals(gatedFile)) {
+        return new GatedDataInput(in, started, resume);
+      }
+      return in;
+    }
+
+    @Override
+    public CopyState getCopyState() {
+      return null;
+    }
+  }
+
+  /** Flips a bit of every chunk that is read. */
+  private static class CorruptingDataInput extends DataInput implements Closeable {
+    private final IndexInput in;
+
+    CorruptingDataInput(IndexInput in) {
+      this.in = in;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      return in.readByte();
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len) throws IOException {
+      in.readBytes(b, offset, len);
+      b[offset] ^= 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /** Waits for a latch after the first chunk that is read. */
+  private static class GatedDataInput extends DataInput implements Closeable {
+    private final IndexInput in;
+    private final CountDownLatch started, resume;
+
+    GatedDataInput(IndexInput in, CountDownLatch started, CountDownLatch resume) {
+      this.in = in;
+      this.started = started;
+      this.resume = resume;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      return in.readByte();
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len) throws IOException {
+      in.readBytes(b, offset, len);
+      if (started.getCount() > 0) {
+        started.countDown();
+        try {
+          resume.await();
+        } catch (InterruptedException e) {
+          throw new ThreadInterruptedException(e);
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  private static class TestReplicaNode extends ReplicaNode {
+
+    TestReplicaNode(Directory dir) throws IOException {
+      super(0, dir, new SearcherFactory(), System.out);
+      start(0);
+    }
+
+    @Override
+    protected CopyJob newCopyJob(String reason, Map<String,FileMetaData> files, Map<String,FileMetaData> prevFiles,
+                                 boolean highPriority, CopyJob.OnceDone onceDone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void launch(CopyJob job) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void sendNewReplica() {
+      // there is no primary to notify
+    }
+  }
+}
@@ -67,7 +67,10 @@ import org.apache.lucene.search.Weight;
  * </pre>
  *
  * @lucene.experimental
+ * @deprecated Use {@link org.apache.lucene.search.IndexSortRangeQuery} instead, which also
+ *             supports int, float, double and keyword sort fields.
  */
+@Deprecated
 public class IndexSortSortedNumericDocValuesRangeQuery extends Query {
 
   private final String field;
@@ -1160,6 +1160,15 @@ public class AssertingLeafReader extends FilterLeafReader {
       in.visit(docID);
     }
 
+    @Override
+    public void visit(DocIdSetIterator iterator) throws IOException {
+      assert (docBudget -= (int) iterator.cost()) >= 0 : "called add() more times than the last call to grow() reserved";
+
+      // Like visit(int), this should only be invoked when the cell is inside the query shape:
+      assert lastCompareResult == Relation.CELL_INSIDE_QUERY;
+      in.visit(iterator);
+    }
+
     @Override
     public void visit(int docID, byte[] packedValue) throws IOException {
       assert --docBudget >= 0 : "called add() more times than the last call to grow() reserved";
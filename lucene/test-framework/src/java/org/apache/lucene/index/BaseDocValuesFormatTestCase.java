@@ -2072,6 +2072,46 @@ public abstract class BaseDocValuesFormatTestCase extends BaseIndexFileFormatTes
     directory.close();
   }
   
+  public void testSortedSetLookupOrds() throws IOException {
+    Directory directory = newDirectory();
+    RandomIndexWriter iwriter = new RandomIndexWriter(random(), directory, newIndexWriterConfig(new MockAnalyzer(random())));
+    int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      int numValues = random().nextInt(5);
+      for (int j = 0; j < numValues; j++) {
+        doc.add(new SortedSetDocValuesField("field", new BytesRef(TestUtil.randomSimpleString(random(), 1, 20))));
+      }
+      iwriter.addDocument(doc);
+    }
+    iwriter.forceMerge(1);
+    DirectoryReader ireader = iwriter.getReader();
+    iwriter.close();
+
+    SortedSetDocValues dv = DocValues.getSortedSet(getOnlyLeafReader(ireader), "field");
+    List<BytesRef> terms = new ArrayList<>();
+    TermsEnum termsEnum = dv.termsEnum();
+    for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+      terms.add(BytesRef.deepCopyOf(term));
+    }
+    assertEquals(dv.getValueCount(), terms.size());
+    if (terms.isEmpty() == false) {
+      long[] ords = new long[TestUtil.nextInt(random(), 1, 100)];
+      for (int i = 0; i < ords.length; i++) {
+        ords[i] = random().nextInt(terms.size());
+      }
+      BytesRef[] values = dv.lookupOrds(ords);
+      assertEquals(ords.length, values.length);
+      for (int i = 0; i < ords.length; i++) {
+        assertEquals(terms.get((int) ords[i]), values[i]);
+        assertEquals(terms.get((int) ords[i]), dv.lookupOrd(ords[i]));
+      }
+    }
+
+    ireader.close();
+    directory.close();
+  }
+
   public void testSortedSetTermsEnum() throws IOException {
     Directory directory = newDirectory();
     Analyzer analyzer = new MockAnalyzer(random());
@@ -1000,6 +1000,7 @@ public abstract class LuceneTestCase extends Assert {
     }
     c.setUseCompoundFile(r.nextBoolean());
     c.setReaderPooling(r.nextBoolean());
+    c.setRecycleIndexingBuffers(r.nextBoolean());
     if (rarely(r)) {
       c.setCheckPendingFlushUpdate(false);
     }
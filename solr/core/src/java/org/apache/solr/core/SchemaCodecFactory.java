@@ -23,11 +23,13 @@ import java.util.Locale;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.bloom.BinaryFuseFilteringPostingsFormat;
 import org.apache.lucene.codecs.lucene90.Lucene90Codec;
 import org.apache.lucene.codecs.lucene90.Lucene90Codec.Mode;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.util.plugin.SolrCoreAware;
 import org.slf4j.Logger;
@@ -41,6 +43,11 @@ import org.slf4j.LoggerFactory;
  * Also, a string argument with name <code>compressionMode</code> can be
  * provided to chose between the different compression options for
  * stored fields
+ * <br>
+ * A boolean argument with name <code>filterUniqueKey</code> can be set to
+ * wrap the postings format of the uniqueKey field in a
+ * {@link BinaryFuseFilteringPostingsFormat}, so that id lookups, e.g. when
+ * applying updates or looking up versions, skip segments that don't have the id
  * 
  * @lucene.experimental
  */
@@ -51,6 +58,11 @@ public class SchemaCodecFactory extends CodecFactory implements SolrCoreAware {
    */
   public static final String COMPRESSION_MODE = "compressionMode";
   
+  /**
+   * Key to use in init arguments to filter the postings of the uniqueKey field.
+   */
+  public static final String FILTER_UNIQUE_KEY = "filterUniqueKey";
+
   public static final Mode SOLR_DEFAULT_COMPRESSION_MODE = Mode.BEST_SPEED;
   
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -92,17 +104,30 @@ public class SchemaCodecFactory extends CodecFactory implements SolrCoreAware {
       compressionMode = SOLR_DEFAULT_COMPRESSION_MODE;
       log.debug("Using default compressionMode: {}", compressionMode);
     }
+    Boolean filterUniqueKeyArg = args.getBooleanArg(FILTER_UNIQUE_KEY);
+    final boolean filterUniqueKey = filterUniqueKeyArg != null && filterUniqueKeyArg;
+    log.debug("Filtering uniqueKey postings: {}", filterUniqueKey);
     codec = new Lucene90Codec(compressionMode) {
       @Override
       public PostingsFormat getPostingsFormatForField(String field) {
-        final SchemaField schemaField = core.getLatestSchema().getFieldOrNull(field);
+        final IndexSchema schema = core.getLatestSchema();
+        final SchemaField schemaField = schema.getFieldOrNull(field);
+        PostingsFormat postingsFormat = null;
         if (schemaField != null) {
           String postingsFormatName = schemaField.getType().getPostingsFormat();
           if (postingsFormatName != null) {
-            return PostingsFormat.forName(postingsFormatName);
+            postingsFormat = PostingsFormat.forName(postingsFormatName);
           }
         }
-        return super.getPostingsFormatForField(field);
+        if (postingsFormat == null) {
+          postingsFormat = super.getPostingsFormatForField(field);
+        }
+        final SchemaField uniqueKeyField = schema.getUniqueKeyField();
+        if (filterUniqueKey && uniqueKeyField != null && uniqueKeyField.getName().equals(field)
+            && postingsFormat.getName().equals(BinaryFuseFilteringPostingsFormat.FILTER_CODEC_NAME) == false) {
+          postingsFormat = new BinaryFuseFilteringPostingsFormat(postingsFormat);
+        }
+        return postingsFormat;
       }
       @Override
       public DocValuesFormat getDocValuesFormatForField(String field) {
@@ -108,6 +108,7 @@ import org.apache.solr.handler.RequestHandlerBase;
 import org.apache.solr.handler.SolrConfigHandler;
 import org.apache.solr.handler.component.HighlightComponent;
 import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.index.SlowCompositeReaderWrapper;
 import org.apache.solr.logging.MDCLoggingContext;
 import org.apache.solr.metrics.SolrCoreMetricManager;
 import org.apache.solr.metrics.SolrMetricProducer;
@@ -2140,6 +2141,10 @@ public final class SolrCore implements SolrInfoBean, Closeable {
         final String newName = realtime ? "realtime" : "main";
         tmp = new SolrIndexSearcher(this, newIndexDir, getLatestSchema(), newName,
             newReader, true, useCaches, true, directoryFactory);
+        // build ordinal maps incrementally from the ones of the previous searcher
+        if (tmp.getSlowAtomicReader() instanceof SlowCompositeReaderWrapper) {
+          ((SlowCompositeReaderWrapper) tmp.getSlowAtomicReader()).reuseOrdinalMaps(newestSearcher.get().getSlowAtomicReader());
+        }
 
       } else {
         // newestSearcher == null at this point
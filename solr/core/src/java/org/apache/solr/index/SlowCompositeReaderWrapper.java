@@ -17,7 +17,9 @@
 package org.apache.solr.index;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -25,6 +27,7 @@ import org.apache.lucene.index.*;
 import org.apache.lucene.index.MultiDocValues.MultiSortedDocValues;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.Version;
+import org.apache.lucene.util.packed.PackedInts;
 
 /**
  * This class forces a composite reader (eg a {@link
@@ -59,6 +62,20 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
   // but do we really need to optimize slow-wrapper any more?
   final Map<String,OrdinalMap> cachedOrdMaps = new HashMap<>();
 
+  // ordinal maps of a previous reader that have not been reused yet, guarded by cachedOrdMaps
+  private final Map<String,PreviousOrdinalMap> previousOrdMaps = new HashMap<>();
+
+  /** An ordinal map of a previous reader, together with the segments it was built from. */
+  private static final class PreviousOrdinalMap {
+    final OrdinalMap map;
+    final Object[] segmentKeys;
+
+    PreviousOrdinalMap(OrdinalMap map, Object[] segmentKeys) {
+      this.map = map;
+      this.segmentKeys = segmentKeys;
+    }
+  }
+
   /** This method is sugar for getting an {@link LeafReader} from
    * an {@link IndexReader} of any kind. If the reader is already atomic,
    * it is returned unchanged, otherwise wrapped by this class.
@@ -130,6 +147,111 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
     }
   }
 
+  /**
+   * Makes the ordinal maps that have been built by {@code previous}, a reader
+   * over a previous view of the same index, available to this reader. When a
+   * field's ordinal map is first needed, it is then built incrementally from
+   * the previous ordinal map, which only needs to merge the terms of new
+   * segments, as long as all segments of the previous view are still there.
+   * Only ordinal maps that {@code previous} built or reused itself are taken
+   * over, so that maps of fields that are not used anymore are not held on to
+   * across reopens.
+   */
+  public void reuseOrdinalMaps(LeafReader previous) {
+    if (previous instanceof SlowCompositeReaderWrapper == false || previous == this) {
+      return;
+    }
+    final SlowCompositeReaderWrapper other = (SlowCompositeReaderWrapper) previous;
+    final Map<String,PreviousOrdinalMap> maps = new HashMap<>();
+    synchronized (other.cachedOrdMaps) {
+      for (Map.Entry<String,OrdinalMap> entry : other.cachedOrdMaps.entrySet()) {
+        maps.put(entry.getKey(), new PreviousOrdinalMap(entry.getValue(), segmentKeys(other.in, entry.getKey())));
+      }
+    }
+    synchronized (cachedOrdMaps) {
+      maps.keySet().removeAll(cachedOrdMaps.keySet());
+      previousOrdMaps.putAll(maps);
+    }
+  }
+
+  /**
+   * Returns a key for every segment of {@code reader} that identifies the
+   * doc values of {@code field}, or null for segments that can't be identified.
+   */
+  private static Object[] segmentKeys(CompositeReader reader, String field) {
+    final List<LeafReaderContext> leaves = reader.leaves();
+    final Object[] keys = new Object[leaves.size()];
+    for (int i = 0; i < keys.length; i++) {
+      final LeafReader leaf = leaves.get(i).reader();
+      final CacheHelper cacheHelper = leaf.getCoreCacheHelper();
+      if (cacheHelper != null) {
+        // doc values updates change the doc values of a field without changing the core
+        final FieldInfo fieldInfo = leaf.getFieldInfos().fieldInfo(field);
+        keys[i] = Arrays.asList(cacheHelper.getKey(), fieldInfo == null ? -1L : fieldInfo.getDocValuesGen());
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Builds and caches the ordinal map of {@code field} from the ordinal map
+   * of a previous reader, or returns null if there is no such map.
+   * Must be called while holding the lock on {@link #cachedOrdMaps}.
+   */
+  private OrdinalMap buildFromPreviousOrdinalMap(String field, DocValuesType type) throws IOException {
+    final PreviousOrdinalMap previous = previousOrdMaps.remove(field);
+    final CacheHelper cacheHelper = getReaderCacheHelper();
+    final List<LeafReaderContext> leaves = in.leaves();
+    if (previous == null || cacheHelper == null || leaves.size() <= 1) {
+      return null;
+    }
+
+    final SortedDocValues[] sortedValues = new SortedDocValues[leaves.size()];
+    final SortedSetDocValues[] sortedSetValues = new SortedSetDocValues[leaves.size()];
+    boolean anyReal = false;
+    for (int i = 0; i < leaves.size(); i++) {
+      final LeafReader reader = leaves.get(i).reader();
+      final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+      if (fieldInfo != null && fieldInfo.getDocValuesType() != type) {
+        return null;
+      }
+      if (type == DocValuesType.SORTED) {
+        final SortedDocValues v = reader.getSortedDocValues(field);
+        anyReal |= v != null;
+        sortedValues[i] = v == null ? DocValues.emptySorted() : v;
+      } else {
+        final SortedSetDocValues v = reader.getSortedSetDocValues(field);
+        anyReal |= v != null;
+        sortedSetValues[i] = v == null ? DocValues.emptySortedSet() : v;
+      }
+    }
+    if (anyReal == false) {
+      return null;
+    }
+
+    final Map<Object,Integer> segments = new HashMap<>();
+    final Object[] segmentKeys = segmentKeys(in, field);
+    for (int i = 0; i < segmentKeys.length; i++) {
+      if (segmentKeys[i] != null) {
+        segments.put(segmentKeys[i], i);
+      }
+    }
+    final int[] previousSegments = new int[previous.segmentKeys.length];
+    for (int i = 0; i < previousSegments.length; i++) {
+      final Integer segment = previous.segmentKeys[i] == null ? null : segments.get(previous.segmentKeys[i]);
+      previousSegments[i] = segment == null ? -1 : segment;
+    }
+
+    final OrdinalMap map;
+    if (type == DocValuesType.SORTED) {
+      map = OrdinalMap.build(cacheHelper.getKey(), sortedValues, PackedInts.DEFAULT, previous.map, previousSegments);
+    } else {
+      map = OrdinalMap.build(cacheHelper.getKey(), sortedSetValues, PackedInts.DEFAULT, previous.map, previousSegments);
+    }
+    cachedOrdMaps.put(field, map);
+    return map;
+  }
+
   @Override
   public NumericDocValues getNumericDocValues(String field) throws IOException {
     ensureOpen();
@@ -154,6 +276,9 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
     OrdinalMap map = null;
     synchronized (cachedOrdMaps) {
       map = cachedOrdMaps.get(field);
+      if (map == null) {
+        map = buildFromPreviousOrdinalMap(field, DocValuesType.SORTED);
+      }
       if (map == null) {
         // uncached, or not a multi dv
         SortedDocValues dv = MultiDocValues.getSortedValues(in, field);
@@ -196,6 +321,9 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
     OrdinalMap map = null;
     synchronized (cachedOrdMaps) {
       map = cachedOrdMaps.get(field);
+      if (map == null) {
+        map = buildFromPreviousOrdinalMap(field, DocValuesType.SORTED_SET);
+      }
       if (map == null) {
         // uncached, or not a multi dv
         SortedSetDocValues dv = MultiDocValues.getSortedSetValues(in, field);
@@ -74,7 +74,9 @@ import org.apache.solr.query.SolrRangeQuery;
 import org.apache.solr.response.TextResponseWriter;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryUtils;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.uninverting.UninvertingReader;
+import org.apache.solr.util.RefCounted;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -929,6 +931,29 @@ public abstract class FieldType extends FieldProperties {
     }
   }
 
+  /**
+   * Returns true if the index of the registered searcher of the core has segments
+   * whose primary index sort is on the given field. Range queries on such fields
+   * may be wrapped into an {@link org.apache.lucene.search.IndexSortRangeQuery}.
+   */
+  protected static boolean isPrimaryIndexSortField(QParser parser, SchemaField field) {
+    if (parser == null || parser.getReq() == null || parser.getReq().getCore() == null) {
+      return false;
+    }
+    // Don't use req.getSearcher(): it would hold a searcher for any request that parses a range query,
+    // and not every caller closes its requests. Any searcher will do since the wrapped query falls
+    // back to the original query on segments that are sorted differently.
+    RefCounted<SolrIndexSearcher> searcher = parser.getReq().getCore().getRegisteredSearcher();
+    if (searcher == null) {
+      return false;
+    }
+    try {
+      return searcher.get().getPrimaryIndexSortFields().contains(field.getName());
+    } finally {
+      searcher.decref();
+    }
+  }
+
   /**
    * Returns a Query instance for doing existence searches for a field.
    * If the field does not have docValues or norms, this method will call {@link #getSpecializedExistenceQuery}, which defaults to an unbounded rangeQuery.
@@ -25,12 +25,18 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.FloatPoint;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.IndexSortRangeQuery;
+import org.apache.lucene.search.PointRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SortedNumericSelector;
 import org.apache.lucene.search.SortField;
@@ -169,12 +175,43 @@ public abstract class PointField extends NumericFieldType {
     } else if (field.indexed() && field.hasDocValues()) {
       Query pointsQuery = getPointRangeQuery(parser, field, min, max, minInclusive, maxInclusive);
       Query dvQuery = getDocValuesRangeQuery(parser, field, min, max, minInclusive, maxInclusive);
-      return new IndexOrDocValuesQuery(pointsQuery, dvQuery);
+      Query query = new IndexOrDocValuesQuery(pointsQuery, dvQuery);
+      if (field.multiValued() == false && pointsQuery instanceof PointRangeQuery && isPrimaryIndexSortField(parser, field)) {
+        // segments that are sorted on this field can find matches with a binary search on doc values
+        query = getIndexSortRangeQuery(field, (PointRangeQuery) pointsQuery, query);
+      }
+      return query;
     } else {
       return getPointRangeQuery(parser, field, min, max, minInclusive, maxInclusive);
     }
   }
 
+  /**
+   * Wraps {@code fallbackQuery} into an {@link IndexSortRangeQuery} that has the
+   * same (inclusive) bounds as {@code pointsQuery}.
+   */
+  private Query getIndexSortRangeQuery(SchemaField field, PointRangeQuery pointsQuery, Query fallbackQuery) {
+    final byte[] lower = pointsQuery.getLowerPoint();
+    final byte[] upper = pointsQuery.getUpperPoint();
+    switch (getNumberType()) {
+      case INTEGER:
+        return IndexSortRangeQuery.newIntRange(field.getName(),
+            IntPoint.decodeDimension(lower, 0), IntPoint.decodeDimension(upper, 0), fallbackQuery);
+      case FLOAT:
+        return IndexSortRangeQuery.newFloatRange(field.getName(),
+            FloatPoint.decodeDimension(lower, 0), FloatPoint.decodeDimension(upper, 0), fallbackQuery);
+      case LONG:
+      case DATE:
+        return IndexSortRangeQuery.newLongRange(field.getName(),
+            LongPoint.decodeDimension(lower, 0), LongPoint.decodeDimension(upper, 0), fallbackQuery);
+      case DOUBLE:
+        return IndexSortRangeQuery.newDoubleRange(field.getName(),
+            DoublePoint.decodeDimension(lower, 0), DoublePoint.decodeDimension(upper, 0), fallbackQuery);
+      default:
+        return fallbackQuery;
+    }
+  }
+
   public abstract Query getPointRangeQuery(QParser parser, SchemaField field, String min, String max, boolean minInclusive,
                                            boolean maxInclusive);
 
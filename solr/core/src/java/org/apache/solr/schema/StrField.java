@@ -27,6 +27,8 @@ import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.queries.function.valuesource.SortedSetFieldSource;
+import org.apache.lucene.search.IndexSortRangeQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.SortedSetSelector;
 import org.apache.lucene.util.BytesRef;
@@ -87,6 +89,19 @@ public class StrField extends PrimitiveFieldType {
     return getStringSort(field,reverse);
   }
 
+  @Override
+  protected Query getSpecializedRangeQuery(QParser parser, SchemaField field, String part1, String part2, boolean minInclusive, boolean maxInclusive) {
+    Query query = super.getSpecializedRangeQuery(parser, field, part1, part2, minInclusive, maxInclusive);
+    if (field.hasDocValues() && field.multiValued() == false && isPrimaryIndexSortField(parser, field)) {
+      // segments that are sorted on this field can find matches with a binary search on doc values
+      query = IndexSortRangeQuery.newKeywordRange(field.getName(),
+          part1 == null ? null : new BytesRef(toInternal(part1)), minInclusive,
+          part2 == null ? null : new BytesRef(toInternal(part2)), maxInclusive,
+          query);
+    }
+    return query;
+  }
+
   @Override
   public Type getUninversionType(SchemaField sf) {
     if (sf.multiValued()) {
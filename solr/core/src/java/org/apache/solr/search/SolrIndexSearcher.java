@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -897,6 +898,27 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     this.liveDocs = makeBitDocSet(docs);
   }
 
+  private volatile Set<String> primaryIndexSortFields;
+
+  /**
+   * Returns the names of the fields that are the primary index sort of at least one segment.  It's cached.
+   * @lucene.internal
+   */
+  public Set<String> getPrimaryIndexSortFields() {
+    Set<String> fields = primaryIndexSortFields;
+    if (fields == null) {
+      fields = new HashSet<>();
+      for (LeafReaderContext context : getTopReaderContext().leaves()) {
+        Sort indexSort = context.reader().getMetaData().getSort();
+        if (indexSort != null && indexSort.getSort().length > 0 && indexSort.getSort()[0].getField() != null) {
+          fields.add(indexSort.getSort()[0].getField());
+        }
+      }
+      primaryIndexSortFields = fields = Collections.unmodifiableSet(fields);
+    }
+    return fields;
+  }
+
   private static Comparator<Query> sortByCost = (q1, q2) -> ((ExtendedQuery) q1).getCost() - ((ExtendedQuery) q2).getCost();
 
   /**
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.Map;
 
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.bloom.BinaryFuseFilteringPostingsFormat;
 import org.apache.lucene.codecs.lucene87.Lucene87StoredFieldsFormat;
 import org.apache.lucene.codecs.lucene90.Lucene90Codec.Mode;
 import org.apache.lucene.codecs.perfield.PerFieldDocValuesFormat;
@@ -92,6 +93,32 @@ public class TestCodecSupport extends SolrTestCaseJ4 {
     assertEquals("Asserting", format.getDocValuesFormatForField("bar_direct").getName());
   }
   
+  public void testFilterUniqueKey() throws Exception {
+    assertEquals("string_f", h.getCore().getLatestSchema().getUniqueKeyField().getName());
+    System.setProperty("tests.FILTER_UNIQUE_KEY", "true");
+    try {
+      reloadCoreAndRecreateIndex();
+      PerFieldPostingsFormat format = (PerFieldPostingsFormat) h.getCore().getCodec().postingsFormat();
+      assertEquals(BinaryFuseFilteringPostingsFormat.FILTER_CODEC_NAME, format.getPostingsFormatForField("string_f").getName());
+      assertEquals("Direct", format.getPostingsFormatForField("string_direct_f").getName());
+      assertEquals(TestUtil.getDefaultPostingsFormat().getName(), format.getPostingsFormatForField("string_standard_f").getName());
+
+      assertU(add(doc("string_f", "bar")));
+      assertU(commit());
+      assertU(add(doc("string_f", "foo", "text", "updated")));
+      assertU(commit());
+      assertQ(req("q", "string_f:foo"), "//*[@numFound='1']");
+      assertQ(req("q", "string_f:bar"), "//*[@numFound='1']");
+      assertQ(req("q", "string_f:baz"), "//*[@numFound='0']");
+      assertQ(req("q", "text:updated"), "//*[@numFound='1']");
+    } finally {
+      System.clearProperty("tests.FILTER_UNIQUE_KEY");
+      reloadCoreAndRecreateIndex();
+    }
+    PerFieldPostingsFormat format = (PerFieldPostingsFormat) h.getCore().getCodec().postingsFormat();
+    assertEquals(TestUtil.getDefaultPostingsFormat().getName(), format.getPostingsFormatForField("string_f").getName());
+  }
+
   private void reloadCoreAndRecreateIndex() {
     h.getCoreContainer().reload(h.coreName);
     assertU(delQ("*:*"));
@@ -33,9 +33,11 @@ import org.apache.lucene.index.MultiDocValues.MultiSortedDocValues;
 import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
 import org.apache.lucene.index.MultiTerms;
 import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.TestUtil;
 import org.apache.solr.SolrTestCase;
 
@@ -124,6 +126,61 @@ public class TestSlowCompositeReaderWrapper extends SolrTestCase {
     dir.close();
   }
 
+  public void testOrdMapsAreReusedAcrossReopens() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    IndexReader previousReader = null;
+    SlowCompositeReaderWrapper previousWrapper = null;
+    final int numReopens = TestUtil.nextInt(random(), 2, 5);
+    for (int reopen = 0; reopen < numReopens; reopen++) {
+      final int numDocs = TestUtil.nextInt(random(), 1, 20);
+      for (int i = 0; i < numDocs; i++) {
+        Document doc = new Document();
+        doc.add(new SortedDocValuesField("sorted", new BytesRef(TestUtil.randomSimpleString(random(), 1, 3))));
+        doc.add(new SortedSetDocValuesField("sorted_set", new BytesRef(TestUtil.randomSimpleString(random(), 1, 3))));
+        doc.add(new SortedSetDocValuesField("sorted_set", new BytesRef(TestUtil.randomSimpleString(random(), 1, 3))));
+        w.addDocument(doc);
+      }
+      IndexReader reader = w.getReader();
+      SlowCompositeReaderWrapper slowWrapper = (SlowCompositeReaderWrapper) SlowCompositeReaderWrapper.wrap(reader);
+      if (previousWrapper != null) {
+        slowWrapper.reuseOrdinalMaps(previousWrapper);
+        previousReader.close();
+      }
+      SlowCompositeReaderWrapper fullBuild = (SlowCompositeReaderWrapper) SlowCompositeReaderWrapper.wrap(reader);
+      if (reader.leaves().size() > 1) {
+        assertSameOrdinalMap(((MultiSortedDocValues) fullBuild.getSortedDocValues("sorted")).mapping,
+            ((MultiSortedDocValues) slowWrapper.getSortedDocValues("sorted")).mapping, reader.leaves().size());
+        assertSameOrdinalMap(((MultiSortedSetDocValues) fullBuild.getSortedSetDocValues("sorted_set")).mapping,
+            ((MultiSortedSetDocValues) slowWrapper.getSortedSetDocValues("sorted_set")).mapping, reader.leaves().size());
+      }
+      previousReader = reader;
+      previousWrapper = slowWrapper;
+    }
+    previousReader.close();
+    w.close();
+    dir.close();
+  }
+
+  private static void assertSameOrdinalMap(OrdinalMap expected, OrdinalMap actual, int numSegments) {
+    assertNotSame(expected, actual);
+    assertEquals(expected.getValueCount(), actual.getValueCount());
+    for (long ord = 0; ord < expected.getValueCount(); ord++) {
+      assertEquals(expected.getFirstSegmentNumber(ord), actual.getFirstSegmentNumber(ord));
+      assertEquals(expected.getFirstSegmentOrd(ord), actual.getFirstSegmentOrd(ord));
+    }
+    for (int segment = 0; segment < numSegments; segment++) {
+      LongValues expectedGlobalOrds = expected.getGlobalOrds(segment);
+      LongValues actualGlobalOrds = actual.getGlobalOrds(segment);
+      for (long ord = 0; ord < expected.getValueCount(); ord++) {
+        if (expected.getFirstSegmentNumber(ord) == segment) {
+          long segmentOrd = expected.getFirstSegmentOrd(ord);
+          assertEquals(expectedGlobalOrds.get(segmentOrd), actualGlobalOrds.get(segmentOrd));
+        }
+      }
+    }
+  }
+
   public void testTermsAreCached() throws IOException {
     Directory dir = newDirectory();
     RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.schema;
+
+import org.apache.lucene.search.IndexSortRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.QParser;
+import org.junit.After;
+
+/**
+ * Tests that range queries on the primary index sort field are parsed into an {@link IndexSortRangeQuery}.
+ */
+public class TestIndexSortRangeQueryParsing extends SolrTestCaseJ4 {
+
+  @After
+  public void afterTest() throws Exception {
+    deleteCore();
+    System.clearProperty("solr.tests.indexSort");
+  }
+
+  private void initCoreSortedOn(String sort) throws Exception {
+    System.setProperty("solr.tests.indexSort", sort);
+    initCore("solrconfig-sortingmergepolicyfactory.xml", "schema-non-stored-docvalues.xml");
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i),
+          "timestamp_i_dvo", Integer.toString(i), "other_i_dvo", Integer.toString(i),
+          "name_s_dv", "name" + i, "other_s_dv", "name" + i));
+    }
+    assertU(commit());
+  }
+
+  private static Query parse(String q) throws Exception {
+    try (SolrQueryRequest req = req()) {
+      return QParser.getParser(q, req).getQuery();
+    }
+  }
+
+  public void testPointField() throws Exception {
+    initCoreSortedOn("timestamp_i_dvo desc");
+    boolean isPointField = h.getCore().getLatestSchema().getField("timestamp_i_dvo").getType().isPointField();
+    assertEquals(isPointField, parse("timestamp_i_dvo:[2 TO 5]") instanceof IndexSortRangeQuery);
+    assertFalse(parse("other_i_dvo:[2 TO 5]") instanceof IndexSortRangeQuery);
+    assertFalse(parse("name_s_dv:[name2 TO name5]") instanceof IndexSortRangeQuery);
+    assertQ(req("q", "timestamp_i_dvo:[2 TO 5]"), "//*[@numFound='4']");
+    assertQ(req("q", "timestamp_i_dvo:{2 TO *]"), "//*[@numFound='7']");
+  }
+
+  public void testStrField() throws Exception {
+    initCoreSortedOn("name_s_dv asc");
+    assertTrue(parse("name_s_dv:[name2 TO name5]") instanceof IndexSortRangeQuery);
+    assertFalse(parse("other_s_dv:[name2 TO name5]") instanceof IndexSortRangeQuery);
+    assertFalse(parse("timestamp_i_dvo:[2 TO 5]") instanceof IndexSortRangeQuery);
+    assertQ(req("q", "name_s_dv:[name2 TO name5]"), "//*[@numFound='4']");
+    assertQ(req("q", "name_s_dv:[* TO name5}"), "//*[@numFound='5']");
+  }
+}